@@ -33,10 +33,18 @@ public final class Config
 	
 	private static final String CACHE_SIZE_KEY_PREFIX = "CACHE_SIZE_FOR_PAGE_";
 	
+	private static final String OFF_HEAP_CACHE_SIZE_KEY_PREFIX = "OFF_HEAP_CACHE_SIZE_FOR_PAGE_";
+	
 	private static final String NUM_IO_BUFFERS_KEY = "NUM_IO_BUFFERS";
 	
 	private static final String NUM_CONCURRENT_QUERIES_KEY = "NUM_CONCURRENT_QUERIES";
 	
+	private static final String NUM_IO_READ_THREADS_KEY = "NUM_IO_READ_THREADS";
+	
+	private static final String NUM_IO_WRITE_THREADS_KEY = "NUM_IO_WRITE_THREADS";
+	
+	private static final String MEMORY_MAPPED_TABLES_KEY = "MEMORY_MAPPED_TABLES";
+	
 	private static final String BLOCK_READ_COST = "BLOCK_READ_TRANSFER_NSECS";
 	
 	private static final String BLOCK_WRITE_COST = "BLOCK_WRITE_TRANSFER_NSECS";
@@ -45,6 +53,8 @@ public final class Config
 	
 	private static final String BLOCK_RANDOM_WRITE_OVERHEAD = "BLOCK_RANDOM_WRITE_OVERHEAD_NSECS";
 	
+	private static final String SCAN_PARALLELISM_KEY = "SCAN_PARALLELISM";
+	
 	// --------------------------------------------------------------------------------------------
 	//                     Fields, Initialization and Persistence
 	// --------------------------------------------------------------------------------------------
@@ -189,6 +199,20 @@ public final class Config
 		return Integer.parseInt(val);
 	}
 	
+	/**
+	 * Gets the number of pages of the given size that the buffer pool keeps outside
+	 * of the Java heap, below the page cache. Zero disables the off-heap level.
+	 *  
+	 * @param pageSize The page size of the off-heap cache to get the capacity for.
+	 * @return The off-heap cache capacity.
+	 */
+	public int getOffHeapCacheSize(PageSize pageSize)
+	{
+		String key = OFF_HEAP_CACHE_SIZE_KEY_PREFIX + pageSize.name();
+		String val = this.props.getProperty(key);
+		return Integer.parseInt(val);
+	}
+	
 	/**
 	 * Gets the number of I/O buffers to be used by the buffer pool.
 	 * 
@@ -211,6 +235,45 @@ public final class Config
 		return Integer.parseInt(val);
 	}
 	
+	/**
+	 * Gets the number of threads the buffer pool uses to read pages from
+	 * the resources.
+	 * 
+	 * @return The number of I/O read threads.
+	 */
+	public int getNumIOReadThreads()
+	{
+		String val = this.props.getProperty(NUM_IO_READ_THREADS_KEY);
+		return Integer.parseInt(val);
+	}
+	
+	/**
+	 * Gets the number of threads the buffer pool uses to write pages back
+	 * to the resources.
+	 * 
+	 * @return The number of I/O write threads.
+	 */
+	public int getNumIOWriteThreads()
+	{
+		String val = this.props.getProperty(NUM_IO_WRITE_THREADS_KEY);
+		return Integer.parseInt(val);
+	}
+	
+	/**
+	 * Checks whether the table files are read through memory mappings rather
+	 * than through explicit reads.
+	 * 
+	 * @return True, if tables are opened memory-mapped, false otherwise.
+	 */
+	public boolean useMemoryMappedTables()
+	{
+		String val = this.props.getProperty(MEMORY_MAPPED_TABLES_KEY).trim();
+		if (!val.equalsIgnoreCase("true") && !val.equalsIgnoreCase("false")) {
+			throw new IllegalArgumentException("Not a boolean value: " + val);
+		}
+		return Boolean.parseBoolean(val);
+	}
+	
 	/**
 	 * Gets the cost (in nanoseconds) that it takes to transfer a block
 	 * of data from secondary storage to main memory.
@@ -261,6 +324,22 @@ public final class Config
 		return Long.parseLong(val);
 	}
 	
+	/**
+	 * Gets the number of workers that scan a large table. One scans every table
+	 * on the thread of the query, zero uses one worker per available processor.
+	 * 
+	 * @return The number of workers of a table scan.
+	 */
+	public int getScanParallelism()
+	{
+		String val = this.props.getProperty(SCAN_PARALLELISM_KEY);
+		int parallelism = Integer.parseInt(val);
+		if (parallelism < 0) {
+			throw new IllegalArgumentException("Negative scan parallelism: " + val);
+		}
+		return parallelism;
+	}
+	
 	
 	// --------------------------------------------------------------------------------------------
 	//                           Setup of default values
@@ -287,6 +366,8 @@ public final class Config
 		for (int i = 0; i < sizes.length; i++) {
 			p.setProperty(CACHE_SIZE_KEY_PREFIX + sizes[i].name(),
 					String.valueOf(Constants.DEFAULT_INITIAL_CACHE_SIZE));
+			p.setProperty(OFF_HEAP_CACHE_SIZE_KEY_PREFIX + sizes[i].name(),
+					String.valueOf(Constants.DEFAULT_OFF_HEAP_CACHE_SIZE));
 		}
 		
 		// set the I/O buffer default
@@ -296,12 +377,22 @@ public final class Config
 		p.setProperty(NUM_CONCURRENT_QUERIES_KEY,
 				String.valueOf(Constants.MAX_CONCURRENT_QUERIES));
 		
+		// set the I/O thread defaults
+		p.setProperty(NUM_IO_READ_THREADS_KEY, String.valueOf(Constants.DEFAULT_NUM_IO_READ_THREADS));
+		p.setProperty(NUM_IO_WRITE_THREADS_KEY, String.valueOf(Constants.DEFAULT_NUM_IO_WRITE_THREADS));
+		
+		// set the table access default
+		p.setProperty(MEMORY_MAPPED_TABLES_KEY, String.valueOf(Constants.DEFAULT_MEMORY_MAPPED_TABLES));
+		
 		// set the I/O cost values
 		p.setProperty(BLOCK_READ_COST, String.valueOf(Constants.DEFAULT_BLOCK_TRANSFER_TIME_READ));
 		p.setProperty(BLOCK_WRITE_COST, String.valueOf(Constants.DEFAULT_BLOCK_TRANSFER_TIME_WRITE));
 		p.setProperty(BLOCK_RANDOM_READ_OVERHEAD, String.valueOf(Constants.DEFAULT_RANDOM_READ_OVERHEAD));
 		p.setProperty(BLOCK_RANDOM_WRITE_OVERHEAD, String.valueOf(Constants.DEFAULT_RANDOM_WRITE_OVERHEAD));
 		
+		// set the table scan default
+		p.setProperty(SCAN_PARALLELISM_KEY, String.valueOf(Constants.DEFAULT_SCAN_PARALLELISM));
+		
 		return p;
 	}
 	
@@ -334,6 +425,12 @@ public final class Config
 			catch (Throwable t) {
 				return CACHE_SIZE_KEY_PREFIX + pz.name();
 			}
+			try {
+				getOffHeapCacheSize(pz);
+			}
+			catch (Throwable t) {
+				return OFF_HEAP_CACHE_SIZE_KEY_PREFIX + pz.name();
+			}
 		}
 		
 		try {
@@ -350,6 +447,27 @@ public final class Config
 			return NUM_CONCURRENT_QUERIES_KEY;
 		}
 		
+		try {
+			getNumIOReadThreads();
+		}
+		catch (Throwable t) {
+			return NUM_IO_READ_THREADS_KEY;
+		}
+		
+		try {
+			getNumIOWriteThreads();
+		}
+		catch (Throwable t) {
+			return NUM_IO_WRITE_THREADS_KEY;
+		}
+		
+		try {
+			useMemoryMappedTables();
+		}
+		catch (Throwable t) {
+			return MEMORY_MAPPED_TABLES_KEY;
+		}
+		
 		try {
 			getBlockReadCost();
 		}
@@ -378,6 +496,13 @@ public final class Config
 			return BLOCK_RANDOM_WRITE_OVERHEAD;
 		}
 		
+		try {
+			getScanParallelism();
+		}
+		catch (Throwable t) {
+			return SCAN_PARALLELISM_KEY;
+		}
+		
 		return null;
 	}
 }
@@ -90,6 +90,12 @@ public abstract class Constants
 	 */
 	static final int DEFAULT_INITIAL_CACHE_SIZE = 1000;
 	
+	/**
+	 * The number of pages per page size that are kept off the Java heap below the
+	 * page cache if no other specific value is given. Zero disables that cache level.
+	 */
+	static final int DEFAULT_OFF_HEAP_CACHE_SIZE = 0;
+	
 	/**
 	 * The number of I/O buffers used by the buffer pool. The I/O buffers are needed to
 	 * sequentialize reads and writes.
@@ -101,6 +107,22 @@ public abstract class Constants
 	 */
 	static final int MAX_CONCURRENT_QUERIES = 10;
 	
+	/**
+	 * The default number of threads reading pages into the buffer pool. Requests are
+	 * distributed over the threads by resource.
+	 */
+	static final int DEFAULT_NUM_IO_READ_THREADS = 2;
+	
+	/**
+	 * The default number of threads writing evicted pages back to their resources.
+	 */
+	static final int DEFAULT_NUM_IO_WRITE_THREADS = 1;
+	
+	/**
+	 * Flag whether table files are read through memory mappings by default.
+	 */
+	static final boolean DEFAULT_MEMORY_MAPPED_TABLES = false;
+	
 	/**
 	 * The default time (microseconds) that is needed to transfer a block of the
 	 * default block size from secondary storage to main memory.
@@ -162,6 +184,17 @@ public abstract class Constants
 	 */
 	public static final int DEFAULT_PREFETCHING_LENGTH = 32;
 	
+	/**
+	 * The number of pages from which on a table scan reads the pages on several workers.
+	 */
+	public static final int MIN_PARALLEL_SCAN_PAGES = 256;
+	
+	/**
+	 * The default number of workers of a table scan, where one means that the scan runs
+	 * on the thread of the query and zero means one worker per available processor.
+	 */
+	public static final int DEFAULT_SCAN_PARALLELISM = 1;
+	
 	/**
 	 * A flag that indicates whether to perform debug checks.
 	 */
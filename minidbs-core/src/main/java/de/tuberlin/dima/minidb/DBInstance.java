@@ -559,7 +559,7 @@ public class DBInstance
 			// open the table
 			TableResourceManager manager = null;
 			try {
-				manager = TableResourceManager.openTable(tableFile);
+				manager = TableResourceManager.openTable(tableFile, config.useMemoryMappedTables());
 				int id = catalogue.reserveNextId();
 				buffer.registerResource(id, manager);
 				td.setResourceProperties(manager, id);
@@ -10,6 +10,7 @@ import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
 import de.tuberlin.dima.minidb.optimizer.Optimizer;
 import de.tuberlin.dima.minidb.optimizer.OptimizerException;
 import de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.generator.util.PhysicalPlanGeneratorUtils;
 import de.tuberlin.dima.minidb.parser.DeleteQuery;
 import de.tuberlin.dima.minidb.parser.InsertQuery;
 import de.tuberlin.dima.minidb.parser.ParseException;
@@ -179,6 +180,8 @@ public class QueryProcessor
 		 * executable plan.
 		 * ******************************************************/
 	    
+	    // large tables are scanned by several workers only if the configuration asks for it
+	    PhysicalPlanGeneratorUtils.setScanParallelism(bestPlan, this.config.getScanParallelism());
 	    PhysicalPlanOperator executablePlan = bestPlan.createPhysicalPlan(this.bufferPool, this.heap);
 	    bestPlan = null;
 	    
@@ -218,6 +218,70 @@ public abstract class AbstractExtensionFactory
 			int prefetchWindowLength
 			);
 
+	/**
+	 * Creates a new table scan that reads the pages of the table on several workers. The page
+	 * range is split into morsels of consecutive pages, which the workers claim one after the
+	 * other. Each worker evaluates the predicates and the optional join key filter on its pages
+	 * and passes the qualifying tuples to the consumer through an exchange. The tuples are
+	 * produced in no particular order.
+	 * 
+	 * @param bufferPool The buffer pool used to get the pages that are scanned.
+	 * @param tableManager The table manager used to get the page numbers of the pages
+	 *                     relevant to the scan.
+	 * @param resourceId The resource id of the table resource.
+	 * @param producedColumnIndexes The indexes of the columns that occur in the produced
+	 *                              tuple in the order as they are produced.
+	 * @param predicate An array of predicates each tuple must pass.
+	 * @param joinKeyFilter The filter over the join keys of the build side of a join, or null.
+	 * @param filterColumns The table columns that make up the join key, or null.
+	 * @param parallelism The number of workers that scan the pages.
+	 * @return A new physical plan operator representing a TableScan.
+	 */
+	public TableScanOperator createParallelTableScanOperator(
+			BufferPoolManager bufferPool,
+			TableResourceManager tableManager,
+			int resourceId,
+			int[] producedColumnIndexes,
+			LowLevelPredicate[] predicate,
+			BloomFilter joinKeyFilter,
+			int[] filterColumns,
+			int parallelism) {
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
+	/**
+	 * Creates a new table scan that additionally drops the tuples whose key, made up of the given
+	 * table columns, is rejected by the Bloom filter. The filter is filled by a join with the keys
+	 * of its build side, and the scan checks the records of a page against it once the join has
+	 * sealed it. Apart from that, the operator behaves like the one created by
+	 * {@link #createTableScanOperator(BufferPoolManager, TableResourceManager, int, int[], LowLevelPredicate[], int)}.
+	 * 
+	 * @param bufferPool The buffer pool used to get the pages that are scanned.
+	 * @param tableManager The table manager used to get the page numbers of the pages
+	 *                     relevant to the scan.
+	 * @param resourceId The resource id of the table resource.
+	 * @param producedColumnIndexes The indexes of the columns that occur in the produced
+	 *                              tuple in the order as they are produced.
+	 * @param predicate An array of predicates each tuple must pass.
+	 * @param prefetchWindowLength The number of pages to prefetch in advance to the page
+	 *                             that the operator currently works on.
+	 * @param joinKeyFilter The filter over the join keys of the build side.
+	 * @param filterColumns The table columns that make up the join key, in the order of the
+	 *                      join columns of the build side.
+	 * @return A new physical plan operator representing a TableScan.
+	 */
+	public TableScanOperator createTableScanOperator(
+			BufferPoolManager bufferPool,
+			TableResourceManager tableManager,
+			int resourceId,
+			int[] producedColumnIndexes,
+			LowLevelPredicate[] predicate,
+			int prefetchWindowLength,
+			BloomFilter joinKeyFilter,
+			int[] filterColumns) {
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
 	/**
 	 * Creates a new physical query plan operator performing an index scan.
 	 *
@@ -241,6 +305,30 @@ public abstract class AbstractExtensionFactory
 			boolean stopKeyIncluded
 			);
 
+	/**
+	 * Creates a new index scan that skips the keys rejected by the Bloom filter, for an index
+	 * whose key is the join key of the probe side of a join. Apart from that, the operator
+	 * behaves like the one created by
+	 * {@link #createIndexScanOperator(BTreeIndex, DataField, DataField, boolean, boolean)}.
+	 *
+	 * @param index The B+-Tree that is scanned.
+	 * @param startKey The lower boundary of the requested interval.
+	 * @param stopKey The upper boundary of the requested interval.
+	 * @param startKeyIncluded A flag indicating whether the lower boundary is inclusive.
+	 * @param stopKeyIncluded A flag indicating whether the upper boundary is inclusive.
+	 * @param joinKeyFilter The filter over the join keys of the build side.
+	 * @return A new physical plan operator representing an IndexScan.
+	 */
+	public IndexScanOperator createIndexScanOperator(
+			BTreeIndex index,
+			DataField startKey, 
+			DataField stopKey, 
+			boolean startKeyIncluded, 
+			boolean stopKeyIncluded,
+			BloomFilter joinKeyFilter) {
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
 	/**
 	 * Creates a new physical query plan operator performing an insert.
 	 * 
@@ -341,6 +429,33 @@ public abstract class AbstractExtensionFactory
 			PhysicalPlanOperator outerChild, PhysicalPlanOperator innerChild,
             JoinPredicate joinPredicate,
             int[] columnMapOuterTuple, int[] columnMapInnerTuple);
+	
+	/**
+	 * Creates a new block nested loop join operator. The operator reads its inner side into
+	 * memory from the query heap if it fits there. Otherwise, it collects blocks of outer tuples
+	 * in that memory and scans the inner side once per block, evaluating the join predicate
+	 * for every pair of a block tuple and an inner tuple. The inner side is not correlated to
+	 * the outer tuples.
+	 * 
+	 * @param outerChild The outer child of the join.
+	 * @param innerChild The inner child of the join.
+	 * @param queryHeap The heap providing the memory for the inner side or the outer blocks.
+	 * @param outerSchema The data types of the columns of the outer tuples.
+	 * @param innerSchema The data types of the columns of the inner tuples.
+	 * @param estimatedInnerCardinality The estimated number of inner tuples.
+	 * @param joinPredicate The join predicate, may be null for a Cartesian join.
+	 * @param columnMapOuterTuple The map which describes which column in the outer tuple is copied
+	 *                            to the output tuple.
+	 * @param columnMapInnerTuple The map which describes which column in the inner tuple is copied
+	 *                            to the output tuple.
+	 * @return An implementation of the BlockNestedLoopJoinOperator.
+	 */
+	public BlockNestedLoopJoinOperator createBlockNestedLoopJoinOperator(PhysicalPlanOperator outerChild,
+			PhysicalPlanOperator innerChild, QueryHeap queryHeap, DataType[] outerSchema, DataType[] innerSchema,
+			int estimatedInnerCardinality, JoinPredicate joinPredicate, int[] columnMapOuterTuple,
+			int[] columnMapInnerTuple) {
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
 
 	/**
 	 * Creates an index lookup operator that returns the RIDs for the key
@@ -402,6 +517,29 @@ public abstract class AbstractExtensionFactory
 	abstract public FetchOperator createFetchOperator(PhysicalPlanOperator child,
 			BufferPoolManager bufferPool, int tableResourceId, int[] outputColumnMap);
 	
+	/**
+	 * Creates a new FETCH operator that resolves the RIDs from its child in batches. A batch of
+	 * RIDs is sorted by page, the pages are prefetched in ascending order and every page is accessed
+	 * once per batch, which turns the random accesses of RIDs in index order into a sequential pass
+	 * over the pages. Apart from that, the operator behaves like the one created by
+	 * {@link #createFetchOperator(PhysicalPlanOperator, BufferPoolManager, int, int[])}.
+	 * 
+	 * @param child The child operator of this fetch operator.
+	 * @param bufferPool The buffer pool used to take the pages from.
+	 * @param tableResourceId The resource id of the table that the tuples are fetched from.
+	 * @param outputColumnMap The map describing how the column of the tuple produced by the
+	 *                        FETCH operator are produced from the tuple fetched from the table.
+	 * @param batchSize The number of RIDs that are sorted and fetched together.
+	 * @param preserveOrder Flag indicating whether the tuples are returned in the order of the RIDs
+	 *                      from the child, rather than in the order of the pages.
+	 * @return An implementation of the FetchOperator.
+	 */
+	public FetchOperator createFetchOperator(PhysicalPlanOperator child,
+			BufferPoolManager bufferPool, int tableResourceId, int[] outputColumnMap,
+			int batchSize, boolean preserveOrder) {
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+	
 	/**
 	 * Creates a new filter operator that evaluates a local predicate on the incoming tuples.
 	 * The filter does not work correlated, it applies no predicate against a correlated
@@ -413,6 +551,22 @@ public abstract class AbstractExtensionFactory
 	 */
 	abstract public FilterOperator createFilterOperator(PhysicalPlanOperator child,
 	                                                  LocalPredicate predicate);
+	
+	/**
+	 * Creates a new filter operator that evaluates a local predicate on the incoming tuples
+	 * and returns only the first columns of the qualifying tuples. The columns behind them are
+	 * the ones that only the predicate needs. Apart from that, the operator behaves like the one
+	 * created by {@link #createFilterOperator(PhysicalPlanOperator, LocalPredicate)}.
+	 * 
+	 * @param child The child of this operator.
+	 * @param predicate The predicate to be evaluated on the incoming tuples.
+	 * @param numOutputColumns The number of leading columns of the incoming tuples that are returned.
+	 * @return An implementation of the FilterOperator.
+	 */
+	public FilterOperator createFilterOperator(PhysicalPlanOperator child,
+			LocalPredicate predicate, int numOutputColumns) {
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
 
 	
 	/**
@@ -506,6 +660,34 @@ public abstract class AbstractExtensionFactory
 			DataType[] aggColumnTypes,
 			int[] groupColumnOutputPositions, int[] aggregateColumnOutputPosition);
 
+	/**
+	 * Creates a group by operator that aggregates its unsorted input in a hash table that is
+	 * allocated from the query heap. Groups that exceed the memory are spilled to temp partitions
+	 * and aggregated later.
+	 * 
+	 * @param child The operator producing the tuples to be grouped.
+	 * @param queryHeap The heap providing the memory and the temp space.
+	 * @param inputSchema The data types of the columns of the input tuples.
+	 * @param estimatedGroups The estimated number of groups.
+	 * @param groupColumnIndices The indices of the grouping columns in the input tuple.
+	 * @param aggColumnIndices The indices of the aggregate columns in the input tuple.
+	 * @param aggregateFunctions The functions that are used for aggregation.
+	 * @param aggColumnTypes The types of the aggregated functions.
+	 * @param groupColumnOutputPositions The map describing in which position in the produced tuple
+	 *                                   the grouping columns will be put.
+	 * @param aggregateColumnOutputPosition The map describing in which position in the produced tuple
+	 *                                   the aggregate columns will be put.
+	 * @return An implementation of the HashGroupByOperator.
+	 */
+	public HashGroupByOperator createHashGroupByOperator(PhysicalPlanOperator child,
+			QueryHeap queryHeap, DataType[] inputSchema, int estimatedGroups,
+			int[] groupColumnIndices, int[] aggColumnIndices,
+			OutputColumn.AggregationType[] aggregateFunctions,
+			DataType[] aggColumnTypes,
+			int[] groupColumnOutputPositions, int[] aggregateColumnOutputPosition) {
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
 	/**
 	 * Creates a merge join operator that joins two sorted streams of tuples.
 	 * <p>
@@ -548,6 +730,98 @@ public abstract class AbstractExtensionFactory
 			PhysicalPlanOperator rightChild, int[] leftJoinColumns, 
 			int[] rightJoinColumns, int[] columnMapLeftTuple, int[] columnMapRightTuple);
 	
+	/**
+	 * Creates a new merge join operator that buffers the right tuples with equal join keys in
+	 * memory reserved from the query heap. If a group of equal keys exceeds that memory, the
+	 * group is written to the temp space of the query heap and read again for every matching
+	 * left tuple. Apart from that, the operator behaves like the one created by
+	 * {@link #createMergeJoinOperator(PhysicalPlanOperator, PhysicalPlanOperator, int[], int[], int[], int[])}.
+	 * 
+	 * @param leftChild The left child operator of the join.
+	 * @param rightChild The right child operator of the join.
+	 * @param queryHeap The heap providing the memory and the temp space for the equal keys.
+	 * @param rightSchema The data types of the columns of the right tuples.
+	 * @param estimatedGroupSize The estimated number of right tuples with the same join key, which
+	 *                           sizes the memory reserved for them.
+	 * @param leftJoinColumns The positions of the columns in the left tuples that are used for the join.
+	 * @param rightJoinColumns The positions of the columns in the right tuples that are used for the join.
+	 * @param columnMapLeftTuple The map which describes which column in the left tuple is copied
+	 *                           to the output tuple.
+	 * @param columnMapRightTuple The map which describes which column in the right tuple is copied
+	 *                            to the output tuple.
+	 * @return An implementation of the MergeJoinOperator.
+	 */
+	public MergeJoinOperator createMergeJoinOperator(PhysicalPlanOperator leftChild,
+			PhysicalPlanOperator rightChild, QueryHeap queryHeap, DataType[] rightSchema, int estimatedGroupSize,
+			int[] leftJoinColumns, int[] rightJoinColumns, int[] columnMapLeftTuple, int[] columnMapRightTuple) {
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+	
+	/**
+	 * Creates a new hash join operator that performs an inner equi-join. The hash table is
+	 * built over the tuples of the build input, which should be the smaller input, and probed
+	 * with the tuples of the probe input. The value of the column at index
+	 * <tt>buildJoinColumns[i]</tt> must equal the value of the column at index
+	 * <tt>probeJoinColumns[i]</tt>. Tuples with a NULL join column do not join.
+	 * <p>
+	 * The memory for the hash table is reserved from the query heap. If the build input
+	 * exceeds it, the operator partitions both inputs and spills partitions to the temp space
+	 * of the query heap.
+	 * <p>
+	 * The output columns are described by <tt>columnMapBuildTuple</tt> and 
+	 * <tt>columnMapProbeTuple</tt> in the same way as for the merge join.
+	 * 
+	 * @param buildChild The operator producing the tuples to build the hash table from.
+	 * @param probeChild The operator producing the tuples that probe the hash table.
+	 * @param queryHeap The heap providing the memory and the temp space.
+	 * @param buildSchema The data types of the columns of the build tuples.
+	 * @param probeSchema The data types of the columns of the probe tuples.
+	 * @param estimatedBuildCardinality The estimated number of build tuples.
+	 * @param buildJoinColumns The columns of the build tuple to be joined.
+	 * @param probeJoinColumns The columns of the probe tuple to be joined.
+	 * @param columnMapBuildTuple The map describing how the columns from the build tuple are
+	 *                            copied to the output tuple.
+	 * @param columnMapProbeTuple The map describing how the columns from the probe tuple are
+	 *                            copied to the output tuple.
+	 * @return An implementation of the HashJoinOperator.
+	 */
+	public HashJoinOperator createHashJoinOperator(PhysicalPlanOperator buildChild,
+			PhysicalPlanOperator probeChild, QueryHeap queryHeap, DataType[] buildSchema,
+			DataType[] probeSchema, int estimatedBuildCardinality, int[] buildJoinColumns,
+			int[] probeJoinColumns, int[] columnMapBuildTuple, int[] columnMapProbeTuple) {
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+	
+	/**
+	 * Creates a new hash join operator that adds the keys of all build tuples to the given
+	 * Bloom filter and seals it before it opens the probe input. A scan producing the probe
+	 * input can use the filter to drop the tuples that find no join partner. Apart from that,
+	 * the operator behaves like the one created by
+	 * {@link #createHashJoinOperator(PhysicalPlanOperator, PhysicalPlanOperator, QueryHeap, DataType[], DataType[], int, int[], int[], int[], int[])}.
+	 * 
+	 * @param buildChild The operator producing the tuples to build the hash table from.
+	 * @param probeChild The operator producing the tuples that probe the hash table.
+	 * @param queryHeap The heap providing the memory and the temp space.
+	 * @param buildSchema The data types of the columns of the build tuples.
+	 * @param probeSchema The data types of the columns of the probe tuples.
+	 * @param estimatedBuildCardinality The estimated number of build tuples.
+	 * @param buildJoinColumns The columns of the build tuple to be joined.
+	 * @param probeJoinColumns The columns of the probe tuple to be joined.
+	 * @param columnMapBuildTuple The map describing how the columns from the build tuple are
+	 *                            copied to the output tuple.
+	 * @param columnMapProbeTuple The map describing how the columns from the probe tuple are
+	 *                            copied to the output tuple.
+	 * @param buildKeyFilter The filter that receives the join keys of the build side.
+	 * @return An implementation of the HashJoinOperator.
+	 */
+	public HashJoinOperator createHashJoinOperator(PhysicalPlanOperator buildChild,
+			PhysicalPlanOperator probeChild, QueryHeap queryHeap, DataType[] buildSchema,
+			DataType[] probeSchema, int estimatedBuildCardinality, int[] buildJoinColumns,
+			int[] probeJoinColumns, int[] columnMapBuildTuple, int[] columnMapProbeTuple,
+			BloomFilter buildKeyFilter) {
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+	
 	/**
 	 * Creates an optimizer for the order of joins.
 	 * 
@@ -39,8 +39,9 @@ public final class LayeredExtensionFactory extends AbstractExtensionFactory {
     private List<AbstractExtensionFactory> factories = new ArrayList<AbstractExtensionFactory>();
 
     public LayeredExtensionFactory() throws ExtensionInitFailedException {
-        this.registerFactory("de.tuberlin.dima.minidb.api.ReferenceExtensionFactory", false); // optional
+        // the own implementation comes first, the reference only covers what it does not support
         this.registerFactory("de.tuberlin.dima.minidb.api.ExtensionFactory", true); // required
+        this.registerFactory("de.tuberlin.dima.minidb.api.ReferenceExtensionFactory", false); // optional
     }
 
 	/**
@@ -170,6 +171,20 @@ public final class LayeredExtensionFactory extends AbstractExtensionFactory {
 		throw new UnsupportedOperationException("Method not yet supported");
 	}
 
+	@Override
+	public TableScanOperator createParallelTableScanOperator(BufferPoolManager bufferPool, TableResourceManager tableManager, int resourceId,
+			int[] producedColumnIndexes, LowLevelPredicate[] predicate, BloomFilter joinKeyFilter, int[] filterColumns, int parallelism) {
+		for (AbstractExtensionFactory factory: this.factories) {
+			try {
+				return factory.createParallelTableScanOperator(bufferPool, tableManager, resourceId, producedColumnIndexes, predicate,
+						joinKeyFilter, filterColumns, parallelism);
+			} catch (UnsupportedOperationException e) {
+				// ignore exception
+			}
+		}
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
 	@Override
 	public IndexScanOperator createIndexScanOperator(BTreeIndex index, DataField startKey, DataField stopKey, boolean startKeyIncluded, boolean stopKeyIncluded) {
 		for (AbstractExtensionFactory factory: this.factories) {
@@ -182,6 +197,33 @@ public final class LayeredExtensionFactory extends AbstractExtensionFactory {
 		throw new UnsupportedOperationException("Method not yet supported");
 	}
 
+	@Override
+	public TableScanOperator createTableScanOperator(BufferPoolManager bufferPool, TableResourceManager tableManager, int resourceId,
+			int[] producedColumnIndexes, LowLevelPredicate[] predicate, int prefetchWindowLength, BloomFilter joinKeyFilter, int[] filterColumns) {
+		for (AbstractExtensionFactory factory: this.factories) {
+			try {
+				return factory.createTableScanOperator(bufferPool, tableManager, resourceId, producedColumnIndexes, predicate, prefetchWindowLength,
+						joinKeyFilter, filterColumns);
+			} catch (UnsupportedOperationException e) {
+				// ignore exception
+			}
+		}
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
+	@Override
+	public IndexScanOperator createIndexScanOperator(BTreeIndex index, DataField startKey, DataField stopKey, boolean startKeyIncluded, boolean stopKeyIncluded,
+			BloomFilter joinKeyFilter) {
+		for (AbstractExtensionFactory factory: this.factories) {
+			try {
+				return factory.createIndexScanOperator(index, startKey, stopKey, startKeyIncluded, stopKeyIncluded, joinKeyFilter);
+			} catch (UnsupportedOperationException e) {
+				// ignore exception
+			}
+		}
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
 	@Override
 	public InsertOperator createInsertOperator(BufferPoolManager bufferPool, TableResourceManager tableManager, int resourceId, BTreeIndex[] indexes,
 			int[] columnNumbers, PhysicalPlanOperator child) {
@@ -220,6 +262,22 @@ public final class LayeredExtensionFactory extends AbstractExtensionFactory {
 		throw new UnsupportedOperationException("Method not yet supported");
 	}
 
+	@Override
+	public BlockNestedLoopJoinOperator createBlockNestedLoopJoinOperator(PhysicalPlanOperator outerChild,
+			PhysicalPlanOperator innerChild, QueryHeap queryHeap, DataType[] outerSchema, DataType[] innerSchema,
+			int estimatedInnerCardinality, JoinPredicate joinPredicate, int[] columnMapOuterTuple,
+			int[] columnMapInnerTuple) {
+		for (AbstractExtensionFactory factory: this.factories) {
+			try {
+				return factory.createBlockNestedLoopJoinOperator(outerChild, innerChild, queryHeap, outerSchema,
+						innerSchema, estimatedInnerCardinality, joinPredicate, columnMapOuterTuple, columnMapInnerTuple);
+			} catch (UnsupportedOperationException e) {
+				// ignore exception
+			}
+		}
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
 	@Override
 	public IndexLookupOperator getIndexLookupOperator(BTreeIndex index, DataField equalityLiteral) {
 		for (AbstractExtensionFactory factory: this.factories) {
@@ -269,6 +327,19 @@ public final class LayeredExtensionFactory extends AbstractExtensionFactory {
 		throw new UnsupportedOperationException("Method not yet supported");
 	}
 
+	@Override
+	public FetchOperator createFetchOperator(PhysicalPlanOperator child, BufferPoolManager bufferPool, int tableResourceId, int[] outputColumnMap,
+			int batchSize, boolean preserveOrder) {
+		for (AbstractExtensionFactory factory: this.factories) {
+			try {
+				return factory.createFetchOperator(child, bufferPool, tableResourceId, outputColumnMap, batchSize, preserveOrder);
+			} catch (UnsupportedOperationException e) {
+				// ignore exception
+			}
+		}
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
 	@Override
 	public FilterOperator createFilterOperator(PhysicalPlanOperator child, LocalPredicate predicate) {
 		for (AbstractExtensionFactory factory: this.factories) {
@@ -281,6 +352,18 @@ public final class LayeredExtensionFactory extends AbstractExtensionFactory {
 		throw new UnsupportedOperationException("Method not yet supported");
 	}
 
+	@Override
+	public FilterOperator createFilterOperator(PhysicalPlanOperator child, LocalPredicate predicate, int numOutputColumns) {
+		for (AbstractExtensionFactory factory: this.factories) {
+			try {
+				return factory.createFilterOperator(child, predicate, numOutputColumns);
+			} catch (UnsupportedOperationException e) {
+				// ignore exception
+			}
+		}
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
 	@Override
 	public FilterCorrelatedOperator createCorrelatedFilterOperator(PhysicalPlanOperator child, JoinPredicate correlatedPredicate) {
 		for (AbstractExtensionFactory factory: this.factories) {
@@ -320,6 +403,21 @@ public final class LayeredExtensionFactory extends AbstractExtensionFactory {
 		throw new UnsupportedOperationException("Method not yet supported");
 	}
 
+	@Override
+	public HashGroupByOperator createHashGroupByOperator(PhysicalPlanOperator child, QueryHeap queryHeap, DataType[] inputSchema,
+			int estimatedGroups, int[] groupColumnIndices, int[] aggColumnIndices, AggregationType[] aggregateFunctions,
+			DataType[] aggColumnTypes, int[] groupColumnOutputPositions, int[] aggregateColumnOutputPosition) {
+		for (AbstractExtensionFactory factory: this.factories) {
+			try {
+				return factory.createHashGroupByOperator(child, queryHeap, inputSchema, estimatedGroups, groupColumnIndices,
+						aggColumnIndices, aggregateFunctions, aggColumnTypes, groupColumnOutputPositions, aggregateColumnOutputPosition);
+			} catch (UnsupportedOperationException e) {
+				// ignore exception
+			}
+		}
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
 	@Override
 	public MergeJoinOperator createMergeJoinOperator(PhysicalPlanOperator leftChild, PhysicalPlanOperator rightChild, int[] leftJoinColumns,
 			int[] rightJoinColumns, int[] columnMapLeftTuple, int[] columnMapRightTuple) {
@@ -333,6 +431,53 @@ public final class LayeredExtensionFactory extends AbstractExtensionFactory {
 		throw new UnsupportedOperationException("Method not yet supported");
 	}
 
+	@Override
+	public MergeJoinOperator createMergeJoinOperator(PhysicalPlanOperator leftChild, PhysicalPlanOperator rightChild,
+			QueryHeap queryHeap, DataType[] rightSchema, int estimatedGroupSize, int[] leftJoinColumns,
+			int[] rightJoinColumns, int[] columnMapLeftTuple, int[] columnMapRightTuple) {
+		for (AbstractExtensionFactory factory: this.factories) {
+			try {
+				return factory.createMergeJoinOperator(leftChild, rightChild, queryHeap, rightSchema, estimatedGroupSize,
+						leftJoinColumns, rightJoinColumns, columnMapLeftTuple, columnMapRightTuple);
+			} catch (UnsupportedOperationException e) {
+				// ignore exception
+			}
+		}
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
+	@Override
+	public HashJoinOperator createHashJoinOperator(PhysicalPlanOperator buildChild, PhysicalPlanOperator probeChild,
+			QueryHeap queryHeap, DataType[] buildSchema, DataType[] probeSchema, int estimatedBuildCardinality,
+			int[] buildJoinColumns, int[] probeJoinColumns, int[] columnMapBuildTuple, int[] columnMapProbeTuple) {
+		for (AbstractExtensionFactory factory: this.factories) {
+			try {
+				return factory.createHashJoinOperator(buildChild, probeChild, queryHeap, buildSchema, probeSchema,
+						estimatedBuildCardinality, buildJoinColumns, probeJoinColumns, columnMapBuildTuple, columnMapProbeTuple);
+			} catch (UnsupportedOperationException e) {
+				// ignore exception
+			}
+		}
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
+	@Override
+	public HashJoinOperator createHashJoinOperator(PhysicalPlanOperator buildChild, PhysicalPlanOperator probeChild,
+			QueryHeap queryHeap, DataType[] buildSchema, DataType[] probeSchema, int estimatedBuildCardinality,
+			int[] buildJoinColumns, int[] probeJoinColumns, int[] columnMapBuildTuple, int[] columnMapProbeTuple,
+			BloomFilter buildKeyFilter) {
+		for (AbstractExtensionFactory factory: this.factories) {
+			try {
+				return factory.createHashJoinOperator(buildChild, probeChild, queryHeap, buildSchema, probeSchema,
+						estimatedBuildCardinality, buildJoinColumns, probeJoinColumns, columnMapBuildTuple, columnMapProbeTuple,
+						buildKeyFilter);
+			} catch (UnsupportedOperationException e) {
+				// ignore exception
+			}
+		}
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+
 	@Override
 	public JoinOrderOptimizer createJoinOrderOptimizer(CardinalityEstimator estimator) {
 		for (AbstractExtensionFactory factory: this.factories) {
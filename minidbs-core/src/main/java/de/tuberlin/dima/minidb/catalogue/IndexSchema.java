@@ -3,15 +3,24 @@ package de.tuberlin.dima.minidb.catalogue;
 
 import java.io.IOException;
 
+import de.tuberlin.dima.minidb.core.BasicType;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DataType;
 import de.tuberlin.dima.minidb.core.RID;
 import de.tuberlin.dima.minidb.io.cache.PageSize;
 import de.tuberlin.dima.minidb.io.index.BTreeIndexPage;
+import de.tuberlin.dima.minidb.io.index.CompositeKeyEncoding;
 import de.tuberlin.dima.minidb.io.index.IndexResourceManager;
 
 
 /**
  * A simple description of the schema of an index. In contrast to a table schema, it
  * is not completely static, but allows the the root node and first leaf node to change.
+ * <p>
+ * An index over several columns is a composite index. Its keys are CHAR fields that concatenate
+ * byte-comparable encodings of the columns, as described by {@link CompositeKeyEncoding}, so that
+ * the pages store them like the keys of a CHAR column.
  * 
  * @author Stephan Ewen (stephan.ewen@tu-berlin.de)
  */
@@ -28,9 +37,19 @@ public class IndexSchema
 	private PageSize pageSize;
 	
 	/**
-	 * The column indexed by this index.
+	 * The columns indexed by this index, in the order of the key.
 	 */
-	private int indexedColumn;
+	private int[] indexedColumns;
+	
+	/**
+	 * The type of the keys, which is the type of the column, unless the index is composite.
+	 */
+	private DataType keyType;
+	
+	/**
+	 * The encoding of the keys of a composite index, or null, if the index has a single column.
+	 */
+	private CompositeKeyEncoding compositeKeys;
 
 	/**
 	 * Gets the fan-out (degree) of the B-Tree, i.e. the number of keys in internal nodes.
@@ -48,9 +67,14 @@ public class IndexSchema
 	private boolean unique;
 	
 	/**
-	 * The page number of the root page.
+	 * Flag indicating that the pages of the index store their keys compressed.
 	 */
-	private int rootPageNumber;
+	private boolean compressedKeys;
+	
+	/**
+	 * The page number of the root page, read by concurrent lookups while an insert grows the tree.
+	 */
+	private volatile int rootPageNumber;
 	
 	/**
 	 * The page number of the first page.
@@ -125,12 +149,101 @@ public class IndexSchema
 	 */
 	public IndexSchema(TableSchema indexedTable, int column, PageSize pageSize, boolean unique,
 			           int rootNode, int firstLeafNode)
+	{
+		this(indexedTable, column, pageSize, unique, false, rootNode, firstLeafNode);
+	}
+	
+	/**
+	 * Creates a new index schema for an index over the table described by the
+	 * given schema indexing the given columns. The nodes of the index are pages
+	 * of the given size. If the keys are compressed, the pages store them without
+	 * the prefix that the keys on a page share and without the blanks at their end,
+	 * which is possible for CHAR columns only. Fan-out and maximal number of leaf
+	 * entries of such an index are the numbers that fit onto a page for keys of
+	 * average length, while the pages hold more keys, the more the keys are compressed.
+	 * 
+	 * Root node and first leaf node are set as given.
+	 * 
+	 * @param indexedTable The schema of the table that is indexed.
+	 * @param column The number (starting at 0) of the column that is indexed.
+	 * @param pageSize The size of the pages that hold the index data.
+	 * @param unique Whether the entries in this index should be unique.
+	 * @param compressedKeys Whether the pages of the index store their keys compressed.
+	 * @param rootNode The page number of the root node.
+	 * @param firstLeafNode The page number of the first (left most) leaf node.
+	 */
+	public IndexSchema(TableSchema indexedTable, int column, PageSize pageSize, boolean unique,
+			           boolean compressedKeys, int rootNode, int firstLeafNode)
+	{
+		this(indexedTable, new int[] { column }, pageSize, unique, compressedKeys, rootNode, firstLeafNode);
+	}
+	
+	/**
+	 * Creates a new index schema for a composite index over the given columns of the table
+	 * described by the given schema. The index is not unique and has the default page size.
+	 * 
+	 * Root node and first leaf node are set to 1 (behind the minimal header).
+	 * 
+	 * @param indexedTable The schema of the table that is indexed.
+	 * @param columns The numbers (starting at 0) of the columns that are indexed, in the order of the key.
+	 */
+	public IndexSchema(TableSchema indexedTable, int[] columns)
+	{
+		this(indexedTable, columns, PageSize.getDefaultPageSize(), false, false, 1, 1);
+	}
+	
+	/**
+	 * Creates a new index schema for a composite index over the given columns of the table
+	 * described by the given schema. The index has the default page size.
+	 * 
+	 * Root node and first leaf node are set to 1 (behind the minimal header).
+	 * 
+	 * @param indexedTable The schema of the table that is indexed.
+	 * @param columns The numbers (starting at 0) of the columns that are indexed, in the order of the key.
+	 * @param unique Whether the entries in this index should be unique.
+	 */
+	public IndexSchema(TableSchema indexedTable, int[] columns, boolean unique)
+	{
+		this(indexedTable, columns, PageSize.getDefaultPageSize(), unique, false, 1, 1);
+	}
+	
+	/**
+	 * Creates a new index schema for an index over the given columns of the table described
+	 * by the given schema. If more than one column is given, the index is composite and its
+	 * keys concatenate the encoded values of the columns in the given order. The keys of a
+	 * composite index are CHAR fields, so they can be compressed.
+	 * 
+	 * Root node and first leaf node are set as given.
+	 * 
+	 * @param indexedTable The schema of the table that is indexed.
+	 * @param columns The numbers (starting at 0) of the columns that are indexed, in the order of the key.
+	 * @param pageSize The size of the pages that hold the index data.
+	 * @param unique Whether the entries in this index should be unique.
+	 * @param compressedKeys Whether the pages of the index store their keys compressed.
+	 * @param rootNode The page number of the root node.
+	 * @param firstLeafNode The page number of the first (left most) leaf node.
+	 */
+	public IndexSchema(TableSchema indexedTable, int[] columns, PageSize pageSize, boolean unique,
+			           boolean compressedKeys, int rootNode, int firstLeafNode)
 	{
 		if (indexedTable == null) {
 			throw new NullPointerException("The indexed table must not be null");
 		}
-		if (column < 0 || column >= indexedTable.getNumberOfColumns()) {
-			throw new IllegalArgumentException("Column out of range for the table.");
+		if (columns == null) {
+			throw new NullPointerException("The indexed columns must not be null");
+		}
+		if (columns.length == 0) {
+			throw new IllegalArgumentException("An index needs at least one column.");
+		}
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i] < 0 || columns[i] >= indexedTable.getNumberOfColumns()) {
+				throw new IllegalArgumentException("Column out of range for the table.");
+			}
+			for (int k = 0; k < i; k++) {
+				if (columns[k] == columns[i]) {
+					throw new IllegalArgumentException("Column " + columns[i] + " is indexed twice.");
+				}
+			}
 		}
 		if (pageSize == null) {
 			throw new NullPointerException("Page size must not be null");
@@ -139,26 +252,50 @@ public class IndexSchema
 			throw new IllegalArgumentException("Page numbers for data pages must be greater than zero");
 		}
 		
-		// compute the fan-out
-		// the length of one entry is key + pageNumber
-		int len = 0; // for the page number as the reference
-		try {
-			ColumnSchema cs = indexedTable.getColumn(column);
-			if (!cs.getDataType().isFixLength()) {
-				throw new IllegalArgumentException("Column " + column + " is not a fix length data type.");
+		// determine the type of the keys
+		DataType[] columnTypes = new DataType[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			columnTypes[i] = indexedTable.getColumn(columns[i]).getDataType();
+			if (!columnTypes[i].isFixLength()) {
+				throw new IllegalArgumentException("Column " + columns[i] + " is not a fix length data type.");
 			}
-			len = cs.getDataType().getNumberOfBytes();
 		}
-		catch (IndexOutOfBoundsException ioobex) {
-			throw new IllegalArgumentException("Indexed table does not contain column "
-					+ column);
+		if (columns.length > 1) {
+			this.compositeKeys = new CompositeKeyEncoding(columnTypes);
+			this.keyType = this.compositeKeys.getKeyType();
+		}
+		else {
+			this.keyType = columnTypes[0];
+		}
+		if (compressedKeys && this.keyType.getBasicType() != BasicType.CHAR) {
+			throw new IllegalArgumentException("Only keys of CHAR columns can be compressed.");
 		}
 		
+		// compute the fan-out
+		// the length of one entry is key + pageNumber
+		int len = this.keyType.getNumberOfBytes();
+		
 		// the tree fan-out is the number of keys per page
 		// subtract from the page the header and the one extra pointer
-		this.fanOut = (pageSize.getNumberOfBytes() - BTreeIndexPage.INDEX_PAGE_HEADER_SIZE - 4) / (len + 4);
-		this.maximalLeafEntries = (pageSize.getNumberOfBytes() - BTreeIndexPage.INDEX_PAGE_HEADER_SIZE) /
-		                          (len + RID.getRIDSize()); 
+		if (compressedKeys) {
+			// a compressed page has a larger header and stores the fence keys of its key range,
+			// while each key has a slot with its position and length
+			int available = pageSize.getNumberOfBytes() - BTreeIndexPage.INDEX_PAGE_HEADER_SIZE - 16 - 2 * len;
+			if (available / (len + 8) < 4 || available / (len + RID.getRIDSize() + 4) < 4) {
+				throw new IllegalArgumentException("The columns and their schema do not permit a valid B-Tree index.");
+			}
+			
+			// the numbers for keys of average length, assuming that the prefix and the blanks
+			// at the end make up half of the characters of a key
+			int averageLen = Math.max(2, (len / 4) * 2);
+			this.fanOut = available / (averageLen + 8);
+			this.maximalLeafEntries = available / (averageLen + RID.getRIDSize() + 4);
+		}
+		else {
+			this.fanOut = (pageSize.getNumberOfBytes() - BTreeIndexPage.INDEX_PAGE_HEADER_SIZE - 4) / (len + 4);
+			this.maximalLeafEntries = (pageSize.getNumberOfBytes() - BTreeIndexPage.INDEX_PAGE_HEADER_SIZE) /
+			                          (len + RID.getRIDSize()); 
+		}
 		
 		if (this.fanOut < 4 || this.maximalLeafEntries < 4) {
 			throw new IllegalArgumentException("The columns and their schema do not permit a valid B-Tree index.");
@@ -167,8 +304,9 @@ public class IndexSchema
 		// copy the parameters
 		this.indexedTable = indexedTable;
 		this.pageSize = pageSize;
-		this.indexedColumn = column;
+		this.indexedColumns = columns.clone();
 		this.unique = unique;
+		this.compressedKeys = compressedKeys;
 		this.rootPageNumber = rootNode;
 		this.firstLeafNumber = firstLeafNode;
 	}
@@ -184,13 +322,83 @@ public class IndexSchema
 	}
 	
 	/**
-	 * Gets the number that the indexed column is in the table.
+	 * Gets the number that the indexed column is in the table. For a composite index,
+	 * this is the first column of the key.
 	 * 
 	 * @return The column's index.
 	 */
 	public int getColumnNumber()
 	{
-		return this.indexedColumn;
+		return this.indexedColumns[0];
+	}
+	
+	/**
+	 * Gets the numbers that the indexed columns are in the table, in the order of the key.
+	 * 
+	 * @return The columns' indexes.
+	 */
+	public int[] getColumnNumbers()
+	{
+		return this.indexedColumns.clone();
+	}
+	
+	/**
+	 * Gets the number of columns in the keys of this index.
+	 * 
+	 * @return The number of indexed columns.
+	 */
+	public int getNumberOfColumns()
+	{
+		return this.indexedColumns.length;
+	}
+	
+	/**
+	 * Checks whether this index is a composite index over several columns.
+	 * 
+	 * @return true, if the index has more than one column, false if not.
+	 */
+	public boolean isComposite()
+	{
+		return this.compositeKeys != null;
+	}
+	
+	/**
+	 * Gets the type of the keys in this index. For a composite index, this is the CHAR type
+	 * of the encoded keys, otherwise the type of the indexed column.
+	 * 
+	 * @return The type of the keys.
+	 */
+	public DataType getKeyType()
+	{
+		return this.keyType;
+	}
+	
+	/**
+	 * Gets the encoding of the keys of a composite index.
+	 * 
+	 * @return The encoding of the keys, or null, if the index has a single column.
+	 */
+	public CompositeKeyEncoding getCompositeKeyEncoding()
+	{
+		return this.compositeKeys;
+	}
+	
+	/**
+	 * Gets the key of the given tuple of the indexed table.
+	 * 
+	 * @param tuple The tuple, with all columns of the table.
+	 * @return The value of the indexed column, or the encoded key of a composite index.
+	 */
+	public DataField getKey(DataTuple tuple)
+	{
+		if (this.compositeKeys == null) {
+			return tuple.getField(this.indexedColumns[0]);
+		}
+		DataField[] values = new DataField[this.indexedColumns.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = tuple.getField(this.indexedColumns[i]);
+		}
+		return this.compositeKeys.encode(values);
 	}
 	
 	/**
@@ -204,13 +412,14 @@ public class IndexSchema
 	}
 	
 	/**
-	 * Gets the schema of the column in this index.
+	 * Gets the schema of the column in this index. For a composite index, this is the
+	 * first column of the key.
 	 * 
 	 * @return The schema of the column in the index.
 	 */
 	public ColumnSchema getIndexedColumnSchema()
 	{
-		return this.indexedTable.getColumn(this.indexedColumn);
+		return this.indexedTable.getColumn(this.indexedColumns[0]);
 	}
 	
 	/**
@@ -222,9 +431,21 @@ public class IndexSchema
 	{
 		return this.unique;
 	}
+	
+	/**
+	 * Checks whether the pages of this index store their keys compressed.
+	 * 
+	 * @return true, if the keys are compressed, false if not.
+	 */
+	public boolean hasCompressedKeys()
+	{
+		return this.compressedKeys;
+	}
 
 	/**
 	 * Gets the order of the tree, i.e. the maximal number of keys in inner nodes.
+	 * If the keys are compressed, it is the number of keys of average length that
+	 * fit into an inner node.
 	 * 
 	 * @return The order of the B-Tree.
 	 */
@@ -235,6 +456,8 @@ public class IndexSchema
 
 	/**
 	 * Gets the maximal number of key / RID pairs that can be contained in the leafs.
+	 * If the keys are compressed, it is the number of pairs with keys of average length
+	 * that fit into a leaf.
 	 * 
 	 * @return The maximal number of key / RID pairs that can be contained in the leafs.
 	 */
@@ -327,13 +550,25 @@ public class IndexSchema
 	public String toString()
 	{
 		StringBuilder builder = new StringBuilder();
-		builder.append("column ").append(this.indexedColumn).append(" (");
-		builder.append(getIndexedColumnSchema());
+		if (this.compositeKeys == null) {
+			builder.append("column ").append(this.indexedColumns[0]).append(" (");
+			builder.append(getIndexedColumnSchema());
+		}
+		else {
+			builder.append("columns ");
+			for (int i = 0; i < this.indexedColumns.length; i++) {
+				builder.append(i == 0 ? "" : ", ").append(this.indexedColumns[i]);
+			}
+			builder.append(" (").append(this.keyType);
+		}
 		builder.append(" PAGE_SIZE ").append(getPageSize());
 		
 		if (this.unique) {
 			builder.append(" UNIQUE");
 		}
+		if (this.compressedKeys) {
+			builder.append(" COMPRESSED");
+		}
 		builder.append(" (Fan-out: ").append(this.fanOut);
 		builder.append(", Leaf Entries: ").append(this.maximalLeafEntries).append(')');
 		
@@ -121,6 +121,19 @@ public final class BigIntField extends DataField implements ArithmeticType<BigIn
 	 * @return The extracted number.
 	 */
 	public static BigIntField getFieldFromBinary(byte[] binaryEncoded, int offs)
+    {
+	    return new BigIntField(getLongFromBinary(binaryEncoded, offs));
+    }
+	
+	/**
+	 * Extract a long from the first 8 bytes after the given offset
+	 * from the given binary array using little endian encoding.
+	 * 
+	 * @param binaryEncoded The binary array to extract the number from.
+	 * @param offs The offset where the binary coded number starts.
+	 * @return The extracted number.
+	 */
+	public static long getLongFromBinary(byte[] binaryEncoded, int offs)
     {
 		long l = (binaryEncoded[offs    ]        & 0x000000ffL) |
                 ((binaryEncoded[offs + 1] <<  8) & 0x0000ff00L) |
@@ -132,7 +145,7 @@ public final class BigIntField extends DataField implements ArithmeticType<BigIn
                  ((binaryEncoded[offs + 6] << 16) & 0x00ff0000L) |
                  ((binaryEncoded[offs + 7] << 24) & 0xff000000L);
 
-	    return new BigIntField(l | (ii << 32));
+	    return l | (ii << 32);
     }
 	
 
@@ -213,6 +226,16 @@ public final class BigIntField extends DataField implements ArithmeticType<BigIn
 		return (this.value < anotherVal ? -1 : (this.value == anotherVal ? 0 : 1));
 	}
 
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.core.DataField#compareToBinary(byte[], int, int)
+	 */
+	@Override
+	public int compareToBinary(byte[] binaryEncoded, int offs, int len)
+	{
+		long anotherVal = getLongFromBinary(binaryEncoded, offs);
+		return (this.value < anotherVal ? -1 : (this.value == anotherVal ? 0 : 1));
+	}
+
 	/* (non-Javadoc)
 	 * @see de.tuberlin.dima.minidb.core.ArithmeticType#add(de.tuberlin.dima.minidb.core.DataField)
 	 */
@@ -246,6 +246,36 @@ public final class CharField extends DataField
 			return other == null ? 1 : this.charData.compareTo(other);
 		}
 	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.core.DataField#compareToBinary(byte[], int, int)
+	 */
+	@Override
+	public int compareToBinary(byte[] binaryEncoded, int offs, int len)
+	{
+		// the same check for the NULL value as during deserialization
+		boolean otherNull = binaryEncoded.length >= offs + 2 &&
+		                    binaryEncoded[offs] == 0 && binaryEncoded[offs + 1] == 0;
+		if (this.charData == null) {
+			return otherNull ? 0 : -1;
+		}
+		else if (otherNull) {
+			return 1;
+		}
+		
+		// compare character by character, like the strings would be compared
+		int thisLen = this.charData.length();
+		int otherLen = len >> 1;
+		int n = Math.min(thisLen, otherLen);
+		for (int i = 0; i < n; i++, offs += 2) {
+			char c = (char) ((binaryEncoded[offs] & 0x00ff) | ((binaryEncoded[offs + 1] << 8) & 0xff00));
+			char t = this.charData.charAt(i);
+			if (t != c) {
+				return t - c;
+			}
+		}
+		return thisLen - otherLen;
+	}
 	
 	
 	/* (non-Javadoc)
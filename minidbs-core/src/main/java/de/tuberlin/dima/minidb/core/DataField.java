@@ -111,6 +111,25 @@ public abstract class DataField implements Comparable<DataField>, Cloneable, Ser
 	public abstract int encodeBinary(byte[] buffer, int offset)
 	throws ArrayIndexOutOfBoundsException;
 	
+	/**
+	 * Compares this field with the value of the same data type that is serialized in the binary
+	 * array at the given offset. The result is the same as that of comparing this field with the
+	 * deserialized value through <code>compareTo()</code>. The subclasses for the numeric types
+	 * and for CHAR read the value in place, so that searches over serialized values, like the
+	 * keys on an index page, do not create a field for every comparison.
+	 * 
+	 * @param binaryEncoded The binary array with the serialized value.
+	 * @param offset The position of the serialized value in the binary array.
+	 * @param len The number of bytes of the serialized value. Only relevant for array types 
+	 *            like CHAR and VARCHAR
+	 * @return A negative number, zero, or a positive number, if this field is smaller than,
+	 *         equal to, or greater than the serialized value.
+	 */
+	public int compareToBinary(byte[] binaryEncoded, int offset, int len)
+	{
+		return compareTo(getFromBinary(binaryEncoded, offset, len));
+	}
+	
 	
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
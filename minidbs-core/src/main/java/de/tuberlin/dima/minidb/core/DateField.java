@@ -243,4 +243,22 @@ public final class DateField extends DataField
 			return (this.date < other.date ? -1 : (this.date == other.date ? 0 : 1));
 		}
 	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.core.DataField#compareToBinary(byte[], int, int)
+	 */
+	@Override
+	public int compareToBinary(byte[] binaryEncoded, int offs, int len)
+	{
+		int otherDate = IntField.getIntFromBinary(binaryEncoded, offs);
+		if (isNULL()) {
+			return otherDate == NULL_VALUE ? 0 : -1;
+		}
+		else if (otherDate == NULL_VALUE) {
+			return 1;
+		}
+		else {
+			return (this.date < otherDate ? -1 : (this.date == otherDate ? 0 : 1));
+		}
+	}
 }
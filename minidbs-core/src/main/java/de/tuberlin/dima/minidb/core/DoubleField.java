@@ -230,6 +230,24 @@ public final class DoubleField extends DataField implements ArithmeticType<Doubl
 			return (this.value < other.value ? -1 : (this.value == other.value ? 0 : 1));
 		}
 	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.core.DataField#compareToBinary(byte[], int, int)
+	 */
+	@Override
+	public int compareToBinary(byte[] binaryEncoded, int offs, int len)
+	{
+		double anotherVal = Double.longBitsToDouble(BigIntField.getLongFromBinary(binaryEncoded, offs));
+		if (isNULL()) {
+			return Double.isNaN(anotherVal) ? 0 : -1;
+		}
+		else if (Double.isNaN(anotherVal)) {
+			return 1;
+		}
+		else {
+			return (this.value < anotherVal ? -1 : (this.value == anotherVal ? 0 : 1));
+		}
+	}
 	
 	/* (non-Javadoc)
 	 * @see de.tuberlin.dima.minidb.core.ArithmeticType#add(de.tuberlin.dima.minidb.core.DataField)
@@ -223,6 +223,24 @@ public final class FloatField extends DataField implements ArithmeticType<FloatF
 			return (this.value < other.value ? -1 : (this.value == other.value ? 0 : 1));
 		}
 	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.core.DataField#compareToBinary(byte[], int, int)
+	 */
+	@Override
+	public int compareToBinary(byte[] binaryEncoded, int offs, int len)
+	{
+		float anotherVal = Float.intBitsToFloat(IntField.getIntFromBinary(binaryEncoded, offs));
+		if (isNULL()) {
+			return Float.isNaN(anotherVal) ? 0 : -1;
+		}
+		else if (Float.isNaN(anotherVal)) {
+			return 1;
+		}
+		else {
+			return (this.value < anotherVal ? -1 : (this.value == anotherVal ? 0 : 1));
+		}
+	}
 	
 	/* (non-Javadoc)
 	 * @see de.tuberlin.dima.minidb.core.ArithmeticType#add(de.tuberlin.dima.minidb.core.DataField)
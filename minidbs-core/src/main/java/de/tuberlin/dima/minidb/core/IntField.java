@@ -245,6 +245,16 @@ public final class IntField extends DataField implements ArithmeticType<IntField
 		int anotherVal = ((IntField) o).value;
 		return (this.value < anotherVal ? -1 : (this.value == anotherVal ? 0 : 1));
 	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.core.DataField#compareToBinary(byte[], int, int)
+	 */
+	@Override
+	public int compareToBinary(byte[] binaryEncoded, int offs, int len)
+	{
+		int anotherVal = getIntFromBinary(binaryEncoded, offs);
+		return (this.value < anotherVal ? -1 : (this.value == anotherVal ? 0 : 1));
+	}
 	
 	/* (non-Javadoc)
 	 * @see de.tuberlin.dima.minidb.core.ArithmeticType#add(de.tuberlin.dima.minidb.core.DataField)
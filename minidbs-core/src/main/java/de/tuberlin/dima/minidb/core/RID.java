@@ -228,6 +228,22 @@ public final class RID extends DataField
 		return new RID(pageIndex, tupleIndex);
 	}
 	
+	/**
+	 * Extract the 64 bit identifier of a RID from the first 8 bytes after the
+	 * given offset from the given binary array, without creating a RID. 
+	 * 
+	 * @param binaryEncoded The binary array to extract the identifier from.
+	 * @param offs The offset where the binary coded RID starts.
+	 * @return The extracted identifier, as returned by {@link #getID()}.
+	 * @throws ArrayIndexOutOfBoundsException Thrown, if the array has not enough bytes
+	 *                                        to represent the binary encoded value.
+	 */
+	public static long getRidIdFromBinary(byte[] binaryEncoded, int offs)
+	{
+		// the tuple index is in the lower four bytes, the page index in the upper ones
+		return BigIntField.getLongFromBinary(binaryEncoded, offs);
+	}
+	
 	
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
@@ -190,6 +190,17 @@ public final class SmallIntField extends DataField implements ArithmeticType<Sma
 		int anotherVal = ((SmallIntField) o).value;
 		return (this.value < anotherVal ? -1 : (this.value == anotherVal ? 0 : 1));
 	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.core.DataField#compareToBinary(byte[], int, int)
+	 */
+	@Override
+	public int compareToBinary(byte[] binaryEncoded, int offs, int len)
+	{
+		int anotherVal = (short) ((binaryEncoded[offs    ]       & 0x00ff) |
+		                         ((binaryEncoded[offs + 1] << 8) & 0xff00));
+		return (this.value < anotherVal ? -1 : (this.value == anotherVal ? 0 : 1));
+	}
 	
 	/* (non-Javadoc)
 	 * @see de.tuberlin.dima.minidb.core.ArithmeticType#add(de.tuberlin.dima.minidb.core.DataField)
@@ -395,4 +395,26 @@ public final class TimeField extends DataField
 			return (thisAbsolute < otherAbsolute ? -1 : (thisAbsolute == otherAbsolute ? 0 : 1));
 		}
 	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.core.DataField#compareToBinary(byte[], int, int)
+	 */
+	@Override
+	public int compareToBinary(byte[] binaryEncoded, int offs, int len)
+	{
+		// the lower word is sign extended, as during deserialization
+		long otherTime = IntField.getIntFromBinary(binaryEncoded, offs) |
+		                 (((long) IntField.getIntFromBinary(binaryEncoded, offs + 4)) << 32);
+		if (isNULL()) {
+			return otherTime == NULL_VALUE ? 0 : -1;
+		}
+		else if (otherTime == NULL_VALUE) {
+			return 1;
+		}
+		else {
+			long thisAbsolute = getTimeAsMillis() - getUTCOffset();
+			long otherAbsolute = ((int) otherTime) - ((int) (otherTime >>> 32));
+			return (thisAbsolute < otherAbsolute ? -1 : (thisAbsolute == otherAbsolute ? 0 : 1));
+		}
+	}
 }
@@ -267,4 +267,14 @@ public class TimestampField extends DataField
 		long otherMillis = ((TimestampField) o).millis; 
 		return (this.millis < otherMillis ? -1 : (this.millis == otherMillis ? 0 : 1));
 	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.core.DataField#compareToBinary(byte[], int, int)
+	 */
+	@Override
+	public int compareToBinary(byte[] binaryEncoded, int offs, int len)
+	{
+		long otherMillis = BigIntField.getLongFromBinary(binaryEncoded, offs);
+		return (this.millis < otherMillis ? -1 : (this.millis == otherMillis ? 0 : 1));
+	}
 }
@@ -2,12 +2,15 @@ package de.tuberlin.dima.minidb.io.index;
 
 
 import java.io.IOException;
+import java.util.Iterator;
 
 import de.tuberlin.dima.minidb.catalogue.IndexSchema;
+import de.tuberlin.dima.minidb.catalogue.IndexStatistics;
 import de.tuberlin.dima.minidb.core.DataField;
 import de.tuberlin.dima.minidb.core.DuplicateException;
 import de.tuberlin.dima.minidb.core.RID;
 import de.tuberlin.dima.minidb.io.cache.PageFormatException;
+import de.tuberlin.dima.minidb.util.Pair;
 
 
 /**
@@ -122,4 +125,35 @@ public interface BTreeIndex
 	public void insertEntry(DataField key, RID rid)
 	throws PageFormatException, IndexFormatCorruptException, DuplicateException, IOException;
 	
+	
+	/**
+	 * Loads the given pairs of (key/RID) into the index, which must be empty. The pairs must be
+	 * sorted by key, as they come for example from a sort of the indexed table.
+	 * <p>
+	 * Rather than inserting the pairs one by one, the leaves are written one after the other,
+	 * each filled up to the given fill factor, and the inner nodes are built bottom-up on top
+	 * of them. The space that the fill factor leaves free takes later inserts without splits.
+	 * No node is filled less than half, so the last nodes of a level may deviate from the fill
+	 * factor. The page number of the new root is set in the schema.
+	 * 
+	 * @param sortedEntries The pairs to load, sorted by key.
+	 * @param fillFactor The fraction of the leaves and inner nodes to fill, in (0, 1].
+	 * @return The statistics of the loaded index.
+	 * @throws PageFormatException Thrown if during processing a page's layout was found to be
+	 *                             found to be corrupted.
+	 * @throws IndexFormatCorruptException Throws, if the evaluation failed because condition
+	 *                                     of the BTree were found to be invalid.
+	 * @throws DuplicateException Thrown, if a key occurs twice and the index is defined to be unique.
+	 * @throws IOException Thrown, if a page could not be read or written.
+	 * @throws IllegalArgumentException Thrown, if the pairs are not sorted or the fill factor is invalid.
+	 * @throws IllegalStateException Thrown, if the index is not empty.
+	 * @throws UnsupportedOperationException Thrown, if the index cannot be bulk loaded, in which
+	 *                                       case the pairs must be inserted one by one.
+	 */
+	default IndexStatistics bulkLoad(Iterator<Pair<DataField, RID>> sortedEntries, float fillFactor)
+	throws PageFormatException, IndexFormatCorruptException, DuplicateException, IOException
+	{
+		throw new UnsupportedOperationException("Method not yet supported");
+	}
+	
 }
@@ -29,8 +29,13 @@ import de.tuberlin.dima.minidb.io.cache.PageFormatException;
  *   <li>Bytes 8 - 11 are an INT (little endian) holding type information that identifies the
  *       page as a inner node page. The specific value to be held for leaf pages is 1.</li>
  *   <li>Bytes 12 - 15 are an INT (little endian) holding the number of keys in the node.</li> 
+ *   <li>Bytes 16 - 19 are an INT (little endian) holding the page number of the right sibling,
+ *       the node on the same level that took over the upper part of this node when it was split.
+ *       If there is no right sibling, this field holds 0, which is never the number of an index
+ *       page, so that nodes written before the field existed have no right sibling.</li> 
  * </ul> 
  * When the class implementing this interface is instantiated, it should verify the header. 
+ * The keys are of the index's key type, which is the CHAR type of the encoded keys in a composite index.
  * 
  * Many of the defined methods may throw <code>IndexFormatCorruptException</code> when encountering that
  * index conditions (such as the sorted order) are violated. The methods should however not explicitly
@@ -70,6 +75,11 @@ public class BTreeInnerNodePage implements BTreeIndexPage
 	 */
 	private static final int HEADER_NUM_KEYS_OFFSET = 12;
 	
+	/**
+	 * The offset of the field holding the page number of the right sibling.
+	 */
+	private static final int HEADER_RIGHT_SIBLING_OFFSET = 16;
+	
 	/**
 	 * The width of the page number.
 	 */
@@ -143,7 +153,7 @@ public class BTreeInnerNodePage implements BTreeIndexPage
 	throws PageFormatException
 	{
 		this.buffer = buffer;
-		this.keyType = schema.getIndexedColumnSchema().getDataType();
+		this.keyType = schema.getKeyType();
 		this.maxKeys = schema.getFanOut();
 
 		this.keyWidth = this.keyType.getNumberOfBytes();
@@ -218,6 +228,42 @@ public class BTreeInnerNodePage implements BTreeIndexPage
 		return this.buffer;
 	}
 
+	// ------------------------------------------------------------------------
+	//                             right sibling
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Gets the page number of the right sibling of this node, which holds the keys and pointers
+	 * that follow the ones in this node on the same level. Returns -1, if no sibling is linked.
+	 * 
+	 * @return The page number of the right sibling, or -1, if no sibling is linked.
+	 */
+	public int getRightSiblingPageNumber()
+	{
+		if (Constants.DEBUG_CHECK && this.expired) {
+			throw new PageExpiredException();
+		}
+		
+		int pageNumber = IntField.getIntFromBinary(this.buffer, HEADER_RIGHT_SIBLING_OFFSET);
+		return pageNumber > 0 ? pageNumber : -1;
+	}
+
+	/**
+	 * Sets the page number of the right sibling of this node. A value of -1 indicates that no
+	 * sibling is linked.
+	 * 
+	 * @param siblingPageNumber The page number of the right sibling.
+	 */
+	public void setRightSiblingPageNumber(int siblingPageNumber)
+	{
+		if (Constants.DEBUG_CHECK && this.expired) {
+			throw new PageExpiredException();
+		}
+		
+		IntField.encodeIntAsBinary(siblingPageNumber > 0 ? siblingPageNumber : 0, this.buffer, HEADER_RIGHT_SIBLING_OFFSET);
+		this.modified = true;
+	}
+	
 	// ------------------------------------------------------------------------
 	//                                  keys
 	// ------------------------------------------------------------------------
@@ -337,6 +383,30 @@ public class BTreeInnerNodePage implements BTreeIndexPage
 		}
 	}
 	
+	/**
+	 * Sets the pointer at the given position [0 - k], where k is the current number of
+	 * keys in the node, to the given page number.
+	 * 
+	 * @param position The position of the pointer to set.
+	 * @param pageNumber The page number of the child page.
+	 * @throws IndexOutOfBoundsException Thrown, if the position is out of range, i.e.
+	 *                                  negative or larger than the number of pointers on
+	 *                                  the page.
+	 */
+	public void setPointer(int position, int pageNumber)
+	{
+		if (Constants.DEBUG_CHECK && this.expired) {
+			throw new PageExpiredException();
+		}
+		
+		if (position < 0 || position > this.numKeys) {
+			throw new IndexOutOfBoundsException("Pointer position '" + position +
+					"' is out of range [0, " + this.numKeys + "]");
+		}
+		IntField.encodeIntAsBinary(pageNumber, this.buffer, (position * PAGE_NUMBER_WIDTH) + this.pointerSequenceOffset);
+		this.modified = true;
+	}
+	
 	/**
 	 * Gets the page number of the child page through which the leaf page containing the
 	 * key will be reached.
@@ -648,6 +718,38 @@ public class BTreeInnerNodePage implements BTreeIndexPage
 	}
 	
 	
+	// ------------------------------------------------------------------------
+	//                                Splits
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Gets the position of the key that moves up to the parent when this node is split to make
+	 * space for a new key. The keys before that position stay in this node, the keys behind it
+	 * move to the new right sibling, where the position counts the new key as if it were
+	 * already inserted. The basic node divides the keys into halves of the same number of keys.
+	 * 
+	 * @param newKey The key that is inserted.
+	 * @param newKeyPosition The position where the new key is inserted.
+	 * @return The position of the key that moves up, between 1 and <code>getNumberOfKeys() - 2</code>.
+	 */
+	public int getSplitPosition(DataField newKey, int newKeyPosition)
+	{
+		return (this.numKeys + 1) / 2;
+	}
+	
+	/**
+	 * Divides the range of keys between this node and its new right sibling at the given
+	 * separator, after the upper part of the keys moved to the sibling. The basic node has no
+	 * key ranges, so this method does nothing.
+	 * 
+	 * @param rightSibling The node that took over the upper part of the keys.
+	 * @param separator The key that separates the two nodes in the parent node.
+	 */
+	public void divideKeyRange(BTreeInnerNodePage rightSibling, DataField separator)
+	{
+	}
+	
+	
 	// ------------------------------------------------------------------------
 	//                         Utility Methods
 	// ------------------------------------------------------------------------
@@ -711,8 +813,8 @@ public class BTreeInnerNodePage implements BTreeIndexPage
 			// get middle element and compare to the search key
 		    int mid = (low + high) >>> 1;
 	        int midOffset = (mid * this.keyWidth) + HEADER_SIZE;
-		    DataField midVal = this.keyType.getFromBinary(this.buffer, midOffset, this.keyWidth);
-		    int cmp = midVal.compareTo(key);
+		    // compare with the key in place, the other way round
+		    int cmp = -key.compareToBinary(this.buffer, midOffset, this.keyWidth);
 
 		    // adjust next interval or return found
 		    if (cmp < 0) {
@@ -754,9 +856,10 @@ public class BTreeInnerNodePage implements BTreeIndexPage
 			else {
 				// key found in a non-unique index.
 				// track back to the first occurrence.
-				DataField keyAtPos = getKey(pos);
-				while (pos > 0 && getKey(pos - 1).equals(keyAtPos)) {
+				int keyOffset = (pos - 1) * this.keyWidth + HEADER_SIZE;
+				while (pos > 0 && key.compareToBinary(this.buffer, keyOffset, this.keyWidth) == 0) {
 					pos--;
+					keyOffset -= this.keyWidth;
 				}
 				return pos;
 			}			
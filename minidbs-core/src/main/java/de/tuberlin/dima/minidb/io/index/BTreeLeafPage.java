@@ -30,6 +30,7 @@ import de.tuberlin.dima.minidb.io.cache.PageFormatException;
  *   <li>Bytes 20 - 23 are an INT (little endian) holding miscellaneous flags. The least significant
  *       bit represents the flag to indicate that the value last key is also found on the next page.</li> 
  * </ul> 
+ * The keys are of the index's key type, which is the CHAR type of the encoded keys in a composite index.
  * 
  * Many of the defined methods may throw an {@link IndexFormatCorruptException} when determining that
  * index conditions (such as the sorted order) are violated. The methods should however not explicitly
@@ -148,7 +149,7 @@ public class BTreeLeafPage implements BTreeIndexPage
 	public BTreeLeafPage(IndexSchema schema, byte[] buffer)
 	{
 		this.buffer = buffer;
-		this.keyType = schema.getIndexedColumnSchema().getDataType();
+		this.keyType = schema.getKeyType();
 		this.maxEntries = schema.getMaximalLeafEntries();
 		this.keyWidth = this.keyType.getNumberOfBytes();
 		this.RIDSequenceOffset = HEADER_SIZE + (this.maxEntries * this.keyWidth);
@@ -251,6 +252,7 @@ public class BTreeLeafPage implements BTreeIndexPage
 		}
 		
 		IntField.encodeIntAsBinary(nextPageNumber, this.buffer, HEADER_NEXT_PAGE_OFFSET);
+		this.modified = true;
 	}
 
 	/**
@@ -300,6 +302,7 @@ public class BTreeLeafPage implements BTreeIndexPage
 			flags &= ~FLAGS_MASK_KEY_CONTINUES;
 		}
 		IntField.encodeIntAsBinary(flags, this.buffer, HEADER_FLAGS_OFFSET);
+		this.modified = true;
 	}
 	
 	// ------------------------------------------------------------------------
@@ -379,7 +382,7 @@ public class BTreeLeafPage implements BTreeIndexPage
 		// if the key is contained, move to the leftmost occurrence of the key
 		if (pos >= 0) {
 			int keyOffset = (pos - 1) * this.keyWidth + HEADER_SIZE;
-			while (pos > 0 && this.keyType.getFromBinary(this.buffer, keyOffset, this.keyWidth).equals(key)) {
+			while (pos > 0 && key.compareToBinary(this.buffer, keyOffset, this.keyWidth) == 0) {
 				pos--;
 				keyOffset -= this.keyWidth;
 			}
@@ -390,6 +393,38 @@ public class BTreeLeafPage implements BTreeIndexPage
 		}
 	}
 
+	/**
+	 * Gets the position after the last occurrence of the key in the sequence of entries,
+	 * which is the position of the next larger key. If no larger key is contained, the
+	 * number of entries is returned. The method returns hence values between
+	 * <code>0</code> and <code>numberOfEntries</code>.
+	 * 
+	 * @param key The key to get the position after.
+	 * @return The position of the first key that is larger than the given key.
+	 */
+	public int getPositionAfterKey(DataField key)
+	{
+		if (Constants.DEBUG_CHECK && this.expired) {
+			throw new PageExpiredException();
+		}
+		
+		int pos = binSearchForKey(key);
+
+		// if the key is contained, move behind the rightmost occurrence of the key
+		if (pos >= 0) {
+			int keyOffset = (pos + 1) * this.keyWidth + HEADER_SIZE;
+			pos++;
+			while (pos < this.numEntries && key.compareToBinary(this.buffer, keyOffset, this.keyWidth) == 0) {
+				pos++;
+				keyOffset += this.keyWidth;
+			}
+
+			return pos;
+		} else {
+			return -(pos + 1);
+		}
+	}
+
 	/**
 	 * Gets the RID at the given position.
 	 * 
@@ -411,6 +446,33 @@ public class BTreeLeafPage implements BTreeIndexPage
 		position = position * RID.getRIDSize() + this.RIDSequenceOffset;
 		return RID.getRidFromBinary(this.buffer, position);
 	}
+	
+	/**
+	 * Gets the RIDs at a sequence of positions as their 64 bit identifiers (see
+	 * {@link RID#getID()}), without creating RID objects.
+	 * 
+	 * @param position The position of the first RID.
+	 * @param num The number of RIDs to get.
+	 * @param target The array into which the identifiers are stored, starting at index 0.
+	 * @throws IndexOutOfBoundsException If the positions are out of the range between zero and
+	 *                                   the number of entries.
+	 */
+	public void getRidIdsAtPositions(int position, int num, long[] target)
+	{
+		if (Constants.DEBUG_CHECK && this.expired) {
+			throw new PageExpiredException();
+		}
+		
+		if (position < 0 || num < 0 || position + num > this.numEntries) {
+			throw new IndexOutOfBoundsException("positions are not within valid range.");
+		}
+
+		final int ridSize = RID.getRIDSize();
+		int offset = position * ridSize + this.RIDSequenceOffset;
+		for (int i = 0; i < num; i++, offset += ridSize) {
+			target[i] = RID.getRidIdFromBinary(this.buffer, offset);
+		}
+	}
 
 	/**
 	 * Gets an RID for the given key. For unique indexes, this method returns 
@@ -466,8 +528,7 @@ public class BTreeLeafPage implements BTreeIndexPage
 			// move backwards to where the key changes
 			// we can add the RIDs in any order because the RID order for the same key is undefined.
 			for (int k = keyOffset, r = ridOffset; k >= HEADER_SIZE; k -= this.keyWidth, r -= ridSize) {
-				DataField currKey = this.keyType.getFromBinary(this.buffer, k, this.keyWidth);
-				if (currKey.equals(key)) {
+				if (key.compareToBinary(this.buffer, k, this.keyWidth) == 0) {
 					// add the RID
 					target.add(RID.getRidFromBinary(this.buffer, r));
 				} else {
@@ -482,8 +543,7 @@ public class BTreeLeafPage implements BTreeIndexPage
 			ridOffset += ridSize;
 
 			while (pos < this.numEntries) {
-				DataField currKey = this.keyType.getFromBinary(this.buffer, keyOffset, this.keyWidth);
-				if (currKey.equals(key)) {
+				if (key.compareToBinary(this.buffer, keyOffset, this.keyWidth) == 0) {
 					target.add(RID.getRidFromBinary(this.buffer, ridOffset));
 				} else {
 					pos--;
@@ -610,9 +670,9 @@ public class BTreeLeafPage implements BTreeIndexPage
 			final int ridSize = RID.getRIDSize();
 			int keyOffset = pos * this.keyWidth + HEADER_SIZE;
 			int ridOffset = pos * ridSize + this.RIDSequenceOffset;
-			RID rdd = RID.getRidFromBinary(this.buffer, ridOffset);
+			final long ridId = rid.getID();
 
-			if (rdd.equals(rid)) {
+			if (RID.getRidIdFromBinary(this.buffer, ridOffset) == ridId) {
 				// immediate match
 				deletePosition(pos);
 				return true;
@@ -624,11 +684,9 @@ public class BTreeLeafPage implements BTreeIndexPage
 
 			// move backwards to where the key changes
 			for (int p = pos - 1, k = keyOffset - this.keyWidth, r = ridOffset - ridSize; p >= 0; p--, k -= this.keyWidth, r -= ridSize) {
-				DataField currKey = this.keyType.getFromBinary(this.buffer, k, this.keyWidth);
-				if (currKey.equals(key)) {
+				if (key.compareToBinary(this.buffer, k, this.keyWidth) == 0) {
 					// same key, check rid
-					RID thisRid = RID.getRidFromBinary(this.buffer, r);
-					if (thisRid.equals(rid)) {
+					if (RID.getRidIdFromBinary(this.buffer, r) == ridId) {
 						// found
 						deletePosition(p);
 						return true;
@@ -642,11 +700,9 @@ public class BTreeLeafPage implements BTreeIndexPage
 			}
 			// move backwards to where the key changes
 			for (; pos < this.numEntries; pos++, keyOffset += this.keyWidth, ridOffset += ridSize) {
-				DataField currKey = this.keyType.getFromBinary(this.buffer, keyOffset, this.keyWidth);
-				if (currKey.equals(key)) {
+				if (key.compareToBinary(this.buffer, keyOffset, this.keyWidth) == 0) {
 					// same key, check rid
-					RID thisRid = RID.getRidFromBinary(this.buffer, ridOffset);
-					if (thisRid.equals(rid)) {
+					if (RID.getRidIdFromBinary(this.buffer, ridOffset) == ridId) {
 						// found
 						deletePosition(pos);
 						return true;
@@ -820,6 +876,40 @@ public class BTreeLeafPage implements BTreeIndexPage
 		return true;
 	}
 	
+	// ------------------------------------------------------------------------
+	//                                splits
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Gets the position at which the entries of this page are divided when the page is split.
+	 * The entries from that position on move to the new right sibling. The basic page divides
+	 * the entries into halves of the same number of entries.
+	 * 
+	 * @return The position of the first entry that moves to the right sibling.
+	 */
+	public int getSplitPosition()
+	{
+		if (Constants.DEBUG_CHECK && this.expired) {
+			throw new PageExpiredException();
+		}
+		
+		return this.numEntries - this.numEntries / 2;
+	}
+	
+	/**
+	 * Divides the range of keys between this page and its new right sibling, after the upper part
+	 * of the entries moved to the sibling, and gets the key that separates the two pages in the
+	 * parent node. That key is at least as large as the last key on this page and smaller than
+	 * the first key on the sibling, unless the two are equal. The basic page uses its last key.
+	 * 
+	 * @param rightSibling The page that took over the upper part of the entries.
+	 * @return The key that separates this page from its right sibling.
+	 */
+	public DataField divideKeyRange(BTreeLeafPage rightSibling)
+	{
+		return getLastKey();
+	}
+	
 	// ------------------------------------------------------------------------
 	//                         Utility Methods
 	// ------------------------------------------------------------------------
@@ -841,8 +931,8 @@ public class BTreeLeafPage implements BTreeIndexPage
 			// get middle element and compare to the search key
 			int mid = (low + high) >>> 1;
 			int midOffset = (mid * this.keyWidth) + HEADER_SIZE;
-			DataField midVal = this.keyType.getFromBinary(this.buffer, midOffset, this.keyWidth);
-			int cmp = midVal.compareTo(key);
+			// compare with the key in place, the other way round
+			int cmp = -key.compareToBinary(this.buffer, midOffset, this.keyWidth);
 
 			// adjust next interval or return found
 			if (cmp < 0) {
@@ -0,0 +1,278 @@
+package de.tuberlin.dima.minidb.io.index;
+
+
+import java.util.Arrays;
+
+import de.tuberlin.dima.minidb.core.BasicType;
+import de.tuberlin.dima.minidb.core.CharField;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.core.DateField;
+import de.tuberlin.dima.minidb.core.DoubleField;
+import de.tuberlin.dima.minidb.core.FloatField;
+
+
+/**
+ * The encoding of the keys of an index over several columns. A composite key is a CHAR field
+ * whose characters hold the key bytes of the columns one after the other, two bytes per character
+ * with the higher byte first. The key bytes of a column compare unsigned in the order of the
+ * column's values: integers have their sign bit flipped, floating point numbers, dates and
+ * characters follow a byte that is zero for NULL and one otherwise, and CHAR values contribute
+ * all their characters. A CHAR value that is shorter than its column is padded with U+0000, like
+ * in its binary form in a column of the full width, so that it has the same key as the value read
+ * back from the table. Since CHAR fields compare character by character, composite keys compare
+ * like the values of their columns, column by column.
+ * <p>
+ * The key starts with a marker byte, so that its first character is never zero, which would
+ * mark a NULL field. The last character is padded with a zero byte, if necessary.
+ * <p>
+ * A lookup for the values of only the leading columns uses the bounds of the range that the keys
+ * with these values fall into. The bytes behind the given values are filled with zeros or with
+ * ones, such that the bounds are below or above all keys with these values, or equal to the
+ * smallest or largest of them.
+ */
+public final class CompositeKeyEncoding
+{
+	/**
+	 * The byte in front of the key bytes of the columns.
+	 */
+	private static final byte MARKER = 0x01;
+
+	/**
+	 * The types of the columns in the key.
+	 */
+	private final DataType[] columnTypes;
+
+	/**
+	 * The offsets of the key bytes of the columns, followed by the number of bytes in the key.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * The CHAR type of the keys.
+	 */
+	private final DataType keyType;
+
+
+	/**
+	 * Creates the encoding for keys over columns of the given types.
+	 *
+	 * @param columnTypes The types of the columns, in the order of the key.
+	 * @throws IllegalArgumentException Thrown, if a type has no byte-comparable encoding.
+	 */
+	public CompositeKeyEncoding(DataType[] columnTypes)
+	{
+		if (columnTypes.length == 0) {
+			throw new IllegalArgumentException("A composite key needs at least one column.");
+		}
+
+		this.columnTypes = columnTypes.clone();
+		this.offsets = new int[columnTypes.length + 1];
+		this.offsets[0] = 1;
+		for (int i = 0; i < columnTypes.length; i++) {
+			int width = getKeyWidth(columnTypes[i]);
+			if (width < 0) {
+				throw new IllegalArgumentException("Columns of type " + columnTypes[i] +
+						" cannot be part of a composite key.");
+			}
+			this.offsets[i + 1] = this.offsets[i] + width;
+		}
+		this.keyType = DataType.charType((this.offsets[columnTypes.length] + 1) / 2);
+	}
+
+	/**
+	 * Checks whether columns of the given type can be part of a composite key.
+	 *
+	 * @param type The type of the column.
+	 * @return true, if the type has a byte-comparable encoding, false if not.
+	 */
+	public static boolean isSupported(DataType type)
+	{
+		return getKeyWidth(type) >= 0;
+	}
+
+	/**
+	 * Gets the CHAR type of the composite keys.
+	 *
+	 * @return The data type of the keys.
+	 */
+	public DataType getKeyType()
+	{
+		return this.keyType;
+	}
+
+	/**
+	 * Gets the number of columns in the key.
+	 *
+	 * @return The number of columns.
+	 */
+	public int getNumberOfColumns()
+	{
+		return this.columnTypes.length;
+	}
+
+	/**
+	 * Encodes the key for the given values of all columns.
+	 *
+	 * @param values The values of the columns, in the order of the key.
+	 * @return The composite key.
+	 */
+	public CharField encode(DataField[] values)
+	{
+		return encode(values, this.columnTypes.length, (byte) 0);
+	}
+
+	/**
+	 * Encodes the lower bound of the keys whose leading columns have the given values. The bound
+	 * is meant to be used with the given inclusion, which then holds for the last of the values.
+	 *
+	 * @param values The values of the leading columns, in the order of the key.
+	 * @param num The number of leading columns to use from the values, zero for a bound of all keys.
+	 * @param inclusive Whether keys with the given values are within the range.
+	 * @return The lower bound.
+	 */
+	public CharField encodeLowerBound(DataField[] values, int num, boolean inclusive)
+	{
+		return encode(values, num, inclusive ? (byte) 0 : (byte) 0xff);
+	}
+
+	/**
+	 * Encodes the upper bound of the keys whose leading columns have the given values. The bound
+	 * is meant to be used with the given inclusion, which then holds for the last of the values.
+	 *
+	 * @param values The values of the leading columns, in the order of the key.
+	 * @param num The number of leading columns to use from the values, zero for a bound of all keys.
+	 * @param inclusive Whether keys with the given values are within the range.
+	 * @return The upper bound.
+	 */
+	public CharField encodeUpperBound(DataField[] values, int num, boolean inclusive)
+	{
+		return encode(values, num, inclusive ? (byte) 0xff : (byte) 0);
+	}
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Encodes the values of the leading columns and fills the remaining bytes.
+	 */
+	private CharField encode(DataField[] values, int num, byte fill)
+	{
+		if (num < 0 || num > this.columnTypes.length || num > values.length) {
+			throw new IllegalArgumentException("Invalid number of key columns: " + num);
+		}
+
+		int length = this.keyType.getLength();
+		byte[] bytes = new byte[2 * length];
+		bytes[0] = MARKER;
+		for (int i = 0; i < num; i++) {
+			if (values[i].getBasicType() != this.columnTypes[i].getBasicType()) {
+				throw new IllegalArgumentException("The value for key column " + i + " is of type " +
+						values[i].getBasicType() + " instead of " + this.columnTypes[i].getBasicType() + ".");
+			}
+			encodeColumn(values[i], bytes, this.offsets[i], this.offsets[i + 1] - this.offsets[i]);
+		}
+		Arrays.fill(bytes, this.offsets[num], bytes.length, fill);
+
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) ((bytes[2 * i] & 0xff) << 8 | (bytes[2 * i + 1] & 0xff));
+		}
+		return new CharField(new String(chars));
+	}
+
+	/**
+	 * Writes the key bytes of a value into the given number of bytes.
+	 */
+	private static void encodeColumn(DataField value, byte[] bytes, int offset, int width)
+	{
+		switch (value.getBasicType()) {
+		case SMALL_INT:
+		case INT:
+		case BIG_INT:
+		case TIMESTAMP:
+			// the binary encoding is little endian two's complement, in which NULL is the smallest value
+			value.encodeBinary(bytes, offset);
+			for (int i = offset, j = offset + width - 1; i < j; i++, j--) {
+				byte b = bytes[i];
+				bytes[i] = bytes[j];
+				bytes[j] = b;
+			}
+			bytes[offset] ^= 0x80;
+			break;
+		case FLOAT:
+			if (!value.isNULL()) {
+				// -0.0 equals 0.0 in compareTo()
+				int bits = Float.floatToIntBits(((FloatField) value).getValue() + 0.0f);
+				bytes[offset] = 1;
+				putInt(bytes, offset + 1, bits < 0 ? ~bits : bits ^ 0x80000000);
+			}
+			break;
+		case DOUBLE:
+			if (!value.isNULL()) {
+				long bits = Double.doubleToLongBits(((DoubleField) value).getValue() + 0.0);
+				bytes[offset] = 1;
+				bits = bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+				putInt(bytes, offset + 1, (int) (bits >>> 32));
+				putInt(bytes, offset + 5, (int) bits);
+			}
+			break;
+		case DATE:
+			if (!value.isNULL()) {
+				DateField date = (DateField) value;
+				bytes[offset] = 1;
+				// the year is signed, so its sign bit is flipped like the one of an integer
+				putInt(bytes, offset + 1, ((date.getYear() << 16) | (date.getMonth() << 8) | date.getDay()) ^ 0x80000000);
+			}
+			break;
+		case CHAR:
+			if (!value.isNULL()) {
+				// the bytes behind a shorter value stay zero, as in the value's binary form
+				String chars = ((CharField) value).getValue();
+				bytes[offset] = 1;
+				for (int i = 0; i < Math.min(chars.length(), (width - 1) / 2); i++) {
+					char c = chars.charAt(i);
+					bytes[offset + 1 + 2 * i] = (byte) (c >> 8);
+					bytes[offset + 2 + 2 * i] = (byte) c;
+				}
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Values of type " + value.getBasicType() +
+					" cannot be part of a composite key.");
+		}
+	}
+
+	/**
+	 * Gets the number of key bytes for a column of the given type, or -1, if the type has no encoding.
+	 */
+	private static int getKeyWidth(DataType type)
+	{
+		BasicType basicType = type.getBasicType();
+		switch (basicType) {
+		case SMALL_INT:
+		case INT:
+		case BIG_INT:
+		case TIMESTAMP:
+			return type.getNumberOfBytes();
+		case FLOAT:
+		case DATE:
+			return 5;
+		case DOUBLE:
+			return 9;
+		case CHAR:
+			return 1 + 2 * type.getLength();
+		default:
+			return -1;
+		}
+	}
+
+	private static void putInt(byte[] bytes, int offset, int value)
+	{
+		bytes[offset]     = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+}
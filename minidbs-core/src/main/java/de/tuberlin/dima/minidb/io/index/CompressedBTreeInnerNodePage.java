@@ -0,0 +1,538 @@
+package de.tuberlin.dima.minidb.io.index;
+
+
+import de.tuberlin.dima.minidb.Constants;
+import de.tuberlin.dima.minidb.catalogue.IndexSchema;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.io.cache.PageExpiredException;
+import de.tuberlin.dima.minidb.io.cache.PageFormatException;
+
+
+/**
+ * An inner-node page of a B-Tree index with compressed keys (see {@link IndexSchema#hasCompressedKeys()}).
+ * The page stores the keys like the {@link CompressedBTreeLeafPage}, with the pointer that follows
+ * each key in the key's slot.
+ *
+ * The page has the header of the basic inner node page, with the following differences:
+ * <ul>
+ *   <li>Bytes 8 - 11 hold the type value 3.</li>
+ *   <li>Bytes 20 - 23 are an INT (little endian) holding the first pointer, which has no key.</li>
+ *   <li>Bytes 32 - 47 describe the prefix, the range of keys of the node, and the key heap,
+ *       followed by the slots of the keys, each holding the pointer behind the key and the
+ *       position of the key on the heap.</li>
+ * </ul>
+ *
+ * How many keys fit into the node depends on the keys. Inserts therefore fail due to a lack of
+ * space and not due to a maximal number of keys. The fan-out in the {@link IndexSchema} is only
+ * the number of keys of average length that fit.
+ */
+public class CompressedBTreeInnerNodePage extends BTreeInnerNodePage
+{
+	// ------------------------------------------------------------------------
+	//                         public constants
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The constant indicating a compressed inner node page when found in the header.
+	 */
+	public static final int HEADER_TYPE_VALUE = 3;
+
+
+	// ------------------------------------------------------------------------
+	//                         private constants
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The offset of the field holding the entries counter.
+	 */
+	private static final int HEADER_NUM_KEYS_OFFSET = 12;
+
+	/**
+	 * The offset of the field holding the first pointer.
+	 */
+	private static final int HEADER_FIRST_POINTER_OFFSET = 20;
+
+	/**
+	 * The width of the page number.
+	 */
+	private static final int PAGE_NUMBER_WIDTH = 4;
+
+
+	// ------------------------------------------------------------------------
+	//                             attributes
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The keys and the pointers behind them.
+	 */
+	private final CompressedKeys keys;
+
+	/**
+	 * The current number of keys.
+	 */
+	private int numKeys;
+
+	/**
+	 * Flag indicating this index page has unique keys
+	 */
+	private final boolean unique;
+
+	/**
+	 * A flag describing if the keys or pointers of the page have been modified since its creation.
+	 */
+	private boolean modified;
+
+
+	// ------------------------------------------------------------------------
+	//                           constructors & set up
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a new {@link CompressedBTreeInnerNodePage} around the binary data in the given buffer
+	 * using the information in the given schema.
+	 *
+	 * @param schema The schema of the index to create the page for.
+	 * @param buffer The buffer containing the binary data.
+	 * @throws PageFormatException Thrown if the page header contained illegal data.
+	 */
+	public CompressedBTreeInnerNodePage(IndexSchema schema, byte[] buffer)
+	throws PageFormatException
+	{
+		super(schema, buffer);
+		this.keys = new CompressedKeys(buffer, schema.getKeyType(),
+		                               schema.getPageSize().getNumberOfBytes(), PAGE_NUMBER_WIDTH);
+		this.numKeys = IntField.getIntFromBinary(buffer, HEADER_NUM_KEYS_OFFSET);
+		this.unique = schema.isUnique();
+		this.modified = false;
+
+		if (!this.keys.isValid(this.numKeys)) {
+			throw new PageFormatException("The compressed inner node page has an inconsistent key area.");
+		}
+	}
+
+	/**
+	 * Initializes the area of the keys on a new, empty page.
+	 *
+	 * @param schema The schema of the index.
+	 * @param buffer The buffer with the binary page data.
+	 */
+	static void initKeys(IndexSchema schema, byte[] buffer)
+	{
+		new CompressedKeys(buffer, schema.getKeyType(),
+		                   schema.getPageSize().getNumberOfBytes(), PAGE_NUMBER_WIDTH).init();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.cache.CacheableData#hasBeenModified()
+	 */
+	@Override
+	public boolean hasBeenModified()
+	{
+		return this.modified || super.hasBeenModified();
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                                  keys
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#getNumberOfKeys()
+	 */
+	@Override
+	public int getNumberOfKeys()
+	{
+		return this.numKeys;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#getFirstKey()
+	 */
+	@Override
+	public DataField getFirstKey()
+	{
+		checkExpired();
+		return this.numKeys == 0 ? null : this.keys.getKey(0);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#getLastKey()
+	 */
+	@Override
+	public DataField getLastKey()
+	{
+		checkExpired();
+		return this.numKeys == 0 ? null : this.keys.getKey(this.numKeys - 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#getKey(int)
+	 */
+	@Override
+	public DataField getKey(int position)
+	{
+		checkExpired();
+		if (position < 0 || position >= this.numKeys) {
+			throw new IndexOutOfBoundsException("Key position '" + position + "' is out of range [0, " + this.numKeys + ").");
+		}
+		return this.keys.getKey(position);
+	}
+
+	/**
+	 * Sets the key at the given position to the given value.
+	 *
+	 * @throws IllegalStateException Thrown, if there is no space left on the page for the new value.
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#setKey(de.tuberlin.dima.minidb.core.DataField, int)
+	 */
+	@Override
+	public void setKey(DataField newKeyValue, int position)
+	{
+		checkExpired();
+		if (position < 0 || position >= this.numKeys) {
+			throw new IndexOutOfBoundsException("Key position " + position + " is out of range [0, " + this.numKeys + ").");
+		}
+		if (!this.keys.replace(newKeyValue, position, this.numKeys)) {
+			throw new IllegalStateException("There is no space left on the page for the new key value.");
+		}
+		this.modified = true;
+	}
+
+	/**
+	 * Gets the number of bytes that are left for further keys and pointers in this node.
+	 *
+	 * @return The number of free bytes.
+	 */
+	public int getFreeSpace()
+	{
+		checkExpired();
+		return this.keys.getFreeSpace(this.numKeys);
+	}
+
+	/**
+	 * Sets the range of keys that this node may hold. The range determines the prefix that the
+	 * keys share, so a narrow range lets more keys fit. The keys that are inserted later must be
+	 * within the range. A key of null leaves the range open at that end.
+	 *
+	 * @param lowestKey The lowest key that the node may hold, or null.
+	 * @param highestKey The highest key that the node may hold, or null.
+	 * @return False, if the keys do not fit into the node with the new range, which happens only
+	 *         if the new range is wider than the current one.
+	 * @throws IndexFormatCorruptException Thrown, if a key in the node is outside of the range.
+	 */
+	public boolean setKeyRange(DataField lowestKey, DataField highestKey)
+	{
+		checkExpired();
+		if (!this.keys.setRange(lowestKey, highestKey, this.numKeys)) {
+			return false;
+		}
+		this.modified = true;
+		return true;
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                                 pointers
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#getPointer(int)
+	 */
+	@Override
+	public int getPointer(int position)
+	{
+		checkExpired();
+		if (position < 0 || position > this.numKeys) {
+			throw new IndexOutOfBoundsException("Pointer position '" + position +
+					"' is out of range [0, " + this.numKeys + "]");
+		}
+		return IntField.getIntFromBinary(getBuffer(), pointerOffset(position));
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#setPointer(int, int)
+	 */
+	@Override
+	public void setPointer(int position, int pageNumber)
+	{
+		checkExpired();
+		if (position < 0 || position > this.numKeys) {
+			throw new IndexOutOfBoundsException("Pointer position '" + position +
+					"' is out of range [0, " + this.numKeys + "]");
+		}
+		IntField.encodeIntAsBinary(pageNumber, getBuffer(), pointerOffset(position));
+		this.modified = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#getChildPageForKey(de.tuberlin.dima.minidb.core.DataField)
+	 */
+	@Override
+	public int getChildPageForKey(DataField key)
+	{
+		checkExpired();
+		int pos = getPointerPositionForKey(key);
+		if (pos == -1) {
+			throw new IllegalStateException("Attempting to lookup the child on an empty page.");
+		}
+		return IntField.getIntFromBinary(getBuffer(), pointerOffset(pos));
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#getChildWithKeyAndPosition(de.tuberlin.dima.minidb.core.DataField)
+	 */
+	@Override
+	public KeyPageNumberPosition getChildWithKeyAndPosition(DataField key)
+	{
+		checkExpired();
+		int pos = getPointerPositionForKey(key);
+		if (pos == -1) {
+			throw new IllegalStateException("Attempting to lookup the child on an empty page.");
+		}
+		int pageNumber = IntField.getIntFromBinary(getBuffer(), pointerOffset(pos));
+		return new KeyPageNumberPosition(pos == this.numKeys ? null : this.keys.getKey(pos), pageNumber, pos);
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                          Initialization
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Initializes the contents of the node to be a single key and two corresponding pointers.
+	 * The range of keys of the node stays as it is.
+	 *
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#initRootState(de.tuberlin.dima.minidb.core.DataField, int, int)
+	 */
+	@Override
+	public void initRootState(DataField key, int firstPointer, int secondPointer)
+	{
+		checkExpired();
+
+		this.keys.remove(0, this.numKeys, this.numKeys);
+		int offset = this.keys.insert(key, 0, 0);
+		if (offset < 0) {
+			throw new IndexFormatCorruptException("The key does not fit onto the empty node.");
+		}
+		IntField.encodeIntAsBinary(firstPointer, getBuffer(), HEADER_FIRST_POINTER_OFFSET);
+		IntField.encodeIntAsBinary(secondPointer, getBuffer(), offset);
+		setNumberOfKeys(1);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#moveLastToNewPage(de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage, int)
+	 */
+	@Override
+	public DataField moveLastToNewPage(BTreeInnerNodePage newInnerNode, int num) throws PageFormatException
+	{
+		checkExpired();
+
+		// checks
+		if (num < 2) {
+			throw new IllegalArgumentException("The number of keys to move must be at least 2");
+		}
+		else if (this.numKeys == 0) {
+			throw new IllegalStateException("Method moveLastToNewPage(...) is not applicable to empty nodes.");
+		}
+		else if (num > this.numKeys) {
+			throw new IllegalArgumentException("Cannot move " + num + " keys/pointers. Not enough keys/pointers on this node.");
+		}
+		else if (!(newInnerNode instanceof CompressedBTreeInnerNodePage)) {
+			throw new IllegalArgumentException("Incompatible nodes from indexes of a different schema.");
+		}
+		CompressedBTreeInnerNodePage target = (CompressedBTreeInnerNodePage) newInnerNode;
+
+		// the pointer behind the dropped key becomes the first pointer of the new node
+		int dropped = this.numKeys - num;
+		DataField droppedKey = this.keys.getKey(dropped);
+		int firstPointer = IntField.getIntFromBinary(getBuffer(), pointerOffset(dropped + 1));
+
+		// the new node is empty, so the keys always fit
+		if (!this.keys.moveTo(target.keys, dropped + 1, num - 1, this.numKeys, 0, 0)) {
+			throw new IndexFormatCorruptException("The keys do not fit onto the empty node.");
+		}
+		IntField.encodeIntAsBinary(firstPointer, target.getBuffer(), HEADER_FIRST_POINTER_OFFSET);
+		target.setNumberOfKeys(num - 1);
+		setNumberOfKeys(dropped);
+
+		return droppedKey;
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                                Inserts
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Inserts a (key/pointer) pair at the given position. The method returns false, if there is not
+	 * enough space left for the key.
+	 *
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#insertKeyPageNumberPairAtPosition(de.tuberlin.dima.minidb.core.DataField, int, int)
+	 */
+	@Override
+	public boolean insertKeyPageNumberPairAtPosition(DataField key, int pageNumber, int keyPosition)
+	{
+		checkExpired();
+
+		// range check
+		if (keyPosition < 0 || keyPosition > this.numKeys) {
+			throw new IndexOutOfBoundsException("Key position '" + keyPosition + "' is out of range [0, " + this.numKeys + "].");
+		}
+
+		int offset = this.keys.insert(key, keyPosition, this.numKeys);
+		if (offset < 0) {
+			return false;
+		}
+		IntField.encodeIntAsBinary(pageNumber, getBuffer(), offset);
+		setNumberOfKeys(this.numKeys + 1);
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#getInsertPositionForKey(de.tuberlin.dima.minidb.core.DataField)
+	 */
+	@Override
+	public int getInsertPositionForKey(DataField key)
+	{
+		checkExpired();
+		int pos = getPointerPositionForKey(key);
+		if (pos == -1) {
+			throw new IllegalStateException("The method cannot be executed on an empty node");
+		}
+		return pos;
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                              Deletion
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#deleteKeyAndPointer(int)
+	 */
+	@Override
+	public void deleteKeyAndPointer(int keyPosition)
+	{
+		// range check
+		if (keyPosition < 0 || keyPosition >= this.numKeys) {
+			throw new IndexOutOfBoundsException("Key position '" + keyPosition + "' is out of range [0, " + this.numKeys + ").");
+		}
+		this.keys.remove(keyPosition, 1, this.numKeys);
+		setNumberOfKeys(this.numKeys - 1);
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                                splits
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Gets the position of the middle key that divides the keys, including the new one, into
+	 * two parts of about the same number of bytes.
+	 *
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#getSplitPosition(de.tuberlin.dima.minidb.core.DataField, int)
+	 */
+	@Override
+	public int getSplitPosition(DataField newKey, int newKeyPosition)
+	{
+		checkExpired();
+		if (this.numKeys < 3) {
+			return super.getSplitPosition(newKey, newKeyPosition);
+		}
+
+		int[] sizes = new int[this.numKeys + 1];
+		int total = 0;
+		for (int i = 0, k = 0; i < sizes.length; i++) {
+			sizes[i] = i == newKeyPosition ? this.keys.getEntrySize(newKey) : this.keys.getEntrySize(k++);
+			total += sizes[i];
+		}
+
+		// keep at least one key on either side of the middle key
+		int best = 1;
+		int bestDifference = Integer.MAX_VALUE;
+		int lower = sizes[0];
+		for (int middle = 1; middle <= this.numKeys - 2; middle++) {
+			int difference = Math.abs(lower - (total - lower - sizes[middle]));
+			if (difference < bestDifference) {
+				best = middle;
+				bestDifference = difference;
+			}
+			lower += sizes[middle];
+		}
+		return best;
+	}
+
+	/**
+	 * Narrows the ranges of this node and its new right sibling to the separator, which
+	 * lengthens their prefixes.
+	 *
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage#divideKeyRange(de.tuberlin.dima.minidb.io.index.BTreeInnerNodePage, de.tuberlin.dima.minidb.core.DataField)
+	 */
+	@Override
+	public void divideKeyRange(BTreeInnerNodePage rightSibling, DataField separator)
+	{
+		checkExpired();
+		if (!(rightSibling instanceof CompressedBTreeInnerNodePage)) {
+			throw new IllegalArgumentException("Incompatible nodes from indexes of a different schema.");
+		}
+		CompressedBTreeInnerNodePage right = (CompressedBTreeInnerNodePage) rightSibling;
+		this.keys.divideRange(right.keys, separator, this.numKeys, right.numKeys);
+		this.modified = true;
+		right.modified = true;
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	private void checkExpired()
+	{
+		if (Constants.DEBUG_CHECK && isExpired()) {
+			throw new PageExpiredException();
+		}
+	}
+
+	/**
+	 * Gets the offset of the pointer at the given position, which is in the slot of the key
+	 * before it, or in the header for the first pointer.
+	 */
+	private int pointerOffset(int position)
+	{
+		return position == 0 ? HEADER_FIRST_POINTER_OFFSET : this.keys.slotOffset(position - 1);
+	}
+
+	/**
+	 * Gets the position of the pointer that leads to the child relevant for the given key.
+	 *
+	 * @return The position of the pointer to the child that contains the first occurrence
+	 *         of the given key, or -1, if the node is empty.
+	 */
+	private int getPointerPositionForKey(DataField key)
+	{
+		if (this.numKeys < 1) {
+			return -1;
+		}
+
+		int pos = this.keys.search(key, this.numKeys);
+		if (pos < 0) {
+			// key not found. the next larger key is relevant.
+			return -(pos + 1);
+		}
+		else if (!this.unique) {
+			// track back to the first occurrence.
+			while (pos > 0 && this.keys.compare(key, pos - 1) == 0) {
+				pos--;
+			}
+		}
+		return pos;
+	}
+
+	private void setNumberOfKeys(int numKeys)
+	{
+		this.numKeys = numKeys;
+		IntField.encodeIntAsBinary(numKeys, getBuffer(), HEADER_NUM_KEYS_OFFSET);
+		this.modified = true;
+	}
+}
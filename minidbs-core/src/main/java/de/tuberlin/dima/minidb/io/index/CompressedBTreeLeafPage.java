@@ -0,0 +1,549 @@
+package de.tuberlin.dima.minidb.io.index;
+
+
+import java.util.List;
+
+import de.tuberlin.dima.minidb.Constants;
+import de.tuberlin.dima.minidb.catalogue.IndexSchema;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DuplicateException;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.core.RID;
+import de.tuberlin.dima.minidb.io.cache.PageExpiredException;
+import de.tuberlin.dima.minidb.io.cache.PageFormatException;
+
+
+/**
+ * A leaf page of a B-Tree index with compressed keys (see {@link IndexSchema#hasCompressedKeys()}).
+ * The page stores the keys in variable length slots, leaving out the prefix that all keys of the
+ * page share and the blanks at their end, so that considerably more entries fit onto a page than
+ * the fixed width layout of the {@link BTreeLeafPage} allows, when the keys are long CHAR values.
+ *
+ * The page has the header of the basic leaf page, with the following differences:
+ * <ul>
+ *   <li>Bytes 8 - 11 hold the type value 4.</li>
+ *   <li>Bytes 32 - 47 describe the prefix, the range of keys of the page, and the key heap,
+ *       followed by the slots of the entries, each holding the RID and the position of the
+ *       key on the heap.</li>
+ * </ul>
+ *
+ * How many entries fit onto the page depends on the keys. Inserts and moves therefore fail
+ * due to a lack of space and not due to a maximal number of entries. The maximal number of
+ * entries in the {@link IndexSchema} is only the number that fits for keys of average length.
+ */
+public class CompressedBTreeLeafPage extends BTreeLeafPage
+{
+	// ------------------------------------------------------------------------
+	//                         public constants
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The constant indicating a compressed leaf page when found in the header.
+	 */
+	public static final int HEADER_TYPE_VALUE = 4;
+
+
+	// ------------------------------------------------------------------------
+	//                         private constants
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The offset of the field holding the entries counter.
+	 */
+	private static final int HEADER_NUM_ENTRIES_OFFSET = 12;
+
+
+	// ------------------------------------------------------------------------
+	//                             attributes
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The keys and RIDs on the page.
+	 */
+	private final CompressedKeys keys;
+
+	/**
+	 * The current number of entries.
+	 */
+	private int numEntries;
+
+	/**
+	 * Flag indicating this index page has unique keys
+	 */
+	private final boolean unique;
+
+	/**
+	 * A flag describing if the entries of the page have been modified since its creation.
+	 */
+	private boolean modified;
+
+
+	// ------------------------------------------------------------------------
+	//                           constructors & set up
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a new compressed leaf page wrapping the binary data in the given buffer.
+	 *
+	 * @param schema The schema of the index that the leaf page data in the buffer belongs to.
+	 * @param buffer The buffer with the binary page data.
+	 * @throws PageFormatException Thrown, if the buffer does not contain a consistent compressed page.
+	 */
+	public CompressedBTreeLeafPage(IndexSchema schema, byte[] buffer) throws PageFormatException
+	{
+		super(schema, buffer);
+		this.keys = new CompressedKeys(buffer, schema.getKeyType(),
+		                               schema.getPageSize().getNumberOfBytes(), RID.getRIDSize());
+		this.numEntries = IntField.getIntFromBinary(buffer, HEADER_NUM_ENTRIES_OFFSET);
+		this.unique = schema.isUnique();
+		this.modified = false;
+
+		if (!this.keys.isValid(this.numEntries)) {
+			throw new PageFormatException("The compressed leaf page has an inconsistent key area.");
+		}
+	}
+
+	/**
+	 * Initializes the area of the keys on a new, empty page.
+	 *
+	 * @param schema The schema of the index.
+	 * @param buffer The buffer with the binary page data.
+	 */
+	static void initKeys(IndexSchema schema, byte[] buffer)
+	{
+		new CompressedKeys(buffer, schema.getKeyType(),
+		                   schema.getPageSize().getNumberOfBytes(), RID.getRIDSize()).init();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.tuberlin.dima.minidb.io.cache.CacheableData#hasBeenModified()
+	 */
+	@Override
+	public boolean hasBeenModified()
+	{
+		return this.modified || super.hasBeenModified();
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                               lookups
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getNumberOfEntries()
+	 */
+	@Override
+	public int getNumberOfEntries()
+	{
+		checkExpired();
+		return this.numEntries;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getFirstKey()
+	 */
+	@Override
+	public DataField getFirstKey()
+	{
+		checkExpired();
+		return this.numEntries == 0 ? null : this.keys.getKey(0);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getLastKey()
+	 */
+	@Override
+	public DataField getLastKey()
+	{
+		checkExpired();
+		return this.numEntries == 0 ? null : this.keys.getKey(this.numEntries - 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getKey(int)
+	 */
+	@Override
+	public DataField getKey(int position)
+	{
+		checkExpired();
+		if (position < 0 || position >= this.numEntries) {
+			throw new IndexOutOfBoundsException("position is not within valid range.");
+		}
+		return this.keys.getKey(position);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getPositionForKey(de.tuberlin.dima.minidb.core.DataField)
+	 */
+	@Override
+	public int getPositionForKey(DataField key)
+	{
+		checkExpired();
+
+		int pos = this.keys.search(key, this.numEntries);
+		if (pos >= 0) {
+			// move to the leftmost occurrence of the key
+			while (pos > 0 && this.keys.compare(key, pos - 1) == 0) {
+				pos--;
+			}
+			return pos;
+		} else {
+			return -(pos + 1);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getPositionAfterKey(de.tuberlin.dima.minidb.core.DataField)
+	 */
+	@Override
+	public int getPositionAfterKey(DataField key)
+	{
+		checkExpired();
+
+		int pos = this.keys.search(key, this.numEntries);
+		if (pos >= 0) {
+			// move behind the rightmost occurrence of the key
+			pos++;
+			while (pos < this.numEntries && this.keys.compare(key, pos) == 0) {
+				pos++;
+			}
+			return pos;
+		} else {
+			return -(pos + 1);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getRidAtPosition(int)
+	 */
+	@Override
+	public RID getRidAtPosition(int position)
+	{
+		checkExpired();
+		if (position < 0 || position >= this.numEntries) {
+			throw new IndexOutOfBoundsException("position is not within valid range.");
+		}
+		return RID.getRidFromBinary(getBuffer(), this.keys.slotOffset(position));
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getRidIdsAtPositions(int, int, long[])
+	 */
+	@Override
+	public void getRidIdsAtPositions(int position, int num, long[] target)
+	{
+		checkExpired();
+		if (position < 0 || num < 0 || position + num > this.numEntries) {
+			throw new IndexOutOfBoundsException("positions are not within valid range.");
+		}
+
+		final byte[] buffer = getBuffer();
+		for (int i = 0; i < num; i++) {
+			target[i] = RID.getRidIdFromBinary(buffer, this.keys.slotOffset(position + i));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getRIDForKey(de.tuberlin.dima.minidb.core.DataField)
+	 */
+	@Override
+	public RID getRIDForKey(DataField key) throws PageFormatException
+	{
+		checkExpired();
+
+		int pos = this.keys.search(key, this.numEntries);
+		return pos >= 0 ? RID.getRidFromBinary(getBuffer(), this.keys.slotOffset(pos)) : null;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getAllsRIDsForKey(de.tuberlin.dima.minidb.core.DataField, java.util.List)
+	 */
+	@Override
+	public boolean getAllsRIDsForKey(DataField key, List<RID> target) throws PageFormatException
+	{
+		checkExpired();
+
+		int pos = this.keys.search(key, this.numEntries);
+		if (pos < 0) {
+			return false;
+		}
+
+		final byte[] buffer = getBuffer();
+		// the order of the RIDs for the same key is undefined, so first go left, then right
+		for (int p = pos; p >= 0 && this.keys.compare(key, p) == 0; p--) {
+			target.add(RID.getRidFromBinary(buffer, this.keys.slotOffset(p)));
+		}
+		for (pos++; pos < this.numEntries && this.keys.compare(key, pos) == 0; pos++) {
+			target.add(RID.getRidFromBinary(buffer, this.keys.slotOffset(pos)));
+		}
+
+		// check if this was the last (highest) key on the page.
+		return pos == this.numEntries;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getAllKeys(java.util.List, int)
+	 */
+	@Override
+	public void getAllKeys(List<DataField> target, int startPosition)
+	{
+		checkExpired();
+		if (startPosition < 0 || startPosition >= this.numEntries) {
+			throw new IllegalArgumentException("The start position is out of bounds.");
+		}
+
+		for (int position = startPosition; position < this.numEntries; position++) {
+			target.add(this.keys.getKey(position));
+		}
+	}
+
+	/**
+	 * Gets the number of bytes that are left for further entries on this page.
+	 *
+	 * @return The number of free bytes.
+	 */
+	public int getFreeSpace()
+	{
+		checkExpired();
+		return this.keys.getFreeSpace(this.numEntries);
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                            modifications
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#insertKeyRIDPair(de.tuberlin.dima.minidb.core.DataField, de.tuberlin.dima.minidb.core.RID)
+	 */
+	@Override
+	public boolean insertKeyRIDPair(DataField key, RID rid) throws PageFormatException
+	{
+		checkExpired();
+
+		int pos = this.keys.search(key, this.numEntries);
+		if (pos < 0) {
+			// key not yet contained. make pos the insertion point.
+			pos = -(pos + 1);
+		}
+		else if (this.unique) {
+			throw new DuplicateException("Key " + key + " is already contained.");
+		}
+
+		int offset = this.keys.insert(key, pos, this.numEntries);
+		if (offset < 0) {
+			return false;
+		}
+		rid.encodeBinary(getBuffer(), offset);
+		setNumberOfEntries(this.numEntries + 1);
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#deleteKeyRIDPair(de.tuberlin.dima.minidb.core.DataField, de.tuberlin.dima.minidb.core.RID)
+	 */
+	@Override
+	public boolean deleteKeyRIDPair(DataField key, RID rid) throws PageFormatException
+	{
+		checkExpired();
+
+		int pos = this.keys.search(key, this.numEntries);
+		if (pos < 0) {
+			return false;
+		}
+
+		final byte[] buffer = getBuffer();
+		final long ridId = rid.getID();
+		// go left and right from the found position until the key/RID pair is found
+		for (int p = pos; p >= 0 && this.keys.compare(key, p) == 0; p--) {
+			if (RID.getRidIdFromBinary(buffer, this.keys.slotOffset(p)) == ridId) {
+				deletePosition(p);
+				return true;
+			}
+			else if (this.unique) {
+				return false;
+			}
+		}
+		for (int p = pos + 1; p < this.numEntries && this.keys.compare(key, p) == 0; p++) {
+			if (RID.getRidIdFromBinary(buffer, this.keys.slotOffset(p)) == ridId) {
+				deletePosition(p);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#appendEntriesFromOtherPage(de.tuberlin.dima.minidb.io.index.BTreeLeafPage, int)
+	 */
+	@Override
+	public boolean appendEntriesFromOtherPage(BTreeLeafPage other, int num)
+	throws PageFormatException, IndexFormatCorruptException
+	{
+		checkExpired();
+		CompressedBTreeLeafPage source = checkSource(other, num);
+		if (num <= 0) {
+			return true;
+		}
+
+		// sanity check
+		DataField ourLast = getLastKey();
+		if (ourLast != null && ourLast.compareTo(source.getFirstKey()) > 0) {
+			throw new IndexFormatCorruptException("Keys to append are smaller the last keys");
+		}
+
+		if (!source.keys.moveTo(this.keys, 0, num, source.numEntries, this.numEntries, this.numEntries)) {
+			return false;
+		}
+		setNumberOfEntries(this.numEntries + num);
+		source.setNumberOfEntries(source.numEntries - num);
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#prependEntriesFromOtherPage(de.tuberlin.dima.minidb.io.index.BTreeLeafPage, int)
+	 */
+	@Override
+	public boolean prependEntriesFromOtherPage(BTreeLeafPage other, int num)
+	throws PageFormatException, IndexFormatCorruptException
+	{
+		checkExpired();
+		CompressedBTreeLeafPage source = checkSource(other, num);
+		if (num <= 0) {
+			return true;
+		}
+
+		// sanity check
+		DataField ourFirst = getFirstKey();
+		if (ourFirst != null && source.getLastKey().compareTo(ourFirst) > 0) {
+			throw new IndexFormatCorruptException("Keys to prepend are larger this node's first keys");
+		}
+
+		if (!source.keys.moveTo(this.keys, source.numEntries - num, num, source.numEntries, 0, this.numEntries)) {
+			return false;
+		}
+		setNumberOfEntries(this.numEntries + num);
+		source.setNumberOfEntries(source.numEntries - num);
+		return true;
+	}
+
+	/**
+	 * Sets the range of keys that this page may hold. The range determines the prefix that the
+	 * keys share, so a narrow range lets more entries fit. The keys of all entries that are
+	 * inserted later must be within the range. A key of null leaves the range open at that end.
+	 *
+	 * @param lowestKey The lowest key that the page may hold, or null.
+	 * @param highestKey The highest key that the page may hold, or null.
+	 * @return False, if the entries do not fit onto the page with the new range, which happens only
+	 *         if the new range is wider than the current one.
+	 * @throws IndexFormatCorruptException Thrown, if a key on the page is outside of the range.
+	 */
+	public boolean setKeyRange(DataField lowestKey, DataField highestKey)
+	{
+		checkExpired();
+		if (!this.keys.setRange(lowestKey, highestKey, this.numEntries)) {
+			return false;
+		}
+		this.modified = true;
+		return true;
+	}
+
+	/**
+	 * Gets the shortest key that separates the keys on this page from the given larger key, which
+	 * is the key that is used as the separator in the parent node, if a page with that key
+	 * follows this one.
+	 *
+	 * @param nextKey The first key of the following page.
+	 * @return The separating key, which is not smaller than the last key on this page and smaller
+	 *         than the given key, unless the two are equal.
+	 */
+	public DataField getSeparatorKey(DataField nextKey)
+	{
+		checkExpired();
+		return this.keys.getSeparator(getLastKey(), nextKey);
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                                splits
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Gets the position that divides the entries into two halves of about the same number of bytes.
+	 *
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#getSplitPosition()
+	 */
+	@Override
+	public int getSplitPosition()
+	{
+		checkExpired();
+		return this.numEntries < 2 ? this.numEntries : this.keys.getMiddlePosition(this.numEntries);
+	}
+
+	/**
+	 * Truncates the separator to the shortest key between the two pages and narrows the ranges of
+	 * both pages to the separator, which lengthens their prefixes.
+	 *
+	 * @see de.tuberlin.dima.minidb.io.index.BTreeLeafPage#divideKeyRange(de.tuberlin.dima.minidb.io.index.BTreeLeafPage)
+	 */
+	@Override
+	public DataField divideKeyRange(BTreeLeafPage rightSibling)
+	{
+		checkExpired();
+		CompressedBTreeLeafPage right = checkSource(rightSibling, 0);
+		if (this.numEntries == 0 || right.numEntries == 0) {
+			return getLastKey();
+		}
+
+		DataField separator = this.keys.getSeparator(getLastKey(), right.getFirstKey());
+		this.keys.divideRange(right.keys, separator, this.numEntries, right.numEntries);
+		this.modified = true;
+		right.modified = true;
+		return separator;
+	}
+
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	private void checkExpired()
+	{
+		if (Constants.DEBUG_CHECK && isExpired()) {
+			throw new PageExpiredException();
+		}
+	}
+
+	/**
+	 * Checks that the other page is a compressed leaf page with enough entries.
+	 */
+	private CompressedBTreeLeafPage checkSource(BTreeLeafPage other, int num)
+	{
+		if (!(other instanceof CompressedBTreeLeafPage)) {
+			throw new IllegalArgumentException("Entries can only be moved between compressed leaf pages.");
+		}
+		CompressedBTreeLeafPage source = (CompressedBTreeLeafPage) other;
+		if (source.numEntries < num) {
+			throw new IllegalArgumentException("Source does not contain enough entries.");
+		}
+		return source;
+	}
+
+	/**
+	 * Deletes the entry (key/rid) at the given position.
+	 */
+	private void deletePosition(int pos)
+	{
+		this.keys.remove(pos, 1, this.numEntries);
+		setNumberOfEntries(this.numEntries - 1);
+	}
+
+	private void setNumberOfEntries(int numEntries)
+	{
+		this.numEntries = numEntries;
+		IntField.encodeIntAsBinary(numEntries, getBuffer(), HEADER_NUM_ENTRIES_OFFSET);
+		this.modified = true;
+	}
+}
@@ -0,0 +1,842 @@
+package de.tuberlin.dima.minidb.io.index;
+
+
+import de.tuberlin.dima.minidb.core.CharField;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataType;
+
+
+/**
+ * The compressed CHAR keys of an index page, together with a fixed size payload per key (the
+ * RID in a leaf, the child pointer in an inner node). The keys are not stored at the full width
+ * of the column: the blanks at their end are dropped, and the prefix that all keys on the page
+ * share is stored only once. That prefix is the common prefix of the page's fence keys, the lowest
+ * and the highest key that the page may hold, so that every key that an insert directs to the page
+ * shares it as well. A page whose range is open at one end has no prefix.
+ * <p>
+ * The area starts behind the generic index page header:
+ * <ul>
+ *   <li>Bytes 32 - 35 hold the offset and the length in characters (two unsigned SHORTs, little
+ *       endian) of the prefix.</li>
+ *   <li>Bytes 36 - 39 hold the offset and the length of the remainder of the low fence key behind
+ *       the prefix. A length of 0xFFFF indicates that the range has no lower bound.</li>
+ *   <li>Bytes 40 - 43 hold the same for the high fence key.</li>
+ *   <li>Bytes 44 - 47 are an INT (little endian) holding the offset of the lowest byte of the key
+ *       heap, which grows from the end of the page towards the slots.</li>
+ *   <li>From byte 48 on follow the slots in the order of the keys, each holding the payload and
+ *       then the offset and the length in characters of the key's remainder behind the prefix.</li>
+ * </ul>
+ * The characters are encoded like in {@link CharField}. Deleted keys leave their characters on the
+ * heap until the space is needed, at which point the heap is rebuilt.
+ */
+final class CompressedKeys
+{
+	/**
+	 * The offset of the first slot.
+	 */
+	static final int SLOTS_OFFSET = 48;
+
+	/**
+	 * The offsets of the descriptors (offset and length) of the prefix and the fence keys.
+	 */
+	private static final int PREFIX_DESCRIPTOR_OFFSET = 32;
+	private static final int LOW_FENCE_DESCRIPTOR_OFFSET = 36;
+	private static final int HIGH_FENCE_DESCRIPTOR_OFFSET = 40;
+
+	/**
+	 * The offset of the field holding the start of the key heap.
+	 */
+	private static final int HEAP_START_OFFSET = 44;
+
+	/**
+	 * The length that marks a missing fence key.
+	 */
+	private static final int NO_FENCE = 0xFFFF;
+
+	/**
+	 * The character that pads CHAR values.
+	 */
+	private static final char BLANK = ' ';
+
+	/**
+	 * The characters that stand for the NULL value, which sorts before all other values.
+	 */
+	private static final String NULL_CHARS = "\u0000";
+
+
+	/**
+	 * The buffer containing the binary page data.
+	 */
+	private final byte[] buffer;
+
+	/**
+	 * The data type of the keys.
+	 */
+	private final DataType keyType;
+
+	/**
+	 * The number of characters of a key.
+	 */
+	private final int keyLength;
+
+	/**
+	 * The size of the page in bytes.
+	 */
+	private final int pageSize;
+
+	/**
+	 * The number of bytes of the payload of a key.
+	 */
+	private final int payloadSize;
+
+	/**
+	 * The number of bytes of a slot.
+	 */
+	private final int slotSize;
+
+
+	/**
+	 * Creates the keys on the given page.
+	 *
+	 * @param buffer The buffer with the binary page data.
+	 * @param keyType The data type of the keys, which must be a CHAR type.
+	 * @param pageSize The size of the page in bytes.
+	 * @param payloadSize The number of bytes of the payload of each key.
+	 */
+	CompressedKeys(byte[] buffer, DataType keyType, int pageSize, int payloadSize)
+	{
+		this.buffer = buffer;
+		this.keyType = keyType;
+		this.keyLength = keyType.getLength();
+		this.pageSize = pageSize;
+		this.payloadSize = payloadSize;
+		this.slotSize = payloadSize + 4;
+	}
+
+	/**
+	 * Initializes the area of an empty page with an open key range.
+	 */
+	void init()
+	{
+		putShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET, 0);
+		putShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2, 0);
+		putShort(this.buffer, LOW_FENCE_DESCRIPTOR_OFFSET, 0);
+		putShort(this.buffer, LOW_FENCE_DESCRIPTOR_OFFSET + 2, NO_FENCE);
+		putShort(this.buffer, HIGH_FENCE_DESCRIPTOR_OFFSET, 0);
+		putShort(this.buffer, HIGH_FENCE_DESCRIPTOR_OFFSET + 2, NO_FENCE);
+		setHeapStart(this.pageSize);
+	}
+
+	/**
+	 * Checks that the descriptors of the area point into the page.
+	 *
+	 * @param num The number of keys on the page.
+	 * @return True, if the area is consistent with the given number of keys.
+	 */
+	boolean isValid(int num)
+	{
+		int heapStart = getHeapStart();
+		return num >= 0 && heapStart <= this.pageSize && slotOffset(num) <= heapStart;
+	}
+
+	// ------------------------------------------------------------------------
+	//                               lookups
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Gets the offset of the slot at the given position, where the payload of the key starts.
+	 *
+	 * @param position The position of the key.
+	 * @return The offset of the payload of the key.
+	 */
+	int slotOffset(int position)
+	{
+		return SLOTS_OFFSET + position * this.slotSize;
+	}
+
+	/**
+	 * Gets the key at the given position.
+	 *
+	 * @param position The position of the key.
+	 * @return The key, padded to the full width of the column.
+	 */
+	DataField getKey(int position)
+	{
+		int prefixOffset = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET);
+		int prefixLength = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+		int slot = slotOffset(position) + this.payloadSize;
+		int offset = getShort(this.buffer, slot);
+		int length = getShort(this.buffer, slot + 2);
+
+		char[] chars = new char[this.keyLength];
+		for (int j = 0; j < chars.length; j++) {
+			chars[j] = keyChar(this.buffer, prefixOffset, prefixLength, offset, length, j);
+		}
+		return toField(chars);
+	}
+
+	/**
+	 * Compares the given key with the key at the given position, like the key's
+	 * <code>compareTo()</code> method compares it with the decoded key.
+	 *
+	 * @param key The key to compare.
+	 * @param position The position of the key on the page.
+	 * @return A negative value, zero, or a positive value, if the given key is smaller, equal, or
+	 *         larger than the key at the position.
+	 */
+	int compare(DataField key, int position)
+	{
+		int prefixOffset = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET);
+		int prefixLength = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+		return compare(((CharField) key).getValue(), 0, position, prefixOffset, prefixLength);
+	}
+
+	/**
+	 * Finds the position of a key, or gives the insertion position.
+	 * The algorithm is that of <code>Arrays.binarySearch()</code>. The key is compared with the
+	 * prefix only once, which decides the search alone if they differ.
+	 *
+	 * @param key The key to search for.
+	 * @param num The number of keys on the page.
+	 * @return The position of the key or (-(insertion position) - 1), if the key
+	 *         was not found.
+	 */
+	int search(DataField key, int num)
+	{
+		String value = ((CharField) key).getValue();
+		int prefixOffset = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET);
+		int prefixLength = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+
+		int from = 0;
+		if (value != null && prefixLength > 0) {
+			if (getChar(this.buffer, prefixOffset) == 0) {
+				// only NULL values on the page
+				return -(num + 1);
+			}
+			int n = Math.min(value.length(), prefixLength);
+			for (; from < n; from++) {
+				char c = getChar(this.buffer, prefixOffset + 2 * from);
+				char t = value.charAt(from);
+				if (t != c) {
+					return t < c ? -1 : -(num + 1);
+				}
+			}
+		}
+
+		int low = 0;
+		int high = num - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(value, from, mid, prefixOffset, prefixLength);
+			if (cmp > 0) {
+				low = mid + 1;
+			}
+			else if (cmp < 0) {
+				high = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Gets the number of bytes that are still free on the page, including the space of deleted keys.
+	 *
+	 * @param num The number of keys on the page.
+	 * @return The number of free bytes.
+	 */
+	int getFreeSpace(int num)
+	{
+		int used = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2) + fenceLength(LOW_FENCE_DESCRIPTOR_OFFSET) +
+		           fenceLength(HIGH_FENCE_DESCRIPTOR_OFFSET);
+		for (int i = 0; i < num; i++) {
+			used += getShort(this.buffer, slotOffset(i) + this.payloadSize + 2);
+		}
+		return this.pageSize - slotOffset(num) - 2 * used;
+	}
+
+	/**
+	 * Gets the number of bytes that the key at the given position occupies, including its slot.
+	 *
+	 * @param position The position of the key.
+	 * @return The number of bytes of the key.
+	 */
+	int getEntrySize(int position)
+	{
+		return this.slotSize + 2 * getShort(this.buffer, slotOffset(position) + this.payloadSize + 2);
+	}
+
+	/**
+	 * Gets the number of bytes that the given key would occupy on the page, including its slot.
+	 *
+	 * @param key The key.
+	 * @return The number of bytes of the key.
+	 */
+	int getEntrySize(DataField key)
+	{
+		int prefixLength = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+		return this.slotSize + 2 * Math.max(0, significantLength(valueOf(key)) - prefixLength);
+	}
+
+	/**
+	 * Gets the position that divides the keys into two parts of about the same number of bytes.
+	 *
+	 * @param num The number of keys on the page, at least two.
+	 * @return The position of the first key of the upper part, between 1 and <code>num - 1</code>.
+	 */
+	int getMiddlePosition(int num)
+	{
+		int total = 0;
+		for (int i = 0; i < num; i++) {
+			total += getEntrySize(i);
+		}
+		int lower = getEntrySize(0);
+		int position = 1;
+		// move the border up while that brings the lower part closer to half
+		while (position < num - 1 && Math.abs(2 * (lower + getEntrySize(position)) - total) < Math.abs(2 * lower - total)) {
+			lower += getEntrySize(position++);
+		}
+		return position;
+	}
+
+	// ------------------------------------------------------------------------
+	//                            modifications
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Inserts a key at the given position. The caller writes the payload to the returned offset.
+	 *
+	 * @param key The key to insert.
+	 * @param position The position of the key.
+	 * @param num The number of keys on the page.
+	 * @return The offset of the payload of the new key, or -1, if there is no space left.
+	 */
+	int insert(DataField key, int position, int num)
+	{
+		String value = valueOf(key);
+		if (!include(value, num)) {
+			return -1;
+		}
+		int prefixLength = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+		int length = Math.max(0, significantLength(value) - prefixLength);
+		if (!makeSpace(this.slotSize + 2 * length, num)) {
+			return -1;
+		}
+
+		int offset = getHeapStart() - 2 * length;
+		for (int j = 0; j < length; j++) {
+			putChar(this.buffer, offset + 2 * j, value.charAt(prefixLength + j));
+		}
+		setHeapStart(offset);
+
+		int slot = slotOffset(position);
+		System.arraycopy(this.buffer, slot, this.buffer, slot + this.slotSize, (num - position) * this.slotSize);
+		putShort(this.buffer, slot + this.payloadSize, offset);
+		putShort(this.buffer, slot + this.payloadSize + 2, length);
+		return slot;
+	}
+
+	/**
+	 * Replaces the key at the given position, keeping its payload.
+	 *
+	 * @param key The new key.
+	 * @param position The position of the key.
+	 * @param num The number of keys on the page.
+	 * @return False, if there is no space left for the new key.
+	 */
+	boolean replace(DataField key, int position, int num)
+	{
+		String value = valueOf(key);
+		if (!include(value, num)) {
+			return false;
+		}
+		int prefixLength = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+		int length = Math.max(0, significantLength(value) - prefixLength);
+		if (!makeSpace(2 * length, num)) {
+			return false;
+		}
+
+		int offset = getHeapStart() - 2 * length;
+		for (int j = 0; j < length; j++) {
+			putChar(this.buffer, offset + 2 * j, value.charAt(prefixLength + j));
+		}
+		setHeapStart(offset);
+
+		int slot = slotOffset(position);
+		putShort(this.buffer, slot + this.payloadSize, offset);
+		putShort(this.buffer, slot + this.payloadSize + 2, length);
+		return true;
+	}
+
+	/**
+	 * Removes the keys at the given positions with their payload.
+	 *
+	 * @param position The position of the first key to remove.
+	 * @param count The number of keys to remove.
+	 * @param num The number of keys on the page.
+	 */
+	void remove(int position, int count, int num)
+	{
+		System.arraycopy(this.buffer, slotOffset(position + count), this.buffer, slotOffset(position),
+		                 (num - position - count) * this.slotSize);
+	}
+
+	/**
+	 * Moves keys with their payload to another page. An empty target page takes over the key range
+	 * of this page first.
+	 *
+	 * @param target The keys of the page to move the keys to.
+	 * @param from The position of the first key to move.
+	 * @param count The number of keys to move.
+	 * @param num The number of keys on this page.
+	 * @param targetPosition The position on the target page where the moved keys go.
+	 * @param targetNum The number of keys on the target page.
+	 * @return False, if there was not enough space on the target page, in which case no key moved.
+	 */
+	boolean moveTo(CompressedKeys target, int from, int count, int num, int targetPosition, int targetNum)
+	{
+		if (targetNum == 0) {
+			target.rebuild(0, getFence(LOW_FENCE_DESCRIPTOR_OFFSET), getFence(HIGH_FENCE_DESCRIPTOR_OFFSET));
+		}
+		// the keys are sorted, so all of them are in the target's range, if the outer ones are
+		if (!target.include(getValue(from), targetNum) || !target.include(getValue(from + count - 1), targetNum)) {
+			return false;
+		}
+
+		int prefixOffset = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET);
+		int prefixLength = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+		int prefixSignificant = significantLength(this.buffer, prefixOffset, prefixLength);
+		int targetPrefixLength = getShort(target.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+
+		int needed = count * this.slotSize;
+		for (int i = from; i < from + count; i++) {
+			needed += 2 * Math.max(0, significantLength(i, prefixLength, prefixSignificant) - targetPrefixLength);
+		}
+		if (!target.makeSpace(needed, targetNum)) {
+			return false;
+		}
+
+		int targetSlot = target.slotOffset(targetPosition);
+		System.arraycopy(target.buffer, targetSlot, target.buffer, targetSlot + count * this.slotSize,
+		                 (targetNum - targetPosition) * this.slotSize);
+		int heapStart = target.getHeapStart();
+		for (int i = from; i < from + count; i++, targetSlot += this.slotSize) {
+			int slot = slotOffset(i);
+			int offset = getShort(this.buffer, slot + this.payloadSize);
+			int length = getShort(this.buffer, slot + this.payloadSize + 2);
+			int newLength = Math.max(0, significantLength(i, prefixLength, prefixSignificant) - targetPrefixLength);
+
+			heapStart -= 2 * newLength;
+			for (int j = 0; j < newLength; j++) {
+				char c = keyChar(this.buffer, prefixOffset, prefixLength, offset, length, targetPrefixLength + j);
+				putChar(target.buffer, heapStart + 2 * j, c);
+			}
+			System.arraycopy(this.buffer, slot, target.buffer, targetSlot, this.payloadSize);
+			putShort(target.buffer, targetSlot + this.payloadSize, heapStart);
+			putShort(target.buffer, targetSlot + this.payloadSize + 2, newLength);
+		}
+		target.setHeapStart(heapStart);
+
+		remove(from, count, num);
+		return true;
+	}
+
+	// ------------------------------------------------------------------------
+	//                              key ranges
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Sets the range of keys that the page may hold, which determines the prefix, and rewrites
+	 * the keys accordingly. A key of null leaves the range open at that end.
+	 *
+	 * @param lowestKey The lowest key that the page may hold.
+	 * @param highestKey The highest key that the page may hold.
+	 * @param num The number of keys on the page.
+	 * @return False, if the keys do not fit onto the page with the prefix of the new range.
+	 * @throws IndexFormatCorruptException Thrown, if a key on the page is outside of the range.
+	 */
+	boolean setRange(DataField lowestKey, DataField highestKey, int num)
+	{
+		return rebuild(num, lowestKey == null ? null : valueOf(lowestKey), highestKey == null ? null : valueOf(highestKey));
+	}
+
+	/**
+	 * Divides the range of keys of this page at the given separator between this page and its new
+	 * right sibling, which holds the keys above the separator.
+	 *
+	 * @param rightSibling The keys of the right sibling.
+	 * @param separator The highest key of this page's new range and the lowest of the sibling's.
+	 * @param num The number of keys on this page.
+	 * @param rightNum The number of keys on the sibling.
+	 */
+	void divideRange(CompressedKeys rightSibling, DataField separator, int num, int rightNum)
+	{
+		String value = valueOf(separator);
+		// both ranges are within the former range, so the prefixes only grow and the keys fit
+		if (!rightSibling.rebuild(rightNum, value, getFence(HIGH_FENCE_DESCRIPTOR_OFFSET)) ||
+		    !rebuild(num, getFence(LOW_FENCE_DESCRIPTOR_OFFSET), value))
+		{
+			throw new IndexFormatCorruptException("The keys do not fit onto the pages of the divided key range.");
+		}
+	}
+
+	/**
+	 * Gets the shortest key that separates the given keys, which is a key that is at least as
+	 * large as the lower key and smaller than the upper key. If the keys are equal, the lower key
+	 * is returned.
+	 *
+	 * @param lower The lower key.
+	 * @param upper The upper key.
+	 * @return The separating key.
+	 */
+	DataField getSeparator(DataField lower, DataField upper)
+	{
+		String lowerValue = valueOf(lower);
+		String upperValue = valueOf(upper);
+		int common = commonPrefixLength(lowerValue, upperValue);
+		if (common == this.keyLength) {
+			return lower;
+		}
+
+		// the upper key cut behind the first character that differs is above the lower key
+		char[] chars = new char[this.keyLength];
+		for (int j = 0; j < chars.length; j++) {
+			chars[j] = j <= common ? charAt(upperValue, j) : BLANK;
+		}
+		String separator = new String(chars);
+		return compareValues(separator, upperValue) < 0 ? toField(chars) : lower;
+	}
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Widens the range of the page to include the given key, if the key is outside of the fences.
+	 * This happens only if the range was not set up to cover all keys directed to the page, or if
+	 * keys are moved between pages.
+	 *
+	 * @return False, if the keys do not fit onto the page with the shorter prefix.
+	 */
+	private boolean include(String value, int num)
+	{
+		String low = getFence(LOW_FENCE_DESCRIPTOR_OFFSET);
+		String high = getFence(HIGH_FENCE_DESCRIPTOR_OFFSET);
+		if (compareToFence(value, LOW_FENCE_DESCRIPTOR_OFFSET) < 0) {
+			low = value;
+		}
+		else if (compareToFence(value, HIGH_FENCE_DESCRIPTOR_OFFSET) > 0) {
+			high = value;
+		}
+		else {
+			return true;
+		}
+		return rebuild(num, low, high);
+	}
+
+	/**
+	 * Compares the given key with a fence key in place. An open end of the range compares as
+	 * equal, so that no key is outside of it.
+	 */
+	private int compareToFence(String value, int descriptorOffset)
+	{
+		int length = getShort(this.buffer, descriptorOffset + 2);
+		if (length == NO_FENCE) {
+			return 0;
+		}
+		int offset = getShort(this.buffer, descriptorOffset);
+		int prefixOffset = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET);
+		int prefixLength = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+		for (int j = 0; j < this.keyLength; j++) {
+			char c = charAt(value, j);
+			char f = keyChar(this.buffer, prefixOffset, prefixLength, offset, length, j);
+			if (c != f) {
+				return c - f;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Makes sure that the given number of bytes is free between the slots and the heap,
+	 * rebuilding the heap if deleted keys occupy the space.
+	 *
+	 * @return False, if there is not enough space on the page.
+	 */
+	private boolean makeSpace(int bytes, int num)
+	{
+		if (getHeapStart() - slotOffset(num) >= bytes) {
+			return true;
+		}
+		else if (getFreeSpace(num) < bytes) {
+			return false;
+		}
+		return rebuild(num, getFence(LOW_FENCE_DESCRIPTOR_OFFSET), getFence(HIGH_FENCE_DESCRIPTOR_OFFSET));
+	}
+
+	/**
+	 * Rewrites the heap for the given fence keys and the prefix they imply, leaving out the
+	 * characters of deleted keys. The page stays untouched, if the keys do not fit.
+	 *
+	 * @return False, if the keys do not fit onto the page.
+	 * @throws IndexFormatCorruptException Thrown, if a key does not share the new prefix.
+	 */
+	private boolean rebuild(int num, String low, String high)
+	{
+		int prefixOffset = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET);
+		int prefixLength = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+		int prefixSignificant = significantLength(this.buffer, prefixOffset, prefixLength);
+		int newPrefixLength = low == null || high == null ? 0 : commonPrefixLength(low, high);
+
+		// check that the keys fit and share the new prefix
+		int lowLength = low == null ? 0 : Math.max(0, significantLength(low) - newPrefixLength);
+		int highLength = high == null ? 0 : Math.max(0, significantLength(high) - newPrefixLength);
+		int heapBytes = 2 * (newPrefixLength + lowLength + highLength);
+		for (int i = 0; i < num; i++) {
+			int slot = slotOffset(i) + this.payloadSize;
+			int offset = getShort(this.buffer, slot);
+			int length = getShort(this.buffer, slot + 2);
+			for (int j = prefixLength; j < newPrefixLength; j++) {
+				if (keyChar(this.buffer, prefixOffset, prefixLength, offset, length, j) != charAt(low, j)) {
+					throw new IndexFormatCorruptException("The key at position " + i + " is outside of the key range of the page.");
+				}
+			}
+			heapBytes += 2 * Math.max(0, significantLength(i, prefixLength, prefixSignificant) - newPrefixLength);
+		}
+		if (slotOffset(num) + heapBytes > this.pageSize) {
+			return false;
+		}
+
+		// the keys are read from a copy while the heap is rewritten
+		byte[] old = this.buffer.clone();
+		int heapStart = this.pageSize - 2 * newPrefixLength;
+		for (int j = 0; j < newPrefixLength; j++) {
+			putChar(this.buffer, heapStart + 2 * j, charAt(low, j));
+		}
+		putShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET, heapStart);
+		putShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2, newPrefixLength);
+		heapStart = putFence(LOW_FENCE_DESCRIPTOR_OFFSET, low, lowLength, newPrefixLength, heapStart);
+		heapStart = putFence(HIGH_FENCE_DESCRIPTOR_OFFSET, high, highLength, newPrefixLength, heapStart);
+
+		for (int i = 0; i < num; i++) {
+			int slot = slotOffset(i) + this.payloadSize;
+			int offset = getShort(old, slot);
+			int length = getShort(old, slot + 2);
+			int newLength = Math.max(0, significantLength(i, prefixLength, prefixSignificant) - newPrefixLength);
+			heapStart -= 2 * newLength;
+			for (int j = 0; j < newLength; j++) {
+				putChar(this.buffer, heapStart + 2 * j, keyChar(old, prefixOffset, prefixLength, offset, length, newPrefixLength + j));
+			}
+			putShort(this.buffer, slot, heapStart);
+			putShort(this.buffer, slot + 2, newLength);
+		}
+		setHeapStart(heapStart);
+		return true;
+	}
+
+	/**
+	 * Writes the remainder of a fence key behind the prefix to the heap.
+	 *
+	 * @return The new start of the heap.
+	 */
+	private int putFence(int descriptorOffset, String fence, int length, int prefixLength, int heapStart)
+	{
+		if (fence == null) {
+			putShort(this.buffer, descriptorOffset, 0);
+			putShort(this.buffer, descriptorOffset + 2, NO_FENCE);
+			return heapStart;
+		}
+		heapStart -= 2 * length;
+		for (int j = 0; j < length; j++) {
+			putChar(this.buffer, heapStart + 2 * j, fence.charAt(prefixLength + j));
+		}
+		putShort(this.buffer, descriptorOffset, heapStart);
+		putShort(this.buffer, descriptorOffset + 2, length);
+		return heapStart;
+	}
+
+	/**
+	 * Gets the characters of a fence key, or null, if the range is open at that end.
+	 */
+	private String getFence(int descriptorOffset)
+	{
+		int length = getShort(this.buffer, descriptorOffset + 2);
+		if (length == NO_FENCE) {
+			return null;
+		}
+		int offset = getShort(this.buffer, descriptorOffset);
+		int prefixOffset = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET);
+		int prefixLength = getShort(this.buffer, PREFIX_DESCRIPTOR_OFFSET + 2);
+
+		char[] chars = new char[prefixLength + length];
+		for (int j = 0; j < chars.length; j++) {
+			chars[j] = keyChar(this.buffer, prefixOffset, prefixLength, offset, length, j);
+		}
+		return new String(chars);
+	}
+
+	private int fenceLength(int descriptorOffset)
+	{
+		int length = getShort(this.buffer, descriptorOffset + 2);
+		return length == NO_FENCE ? 0 : length;
+	}
+
+	/**
+	 * Gets the significant characters of the key at the given position.
+	 */
+	private String getValue(int position)
+	{
+		DataField key = getKey(position);
+		return valueOf(key);
+	}
+
+	/**
+	 * Gets the number of characters of the key at the given position without the blanks at its end.
+	 */
+	private int significantLength(int position, int prefixLength, int prefixSignificant)
+	{
+		int length = getShort(this.buffer, slotOffset(position) + this.payloadSize + 2);
+		return length > 0 ? prefixLength + length : prefixSignificant;
+	}
+
+	private int significantLength(String value)
+	{
+		int length = Math.min(value.length(), this.keyLength);
+		while (length > 0 && value.charAt(length - 1) == BLANK) {
+			length--;
+		}
+		return length;
+	}
+
+	private static int significantLength(byte[] buffer, int offset, int length)
+	{
+		while (length > 0 && getChar(buffer, offset + 2 * (length - 1)) == BLANK) {
+			length--;
+		}
+		return length;
+	}
+
+	/**
+	 * Compares the given value with the key at the given position, starting at the given character.
+	 */
+	private int compare(String value, int from, int position, int prefixOffset, int prefixLength)
+	{
+		int slot = slotOffset(position) + this.payloadSize;
+		int offset = getShort(this.buffer, slot);
+		int length = getShort(this.buffer, slot + 2);
+
+		// the NULL value is smaller than all other values, like in the comparison of the fields
+		char first = keyChar(this.buffer, prefixOffset, prefixLength, offset, length, 0);
+		if (value == null) {
+			return first == 0 ? 0 : -1;
+		}
+		else if (first == 0) {
+			return 1;
+		}
+
+		int n = Math.min(value.length(), this.keyLength);
+		for (int j = from; j < n; j++) {
+			char c = keyChar(this.buffer, prefixOffset, prefixLength, offset, length, j);
+			char t = value.charAt(j);
+			if (t != c) {
+				return t - c;
+			}
+		}
+		return value.length() - this.keyLength;
+	}
+
+	/**
+	 * Compares two values as keys padded to the full width of the column.
+	 */
+	private int compareValues(String value, String other)
+	{
+		for (int j = 0; j < this.keyLength; j++) {
+			char c = charAt(value, j);
+			char o = charAt(other, j);
+			if (c != o) {
+				return c - o;
+			}
+		}
+		return 0;
+	}
+
+	private int commonPrefixLength(String value, String other)
+	{
+		int j = 0;
+		while (j < this.keyLength && charAt(value, j) == charAt(other, j)) {
+			j++;
+		}
+		return j;
+	}
+
+	private DataField toField(char[] chars)
+	{
+		return chars[0] == 0 ? this.keyType.getNullValue() : new CharField(new String(chars));
+	}
+
+	private int getHeapStart()
+	{
+		return (this.buffer[HEAP_START_OFFSET] & 0xff) | ((this.buffer[HEAP_START_OFFSET + 1] & 0xff) << 8) |
+		       ((this.buffer[HEAP_START_OFFSET + 2] & 0xff) << 16) | ((this.buffer[HEAP_START_OFFSET + 3] & 0xff) << 24);
+	}
+
+	private void setHeapStart(int heapStart)
+	{
+		this.buffer[HEAP_START_OFFSET] = (byte) heapStart;
+		this.buffer[HEAP_START_OFFSET + 1] = (byte) (heapStart >>> 8);
+		this.buffer[HEAP_START_OFFSET + 2] = (byte) (heapStart >>> 16);
+		this.buffer[HEAP_START_OFFSET + 3] = (byte) (heapStart >>> 24);
+	}
+
+	/**
+	 * Gets the characters of a key, with the NULL value as a single zero character.
+	 */
+	private static String valueOf(DataField key)
+	{
+		String value = ((CharField) key).getValue();
+		return value == null ? NULL_CHARS : value;
+	}
+
+	/**
+	 * Gets the character of the value at the given position, which is a blank behind its end.
+	 */
+	private static char charAt(String value, int position)
+	{
+		return position < value.length() ? value.charAt(position) : BLANK;
+	}
+
+	/**
+	 * Gets the character of a key at the given position from the prefix and the key's remainder.
+	 */
+	private static char keyChar(byte[] buffer, int prefixOffset, int prefixLength, int offset, int length, int position)
+	{
+		if (position < prefixLength) {
+			return getChar(buffer, prefixOffset + 2 * position);
+		}
+		position -= prefixLength;
+		return position < length ? getChar(buffer, offset + 2 * position) : BLANK;
+	}
+
+	private static char getChar(byte[] buffer, int offset)
+	{
+		return (char) getShort(buffer, offset);
+	}
+
+	private static void putChar(byte[] buffer, int offset, char c)
+	{
+		putShort(buffer, offset, c);
+	}
+
+	private static int getShort(byte[] buffer, int offset)
+	{
+		return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8);
+	}
+
+	private static void putShort(byte[] buffer, int offset, int value)
+	{
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >>> 8);
+	}
+}
@@ -52,6 +52,12 @@ public abstract class IndexPageFactory
 		else if (typeVersion == BTreeLeafPage.HEADER_TYPE_VALUE) {
 			return new BTreeLeafPage(schema, buffer);
 		}
+		else if (typeVersion == CompressedBTreeInnerNodePage.HEADER_TYPE_VALUE) {
+			return new CompressedBTreeInnerNodePage(schema, buffer);
+		}
+		else if (typeVersion == CompressedBTreeLeafPage.HEADER_TYPE_VALUE) {
+			return new CompressedBTreeLeafPage(schema, buffer);
+		}
 		else {
 			throw new PageFormatException("Unknown type indicator: " + typeVersion);
 		}
@@ -60,8 +66,7 @@ public abstract class IndexPageFactory
 	
 	/**
 	 * Initializes an index page for the given schema and the contents of the buffer.
-	 * The type of the page will be depending on the contents of the version field
-	 * in the header contained in the binary buffer.
+	 * The page is a compressed page, if the schema describes an index with compressed keys.
 	 *   
 	 * @param schema The schema for the index page.
 	 * @param buffer The buffer containing the binary data from the page.
@@ -88,9 +93,11 @@ public abstract class IndexPageFactory
 		IntField.encodeIntAsBinary(newPageNumber, buffer, 4);
 		
 		// encode fields depending on page type
+		final boolean compressed = schema.hasCompressedKeys();
 		if (leafPage) {
 			// code version
-			IntField.encodeIntAsBinary(BTreeLeafPage.HEADER_TYPE_VALUE, buffer, 8);
+			IntField.encodeIntAsBinary(compressed ? CompressedBTreeLeafPage.HEADER_TYPE_VALUE :
+				BTreeLeafPage.HEADER_TYPE_VALUE, buffer, 8);
 			// code number of entries
 			IntField.encodeIntAsBinary(0, buffer, 12);
 			// code linked page
@@ -98,14 +105,27 @@ public abstract class IndexPageFactory
 			// code flags
 			IntField.encodeIntAsBinary(0, buffer, 20);
 			
+			if (compressed) {
+				CompressedBTreeLeafPage.initKeys(schema, buffer);
+				return new CompressedBTreeLeafPage(schema, buffer);
+			}
 			return new BTreeLeafPage(schema, buffer);
 		}
 		else {
 			// code version
-			IntField.encodeIntAsBinary(BTreeInnerNodePage.HEADER_TYPE_VALUE, buffer, 8);
+			IntField.encodeIntAsBinary(compressed ? CompressedBTreeInnerNodePage.HEADER_TYPE_VALUE :
+				BTreeInnerNodePage.HEADER_TYPE_VALUE, buffer, 8);
 			// code number of entries
 			IntField.encodeIntAsBinary(0, buffer, 12);
+			// code right sibling
+			IntField.encodeIntAsBinary(0, buffer, 16);
 			
+			if (compressed) {
+				// code first pointer
+				IntField.encodeIntAsBinary(0, buffer, 20);
+				CompressedBTreeInnerNodePage.initKeys(schema, buffer);
+				return new CompressedBTreeInnerNodePage(schema, buffer);
+			}
 			return new BTreeInnerNodePage(schema, buffer);
 		}
 		
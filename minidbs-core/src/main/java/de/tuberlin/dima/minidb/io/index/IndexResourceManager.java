@@ -34,10 +34,18 @@ import de.tuberlin.dima.minidb.io.manager.ResourceManager;
  * <li>Bytes 0 - 3 = INT (little endian): Magic number</li>
  * <li>Bytes 4 - 7 = INT (little endian): Version. Currently only version 0 is supported.</li>
  * <li>Bytes 8 - 11 = INT (little endian): Page size in bytes.</li>
- * <li>Bytes 12 - 15 = INT (little endian): Column number of the indexed column.</li>
+ * <li>Bytes 12 - 15 = INT (little endian): Column number of the indexed column, the first one of a
+ *     composite index.</li>
  * <li>Bytes 16 - 19 = INT (little endian): Page number of the root node page.</li>
  * <li>Bytes 20 - 23 = INT (little endian): Page number of the first leaf page.</li>
- * <li>Bytes 24 - 27 = INT (little endian): Attribute flags.</li>
+ * <li>Bytes 24 - 27 = INT (little endian): Attribute flags. The least significant bit marks a unique
+ *     index, the second bit an index with compressed keys, the third bit a composite index.</li>
+ * </ul>
+ * The header of a composite index continues with the indexed columns:
+ * <ul>
+ * <li>Bytes 28 - 31 = INT (little endian): Number of indexed columns.</li>
+ * <li>Bytes 32 - ... = INTs (little endian): Column numbers of the indexed columns, in the order of
+ *     the key.</li>
  * </ul>
  * 
  * @author Stephan Ewen (stephan.ewen@tu-berlin.de)
@@ -58,6 +66,16 @@ public class IndexResourceManager extends ResourceManager {
 	 */
 	private static final int INDEX_HEADER_ATTRIBUTE_UNIQUE_MASK = 0x1;
 
+	/**
+	 * The mask to access the 'compressed keys' bit in the attributes.
+	 */
+	private static final int INDEX_HEADER_ATTRIBUTE_COMPRESSED_MASK = 0x2;
+
+	/**
+	 * The mask to access the 'composite' bit in the attributes.
+	 */
+	private static final int INDEX_HEADER_ATTRIBUTE_COMPOSITE_MASK = 0x4;
+
 	/**
 	 * The I/O channel through which the index file is accessed.
 	 */
@@ -209,6 +227,7 @@ public class IndexResourceManager extends ResourceManager {
 	 */
 	@Override
 	public synchronized void closeResource() throws IOException {
+		startNewGeneration();
 		try {
 			this.theLock.release();
 			this.ioChannel.close();
@@ -322,12 +341,23 @@ public class IndexResourceManager extends ResourceManager {
 	//                          I/O Methods
 	// ------------------------------------------------------------------------
 
+	/*
+	 * (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.manager.ResourceManager#supportsConcurrentReads()
+	 */
+	@Override
+	public boolean supportsConcurrentReads() {
+		// single pages are read at explicit positions, sequences hold the monitor while they move the channel
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see de.tuberlin.dima.minidb.io.ResourceManager#truncate()
 	 */
 	@Override
 	public synchronized void truncate() throws IOException {
+		startNewGeneration();
 		// write a new empty leaf page
 		try {
 			byte[] temporaryBuffer = new byte[this.pageSize];
@@ -361,7 +391,7 @@ public class IndexResourceManager extends ResourceManager {
 	 * @see de.tuberlin.dima.minidb.io.ResourceManager#reserveNewPage(byte[], java.lang.Enum)
 	 */
 	@Override
-	public CacheableData reserveNewPage(byte[] buffer, Enum<?> type) throws IOException, PageFormatException {
+	public synchronized CacheableData reserveNewPage(byte[] buffer, Enum<?> type) throws IOException, PageFormatException {
 		// sanity checks
 		if (buffer.length != this.pageSize) {
 			throw new IllegalArgumentException("The buffer to initialize the page to is too small.");
@@ -453,14 +483,17 @@ public class IndexResourceManager extends ResourceManager {
 		}
 
 		try {
-			this.ioChannel.position(this.pageSize * (long) firstPageNumber);
-			long totalSize = buffers.length * this.pageSize;
-			long bytesRemaining = buffers.length * this.pageSize;
-			int currFirstBuffer = 0;
-			do {
-				bytesRemaining -= this.ioChannel.read(b, currFirstBuffer, buffers.length - currFirstBuffer);
-				currFirstBuffer = (int) ((totalSize - bytesRemaining) / this.pageSize);
-			} while (bytesRemaining > 0);
+			// the channel position is shared, so the seek and the transfer must not interleave with other threads
+			synchronized (this) {
+				this.ioChannel.position(this.pageSize * (long) firstPageNumber);
+				long totalSize = buffers.length * this.pageSize;
+				long bytesRemaining = buffers.length * this.pageSize;
+				int currFirstBuffer = 0;
+				do {
+					bytesRemaining -= this.ioChannel.read(b, currFirstBuffer, buffers.length - currFirstBuffer);
+					currFirstBuffer = (int) ((totalSize - bytesRemaining) / this.pageSize);
+				} while (bytesRemaining > 0);
+			}
 		} catch (IOException ioex) {
 			throw new IOException("Page sequence [" + firstPageNumber + ", " + (firstPageNumber + buffers.length - 1) + "] could not be read from index file.",
 				ioex);
@@ -554,14 +587,17 @@ public class IndexResourceManager extends ResourceManager {
 		// seek and write the buffer. If the position is beyond the file size,
 		// the channel will automatically increase the file length
 		try {
-			this.ioChannel.position(this.pageSize * (long) pageNumber);
-			long totalSize = buffers.length * this.pageSize;
-			long bytesRemaining = buffers.length * this.pageSize;
-			int currFirstBuffer = 0;
-			do {
-				bytesRemaining -= this.ioChannel.write(b, currFirstBuffer, buffers.length - currFirstBuffer);
-				currFirstBuffer = (int) ((totalSize - bytesRemaining) / this.pageSize);
-			} while (bytesRemaining > 0);
+			// the channel position is shared, so the seek and the transfer must not interleave with other threads
+			synchronized (this) {
+				this.ioChannel.position(this.pageSize * (long) pageNumber);
+				long totalSize = buffers.length * this.pageSize;
+				long bytesRemaining = buffers.length * this.pageSize;
+				int currFirstBuffer = 0;
+				do {
+					bytesRemaining -= this.ioChannel.write(b, currFirstBuffer, buffers.length - currFirstBuffer);
+					currFirstBuffer = (int) ((totalSize - bytesRemaining) / this.pageSize);
+				} while (bytesRemaining > 0);
+			}
 		} catch (IOException ioex) {
 			throw new IOException("Page sequence [" + pageNumber + ", " + (pageNumber + buffers.length - 1) + "] could not be written to the index file.", ioex);
 		}
@@ -734,11 +770,34 @@ public class IndexResourceManager extends ResourceManager {
 		int firstLeafNode = buffer.getInt();
 		int flags = buffer.getInt();
 		boolean unique = (flags & INDEX_HEADER_ATTRIBUTE_UNIQUE_MASK) != 0;
+		boolean compressed = (flags & INDEX_HEADER_ATTRIBUTE_COMPRESSED_MASK) != 0;
 		int highestPage = (int) (channel.size() / pageSize) - 1;
 
+		// a composite index lists its columns behind the fixed fields
+		int[] columns = new int[] { columnNumber };
+		if ((flags & INDEX_HEADER_ATTRIBUTE_COMPOSITE_MASK) != 0) {
+			readIntoBuffer(channel, buffer, 4);
+			int numColumns = buffer.getInt();
+			if (numColumns < 2 || numColumns > tableSchema.getNumberOfColumns()) {
+				throw new PageFormatException("Index header specified an invalid number of indexed columns.");
+			}
+			ByteBuffer columnBuffer = ByteBuffer.allocate(4 * numColumns);
+			columnBuffer.order(ByteOrder.LITTLE_ENDIAN);
+			readIntoBuffer(channel, columnBuffer, 4 * numColumns);
+			columns = new int[numColumns];
+			for (int i = 0; i < numColumns; i++) {
+				columns[i] = columnBuffer.getInt();
+			}
+		}
+
 		// sanity checks
-		if (columnNumber < 0 || columnNumber >= tableSchema.getNumberOfColumns()) {
-			throw new PageFormatException("Index header specified an invalid column to be indexed.");
+		for (int column : columns) {
+			if (column < 0 || column >= tableSchema.getNumberOfColumns()) {
+				throw new PageFormatException("Index header specified an invalid column to be indexed.");
+			}
+		}
+		if (columns[0] != columnNumber) {
+			throw new PageFormatException("Index header specified different first indexed columns.");
 		}
 		if (firstLeafNode < FIRST_DATA_PAGE || firstLeafNode > highestPage) {
 			throw new PageFormatException("Index header specified a first leaf page number that is out of range.");
@@ -750,9 +809,11 @@ public class IndexResourceManager extends ResourceManager {
 		try {
 			// instantiate
 			PageSize ps = PageSize.getPageSize(pageSize);
-			return new IndexSchema(tableSchema, columnNumber, ps, unique, rootNode, firstLeafNode);
+			return new IndexSchema(tableSchema, columns, ps, unique, compressed, rootNode, firstLeafNode);
 		} catch (UnsupportedPageSizeException uspsex) {
 			throw new PageFormatException("The index header stated an unsupported page size.");
+		} catch (IllegalArgumentException iaex) {
+			throw new PageFormatException("The index header described an invalid index: " + iaex.getMessage());
 		}
 	}
 
@@ -788,8 +849,19 @@ public class IndexResourceManager extends ResourceManager {
 		// write the attribute flags
 		int flags = 0;
 		flags |= schema.isUnique() ? INDEX_HEADER_ATTRIBUTE_UNIQUE_MASK : 0;
+		flags |= schema.hasCompressedKeys() ? INDEX_HEADER_ATTRIBUTE_COMPRESSED_MASK : 0;
+		flags |= schema.isComposite() ? INDEX_HEADER_ATTRIBUTE_COMPOSITE_MASK : 0;
 		buffer.putInt(flags);
 
+		// write the columns of a composite index
+		if (schema.isComposite()) {
+			int[] columns = schema.getColumnNumbers();
+			buffer.putInt(columns.length);
+			for (int column : columns) {
+				buffer.putInt(column);
+			}
+		}
+
 		// write the buffer
 		buffer.flip();
 		writeBuffer(channel, buffer);
@@ -122,4 +122,11 @@ public final class LoadQueueEntry extends QueueEntry {
     public void increasePinning() {
         this.shouldPin++;
     }
+
+    /**
+     * Drops all pinning requests, because the load has failed and no page will be pinned.
+     */
+    public void clearPinning() {
+        this.shouldPin = 0;
+    }
 }
\ No newline at end of file
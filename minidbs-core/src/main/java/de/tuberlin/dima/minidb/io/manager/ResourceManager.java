@@ -16,6 +16,33 @@ import de.tuberlin.dima.minidb.io.cache.PageSize;
  */
 public abstract class ResourceManager
 {
+	/**
+	 * Counts the truncations and closings of the resource. Copies of pages that were
+	 * taken in an earlier generation are not valid anymore.
+	 */
+	private volatile int generation;
+	
+	
+	/**
+	 * Gets the generation of the resource's contents, which changes whenever the
+	 * resource is truncated or closed.
+	 * 
+	 * @return The current generation.
+	 */
+	public int getGeneration()
+	{
+		return this.generation;
+	}
+	
+	/**
+	 * Starts a new generation of the resource's contents. Must be called by the
+	 * implementations when they truncate or close the resource.
+	 */
+	protected synchronized void startNewGeneration()
+	{
+		this.generation++;
+	}
+	
 	/**
 	 * Gets the size of the pages that are used by this resource.
 	 * 
@@ -40,6 +67,17 @@ public abstract class ResourceManager
 	 */
 	public abstract void closeResource() throws IOException;
 	
+	/**
+	 * Checks whether pages of this resource may be read by several I/O threads at the same time.
+	 * Resources that do not support this are always read by the same thread.
+	 * 
+	 * @return true, if concurrent reads are safe, false otherwise.
+	 */
+	public boolean supportsConcurrentReads()
+	{
+		return false;
+	}
+	
 	/**
 	 * Reads the page with the given number into the given buffer.
 	 * This method directly initiates an I/O operation and should only be called by the I/O threads.
@@ -6,9 +6,12 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import de.tuberlin.dima.minidb.Constants;
 import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
@@ -45,6 +48,12 @@ public class TableResourceManager extends ResourceManager {
 	 */
 	private static final int TABLE_HEADER_COLUMN_ATTRIBUTE_UNIQUE_MASK = 0x2;
 
+	/**
+	 * The size of the regions in which a memory-mapped table file is mapped. It is a multiple
+	 * of every page size, so that no page crosses the border between two regions.
+	 */
+	private static final int MAPPED_REGION_BYTES = 64 * 1024 * 1024;
+
 	/**
 	 * The factory used to create new pages.
 	 */
@@ -80,6 +89,18 @@ public class TableResourceManager extends ResourceManager {
 	 */
 	private int lastDataPageNumber;
 
+	/**
+	 * The mapped regions of the table file, if pages are read memory-mapped, null otherwise.
+	 * The regions are guarded by the mapping lock.
+	 */
+	private MappedByteBuffer[] mappedRegions;
+
+	/**
+	 * Copies out of the mapped regions hold the read lock, while truncating or closing the file
+	 * takes the write lock, so that no region is read after the file shrank under it.
+	 */
+	private final ReentrantReadWriteLock mappingLock = new ReentrantReadWriteLock();
+
 	// ------------------------------------------------------------------------
 	//                        Constructor & Life-Cycle
 	// ------------------------------------------------------------------------
@@ -189,19 +210,29 @@ public class TableResourceManager extends ResourceManager {
 	 */
 	@Override
 	public synchronized void closeResource() throws IOException {
+		startNewGeneration();
+		this.mappingLock.writeLock().lock();
 		try {
-			this.theLock.release();
-			this.ioChannel.close();
-		} catch (Throwable t) {
-			// something failed.
-			makeBestEffortToClose();
-
-			// propagate the exception
-			if (t instanceof IOException) {
-				throw (IOException) t;
-			} else {
-				throw new IOException("An error occured while opening the table: " + t.getMessage());
+			// the mappings are released once they are garbage collected
+			if (this.mappedRegions != null) {
+				this.mappedRegions = new MappedByteBuffer[0];
+			}
+			try {
+				this.theLock.release();
+				this.ioChannel.close();
+			} catch (Throwable t) {
+				// something failed.
+				makeBestEffortToClose();
+
+				// propagate the exception
+				if (t instanceof IOException) {
+					throw (IOException) t;
+				} else {
+					throw new IOException("An error occured while opening the table: " + t.getMessage());
+				}
 			}
+		} finally {
+			this.mappingLock.writeLock().unlock();
 		}
 	}
 
@@ -274,17 +305,46 @@ public class TableResourceManager extends ResourceManager {
 		return this.lastDataPageNumber;
 	}
 
+	/**
+	 * Checks whether this table manager serves page reads from a memory mapping of the
+	 * table file rather than through explicit reads on the file channel.
+	 * 
+	 * @return True, if the table file is memory-mapped, false otherwise.
+	 */
+	public boolean isMemoryMapped() {
+		return this.mappedRegions != null;
+	}
+
 	// ------------------------------------------------------------------------
 	//                          I/O Methods
 	// ------------------------------------------------------------------------
 
+	/*
+	 * (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.io.manager.ResourceManager#supportsConcurrentReads()
+	 */
+	@Override
+	public boolean supportsConcurrentReads() {
+		// single pages are read at explicit positions, sequences hold the monitor while they move the channel
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see de.tuberlin.dima.minidb.io.ResourceManager#truncate()
 	 */
 	@Override
 	public synchronized void truncate() throws IOException {
-		this.ioChannel.truncate(this.firstDataPageNumber * this.schema.getPageSize().getNumberOfBytes());
+		startNewGeneration();
+		this.mappingLock.writeLock().lock();
+		try {
+			if (this.mappedRegions != null) {
+				this.mappedRegions = new MappedByteBuffer[0];
+			}
+			this.ioChannel.truncate(this.firstDataPageNumber * this.schema.getPageSize().getNumberOfBytes());
+		} finally {
+			this.mappingLock.writeLock().unlock();
+		}
 		this.lastDataPageNumber = this.firstDataPageNumber - 1;
 	}
 
@@ -401,15 +461,18 @@ public class TableResourceManager extends ResourceManager {
 		// seek and write the buffer. If the position is beyond the file size,
 		// the channel will automatically increase the file length
 		try {
-			long position = this.pageSize * (long) pageNumber;
-			this.ioChannel.position(position);
-			long totalSize = buffers.length * this.pageSize;
-			long bytesRemaining = totalSize;
-			int currFirstBuffer = 0;
-			do {
-				bytesRemaining -= this.ioChannel.write(b, currFirstBuffer, buffers.length - currFirstBuffer);
-				currFirstBuffer = (int) ((totalSize - bytesRemaining) / this.pageSize);
-			} while (bytesRemaining > 0);
+			// the channel position is shared, so the seek and the transfer must not interleave with other threads
+			synchronized (this) {
+				long position = this.pageSize * (long) pageNumber;
+				this.ioChannel.position(position);
+				long totalSize = buffers.length * this.pageSize;
+				long bytesRemaining = totalSize;
+				int currFirstBuffer = 0;
+				do {
+					bytesRemaining -= this.ioChannel.write(b, currFirstBuffer, buffers.length - currFirstBuffer);
+					currFirstBuffer = (int) ((totalSize - bytesRemaining) / this.pageSize);
+				} while (bytesRemaining > 0);
+			}
 		} catch (IOException ioex) {
 			throw new IOException("Page sequence [" + pageNumber + ", " + (pageNumber + buffers.length - 1) + "] could not be written to the table file.", ioex);
 		}
@@ -433,13 +496,16 @@ public class TableResourceManager extends ResourceManager {
 			}
 		}
 
-		// seek and read the buffer
-		ByteBuffer b = ByteBuffer.wrap(buffer, 0, this.pageSize);
-
 		try {
-			long position = (this.pageSize * (long) pageNumber);
-			readIntoBuffer(this.ioChannel, b, position, this.pageSize);
-
+			if (this.mappedRegions != null) {
+				// copy straight out of the mapped file, no seek and no system call
+				copyMappedPage(pageNumber, buffer);
+			} else {
+				// seek and read the buffer
+				ByteBuffer b = ByteBuffer.wrap(buffer, 0, this.pageSize);
+				long position = (this.pageSize * (long) pageNumber);
+				readIntoBuffer(this.ioChannel, b, position, this.pageSize);
+			}
 		} catch (IOException ioex) {
 			throw new IOException("Page " + pageNumber + " could not be read from table file.", ioex);
 		}
@@ -477,6 +543,18 @@ public class TableResourceManager extends ResourceManager {
 			}
 		}
 
+		if (this.mappedRegions != null) {
+			try {
+				for (int i = 0; i < buffers.length; i++) {
+					copyMappedPage(firstPageNumber + i, buffers[i]);
+				}
+			} catch (IOException ioex) {
+				throw new IOException("Page sequence [" + firstPageNumber + ", " + (firstPageNumber + buffers.length - 1) + "] could not be read from table file.",
+					ioex);
+			}
+			return wrapPages(buffers);
+		}
+
 		// seek and read the buffer
 		ByteBuffer[] b = new ByteBuffer[buffers.length];
 		for (int i = 0; i < buffers.length; i++) {
@@ -484,20 +562,35 @@ public class TableResourceManager extends ResourceManager {
 		}
 
 		try {
-			this.ioChannel.position(this.pageSize * (long) firstPageNumber);
-			long totalSize = buffers.length * this.pageSize;
-			long bytesRemaining = buffers.length * this.pageSize;
-			int currFirstBuffer = 0;
-			do {
-				bytesRemaining -= this.ioChannel.read(b, currFirstBuffer, buffers.length - currFirstBuffer);
-				currFirstBuffer = (int) ((totalSize - bytesRemaining) / this.pageSize);
-			} while (bytesRemaining > 0);
+			// the channel position is shared, so the seek and the transfer must not interleave with other threads
+			synchronized (this) {
+				this.ioChannel.position(this.pageSize * (long) firstPageNumber);
+				long totalSize = buffers.length * this.pageSize;
+				long bytesRemaining = buffers.length * this.pageSize;
+				int currFirstBuffer = 0;
+				do {
+					bytesRemaining -= this.ioChannel.read(b, currFirstBuffer, buffers.length - currFirstBuffer);
+					currFirstBuffer = (int) ((totalSize - bytesRemaining) / this.pageSize);
+				} while (bytesRemaining > 0);
+			}
 		} catch (IOException ioex) {
 			throw new IOException("Page sequence [" + firstPageNumber + ", " + (firstPageNumber + buffers.length - 1) + "] could not be read from table file.",
 				ioex);
 		}
 
-		// wrap the loaded buffers in CacheableData objects 
+		return wrapPages(buffers);
+	}
+
+	/**
+	 * Wraps the loaded buffers in CacheableData objects.
+	 * 
+	 * @param buffers
+	 *        The buffers holding the pages.
+	 * @return The table pages for the buffers.
+	 * @throws IOException
+	 *         Thrown, if a buffer does not hold a valid page.
+	 */
+	private TablePage[] wrapPages(byte[][] buffers) throws IOException {
 		TablePage[] pages = new TablePage[buffers.length];
 		for (int i = 0; i < buffers.length; i++) {
 			try {
@@ -511,6 +604,67 @@ public class TableResourceManager extends ResourceManager {
 		return pages;
 	}
 
+	/**
+	 * Copies the given page out of the mapped table file. Regions are mapped lazily. The
+	 * last region of the file is cut at the end of the file and mapped again once the file
+	 * has grown past it, so pages that were reserved and written after the file was opened
+	 * become readable as well. The copy holds the read lock of the mappings, so that the
+	 * file cannot be truncated or closed while it is read.
+	 * 
+	 * @param pageNumber
+	 *        The number of the page.
+	 * @param buffer
+	 *        The buffer to copy the page into.
+	 * @throws IOException
+	 *         Thrown, if the page lies beyond the end of the file or cannot be mapped.
+	 */
+	private void copyMappedPage(int pageNumber, byte[] buffer) throws IOException {
+		long position = this.pageSize * (long) pageNumber;
+		int region = (int) (position / MAPPED_REGION_BYTES);
+		int offset = (int) (position % MAPPED_REGION_BYTES);
+
+		this.mappingLock.readLock().lock();
+		try {
+			if (!isMappedPage(region, offset)) {
+				// the read lock cannot be upgraded, so the region is mapped under the write lock,
+				// which is downgraded again before the copy
+				this.mappingLock.readLock().unlock();
+				this.mappingLock.writeLock().lock();
+				try {
+					if (!isMappedPage(region, offset)) {
+						long start = (long) region * MAPPED_REGION_BYTES;
+						long fileSize = this.ioChannel.size();
+						if (start + offset + this.pageSize > fileSize) {
+							throw new EOFException("Page " + pageNumber + " lies beyond the end of the table file.");
+						}
+						if (region >= this.mappedRegions.length) {
+							this.mappedRegions = Arrays.copyOf(this.mappedRegions, region + 1);
+						}
+						this.mappedRegions[region] = this.ioChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAPPED_REGION_BYTES, fileSize - start));
+					}
+				} finally {
+					this.mappingLock.readLock().lock();
+					this.mappingLock.writeLock().unlock();
+				}
+			}
+
+			ByteBuffer page = this.mappedRegions[region].duplicate();
+			page.position(offset);
+			page.get(buffer, 0, this.pageSize);
+		} finally {
+			this.mappingLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Checks whether the page at the given offset of the given region is mapped. The caller
+	 * must hold the mapping lock.
+	 */
+	private boolean isMappedPage(int region, int offset) {
+		return region < this.mappedRegions.length && this.mappedRegions[region] != null
+				&& this.mappedRegions[region].capacity() >= offset + this.pageSize;
+	}
+
 	// ------------------------------------------------------------------------
 	//                           Miscellaneous
 	// ------------------------------------------------------------------------
@@ -552,6 +706,26 @@ public class TableResourceManager extends ResourceManager {
 	 *         Thrown, if the header of the table contained invalid data.
 	 */
 	public static TableResourceManager openTable(File tableFile) throws IOException, PageFormatException {
+		return openTable(tableFile, false);
+	}
+
+	/**
+	 * Opens the table contained in the given file and returns a table manager to
+	 * modify that table in blocks. In memory-mapped mode, the pages are read from a
+	 * mapping of the file, which leaves the caching of the file to the operating system
+	 * and avoids a system call per page read. Writes always go through the file channel.
+	 * 
+	 * @param tableFile
+	 *        The file containing the table to be opened.
+	 * @param memoryMapped
+	 *        Flag indicating whether pages are read from a memory mapping of the file.
+	 * @return The TableManager to operate on the table file.
+	 * @throws IOException
+	 *         Thrown, if an I/O error occurred.
+	 * @throws PageFormatException
+	 *         Thrown, if the header of the table contained invalid data.
+	 */
+	public static TableResourceManager openTable(File tableFile, boolean memoryMapped) throws IOException, PageFormatException {
 		if (tableFile == null) {
 			throw new NullPointerException("Table file must not be null.");
 		}
@@ -563,7 +737,11 @@ public class TableResourceManager extends ResourceManager {
 			}
 
 			RandomAccessFile raf = new RandomAccessFile(tableFile, "rwd");
-			return new TableResourceManager(raf);
+			TableResourceManager manager = new TableResourceManager(raf);
+			if (memoryMapped) {
+				manager.mappedRegions = new MappedByteBuffer[0];
+			}
+			return manager;
 		} catch (SecurityException sex) {
 			throw new IOException("The user running the system has insufficient privileges for file manipulation.");
 		}
@@ -0,0 +1,96 @@
+package de.tuberlin.dima.minidb.optimizer;
+
+
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
+import de.tuberlin.dima.minidb.qexec.OperatorFactory;
+import de.tuberlin.dima.minidb.qexec.PhysicalPlanOperator;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeap;
+import de.tuberlin.dima.minidb.semantics.Column;
+import de.tuberlin.dima.minidb.semantics.predicate.JoinPredicate;
+
+
+/**
+ * The optimizer representation of a Block-Nested-Loop-Join. Unlike the
+ * {@link NestedLoopJoinPlanOperator}, the inner side is not executed once per outer tuple:
+ * it is kept in memory if it fits there, and is executed once per block of outer tuples
+ * otherwise. The inner side must therefore not be correlated to the outer tuples, and
+ * the order of the outer side is not preserved.
+ */
+public class BlockNestedLoopJoinPlanOperator extends NestedLoopJoinPlanOperator
+{
+	/**
+	 * Creates a new Block-Nested-Loop-Join optimizer plan operator. The parameters are
+	 * the same as for the {@link NestedLoopJoinPlanOperator}.
+	 *  
+	 * @param outerChild The child for the outer side, whose tuples are collected in blocks.
+	 * @param innerChild The child for the inner side, which is executed once per block.
+	 * @param joinPredicate The predicate to be applied during the join, or null, for a
+	 *                      Cartesian join.
+	 * @param outerOutColMap The map that describes how the outer tuple fields are copied to the
+	 *                       output tuple.  
+	 * @param innerOutColMap The map that describes how the inner tuple fields are copied to the
+	 *                       output tuple. 
+	 * @param cardinality The expected output cardinality of the join operator.
+	 */
+	public BlockNestedLoopJoinPlanOperator(OptimizerPlanOperator outerChild,
+			OptimizerPlanOperator innerChild, JoinPredicate joinPredicate,
+			int[] outerOutColMap, int[] innerOutColMap, long cardinality)
+	{
+		super(outerChild, innerChild, joinPredicate, outerOutColMap, innerOutColMap, cardinality);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.NestedLoopJoinPlanOperator#getName()
+	 */
+	@Override
+	public String getName()
+	{
+		return "Block Nested-Loop Join";
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.NestedLoopJoinPlanOperator#getColumnOrder()
+	 */
+	@Override
+	public OrderedColumn[] getColumnOrder()
+	{
+		// the tuples of a block are joined in the order of the inner side
+		return new OrderedColumn[0];
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.NestedLoopJoinPlanOperator#createPhysicalPlan(de.tuberlin.dima.minidb.io.BufferPoolManager, de.tuberlin.dima.minidb.qexec.heap.QueryHeap)
+	 */
+	@Override
+	public PhysicalPlanOperator createPhysicalPlan(BufferPoolManager buffer, QueryHeap heap)
+	{
+		// translate the two children.
+		PhysicalPlanOperator outerChildPlan = this.leftChild.createPhysicalPlan(buffer, heap);
+		PhysicalPlanOperator innerChildPlan = this.rightChild.createPhysicalPlan(buffer, heap);
+		
+		// create an executable version of the join predicate
+		de.tuberlin.dima.minidb.qexec.predicate.JoinPredicate executablePredicate = this.joinPredicate == null ? null : this.joinPredicate.createExecutablepredicate();
+		
+		long innerCard = this.rightChild.getOutputCardinality();
+		return OperatorFactory.createBlockNestedLoopJoinOperator(outerChildPlan, innerChildPlan, heap,
+				getDataTypes(this.leftChild.getReturnedColumns()), getDataTypes(this.rightChild.getReturnedColumns()),
+				innerCard <= Integer.MAX_VALUE ? (int) innerCard : Integer.MAX_VALUE,
+				executablePredicate, this.outerOutColMap, this.innerOutColMap);
+	}
+	
+	/**
+	 * Gets the data types of the given columns, which size the memory in the query heap.
+	 * 
+	 * @param columns The columns.
+	 * @return The data types of the columns.
+	 */
+	private static DataType[] getDataTypes(Column[] columns)
+	{
+		DataType[] types = new DataType[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			types[i] = columns[i].getDataType();
+		}
+		return types;
+	}
+}
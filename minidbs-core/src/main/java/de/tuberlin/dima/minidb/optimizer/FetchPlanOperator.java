@@ -7,6 +7,7 @@ import java.util.Iterator;
 import java.util.Set;
 
 import de.tuberlin.dima.minidb.catalogue.TableDescriptor;
+import de.tuberlin.dima.minidb.catalogue.TableStatistics;
 import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
 import de.tuberlin.dima.minidb.qexec.OperatorFactory;
 import de.tuberlin.dima.minidb.qexec.PhysicalPlanOperator;
@@ -23,6 +24,17 @@ import de.tuberlin.dima.minidb.semantics.Relation;
  */
 public class FetchPlanOperator extends OptimizerPlanOperator
 {
+	/**
+	 * The number of RIDs that the FETCH sorts by page and resolves together.
+	 */
+	public static final int FETCH_BATCH_SIZE = 1024;
+	
+	/**
+	 * The largest average distance between the pages that one batch reads, for which the
+	 * FETCH still counts as reading the table sequentially.
+	 */
+	private static final int MAX_SEQUENTIAL_PAGE_GAP = 2;
+	
 	/**
 	 * The child of this FETCH operator.
 	 */
@@ -48,6 +60,11 @@ public class FetchPlanOperator extends OptimizerPlanOperator
 	 */
 	private Set<Relation> involvedRelations;
 	
+	/**
+	 * Flag indicating whether the FETCH returns the tuples in the order of its child.
+	 */
+	private boolean preserveOrder;
+	
 	
 	/**
 	 * Creates a new Fetch operator that retrieves the given columns from a table, 
@@ -110,6 +127,30 @@ public class FetchPlanOperator extends OptimizerPlanOperator
 		return this.accessedTable;
 	}
 	
+	/**
+	 * Checks whether this FETCH returns the tuples in the order in which its child
+	 * returns the RIDs.
+	 * 
+	 * @return True, if the FETCH preserves the order of its child.
+	 */
+	public boolean isPreserveOrder()
+	{
+		return this.preserveOrder;
+	}
+	
+	/**
+	 * Sets whether this FETCH returns the tuples in the order in which its child returns
+	 * the RIDs. Otherwise, it returns each batch in the order of the pages, and has no
+	 * column order. Restoring the order costs an extra sort of every batch, so it should
+	 * only be set if the order of the child is of interest.
+	 * 
+	 * @param preserveOrder True, if the FETCH should preserve the order of its child.
+	 */
+	public void setPreserveOrder(boolean preserveOrder)
+	{
+		this.preserveOrder = preserveOrder;
+	}
+	
 	
 	/* (non-Javadoc)
 	 * @see de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator#getName()
@@ -170,7 +211,7 @@ public class FetchPlanOperator extends OptimizerPlanOperator
 			colIndices[i] = this.outputCols[i].getColumnIndex();
 		}
 		return OperatorFactory.createFetchOperator(childPlan, buffer, 
-				this.accessedTable.getResourceId(), colIndices);
+				this.accessedTable.getResourceId(), colIndices, FETCH_BATCH_SIZE, this.preserveOrder);
 	}
 
 	/* (non-Javadoc)
@@ -179,6 +220,9 @@ public class FetchPlanOperator extends OptimizerPlanOperator
 	@Override
 	public OrderedColumn[] getColumnOrder()
 	{
+		if (!this.preserveOrder) {
+			return null;
+		}
 		OrderedColumn[] oc = this.childOperator.getColumnOrder();
 		
 		// this operator preserves the order from the child
@@ -194,14 +238,31 @@ public class FetchPlanOperator extends OptimizerPlanOperator
 	
 	/**
 	 * Checks if this FETCH operator is performing a sequential access on the table
-	 * because it receives the RIDs in a sorted way.
+	 * because it receives the RIDs in a sorted way, or because each batch, which the
+	 * FETCH sorts by page, reads pages that lie close together. The number of distinct
+	 * pages that a batch reads is estimated from the number of pages of the table, under
+	 * the assumption that the RIDs are spread uniformly over the pages. Without statistics
+	 * about the pages, the access counts as sequential if all RIDs fit into one batch.
 	 * 
 	 * @return True, if the FETCH accesses the table in a sequential way.
 	 */
 	public boolean isSequentialFetch()
 	{
 		OrderedColumn[] oc = this.childOperator.getColumnOrder();
-		return oc != null && oc.length == 1 && oc[0].isSingleColumn() && oc[0].getColumns()[0].isRID();
+		if (oc != null && oc.length == 1 && oc[0].isSingleColumn() && oc[0].getColumns()[0].isRID()) {
+			return true;
+		}
+		
+		long cardinality = this.childOperator.getOutputCardinality();
+		TableStatistics stats = this.accessedTable.getStatistics();
+		if (stats == null || stats.getNumberOfPages() < 1) {
+			return cardinality <= FETCH_BATCH_SIZE;
+		}
+		
+		double pages = stats.getNumberOfPages();
+		long perBatch = Math.min(Math.max(cardinality, 1), FETCH_BATCH_SIZE);
+		double distinctPages = pages * (1 - Math.pow(1 - 1 / pages, perBatch));
+		return distinctPages * MAX_SEQUENTIAL_PAGE_GAP >= pages;
 	}
 
 }
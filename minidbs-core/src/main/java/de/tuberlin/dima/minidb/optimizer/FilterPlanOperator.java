@@ -36,6 +36,11 @@ public class FilterPlanOperator extends OptimizerPlanOperator
 	 */
 	private long outCardinality;
 	
+	/**
+	 * The leading columns of the child that the filter returns, or null, if it returns all.
+	 */
+	private Column[] outputColumns;
+	
 	
 	/**
 	 * Creates a new uncorrelated FILTER operator that applies a simple predicate.
@@ -76,6 +81,36 @@ public class FilterPlanOperator extends OptimizerPlanOperator
 		this.outCardinality = outCardinality;
 	}
 	
+	/**
+	 * Creates a new uncorrelated FILTER operator that applies a simple predicate and returns
+	 * only the leading columns of its child, dropping the columns that only the predicate needs.
+	 * The output cardinality is given like in
+	 * {@link #FilterPlanOperator(OptimizerPlanOperator, LocalPredicate, long)}.
+	 * 
+	 * @param childOperator The child of this operator whose output tuples are filtered.
+	 * @param localSimplePredicate The simple predicate applied in this filter operator.
+	 * @param outCardinality The cardinality of the tuple output.
+	 * @param outputColumns The columns that the filter returns, which must be the leading
+	 *                      columns returned by the child.
+	 */
+	public FilterPlanOperator(OptimizerPlanOperator childOperator,
+			LocalPredicate localSimplePredicate,
+			long outCardinality, Column[] outputColumns)
+	{
+		this(childOperator, localSimplePredicate, outCardinality);
+		
+		Column[] childColumns = childOperator.getReturnedColumns();
+		if (outputColumns.length > childColumns.length) {
+			throw new IllegalArgumentException("The filter cannot return more columns than its child.");
+		}
+		for (int i = 0; i < outputColumns.length; i++) {
+			if (!outputColumns[i].equals(childColumns[i])) {
+				throw new IllegalArgumentException("The filter can only return the leading columns of its child.");
+			}
+		}
+		this.outputColumns = outputColumns;
+	}
+	
 	
 	/**
 	 * Gets the child of this plan operator.
@@ -141,8 +176,8 @@ public class FilterPlanOperator extends OptimizerPlanOperator
 	@Override
 	public Column[] getReturnedColumns()
 	{
-		// same as for the child
-		return this.childOperator.getReturnedColumns();
+		// same as for the child, unless the trailing columns are dropped
+		return this.outputColumns != null ? this.outputColumns : this.childOperator.getReturnedColumns();
 	}
 
 	/* (non-Javadoc)
@@ -167,6 +202,9 @@ public class FilterPlanOperator extends OptimizerPlanOperator
 		// translate the predicate
 		de.tuberlin.dima.minidb.qexec.predicate.LocalPredicate pred = this.localSimplePredicate.createExecutablePredicate();
 		
+		if (this.outputColumns != null && this.outputColumns.length < this.childOperator.getReturnedColumns().length) {
+			return OperatorFactory.createFilterOperator(childPlan, pred, this.outputColumns.length);
+		}
 		return OperatorFactory.createFilterOperator(childPlan, pred);
 	}
 
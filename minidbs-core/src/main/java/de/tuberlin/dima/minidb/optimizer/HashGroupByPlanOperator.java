@@ -0,0 +1,210 @@
+package de.tuberlin.dima.minidb.optimizer;
+
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
+import de.tuberlin.dima.minidb.parser.OutputColumn;
+import de.tuberlin.dima.minidb.qexec.OperatorFactory;
+import de.tuberlin.dima.minidb.qexec.PhysicalPlanOperator;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeap;
+import de.tuberlin.dima.minidb.semantics.Column;
+import de.tuberlin.dima.minidb.semantics.ProducedColumn;
+import de.tuberlin.dima.minidb.semantics.Relation;
+
+
+/**
+ * The optimizer plan operator representing a group by operation that aggregates the
+ * groups in a hash table. Unlike the {@link GroupByPlanOperator}, it does not require its
+ * input to be sorted on the grouping columns, and the groups leave it in no particular order.
+ * <p>
+ * The operator is expected to receive tuples where the order of columns in the
+ * tuples is that of the output tuples.
+ */
+public class HashGroupByPlanOperator extends OptimizerPlanOperator
+{
+	/**
+	 * The child below this plan operator.
+	 */
+	private OptimizerPlanOperator child;
+
+	/**
+	 * The columns that are produced by this operator.
+	 */
+	private ProducedColumn[] prodCols;
+
+	/**
+	 * The indices of the grouping columns in the input tuple.
+	 */
+	private int[] groupColIndices;
+
+	/**
+	 * The indices of the aggregation columns in the input tuple.
+	 */
+	private int[] aggColIndices;
+
+	/**
+	 * The columns produced by this operator.
+	 */
+	private Column[] outColumns;
+
+	/**
+	 * The cardinality of this group by operator, which is the number of groups.
+	 */
+	private long cardinality;
+
+	/**
+	 * Creates a new hash group by operator over the given child.
+	 *
+	 * @param child The child producing the tuples to be grouped.
+	 * @param outCols The columns produced by the operator.
+	 * @param groupColIndices The indices of the grouping columns in the input tuple.
+	 * @param aggColIndices The indices of the aggregation columns in the input tuple.
+	 * @param outCardinality The estimated number of groups.
+	 */
+	public HashGroupByPlanOperator(OptimizerPlanOperator child, ProducedColumn[] outCols,
+			int[] groupColIndices, int[] aggColIndices, long outCardinality)
+	{
+		this.child = child;
+		this.prodCols = outCols;
+		this.groupColIndices = groupColIndices;
+		this.aggColIndices = aggColIndices;
+		this.cardinality = outCardinality;
+
+		// set the output columns
+		this.outColumns = new Column[outCols.length];
+		for (int i = 0; i < outCols.length; i++) {
+			this.outColumns[i] = new Column(outCols[i].getRelation(), outCols[i].getOutputDataType(), i);
+		}
+	}
+
+	/**
+	 * Gets the child from this HashGroupByPlanOperator.
+	 *
+	 * @return The child.
+	 */
+	public OptimizerPlanOperator getChild()
+	{
+		return this.child;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator#getName()
+	 */
+	@Override
+	public String getName()
+	{
+		return "Hash Group By";
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator#getOutputCardinality()
+	 */
+	@Override
+	public long getOutputCardinality()
+	{
+		return this.cardinality;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator#getChildren()
+	 */
+	@Override
+	public Iterator<OptimizerPlanOperator> getChildren()
+	{
+		return Collections.singleton(this.child).iterator();
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator#getInvolvedTables()
+	 */
+	@Override
+	public Set<Relation> getInvolvedRelations()
+	{
+		return this.child.getInvolvedRelations();
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator#getOutputColumns()
+	 */
+	@Override
+	public Column[] getReturnedColumns()
+	{
+		return this.outColumns;
+	}
+
+	public ProducedColumn[] getProducedColumns()
+	{
+		return this.prodCols;
+	}
+
+	public int[] getGroupColIndices()
+	{
+		return this.groupColIndices;
+	}
+
+	public int[] getAggColIndices()
+	{
+		return this.aggColIndices;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator#getColumnOrder()
+	 */
+	@Override
+	public OrderedColumn[] getColumnOrder()
+	{
+		// spilled groups are produced after the ones in memory, so no order is promised
+		return new OrderedColumn[0];
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator#createPhysicalPlan(de.tuberlin.dima.minidb.io.BufferPoolManager, de.tuberlin.dima.minidb.qexec.heap.QueryHeap)
+	 */
+	@Override
+	public PhysicalPlanOperator createPhysicalPlan(BufferPoolManager buffer, QueryHeap heap)
+	{
+		// translate the child first
+		PhysicalPlanOperator childPlan = this.child.createPhysicalPlan(buffer, heap);
+
+		// build the arrays with the aggregate functions and the aggregate data types
+		OutputColumn.AggregationType[] aggFunct = new OutputColumn.AggregationType[this.aggColIndices.length];
+		DataType[] aggType = new DataType[this.aggColIndices.length];
+		for (int i = 0; i < this.aggColIndices.length; i++) {
+			ProducedColumn pc = this.prodCols[this.aggColIndices[i]];
+			aggFunct[i] = pc.getAggregationFunction();
+			aggType[i] = pc.getOutputDataType();
+		}
+
+		// build the arrays with the aggregate and grouping output positions
+		int[] groupOutPos = new int[this.prodCols.length];
+		int[] aggOutPos = new int[this.prodCols.length];
+		for (int i = 0, gi = 0, ai = 0; i < groupOutPos.length; i++) {
+			ProducedColumn pc = this.prodCols[i];
+			if (pc.getAggregationFunction() == OutputColumn.AggregationType.NONE) {
+				groupOutPos[i] = gi++;
+				aggOutPos[i] = -1;
+			}
+			else {
+				groupOutPos[i] = -1;
+				aggOutPos[i] = ai++;
+			}
+		}
+
+		// the input schema sizes the groups in the query heap
+		Column[] inputCols = this.child.getReturnedColumns();
+		DataType[] inputSchema = new DataType[inputCols.length];
+		for (int i = 0; i < inputCols.length; i++) {
+			inputSchema[i] = inputCols[i].getDataType();
+		}
+		int groups = this.cardinality <= Integer.MAX_VALUE ? (int) this.cardinality : Integer.MAX_VALUE;
+
+		// now add this operator
+		return OperatorFactory.createHashGroupByOperator(childPlan, heap, inputSchema, groups,
+				this.groupColIndices, this.aggColIndices, aggFunct, aggType, groupOutPos, aggOutPos);
+	}
+
+}
@@ -0,0 +1,218 @@
+package de.tuberlin.dima.minidb.optimizer;
+
+
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
+import de.tuberlin.dima.minidb.qexec.BloomFilter;
+import de.tuberlin.dima.minidb.qexec.OperatorFactory;
+import de.tuberlin.dima.minidb.qexec.PhysicalPlanOperator;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeap;
+import de.tuberlin.dima.minidb.semantics.Column;
+import de.tuberlin.dima.minidb.semantics.predicate.JoinPredicate;
+
+
+/**
+ * The optimizer representation of a HASH JOIN operator that can perform
+ * inner equi-joins. The left child is the build side, from which the hash
+ * table is built, the right child is the probe side. Neither input needs to
+ * be ordered and the output has no order.
+ * <p>
+ * If the probe side is a table scan and the build side is smaller, the join keys of the
+ * build side are passed to the scan through a Bloom filter, so that probe tuples without
+ * a join partner are dropped while the table is read.
+ */
+public class HashJoinPlanOperator extends AbstractJoinPlanOperator
+{
+	/**
+	 * The largest estimated build cardinality for which a Bloom filter is passed to the probe side.
+	 */
+	public static final long MAX_FILTERED_BUILD_CARDINALITY = 1 << 22;
+	
+	/**
+	 * The indices of the join columns in the build (left) input tuple.
+	 */
+	public final int[] buildJoinColumns;
+	
+	/**
+	 * The indices of the join columns in the probe (right) input tuple.
+	 */
+	public final int[] probeJoinColumns;
+	
+	/**
+	 * The map describing how the build input is copied to the output.
+	 */
+	public final int[] buildOutColMap;
+	
+	/**
+	 * The map describing how the probe input is copied to the output.
+	 */
+	public final int[] probeOutColMap;
+	
+	/**
+	 * The columns produced by this operator.
+	 */
+	private Column[] outCols;
+	
+	
+
+	/**
+	 * Creates a new Hash Join operator that performs an inner equi-join over the
+	 * given inputs, using the join columns as indicated in the arrays.
+	 *  
+	 * @param buildChild The child operator from which the hash table is built.
+	 * @param probeChild The child operator that probes the hash table.
+	 * @param joinPredicate The predicate that is applied in this join.
+	 * @param buildJoinCols The indices of the join columns in the build input tuple.
+	 * @param probeJoinCols The indices of the join columns in the probe input tuple.
+	 * @param buildOutColMap The map describing how the build input is copied to the output.
+	 * @param probeOutColMap The map describing how the probe input is copied to the output.
+	 * @param cardinality The output cardinality of the join.
+	 */
+	public HashJoinPlanOperator(OptimizerPlanOperator buildChild, OptimizerPlanOperator probeChild,
+			JoinPredicate joinPredicate, int[] buildJoinCols, int[] probeJoinCols,
+			int[] buildOutColMap, int[] probeOutColMap, long cardinality)
+	throws OptimizerException
+	{ 
+		super(buildChild, probeChild, joinPredicate);
+		
+		this.buildJoinColumns = buildJoinCols;
+		this.probeJoinColumns = probeJoinCols;
+		this.buildOutColMap = buildOutColMap;
+		this.probeOutColMap = probeOutColMap;
+		this.cardinality = cardinality;
+		
+		// produce the output columns
+		if (buildOutColMap.length != probeOutColMap.length) {
+			throw new OptimizerException("Output columns maps are invalid.");
+		}
+		
+		Column[] buildInputCols = buildChild.getReturnedColumns();
+		Column[] probeInputCols = probeChild.getReturnedColumns();
+		
+		this.outCols = new Column[buildOutColMap.length];
+		for (int i = 0; i < this.outCols.length; i++) {
+			int buildIdx = buildOutColMap[i];
+			int probeIdx = probeOutColMap[i];
+			if (buildIdx == -1) {
+				// must be from the probe side
+				if (probeIdx < 0 || probeIdx >= probeInputCols.length) {
+					throw new IllegalArgumentException();
+				}
+				this.outCols[i] = probeInputCols[probeIdx];
+			}
+			else if (buildIdx < 0 || buildIdx >= buildInputCols.length){
+				throw new IllegalArgumentException();
+			}
+			else {
+				this.outCols[i] = buildInputCols[buildIdx];
+			}
+		}
+		
+		if (buildJoinCols.length != probeJoinCols.length) {
+			throw new IllegalArgumentException("Join column index arrays do not match.");
+		}
+	}
+	
+	/**
+	 * Gets the child operator from which the hash table is built.
+	 * 
+	 * @return The build side child.
+	 */
+	public OptimizerPlanOperator getBuildChild()
+	{
+		return this.leftChild;
+	}
+	
+	/**
+	 * Gets the child operator that probes the hash table.
+	 * 
+	 * @return The probe side child.
+	 */
+	public OptimizerPlanOperator getProbeChild()
+	{
+		return this.rightChild;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.AbstractJoinPlanOperator#getName()
+	 */
+	@Override
+	public String getName()
+	{
+		return "Hash Join";
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.AbstractJoinPlanOperator#getOutputColumns()
+	 */
+	@Override
+	public Column[] getReturnedColumns()
+	{
+		return this.outCols;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.AbstractJoinPlanOperator#getColumnOrder()
+	 */
+	@Override
+	public OrderedColumn[] getColumnOrder()
+	{
+		// spilled partitions are joined after the in-memory one, so no order is promised
+		return new OrderedColumn[0];
+	}
+
+	/* (non-Javadoc)
+	 * @see de.tuberlin.dima.minidb.optimizer.AbstractJoinPlanOperator#createPhysicalPlan(de.tuberlin.dima.minidb.io.BufferPoolManager, de.tuberlin.dima.minidb.qexec.heap.QueryHeap)
+	 */
+	@Override
+	public PhysicalPlanOperator createPhysicalPlan(BufferPoolManager buffer, QueryHeap heap)
+	{
+		// translate the children to a physical plan
+		PhysicalPlanOperator buildPlan = this.leftChild.createPhysicalPlan(buffer, heap);
+		
+		long card = this.leftChild.getOutputCardinality();
+		int intCard = card <= Integer.MAX_VALUE ? (int) card : Integer.MAX_VALUE;
+		
+		// a filter pays off only if the build side misses some of the probe tuples
+		if (this.rightChild instanceof TableScanPlanOperator && card <= MAX_FILTERED_BUILD_CARDINALITY
+				&& card < this.rightChild.getOutputCardinality())
+		{
+			Column[] scanCols = this.rightChild.getReturnedColumns();
+			int[] filterColumns = new int[this.probeJoinColumns.length];
+			for (int i = 0; i < filterColumns.length; i++) {
+				filterColumns[i] = scanCols[this.probeJoinColumns[i]].getColumnIndex();
+			}
+			BloomFilter filter = new BloomFilter();
+			PhysicalPlanOperator probePlan = ((TableScanPlanOperator) this.rightChild).createPhysicalPlan(
+					buffer, heap, filter, filterColumns);
+			
+			return OperatorFactory.createHashJoinOperator(buildPlan, probePlan, heap,
+					getSchema(this.leftChild), getSchema(this.rightChild), intCard,
+					this.buildJoinColumns, this.probeJoinColumns, this.buildOutColMap, this.probeOutColMap,
+					filter);
+		}
+		
+		PhysicalPlanOperator probePlan = this.rightChild.createPhysicalPlan(buffer, heap);
+		
+		// create the hash join operator
+		return OperatorFactory.createHashJoinOperator(buildPlan, probePlan, heap,
+				getSchema(this.leftChild), getSchema(this.rightChild), intCard,
+				this.buildJoinColumns, this.probeJoinColumns, this.buildOutColMap, this.probeOutColMap);
+	}
+	
+	/**
+	 * Assembles the data types of the columns returned by the given operator.
+	 * 
+	 * @param pop The operator.
+	 * @return The data types of the operator's columns.
+	 */
+	private static DataType[] getSchema(OptimizerPlanOperator pop)
+	{
+		Column[] cols = pop.getReturnedColumns();
+		DataType[] schema = new DataType[cols.length];
+		for (int i = 0; i < cols.length; i++) {
+			schema[i] = cols[i].getDataType();
+		}
+		return schema;
+	}
+}
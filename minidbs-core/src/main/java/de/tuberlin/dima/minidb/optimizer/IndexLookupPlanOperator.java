@@ -12,6 +12,7 @@ import de.tuberlin.dima.minidb.core.DataField;
 import de.tuberlin.dima.minidb.core.DataType;
 import de.tuberlin.dima.minidb.core.InternalOperationFailure;
 import de.tuberlin.dima.minidb.io.index.BTreeIndex;
+import de.tuberlin.dima.minidb.io.index.CompositeKeyEncoding;
 import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
 import de.tuberlin.dima.minidb.parser.Predicate;
 import de.tuberlin.dima.minidb.qexec.OperatorFactory;
@@ -24,6 +25,7 @@ import de.tuberlin.dima.minidb.semantics.Relation;
 import de.tuberlin.dima.minidb.semantics.predicate.LocalPredicate;
 import de.tuberlin.dima.minidb.semantics.predicate.LocalPredicateAtom;
 import de.tuberlin.dima.minidb.semantics.predicate.LocalPredicateBetween;
+import de.tuberlin.dima.minidb.semantics.predicate.LocalPredicateConjunct;
 
 
 /**
@@ -204,6 +206,123 @@ public class IndexLookupPlanOperator extends OptimizerPlanOperator
 		}
 	}
 	
+	/**
+	 * Creates a new index scan operator that operates uncorrelated on a composite index and
+	 * evaluates the given predicates on the leading columns of the index. All predicates but
+	 * the last one must be equality predicates, while the last one may also be a range or a
+	 * between predicate. If the predicates cover all columns of the index with equality, the
+	 * index scan looks up the key, otherwise it scans the range of keys that start with the
+	 * values of the predicates.
+	 * 
+	 * @param index The index descriptor for the composite index that is to scan.
+	 * @param table The table access for which the index scan stands.
+	 * @param keyPreds The predicates on the leading columns of the index, in the order of the key.
+	 * @param outCard The output cardinality of the index scan.
+	 */
+	public IndexLookupPlanOperator(IndexDescriptor index, BaseTableAccess table,
+			LocalPredicate[] keyPreds, long outCard)
+	{
+		CompositeKeyEncoding encoding = index.getSchema().getCompositeKeyEncoding();
+		if (encoding == null) {
+			throw new IllegalArgumentException("The index is not a composite index.");
+		}
+		if (keyPreds.length == 0 || keyPreds.length > encoding.getNumberOfColumns()) {
+			throw new IllegalArgumentException("Invalid number of predicates on the index columns.");
+		}
+		
+		this.theIndex = index;
+		this.tableAccess = table;
+		this.outCardinality = outCard;
+		this.correlatedColumnIndex = -1;
+		
+		DataType indexedColumnType = index.getSchema().getIndexedColumnSchema().getDataType();
+		this.indexedColumn = new Column(table, indexedColumnType, index.getSchema().getColumnNumber());
+		
+		if (keyPreds.length == 1) {
+			this.pred = keyPreds[0];
+		}
+		else {
+			LocalPredicateConjunct conjunct = new LocalPredicateConjunct();
+			float selectivity = 1.0f;
+			for (LocalPredicate keyPred : keyPreds) {
+				conjunct.addPredicate(keyPred);
+				selectivity *= keyPred.getSelectivity();
+			}
+			conjunct.setSelectivity(selectivity);
+			this.pred = conjunct;
+		}
+		
+		// the values of the leading columns that bound the range, where an open
+		// range on the last column bounds that end by the equal columns only
+		int num = keyPreds.length;
+		DataField[] lower = new DataField[num];
+		DataField[] upper = new DataField[num];
+		int numLower = num;
+		int numUpper = num;
+		boolean lowerIncluded = true;
+		boolean upperIncluded = true;
+		boolean equality = num == encoding.getNumberOfColumns();
+		
+		for (int i = 0; i < num; i++) {
+			boolean equal = false;
+			if (keyPreds[i] instanceof LocalPredicateAtom) {
+				LocalPredicateAtom atom = (LocalPredicateAtom) keyPreds[i];
+				lower[i] = atom.getLiteral();
+				upper[i] = atom.getLiteral();
+				switch (atom.getParsedPredicate().getOp())
+				{
+				case EQUAL:
+					equal = true;
+					break;
+				case GREATER:
+					lowerIncluded = false;
+					numUpper = i;
+					break;
+				case GREATER_OR_EQUAL:
+					numUpper = i;
+					break;
+				case SMALLER:
+					upperIncluded = false;
+					numLower = i;
+					break;
+				case SMALLER_OR_EQUAL:
+					numLower = i;
+					break;
+				default:
+					throw new IllegalArgumentException("Index cannot answer inequality predicate queries.");
+				}
+			}
+			else if (keyPreds[i] instanceof LocalPredicateBetween) {
+				LocalPredicateBetween bet = (LocalPredicateBetween) keyPreds[i];
+				lower[i] = bet.getLowerBoundLiteral();
+				upper[i] = bet.getUpperBoundLiteral();
+				lowerIncluded = bet.getLowerBound().getOp() == Predicate.Operator.GREATER_OR_EQUAL;
+				upperIncluded = bet.getUpperBound().getOp() == Predicate.Operator.SMALLER_OR_EQUAL;
+			}
+			else {
+				throw new IllegalArgumentException("Index cannot answer predicates other than atoms or between predicates.");
+			}
+			
+			if (!equal && i < num - 1) {
+				throw new IllegalArgumentException("Only the predicate on the last of the columns may be a range predicate.");
+			}
+			equality &= equal;
+		}
+		
+		if (equality) {
+			this.key1 = encoding.encode(lower);
+			this.key2 = null;
+			this.key1Included = true;
+			this.key2Included = false;
+		}
+		else {
+			this.key1 = encoding.encodeLowerBound(lower, numLower, lowerIncluded);
+			this.key2 = encoding.encodeUpperBound(upper, numUpper, upperIncluded);
+			this.key1Included = lowerIncluded;
+			this.key2Included = upperIncluded;
+		}
+	}
+	
 	/**
 	 * Creates an index lookup operator for correlated index accessed.
 	 * 
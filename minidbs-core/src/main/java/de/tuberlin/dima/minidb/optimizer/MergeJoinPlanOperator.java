@@ -4,6 +4,7 @@ package de.tuberlin.dima.minidb.optimizer;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.tuberlin.dima.minidb.core.DataType;
 import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
 import de.tuberlin.dima.minidb.qexec.OperatorFactory;
 import de.tuberlin.dima.minidb.qexec.PhysicalPlanOperator;
@@ -187,8 +188,21 @@ public class MergeJoinPlanOperator extends AbstractJoinPlanOperator
 		PhysicalPlanOperator leftPlan = this.leftChild.createPhysicalPlan(buffer, heap);
 		PhysicalPlanOperator rightPlan = this.rightChild.createPhysicalPlan(buffer, heap);
 		
+		// the right schema sizes the buffer for the tuples with equal keys in the query heap
+		Column[] rightCols = this.rightChild.getReturnedColumns();
+		DataType[] rightSchema = new DataType[rightCols.length];
+		for (int i = 0; i < rightCols.length; i++) {
+			rightSchema[i] = rightCols[i].getDataType();
+		}
+		
+		// every left tuple meets the right tuples with its key, so the output per left tuple
+		// estimates how many right tuples share a key
+		long leftCardinality = Math.max(1, this.leftChild.getOutputCardinality());
+		long groupSize = (this.getOutputCardinality() + leftCardinality - 1) / leftCardinality;
+		int estimatedGroupSize = (int) Math.max(1, Math.min(groupSize, this.rightChild.getOutputCardinality()));
+		
 		// create the merge join operator
-		return OperatorFactory.createMergeJoinOperator(leftPlan, rightPlan, this.leftJoinColumns,
-				this.rightJoinColumns, this.leftOutColMap, this.rightOutColMap);
+		return OperatorFactory.createMergeJoinOperator(leftPlan, rightPlan, heap, rightSchema, estimatedGroupSize,
+				this.leftJoinColumns, this.rightJoinColumns, this.leftOutColMap, this.rightOutColMap);
 	}
 }
@@ -2,10 +2,12 @@ package de.tuberlin.dima.minidb.optimizer;
 
 
 import de.tuberlin.dima.minidb.Constants;
+import de.tuberlin.dima.minidb.catalogue.TableStatistics;
 import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
 import de.tuberlin.dima.minidb.semantics.BaseTableAccess;
 import de.tuberlin.dima.minidb.semantics.Column;
 import de.tuberlin.dima.minidb.semantics.predicate.LocalPredicate;
+import de.tuberlin.dima.minidb.qexec.BloomFilter;
 import de.tuberlin.dima.minidb.qexec.LowLevelPredicate;
 import de.tuberlin.dima.minidb.qexec.OperatorFactory;
 import de.tuberlin.dima.minidb.qexec.PhysicalPlanOperator;
@@ -40,6 +42,11 @@ public class TableScanPlanOperator extends BaseTableAccess
 	 */
 	private int prefetchingLength = Constants.DEFAULT_PREFETCHING_LENGTH;
 	
+	/**
+	 * The number of workers that scan a large table, zero for one per available processor.
+	 */
+	private int parallelism = Constants.DEFAULT_SCAN_PARALLELISM;
+	
 	
 	// ------------------------------------------------------------------------
 	
@@ -126,6 +133,28 @@ public class TableScanPlanOperator extends BaseTableAccess
 		this.prefetchingLength = prefetchingLength;
 	}
 	
+	/**
+	 * Gets the number of workers that scan the table if it is large, where zero
+	 * stands for one worker per available processor.
+	 *
+	 * @return The parallelism.
+	 */
+	public int getParallelism()
+	{
+		return this.parallelism;
+	}
+
+	/**
+	 * Sets the number of workers that scan the table if it is large. A value of one
+	 * disables the parallel scan, zero uses one worker per available processor.
+	 *
+	 * @param parallelism The parallelism to set.
+	 */
+	public void setParallelism(int parallelism)
+	{
+		this.parallelism = parallelism;
+	}
+	
 	/**
 	 * Assigns this operator the columns it should produce.
 	 * 
@@ -150,6 +179,23 @@ public class TableScanPlanOperator extends BaseTableAccess
 	 */
 	@Override
 	public PhysicalPlanOperator createPhysicalPlan(BufferPoolManager buffer, QueryHeap heap)
+	{
+		return createPhysicalPlan(buffer, heap, null, null);
+	}
+	
+	/**
+	 * Creates the physical table scan with a Bloom filter over the join keys of the build side
+	 * of a join. The scan drops the tuples whose key in the given table columns is rejected
+	 * by the filter.
+	 * 
+	 * @param buffer The buffer pool used to get the pages that are scanned.
+	 * @param heap The query heap.
+	 * @param joinKeyFilter The filter over the join keys, or null, if the scan is not filtered.
+	 * @param filterColumns The table columns that make up the join key.
+	 * @return The physical table scan.
+	 */
+	public PhysicalPlanOperator createPhysicalPlan(BufferPoolManager buffer, QueryHeap heap,
+			BloomFilter joinKeyFilter, int[] filterColumns)
 	{
 		// check if we have columns assigned. if not, the scan is still abstract and cannot
 		// be translated into a physical plan
@@ -198,6 +244,19 @@ public class TableScanPlanOperator extends BaseTableAccess
 			colIndices[i] = this.producedColumns[i].getColumnIndex();
 		}
 		
+		// large tables are split into morsels of pages that are scanned by several workers
+		int workers = this.parallelism > 0 ? this.parallelism : Runtime.getRuntime().availableProcessors();
+		TableStatistics stats = getTable().getStatistics();
+		if (workers > 1 && stats != null && stats.getNumberOfPages() >= Constants.MIN_PARALLEL_SCAN_PAGES) {
+			return OperatorFactory.createParallelTableScanOperator(buffer, getTable().getResourceManager(),
+					getTable().getResourceId(), colIndices, execPred, joinKeyFilter, filterColumns, workers);
+		}
+		
+		if (joinKeyFilter != null) {
+			return OperatorFactory.createTableScanOperator(buffer, getTable().getResourceManager(),
+					getTable().getResourceId(), colIndices, execPred, this.prefetchingLength,
+					joinKeyFilter, filterColumns);
+		}
 		return OperatorFactory.createTableScanOperator(buffer, getTable().getResourceManager(),
 				getTable().getResourceId(), colIndices, execPred, this.prefetchingLength);
 	}
@@ -169,6 +169,48 @@ public interface CostEstimator
 	long computeMergeJoinCost();
 
 
+	/**
+	 * Computes the costs of a Hash Join. The join has no I/O costs as long as the hash table
+	 * over the build side fits into the memory of the query heap. Otherwise, the partitions
+	 * that do not fit are written to temp space and read back, on the build as well as on
+	 * the probe side.
+	 * <p>
+	 * Estimators that do not model the hash join cost it like sorting both inputs, so that
+	 * it is not preferred over a merge join on their account.
+	 *
+	 * @param buildColumns The columns of the tuples on the build side.
+	 * @param buildCardinality The number of tuples on the build side.
+	 * @param probeColumns The columns of the tuples on the probe side.
+	 * @param probeCardinality The number of tuples on the probe side.
+	 * @return The I/O costs (microseconds) for the hash join operation.
+	 */
+	default long computeHashJoinCost(Column[] buildColumns, long buildCardinality,
+			Column[] probeColumns, long probeCardinality)
+	{
+		return computeSortCosts(buildColumns, buildCardinality)
+				+ computeSortCosts(probeColumns, probeCardinality) + computeMergeJoinCost();
+	}
+
+
+	/**
+	 * Computes the costs of a hash based Group By. The aggregation has no I/O costs as long
+	 * as the groups fit into the memory of the query heap. Otherwise, the input tuples of the
+	 * groups that do not fit are written to temp space and read back.
+	 * <p>
+	 * Estimators that do not model the hash aggregation cost it like sorting the input, so
+	 * that it is not preferred over the sort based Group By on their account.
+	 *
+	 * @param inputColumns The columns of the input tuples.
+	 * @param inputCardinality The number of input tuples.
+	 * @param numGroups The number of groups.
+	 * @return The I/O costs (microseconds) for the hash aggregation.
+	 */
+	default long computeHashGroupByCost(Column[] inputColumns, long inputCardinality, long numGroups)
+	{
+		return computeSortCosts(inputColumns, inputCardinality);
+	}
+
+
 	/**
 	 * Computes the costs of a nested loop join. The cost are directly derived from the
 	 * operator semantics and assume that the inner child is executed once for each
@@ -180,4 +222,22 @@ public interface CostEstimator
 	 */
 	long computeNestedLoopJoinCost(long outerCardinality, OptimizerPlanOperator innerOp);
 
+	/**
+	 * Computes the costs of a block nested loop join. The inner child is executed once if its
+	 * tuples fit into the memory of the operator, and once per block of outer tuples otherwise.
+	 * Estimators that do not model the blocks cost it like the tuple-wise nested loop join, so
+	 * that it is not preferred on their account.
+	 *
+	 * @param outerColumns The columns of the outer tuples.
+	 * @param outerCardinality The cardinality of the outer side.
+	 * @param innerColumns The columns of the inner tuples.
+	 * @param innerOp The inner plan of the join operator.
+	 * @return The I/O costs (microseconds) for the block nested loop join operation.
+	 */
+	default long computeBlockNestedLoopJoinCost(Column[] outerColumns, long outerCardinality,
+			Column[] innerColumns, OptimizerPlanOperator innerOp)
+	{
+		return computeNestedLoopJoinCost(outerCardinality, innerOp);
+	}
+
 }
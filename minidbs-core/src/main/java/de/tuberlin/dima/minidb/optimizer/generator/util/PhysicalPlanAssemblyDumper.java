@@ -6,7 +6,9 @@ import java.util.Map;
 import de.tuberlin.dima.minidb.optimizer.FetchPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.FilterPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.GroupByPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.HashGroupByPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.IndexLookupPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.HashJoinPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.MergeJoinPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.NestedLoopJoinPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator;
@@ -57,6 +59,10 @@ public class PhysicalPlanAssemblyDumper implements OptimizerPlanVisitor
 		{
 			dumpAssemblyCode((GroupByPlanOperator) operator);
 		}
+		else if (operator instanceof HashGroupByPlanOperator)
+		{
+			dumpAssemblyCode((HashGroupByPlanOperator) operator);
+		}
 		else if (operator instanceof IndexLookupPlanOperator)
 		{
 			dumpAssemblyCode((IndexLookupPlanOperator) operator);
@@ -65,6 +71,10 @@ public class PhysicalPlanAssemblyDumper implements OptimizerPlanVisitor
 		{
 			dumpAssemblyCode((MergeJoinPlanOperator) operator);
 		}
+		else if (operator instanceof HashJoinPlanOperator)
+		{
+			dumpAssemblyCode((HashJoinPlanOperator) operator);
+		}
 		else if (operator instanceof NestedLoopJoinPlanOperator)
 		{
 			dumpAssemblyCode((NestedLoopJoinPlanOperator) operator);
@@ -135,7 +145,32 @@ public class PhysicalPlanAssemblyDumper implements OptimizerPlanVisitor
 		String subplanVar = new Character(this.currCvar++).toString();
 		String childVar = this.subplanVars.get(operator.getChild());
 		
-		ProducedColumn[] prod_cols = operator.getProducedColumns();
+		dumpGroupByColumns(subplanVar, operator.getProducedColumns(), operator.getGroupColIndices(), operator.getAggColIndices());
+		
+		System.out.println(String.format("GroupByPlanOperator %1$s = new GroupByPlanOperator(%2$s, %1$s_prod_columns, %1$s_group_col_indices, %1$s_agg_col_indices, %3$d);", subplanVar, childVar, operator.getOutputCardinality()));
+		System.out.println("");
+		
+		this.subplanVars.put(operator, subplanVar);
+	}
+	
+	private void dumpAssemblyCode(HashGroupByPlanOperator operator)
+	{
+		System.out.println("// hash group by subplan");
+		
+		// assign a variable for this subplan
+		String subplanVar = new Character(this.currCvar++).toString();
+		String childVar = this.subplanVars.get(operator.getChild());
+		
+		dumpGroupByColumns(subplanVar, operator.getProducedColumns(), operator.getGroupColIndices(), operator.getAggColIndices());
+		
+		System.out.println(String.format("HashGroupByPlanOperator %1$s = new HashGroupByPlanOperator(%2$s, %1$s_prod_columns, %1$s_group_col_indices, %1$s_agg_col_indices, %3$d);", subplanVar, childVar, operator.getOutputCardinality()));
+		System.out.println("");
+		
+		this.subplanVars.put(operator, subplanVar);
+	}
+	
+	private void dumpGroupByColumns(String subplanVar, ProducedColumn[] prod_cols, int[] group_col_indices, int[] agg_col_indices)
+	{
 		System.out.println(String.format("ProducedColumn[] %s_prod_columns = new ProducedColumn[%d];", subplanVar, prod_cols.length));
 		for(int i = 0; i < prod_cols.length; i++)
 		{
@@ -154,7 +189,6 @@ public class PhysicalPlanAssemblyDumper implements OptimizerPlanVisitor
 		}
 		System.out.println("");
 		
-		int[] group_col_indices = operator.getGroupColIndices();
 		System.out.println(String.format("int[] %s_group_col_indices = new int[%d];", subplanVar, group_col_indices.length));
 		for(int i = 0; i < group_col_indices.length; i++)
 		{
@@ -162,19 +196,12 @@ public class PhysicalPlanAssemblyDumper implements OptimizerPlanVisitor
 		}
 		System.out.println("");
 		
-		int[] agg_col_indices = operator.getAggColIndices();
 		System.out.println(String.format("int[] %s_agg_col_indices = new int[%d];", subplanVar, agg_col_indices.length));
 		for(int i = 0; i < agg_col_indices.length; i++)
 		{
 			System.out.println(String.format("%1$s_agg_col_indices[%2$d] = %3$d;", subplanVar, i, agg_col_indices[i]));
 		}
 		System.out.println("");
-		
-		
-		System.out.println(String.format("GroupByPlanOperator %1$s = new GroupByPlanOperator(%2$s, %1$s_prod_columns, %1$s_group_col_indices, %1$s_agg_col_indices, %3$d);", subplanVar, childVar, operator.getOutputCardinality()));
-		System.out.println("");
-		
-		this.subplanVars.put(operator, subplanVar);
 	}
 	
 	private void dumpAssemblyCode(IndexLookupPlanOperator operator)
@@ -248,6 +275,46 @@ public class PhysicalPlanAssemblyDumper implements OptimizerPlanVisitor
 		this.subplanVars.put(operator, subplanVar);
 	}
 
+	private void dumpAssemblyCode(HashJoinPlanOperator operator)
+	{
+		System.out.println("// hash join subplan");
+		
+		// assign a variable for this subplan
+		String subplanVar = new Character(this.currCvar++).toString();
+		String buildChildVar = this.subplanVars.get(operator.getBuildChild());
+		String probeChildVar = this.subplanVars.get(operator.getProbeChild());
+		
+		// dump the produced columns
+		System.out.println(String.format("int[] %s_bj_cols = new int[%d];", subplanVar, operator.buildJoinColumns.length));
+		for(int i = 0; i < operator.buildJoinColumns.length; i++)
+		{
+			System.out.println(String.format("%s_bj_cols[%d] = %d;", subplanVar, i, operator.buildJoinColumns[i]));
+		}
+		
+		System.out.println(String.format("int[] %s_pj_cols = new int[%d];", subplanVar, operator.probeJoinColumns.length));
+		for(int i = 0; i < operator.probeJoinColumns.length; i++)
+		{
+			System.out.println(String.format("%s_pj_cols[%d] = %d;", subplanVar, i, operator.probeJoinColumns[i]));
+		}
+		
+		System.out.println(String.format("int[] %s_bc_map = new int[%d];", subplanVar, operator.buildOutColMap.length));
+		for(int i = 0; i < operator.buildOutColMap.length; i++)
+		{
+			System.out.println(String.format("%s_bc_map[%d] = %d;", subplanVar, i, operator.buildOutColMap[i]));
+		}
+		
+		System.out.println(String.format("int[] %s_pc_map = new int[%d];", subplanVar, operator.probeOutColMap.length));
+		for(int i = 0; i < operator.probeOutColMap.length; i++)
+		{
+			System.out.println(String.format("%s_pc_map[%d] = %d;", subplanVar, i, operator.probeOutColMap[i]));
+		}
+		
+		System.out.println(String.format("HashJoinPlanOperator %s = new HashJoinPlanOperator(%s, %s, null, %s_bj_cols, %s_pj_cols, %s_bc_map, %s_pc_map, %d);", subplanVar, buildChildVar, probeChildVar, subplanVar, subplanVar, subplanVar, subplanVar, operator.getOutputCardinality()));
+		System.out.println("");
+		
+		this.subplanVars.put(operator, subplanVar);
+	}
+
 	private void dumpAssemblyCode(NestedLoopJoinPlanOperator operator)
 	{
 		System.out.println("// nested loop join subplan");
@@ -269,7 +336,8 @@ public class PhysicalPlanAssemblyDumper implements OptimizerPlanVisitor
 			System.out.println(String.format("%s_ic_map[%d] = %d;", subplanVar, i, operator.innerOutColMap[i]));
 		}
 		
-		System.out.println(String.format("NestedLoopJoinPlanOperator %1$s = new NestedLoopJoinPlanOperator(%2$s, %3$s, null, %1$s_oc_map, %1$s_ic_map, %4$d);", subplanVar, leftChildVar, rightChildVar, operator.getOutputCardinality()));
+		// also dumps the block nested loop join, which is constructed the same way
+		System.out.println(String.format("%5$s %1$s = new %5$s(%2$s, %3$s, null, %1$s_oc_map, %1$s_ic_map, %4$d);", subplanVar, leftChildVar, rightChildVar, operator.getOutputCardinality(), operator.getClass().getSimpleName()));
 		System.out.println("");
 		
 		this.subplanVars.put(operator, subplanVar);
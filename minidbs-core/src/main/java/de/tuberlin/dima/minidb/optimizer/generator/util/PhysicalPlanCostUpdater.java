@@ -3,8 +3,11 @@ package de.tuberlin.dima.minidb.optimizer.generator.util;
 import de.tuberlin.dima.minidb.optimizer.FetchPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.FilterPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.GroupByPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.HashGroupByPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.HashJoinPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.IndexLookupPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.MergeJoinPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.BlockNestedLoopJoinPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.NestedLoopJoinPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.SortPlanOperator;
@@ -64,12 +67,21 @@ public class PhysicalPlanCostUpdater
 		else if (pop instanceof MergeJoinPlanOperator) {
 			costMergeJoinOperator((MergeJoinPlanOperator) pop);
 		}
+		else if (pop instanceof HashJoinPlanOperator) {
+			costHashJoinOperator((HashJoinPlanOperator) pop);
+		}
+		else if (pop instanceof BlockNestedLoopJoinPlanOperator) {
+			costBlockNestedLoopJoinOperator((BlockNestedLoopJoinPlanOperator) pop);
+		}
 		else if (pop instanceof NestedLoopJoinPlanOperator) {
 			costNestedLoopJoinOperator((NestedLoopJoinPlanOperator) pop);
 		}
 		else if (pop instanceof GroupByPlanOperator) {
 			costGroupByOperator((GroupByPlanOperator) pop);
 		}
+		else if (pop instanceof HashGroupByPlanOperator) {
+			costHashGroupByOperator((HashGroupByPlanOperator) pop);
+		}
 		else if (pop instanceof AnalyzedSelectQuery) {
 			costSubQuery((AnalyzedSelectQuery) pop);
 		}
@@ -196,6 +208,28 @@ public class PhysicalPlanCostUpdater
 		mergeJoinPop.setCumulativeCosts(joinCosts + leftChildCosts + rightChildCosts);
 	}
 	
+	/**
+	 * Computes the costs and cumulative costs for the given HASH JOIN operator.
+	 * 
+	 * @param hashJoinPop The hash join operator to compute the costs for.
+	 */
+	private void costHashJoinOperator(HashJoinPlanOperator hashJoinPop)
+	{
+		OptimizerPlanOperator buildChild = hashJoinPop.getBuildChild();
+		OptimizerPlanOperator probeChild = hashJoinPop.getProbeChild();
+		
+		// get the child's costs and compute them if necessary
+		long buildChildCosts = getChildCosts(buildChild);
+		long probeChildCosts = getChildCosts(probeChild);
+		
+		long joinCosts = this.costEstimator.computeHashJoinCost(
+				buildChild.getReturnedColumns(), buildChild.getOutputCardinality(),
+				probeChild.getReturnedColumns(), probeChild.getOutputCardinality());
+	
+		hashJoinPop.setOperatorCosts(joinCosts);
+		hashJoinPop.setCumulativeCosts(joinCosts + buildChildCosts + probeChildCosts);
+	}
+	
 	/**
 	 * Computes the costs and cumulative costs for the given NESTED-LOOP JOIN operator.
 	 * 
@@ -216,6 +250,27 @@ public class PhysicalPlanCostUpdater
 		nlJoinPop.setCumulativeCosts(joinCosts + outerChildCosts);
 	}
 	
+	/**
+	 * Computes the costs and cumulative costs for the given BLOCK NESTED-LOOP JOIN operator.
+	 * 
+	 * @param nlJoinPop The block nested loop join operator to compute the costs for.
+	 */
+	private void costBlockNestedLoopJoinOperator(BlockNestedLoopJoinPlanOperator nlJoinPop)
+	{
+		OptimizerPlanOperator outerChild = nlJoinPop.getOuterChild();
+		OptimizerPlanOperator innerChild = nlJoinPop.getInnerChild();
+		
+		// get the child's costs and compute them if necessary
+		long outerChildCosts = getChildCosts(outerChild);
+		getChildCosts(innerChild);
+		
+		long joinCosts = this.costEstimator.computeBlockNestedLoopJoinCost(outerChild.getReturnedColumns(),
+				outerChild.getOutputCardinality(), innerChild.getReturnedColumns(), innerChild);
+		
+		nlJoinPop.setOperatorCosts(joinCosts);
+		nlJoinPop.setCumulativeCosts(joinCosts + outerChildCosts);
+	}
+	
 	/**
 	 * Computes the costs and cumulative costs for the given GROUP BY operator.
 	 * The operator is assumed to be free, as it only performs a one-pass over
@@ -234,6 +289,26 @@ public class PhysicalPlanCostUpdater
 		groupOp.setCumulativeCosts(childCosts);
 	}
 	
+	/**
+	 * Computes the costs and cumulative costs for the given hash GROUP BY operator.
+	 * The operator is free as long as its groups fit into memory.
+	 * 
+	 * @param groupOp The hash GROUP BY operator to compute the costs for.
+	 */
+	private void costHashGroupByOperator(HashGroupByPlanOperator groupOp)
+	{
+		OptimizerPlanOperator child = groupOp.getChild();
+		
+		// get the child's costs and compute them if necessary
+		long childCosts = getChildCosts(child);
+		
+		long groupCosts = this.costEstimator.computeHashGroupByCost(child.getReturnedColumns(),
+				child.getOutputCardinality(), groupOp.getOutputCardinality());
+		
+		groupOp.setOperatorCosts(groupCosts);
+		groupOp.setCumulativeCosts(groupCosts + childCosts);
+	}
+	
 	/**
 	 * Computes the costs and cumulative costs for the given sub-query.
 	 * The cost of the sub-query is the cost of its plan.
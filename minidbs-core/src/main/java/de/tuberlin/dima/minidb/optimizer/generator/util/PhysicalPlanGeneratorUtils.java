@@ -15,11 +15,13 @@ import de.tuberlin.dima.minidb.optimizer.FetchPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.FilterPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.IndexLookupPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.InterestingOrder;
+import de.tuberlin.dima.minidb.optimizer.NestedLoopJoinPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.OptimizerException;
 import de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.OrderedColumn;
 import de.tuberlin.dima.minidb.optimizer.RequestedOrder;
 import de.tuberlin.dima.minidb.optimizer.SortPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.TableScanPlanOperator;
 import de.tuberlin.dima.minidb.optimizer.cardinality.CardinalityEstimator;
 import de.tuberlin.dima.minidb.parser.Predicate;
 import de.tuberlin.dima.minidb.semantics.BaseTableAccess;
@@ -56,7 +58,8 @@ public class PhysicalPlanGeneratorUtils
 	 * 
 	 * The predicate must be either a <tt>OptimizerLocalPredicateAtom</tt> or a
 	 * <tt>OptimizerLocalPredicateBetween</tt>. An atom predicate may not have an inequality
-	 * operator.
+	 * operator. Composite indexes are not considered, because their keys are not values of
+	 * the predicate's column.
 	 * 
 	 * @param table The table access for which this function searches for a suitable index access.
 	 * @param cardinality The cardinality after the application of the given predicate.
@@ -70,7 +73,7 @@ public class PhysicalPlanGeneratorUtils
 			LocalPredicate pred, int predCol, List<IndexDescriptor> indexes)
 	{
 		for (IndexDescriptor id : indexes) {
-			if (id.getSchema().getColumnNumber() == predCol) {
+			if (!id.getSchema().isComposite() && id.getSchema().getColumnNumber() == predCol) {
 				// that is our index
 				if (pred instanceof LocalPredicateAtom) {
 					return new IndexLookupPlanOperator(id, table, (LocalPredicateAtom) pred, cardinality);
@@ -195,6 +198,56 @@ public class PhysicalPlanGeneratorUtils
 		}
 	}
 	
+	/**
+	 * Checks if the plan rooted at the given operator accesses the tuple that it is opened with,
+	 * such as the correlated index lookup on the inner side of an index-nested-loop join. Such a
+	 * plan can only be the inner side of a nested-loop join that re-opens it for every outer tuple.
+	 * The inner sides of nested-loop joins within the plan are correlated to the outer sides of
+	 * those joins and are not considered.
+	 * 
+	 * @param pop The root of the plan to check.
+	 * @return True, if the plan is correlated to the tuple it is opened with, false otherwise.
+	 */
+	public static boolean isCorrelated(OptimizerPlanOperator pop)
+	{
+		if (pop instanceof IndexLookupPlanOperator) {
+			return ((IndexLookupPlanOperator) pop).isCorrelated();
+		}
+		if (pop instanceof NestedLoopJoinPlanOperator) {
+			return isCorrelated(((NestedLoopJoinPlanOperator) pop).getOuterChild());
+		}
+		for (Iterator<OptimizerPlanOperator> children = pop.getChildren(); children.hasNext(); ) {
+			if (isCorrelated(children.next())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Sets the number of workers that scan the large tables in the plan rooted at the given
+	 * operator. The scans on the inner side of a nested-loop join are left as they are, because
+	 * the join re-opens its inner side for every outer tuple or block, which would start the
+	 * workers over each time.
+	 * 
+	 * @param pop The root of the plan.
+	 * @param parallelism The number of workers, zero for one per available processor.
+	 */
+	public static void setScanParallelism(OptimizerPlanOperator pop, int parallelism)
+	{
+		if (pop instanceof TableScanPlanOperator) {
+			((TableScanPlanOperator) pop).setParallelism(parallelism);
+		}
+		else if (pop instanceof NestedLoopJoinPlanOperator) {
+			setScanParallelism(((NestedLoopJoinPlanOperator) pop).getOuterChild(), parallelism);
+		}
+		else {
+			for (Iterator<OptimizerPlanOperator> children = pop.getChildren(); children.hasNext(); ) {
+				setScanParallelism(children.next(), parallelism);
+			}
+		}
+	}
+	
 	/**
 	 * Checks if the plan rooted at the given operator satisfies an order requirement. If it
 	 * does, it is returned as it is. If it does not, a <tt>SortPlanOperator</tt> is added
@@ -452,7 +505,7 @@ public class PhysicalPlanGeneratorUtils
 			
 			for (int i = 0; i < indexes.size(); i++) {
 				IndexDescriptor ix = indexes.get(i);
-				if (ix.getSchema().getColumnNumber() == rightCol.getColumnIndex()) {
+				if (!ix.getSchema().isComposite() && ix.getSchema().getColumnNumber() == rightCol.getColumnIndex()) {
 					// this index is a match!
 					
 					// create a fake abstract join to call the cardinality estimator
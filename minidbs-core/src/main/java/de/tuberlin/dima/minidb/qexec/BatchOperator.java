@@ -0,0 +1,23 @@
+package de.tuberlin.dima.minidb.qexec;
+
+
+/**
+ * Optional extension of a physical plan operator that can produce its tuples in
+ * columnar batches instead of one at a time. Operators implementing it still
+ * support <code>next()</code>; consumers that are batch aware check for this interface
+ * and fall back to calling <code>next()</code> repeatedly for all other operators.
+ */
+public interface BatchOperator extends PhysicalPlanOperator
+{
+	/**
+	 * Resets the given batch and fills it with the next tuples produced by this operator,
+	 * at most as many as the batch can hold. The operator may return fewer tuples than
+	 * would fit even if it is not yet exhausted.
+	 *
+	 * @param batch The batch to fill.
+	 * @return True, if tuples were added to the batch, false, if the operator is exhausted.
+	 * @throws QueryExecutionException Thrown, if the query execution could not be completed
+	 *                                 for whatever reason.
+	 */
+	public boolean nextBatch(TupleBatch batch) throws QueryExecutionException;
+}
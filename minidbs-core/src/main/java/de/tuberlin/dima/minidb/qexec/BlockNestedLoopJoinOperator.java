@@ -0,0 +1,19 @@
+package de.tuberlin.dima.minidb.qexec;
+
+
+/**
+ * Interface describing a nested loop join operator that does not re-scan its inner side for
+ * every outer tuple. If the inner side fits into the memory assigned by the query heap, it is
+ * read once and kept there. Otherwise, the outer tuples are collected in blocks in that memory
+ * and the inner side is scanned once per block.
+ * <p>
+ * Because the inner side is opened only once per block, it must not be correlated to the
+ * outer tuple. The join predicate is therefore always evaluated by the operator.
+ *
+ * This interface is empty and serves only as a marker. All relevant methods
+ * are specified in the interface <tt>PhysicalPlanOperator</tt>.
+ */
+public interface BlockNestedLoopJoinOperator extends PhysicalPlanOperator
+{
+
+}
@@ -0,0 +1,164 @@
+package de.tuberlin.dima.minidb.qexec;
+
+
+import java.util.Arrays;
+
+import de.tuberlin.dima.minidb.core.DataTuple;
+
+
+/**
+ * A Bloom filter over the join keys of the build side of a join, which is passed sideways to
+ * the operator that produces the probe side. The join adds the keys of all build tuples and
+ * seals the filter, after which the probe side can drop the tuples whose keys are certainly
+ * not among the build keys, before they are decoded or handed to the join.
+ * <p>
+ * The filter works on key hashes rather than on the fields, so that the probe side can compute
+ * them from the encoded columns on a page. The hash of a key is built with
+ * {@link #combine(int, int)}, starting at {@link #EMPTY_KEY_HASH}, over the hash codes of
+ * the key fields. A filter that is not sealed rejects nothing.
+ */
+public final class BloomFilter
+{
+	/**
+	 * The hash of a key without any fields, the start value for {@link #combine(int, int)}.
+	 */
+	public static final int EMPTY_KEY_HASH = 1;
+
+	/**
+	 * The number of bits per expected key, which gives a false positive rate of about 1%.
+	 */
+	private static final int BITS_PER_KEY = 10;
+
+	/**
+	 * The number of bits that are set for each key.
+	 */
+	private static final int NUM_HASHES = 4;
+
+	/**
+	 * The smallest and the largest number of bits in the filter.
+	 */
+	private static final int MIN_BITS = 1 << 6;
+	private static final int MAX_BITS = 1 << 26;
+
+	/**
+	 * The bits of the filter.
+	 */
+	private long[] bits;
+
+	/**
+	 * The mask that maps a hash to a bit.
+	 */
+	private int mask;
+
+	/**
+	 * Flag indicating whether all keys are added, set by the join and read by the probe side.
+	 */
+	private volatile boolean sealed;
+
+
+	/**
+	 * Clears the filter and sizes it for the expected number of keys. The filter rejects
+	 * nothing until it is sealed again.
+	 *
+	 * @param expectedKeys The number of keys that are expected to be added.
+	 */
+	public void reset(int expectedKeys)
+	{
+		this.sealed = false;
+		long wanted = Math.max((long) MIN_BITS, (long) expectedKeys * BITS_PER_KEY);
+		int numBits = wanted >= MAX_BITS ? MAX_BITS : Integer.highestOneBit((int) wanted - 1) << 1;
+		if (this.bits == null || this.bits.length != numBits >>> 6) {
+			this.bits = new long[numBits >>> 6];
+		}
+		else {
+			Arrays.fill(this.bits, 0);
+		}
+		this.mask = numBits - 1;
+	}
+
+	/**
+	 * Adds the key with the given hash to the filter.
+	 *
+	 * @param keyHash The hash of the key, as computed by {@link #keyHash(DataTuple, int[])}.
+	 */
+	public void add(int keyHash)
+	{
+		long x = keyHash * 0x9E3779B97F4A7C15L;
+		int h1 = (int) (x >>> 32);
+		int h2 = (int) x | 1;
+		for (int i = 0; i < NUM_HASHES; i++) {
+			int bit = (h1 + i * h2) & this.mask;
+			this.bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Marks the filter as complete. From now on, keys that were not added are rejected.
+	 */
+	public void seal()
+	{
+		this.sealed = true;
+	}
+
+	/**
+	 * Checks whether the filter is complete and may reject keys.
+	 *
+	 * @return True, if all keys have been added to the filter.
+	 */
+	public boolean isSealed()
+	{
+		return this.sealed;
+	}
+
+	/**
+	 * Checks whether the key with the given hash may have been added to the filter. If the
+	 * filter is not sealed, every key may have been added.
+	 *
+	 * @param keyHash The hash of the key, as computed by {@link #keyHash(DataTuple, int[])}.
+	 * @return False, if the key has certainly not been added, true otherwise.
+	 */
+	public boolean mightContain(int keyHash)
+	{
+		if (!this.sealed) {
+			return true;
+		}
+		long x = keyHash * 0x9E3779B97F4A7C15L;
+		int h1 = (int) (x >>> 32);
+		int h2 = (int) x | 1;
+		for (int i = 0; i < NUM_HASHES; i++) {
+			int bit = (h1 + i * h2) & this.mask;
+			if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Extends the hash of a key by the hash code of its next field.
+	 *
+	 * @param keyHash The hash of the fields of the key so far.
+	 * @param fieldHash The hash code of the next field of the key.
+	 * @return The hash of the key including the next field.
+	 */
+	public static int combine(int keyHash, int fieldHash)
+	{
+		return 31 * keyHash + fieldHash;
+	}
+
+	/**
+	 * Computes the hash of the key that consists of the given columns of the tuple.
+	 *
+	 * @param tuple The tuple containing the key.
+	 * @param columns The positions of the key columns in the tuple.
+	 * @return The hash of the key.
+	 */
+	public static int keyHash(DataTuple tuple, int[] columns)
+	{
+		int h = EMPTY_KEY_HASH;
+		for (int i = 0; i < columns.length; i++) {
+			h = combine(h, tuple.getField(columns[i]).hashCode());
+		}
+		return h;
+	}
+}
@@ -0,0 +1,14 @@
+package de.tuberlin.dima.minidb.qexec;
+
+
+/**
+ * Interface describing a physical plan operator that groups and aggregates the
+ * tuples in a hash table, so that its input does not need to be sorted.
+ *
+ * This interface is empty and serves only as a marker. All relevant methods
+ * are specified in the interface <tt>PhysicalPlanOperator</tt>.
+ */
+public interface HashGroupByOperator extends PhysicalPlanOperator
+{
+
+}
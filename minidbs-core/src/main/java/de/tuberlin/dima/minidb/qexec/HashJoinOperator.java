@@ -0,0 +1,14 @@
+package de.tuberlin.dima.minidb.qexec;
+
+
+/**
+ * Interface describing a physical plan operator that performs an equi-join by
+ * building a hash table over one input and probing it with the other.
+ *
+ * This interface is empty and serves only as a marker. All relevant methods
+ * are specified in the interface <tt>PhysicalPlanOperator</tt>.
+ */
+public interface HashJoinOperator extends PhysicalPlanOperator
+{
+
+}
@@ -5,8 +5,13 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import de.tuberlin.dima.minidb.core.BigIntField;
 import de.tuberlin.dima.minidb.core.DataField;
 import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DoubleField;
+import de.tuberlin.dima.minidb.core.FloatField;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.core.SmallIntField;
 import de.tuberlin.dima.minidb.mapred.SerializationUtils;
 import de.tuberlin.dima.minidb.parser.Predicate.Operator;
 import de.tuberlin.dima.minidb.qexec.predicate.LocalPredicate;
@@ -88,8 +93,31 @@ public final class LowLevelPredicate implements LocalPredicate
 	{
 		return this.colIndex;
 	}
-		
-	
+
+	/**
+	 * Gets the literal that the column is compared to.
+	 *
+	 * @return The literal of this predicate.
+	 */
+	public DataField getLiteral()
+	{
+		return this.literal;
+	}
+
+	/**
+	 * Checks whether the outcome of comparing a column value to the literal satisfies the
+	 * operator of this predicate. This allows evaluators that compare values in their binary
+	 * form to apply the predicate without creating a field.
+	 *
+	 * @param comparison The result of comparing the column value to the literal, which must
+	 *                   be -1, 0 or 1.
+	 * @return True, if a value with that comparison outcome passes the predicate.
+	 */
+	public boolean accepts(int comparison)
+	{
+		return (comparison == this.c1 | comparison == this.c2);
+	}
+
 	/* (non-Javadoc)
 	 * @see de.tuberlin.dima.minidb.qexec.predicate.LocalPredicate#evaluate(de.tuberlin.dima.minidb.core.DataTuple)
 	 */
@@ -112,7 +140,7 @@ public final class LowLevelPredicate implements LocalPredicate
 	 */
 	public boolean evaluate(DataField field)
 	{
-		int c = field.compareTo(this.literal);
+		int c = Integer.signum(field.compareTo(this.literal));
 		return (c == this.c1 | c == this.c2);
 	}
 	
@@ -129,7 +157,7 @@ public final class LowLevelPredicate implements LocalPredicate
 	 */
 	public boolean evaluateWithNull(DataField field)
 	{
-		int c = field.compareTo(this.literal);
+		int c = Integer.signum(field.compareTo(this.literal));
 		boolean b = !field.isNULL();
 		return (c == this.c1 | c == this.c2) & b;
 	}
@@ -154,7 +182,7 @@ public final class LowLevelPredicate implements LocalPredicate
 		for (int i = 0; i < fields.length; i++) {
 			@SuppressWarnings("unchecked")
 			T ft = (T) fields[i];
-			int c = ft.compareTo(lt);
+			int c = Integer.signum(ft.compareTo(lt));
 			result[i] = (c == c1 | c == c2);
 		}
 	}
@@ -179,12 +207,103 @@ public final class LowLevelPredicate implements LocalPredicate
 		for (int i = 0; i < fields.length; i++) {
 			@SuppressWarnings("unchecked")
 			T ft = (T) fields[i];
-			int c = ft.compareTo(lt);
+			int c = Integer.signum(ft.compareTo(lt));
 			boolean b = !ft.isNULL();
 			result[i] = (c == c1 | c == c2) & b;
 		}
 	}
-	
+
+	/**
+	 * Evaluates the predicate against the selected rows of a batch and narrows the selection
+	 * to the rows for which it holds. Columns held in primitive arrays are compared without
+	 * creating field objects. NULLs are handled as in {@link #evaluateWithNull(DataField)}.
+	 *
+	 * @param batch The batch holding the column the predicate refers to.
+	 * @param selection The positions of the candidate rows in ascending order. Overwritten
+	 *                  with the positions of the qualifying rows.
+	 * @param count The number of valid entries in the selection.
+	 * @return The number of qualifying rows.
+	 */
+	public int evaluate(TupleBatch batch, int[] selection, int count)
+	{
+		final int c1 = this.c1, c2 = this.c2;
+		int out = 0;
+
+		switch (batch.getColumnType(this.colIndex)) {
+		case SMALL_INT:
+		case INT: {
+			int[] col = batch.getIntColumn(this.colIndex);
+			int lit, nil;
+			if (this.literal instanceof SmallIntField) {
+				lit = ((SmallIntField) this.literal).getValue();
+				nil = Short.MIN_VALUE;
+			}
+			else {
+				lit = ((IntField) this.literal).getValue();
+				nil = Integer.MIN_VALUE;
+			}
+			for (int i = 0; i < count; i++) {
+				int row = selection[i];
+				int v = col[row];
+				int c = v < lit ? -1 : (v == lit ? 0 : 1);
+				if ((c == c1 | c == c2) & v != nil) {
+					selection[out++] = row;
+				}
+			}
+			break;
+		}
+		case BIG_INT: {
+			long[] col = batch.getLongColumn(this.colIndex);
+			long lit = ((BigIntField) this.literal).getValue();
+			for (int i = 0; i < count; i++) {
+				int row = selection[i];
+				long v = col[row];
+				int c = v < lit ? -1 : (v == lit ? 0 : 1);
+				if ((c == c1 | c == c2) & v != Long.MIN_VALUE) {
+					selection[out++] = row;
+				}
+			}
+			break;
+		}
+		case FLOAT: {
+			float[] col = batch.getFloatColumn(this.colIndex);
+			float lit = ((FloatField) this.literal).getValue();
+			for (int i = 0; i < count; i++) {
+				int row = selection[i];
+				float v = col[row];
+				int c = v < lit ? -1 : (v == lit ? 0 : 1);
+				if ((c == c1 | c == c2) & !Float.isNaN(v)) {
+					selection[out++] = row;
+				}
+			}
+			break;
+		}
+		case DOUBLE: {
+			double[] col = batch.getDoubleColumn(this.colIndex);
+			double lit = ((DoubleField) this.literal).getValue();
+			for (int i = 0; i < count; i++) {
+				int row = selection[i];
+				double v = col[row];
+				int c = v < lit ? -1 : (v == lit ? 0 : 1);
+				if ((c == c1 | c == c2) & !Double.isNaN(v)) {
+					selection[out++] = row;
+				}
+			}
+			break;
+		}
+		default: {
+			DataField[] col = batch.getFieldColumn(this.colIndex);
+			for (int i = 0; i < count; i++) {
+				int row = selection[i];
+				if (evaluateWithNull(col[row])) {
+					selection[out++] = row;
+				}
+			}
+		}
+		}
+		return out;
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
 	 */
@@ -80,6 +80,80 @@ public class OperatorFactory
 		return registry.createTableScanOperator(bufferPool, tableManager, resourceId, producedColumnIndexes, predicate, prefetchWindowLength);
 	}
 	
+	/**
+	 * Creates a table scan operator that additionally drops the tuples whose key in the given
+	 * table columns is rejected by the Bloom filter. The filter is filled with the join keys of
+	 * the build side of a hash join, which passes it sideways to the scan of its probe side, so
+	 * that tuples without a join partner are rejected on the page, before they are decoded.
+	 * 
+	 * @param bufferPool The buffer pool used to get the pages that are scanned.
+	 * @param tableManager The table manager used to get the page numbers of the pages
+	 *                     relevant to the scan.
+	 * @param resourceId The resource id of the table resource.
+	 * @param producedColumnIndexes The indexes of the columns that occur in the produced
+	 *                              tuple in the order as they are produced.
+	 * @param predicate The predicate evaluated within this TableScan.
+	 * @param prefetchWindowLength The number of pages to prefetch in advance to the page
+	 *                             that the operator currently works on.
+	 * @param joinKeyFilter The filter over the join keys of the build side.
+	 * @param filterColumns The table columns that make up the join key.
+	 * @return A new physical plan operator representing a TableScan.
+	 */
+	public static TableScanOperator createTableScanOperator(
+			BufferPoolManager bufferPool,
+			TableResourceManager tableManager,
+			int resourceId,
+			int[] producedColumnIndexes,
+			LowLevelPredicate[] predicate,
+			int prefetchWindowLength,
+			BloomFilter joinKeyFilter,
+			int[] filterColumns)
+	{
+		if (registry == null) {
+			registry = AbstractExtensionFactory.getExtensionFactory();
+		}
+		
+		return registry.createTableScanOperator(bufferPool, tableManager, resourceId, producedColumnIndexes, predicate,
+				prefetchWindowLength, joinKeyFilter, filterColumns);
+	}
+	
+	/**
+	 * Creates a table scan operator that reads the pages of the table on several workers, so
+	 * that a single query can use all processors to scan a large table. The workers claim
+	 * morsels of consecutive pages, evaluate the predicates and the optional join key filter
+	 * on them and hand the qualifying tuples over to the consumer. The order of the tuples is
+	 * not defined.
+	 * 
+	 * @param bufferPool The buffer pool used to get the pages that are scanned.
+	 * @param tableManager The table manager used to get the page numbers of the pages
+	 *                     relevant to the scan.
+	 * @param resourceId The resource id of the table resource.
+	 * @param producedColumnIndexes The indexes of the columns that occur in the produced
+	 *                              tuple in the order as they are produced.
+	 * @param predicate An array of predicates each tuple must pass.
+	 * @param joinKeyFilter The filter over the join keys of the build side of a join, or null.
+	 * @param filterColumns The table columns that make up the join key, or null.
+	 * @param parallelism The number of workers that scan the pages.
+	 * @return A new physical plan operator representing a TableScan.
+	 */
+	public static TableScanOperator createParallelTableScanOperator(
+			BufferPoolManager bufferPool,
+			TableResourceManager tableManager,
+			int resourceId,
+			int[] producedColumnIndexes,
+			LowLevelPredicate[] predicate,
+			BloomFilter joinKeyFilter,
+			int[] filterColumns,
+			int parallelism)
+	{
+		if (registry == null) {
+			registry = AbstractExtensionFactory.getExtensionFactory();
+		}
+		
+		return registry.createParallelTableScanOperator(bufferPool, tableManager, resourceId, producedColumnIndexes,
+				predicate, joinKeyFilter, filterColumns, parallelism);
+	}
+	
 	/**
 	 * Creates an index scan operator that returns the RIDs for the key
 	 * given as the equality literal. This index scan is used to evaluate a local equality
@@ -177,6 +251,33 @@ public class OperatorFactory
 	}
 	
 	
+	/**
+	 * Creates a new FETCH operator that resolves the RIDs from its child in batches. The RIDs of
+	 * a batch are sorted by page, so that every page is read once per batch and the pages are read
+	 * in ascending order. The tuples are returned either in page order or, to preserve an order
+	 * established by the child, in the order of their RIDs.
+	 * 
+	 * @param child The child operator of this fetch operator.
+	 * @param bufferPool The buffer pool used to take the pages from.
+	 * @param tableResourceId The resource id of the table that the tuples are fetched from.
+	 * @param outputColumnMap The map describing how the column of the tuple produced by the
+	 *                        FETCH operator are produced from the tuple fetched from the table.
+	 * @param batchSize The number of RIDs that are sorted and fetched together.
+	 * @param preserveOrder Flag indicating whether the tuples are returned in the order of the RIDs.
+	 */
+	public static FetchOperator createFetchOperator(PhysicalPlanOperator child,
+			BufferPoolManager bufferPool, int tableResourceId, int[] outputColumnMap,
+			int batchSize, boolean preserveOrder)
+	{
+		if (registry == null) {
+			registry = AbstractExtensionFactory.getExtensionFactory();
+		}
+		
+		return registry.createFetchOperator(child, bufferPool, tableResourceId, outputColumnMap,
+				batchSize, preserveOrder);
+	}
+	
+	
 	/**
 	 * Creates a new filter operator that evaluates a local predicate on the incoming tuples.
 	 * The filter does not work correlated, it applies no predicate against a correlated
@@ -193,6 +294,26 @@ public class OperatorFactory
 		
 		return registry.createFilterOperator(child, predicate);
 	}
+	
+	
+	/**
+	 * Creates a new filter operator that evaluates a local predicate on the incoming tuples and
+	 * returns only the given number of leading columns of the qualifying tuples, dropping the
+	 * columns behind them, which only the predicate needs.
+	 * 
+	 * @param child The child of this operator.
+	 * @param predicate The predicate to be evaluated on the incoming tuples.
+	 * @param numOutputColumns The number of leading columns of the incoming tuples that are returned.
+	 */
+	public static FilterOperator createFilterOperator(PhysicalPlanOperator child, LocalPredicate predicate,
+			int numOutputColumns)
+	{
+		if (registry == null) {
+			registry = AbstractExtensionFactory.getExtensionFactory();
+		}
+		
+		return registry.createFilterOperator(child, predicate, numOutputColumns);
+	}
 
 	
 	/**
@@ -269,6 +390,40 @@ public class OperatorFactory
 		return registry.createNestedLoopJoinOperator(outerChild, innerChild, joinPredicate, columnMapOuterTuple, columnMapInnerTuple);
 	}
 	
+	/**
+	 * Creates a Block-Nested-Loop-Join operator. The inner side is read into the memory
+	 * assigned by the query heap if it fits there, and is scanned once per block of outer
+	 * tuples otherwise. The inner side is not opened per outer tuple, so it must not be
+	 * correlated to the outer side. The output tuples are composed as for the
+	 * {@link #createNestedLoopJoinOperator(PhysicalPlanOperator, PhysicalPlanOperator, JoinPredicate, int[], int[])}
+	 * operator, but in no particular order.
+	 * 
+	 * @param outerChild The outer child of the join.
+	 * @param innerChild The inner child of the join.
+	 * @param queryHeap The heap which manages the memory for the inner side or the outer blocks.
+	 * @param outerSchema The data types of the outer input's fields.
+	 * @param innerSchema The data types of the inner input's fields.
+	 * @param estimatedInnerCardinality The estimated number of tuples of the inner input.
+	 * @param joinPredicate The join predicate, or null for a Cartesian join.
+	 * @param columnMapOuterTuple The map describing which position in the outer input tuple goes
+	 *                            to which position in the output tuple. 
+	 * @param columnMapInnerTuple The map describing which position in the inner input tuple goes
+	 *                            to which position in the output tuple.
+	 * @return A Block-Nested-Loop-Join-Operator.
+	 */
+	public static BlockNestedLoopJoinOperator createBlockNestedLoopJoinOperator(
+			PhysicalPlanOperator outerChild, PhysicalPlanOperator innerChild, QueryHeap queryHeap,
+			DataType[] outerSchema, DataType[] innerSchema, int estimatedInnerCardinality,
+			JoinPredicate joinPredicate, int[] columnMapOuterTuple, int[] columnMapInnerTuple)
+	{
+		if (registry == null) {
+			registry = AbstractExtensionFactory.getExtensionFactory();
+		}
+		
+		return registry.createBlockNestedLoopJoinOperator(outerChild, innerChild, queryHeap, outerSchema,
+				innerSchema, estimatedInnerCardinality, joinPredicate, columnMapOuterTuple, columnMapInnerTuple);
+	}
+	
 	/**
 	 * Creates a Merge-Join operator that performs an inner equi-join between the two inputs.
 	 * The operator expects the input columns to be alreads sorted.
@@ -314,6 +469,123 @@ public class OperatorFactory
 		return registry.createMergeJoinOperator(leftChild, rightChild, leftJoinColumns, rightJoinColumns, leftOutColumnMap, rightOutColumnMap);
 	}
 	
+	/**
+	 * Creates a Merge-Join operator like {@link #createMergeJoinOperator(PhysicalPlanOperator,
+	 * PhysicalPlanOperator, int[], int[], int[], int[])}, which keeps the right tuples with
+	 * equal join keys in memory reserved from the query heap. Groups of equal keys that
+	 * exceed that memory are written to the temp space and read again for every left tuple
+	 * that matches them, so a skewed join key does not exhaust the memory.
+	 * 
+	 * @param leftChild The left input to the merge join. 
+	 * @param rightChild The right input to the merge join.
+	 * @param queryHeap The heap which manages the memory and the temp space for the tuples
+	 *                  with equal keys.
+	 * @param rightSchema The data types of the right input's fields.
+	 * @param estimatedGroupSize The estimated number of right tuples that share a join key.
+	 * @param leftJoinColumns The indices of the join columns in the left input.
+	 * @param rightJoinColumns The indices of the join columns in the right input.
+	 * @param leftOutColumnMap The map describing which position in the left input tuple goes
+	 *                         to which position in the output tuple. 
+	 * @param rightOutColumnMap The map describing which position in the right input tuple goes
+	 *                          to which position in the output tuple.
+	 * @return A Merge-Join-Operator.
+	 */
+	public static MergeJoinOperator createMergeJoinOperator(
+			PhysicalPlanOperator leftChild, PhysicalPlanOperator rightChild,
+			QueryHeap queryHeap, DataType[] rightSchema, int estimatedGroupSize,
+			int[] leftJoinColumns, int[] rightJoinColumns,
+			int[] leftOutColumnMap, int[] rightOutColumnMap)
+	{
+		if (registry == null) {
+			registry = AbstractExtensionFactory.getExtensionFactory();
+		}
+		
+		return registry.createMergeJoinOperator(leftChild, rightChild, queryHeap, rightSchema, estimatedGroupSize,
+				leftJoinColumns, rightJoinColumns, leftOutColumnMap, rightOutColumnMap);
+	}
+	
+	/**
+	 * Creates a Hash-Join operator that performs an inner equi-join between the two inputs.
+	 * The operator reads the build input completely into a hash table and then streams the
+	 * probe input against it, so neither input needs to be sorted. The build input should
+	 * be the smaller one. If it does not fit into the memory assigned by the query heap, both
+	 * inputs are partitioned by the hash of their join columns and the partitions that do not
+	 * fit are written to the temp space of the query heap and joined one after the other.
+	 * 
+	 * The tuples produced by the join operator are (in most cases) a concatenation of
+	 * the tuple from build and probe side. How the columns from the output tuple are derived
+	 * from the columns of the input tuples is described in the two map arrays
+	 * <tt>buildOutColumnMap</tt> and <tt>probeOutColumnMap</tt>, exactly as for the
+	 * merge join.
+	 * 
+	 * @param buildChild The input from which the hash table is built. 
+	 * @param probeChild The input that probes the hash table.
+	 * @param queryHeap The heap which manages the memory and the temp space for spilled
+	 *                  partitions.
+	 * @param buildSchema The data types of the build input's fields. Used to estimate the
+	 *                    memory consumption of the hash table.
+	 * @param probeSchema The data types of the probe input's fields.
+	 * @param estimatedBuildCardinality The estimated number of tuples of the build input.
+	 * @param buildJoinColumns The indices of the join columns in the build input.
+	 * @param probeJoinColumns The indices of the join columns in the probe input.
+	 * @param buildOutColumnMap The map describing which position in the build input tuple goes
+	 *                          to which position in the output tuple. 
+	 * @param probeOutColumnMap The map describing which position in the probe input tuple goes
+	 *                          to which position in the output tuple.
+	 * @return A Hash-Join-Operator.
+	 */
+	public static HashJoinOperator createHashJoinOperator(
+			PhysicalPlanOperator buildChild, PhysicalPlanOperator probeChild,
+			QueryHeap queryHeap, DataType[] buildSchema, DataType[] probeSchema,
+			int estimatedBuildCardinality, int[] buildJoinColumns, int[] probeJoinColumns,
+			int[] buildOutColumnMap, int[] probeOutColumnMap)
+	{
+		if (registry == null) {
+			registry = AbstractExtensionFactory.getExtensionFactory();
+		}
+		
+		return registry.createHashJoinOperator(buildChild, probeChild, queryHeap, buildSchema,
+				probeSchema, estimatedBuildCardinality, buildJoinColumns, probeJoinColumns,
+				buildOutColumnMap, probeOutColumnMap);
+	}
+	
+	/**
+	 * Creates a Hash-Join operator that passes the join keys of its build input sideways to
+	 * the probe input. The keys of all build tuples are added to the Bloom filter, which is
+	 * sealed before the probe input is opened. A table scan producing the probe input with the
+	 * same filter then drops the tuples that find no join partner.
+	 * 
+	 * @param buildChild The input from which the hash table is built. 
+	 * @param probeChild The input that probes the hash table.
+	 * @param queryHeap The heap which manages the memory and the temp space for spilled
+	 *                  partitions.
+	 * @param buildSchema The data types of the build input's fields.
+	 * @param probeSchema The data types of the probe input's fields.
+	 * @param estimatedBuildCardinality The estimated number of tuples of the build input.
+	 * @param buildJoinColumns The indices of the join columns in the build input.
+	 * @param probeJoinColumns The indices of the join columns in the probe input.
+	 * @param buildOutColumnMap The map describing which position in the build input tuple goes
+	 *                          to which position in the output tuple. 
+	 * @param probeOutColumnMap The map describing which position in the probe input tuple goes
+	 *                          to which position in the output tuple.
+	 * @param buildKeyFilter The filter that receives the join keys of the build input.
+	 * @return A Hash-Join-Operator.
+	 */
+	public static HashJoinOperator createHashJoinOperator(
+			PhysicalPlanOperator buildChild, PhysicalPlanOperator probeChild,
+			QueryHeap queryHeap, DataType[] buildSchema, DataType[] probeSchema,
+			int estimatedBuildCardinality, int[] buildJoinColumns, int[] probeJoinColumns,
+			int[] buildOutColumnMap, int[] probeOutColumnMap, BloomFilter buildKeyFilter)
+	{
+		if (registry == null) {
+			registry = AbstractExtensionFactory.getExtensionFactory();
+		}
+		
+		return registry.createHashJoinOperator(buildChild, probeChild, queryHeap, buildSchema,
+				probeSchema, estimatedBuildCardinality, buildJoinColumns, probeJoinColumns,
+				buildOutColumnMap, probeOutColumnMap, buildKeyFilter);
+	}
+	
 	/**
 	 * Creates a new sort operator that performs an external merge-sort.
 	 * 
@@ -404,4 +676,46 @@ public class OperatorFactory
 				aggregateFunctions, aggColumnTypes, 
 				groupColumnOutputPositions, aggregateColumnOutputPosition);
 	}
+	
+	/**
+	 * Creates a new group by operator that groups and aggregates its input in a hash table.
+	 * Unlike the operator created by {@link #createGroupByOperator}, the input does not need
+	 * to be sorted on the grouping columns, and the groups are produced in no particular order.
+	 * The memory for the groups is taken from the query heap. Tuples of groups that do not fit
+	 * into it are written to temp partitions and aggregated after the groups in memory.
+	 * 
+	 * The remaining parameters and the layout of the produced tuples are as described for
+	 * {@link #createGroupByOperator}.
+	 * 
+	 * @param child The child of the operator, delivering the tuples to be grouped and aggregated.
+	 * @param queryHeap The heap which manages the memory and the temp space for spilled
+	 *                  partitions.
+	 * @param inputSchema The data types of the input tuple's fields. Used to estimate the
+	 *                    memory consumption of the groups.
+	 * @param estimatedGroups The estimated number of groups.
+	 * @param groupColumnIndices The indices of the grouping columns in the input tuple.
+	 * @param aggColumnIndices The indices of the aggregate columns in the input tuple.
+	 * @param aggregateFunctions The functions that are used for aggregation.
+	 * @param aggColumnTypes The types of the aggregated functions.
+	 * @param groupColumnOutputPositions The map describing in which position in the produced tuple
+	 *                                   the grouping columns will be put.
+	 * @param aggregateColumnOutputPosition The map describing in which position in the produced
+	 *                                      tuple the aggregate columns will be put.
+	 * @return An implementation of the HashGroupByOperator.
+	 */
+	public static HashGroupByOperator createHashGroupByOperator(PhysicalPlanOperator child,
+			QueryHeap queryHeap, DataType[] inputSchema, int estimatedGroups,
+			int[] groupColumnIndices, int[] aggColumnIndices,
+			OutputColumn.AggregationType[] aggregateFunctions,
+			DataType[] aggColumnTypes,
+			int[] groupColumnOutputPositions, int[] aggregateColumnOutputPosition)
+	{
+		if (registry == null) {
+			registry = AbstractExtensionFactory.getExtensionFactory();
+		}
+		
+		return registry.createHashGroupByOperator(child, queryHeap, inputSchema, estimatedGroups,
+				groupColumnIndices, aggColumnIndices, aggregateFunctions, aggColumnTypes,
+				groupColumnOutputPositions, aggregateColumnOutputPosition);
+	}
 }
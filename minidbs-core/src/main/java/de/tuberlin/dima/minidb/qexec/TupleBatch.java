@@ -0,0 +1,457 @@
+package de.tuberlin.dima.minidb.qexec;
+
+
+import de.tuberlin.dima.minidb.core.BasicType;
+import de.tuberlin.dima.minidb.core.BigIntField;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DoubleField;
+import de.tuberlin.dima.minidb.core.FloatField;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.core.SmallIntField;
+
+
+/**
+ * A batch of tuples that is stored column by column. Columns of the arithmetic types
+ * are held in primitive arrays (<code>SMALL_INT</code> and <code>INT</code> as <code>int[]</code>,
+ * <code>BIG_INT</code> as <code>long[]</code>, <code>FLOAT</code> as <code>float[]</code> and
+ * <code>DOUBLE</code> as <code>double[]</code>), where NULL is represented by the same sentinel
+ * value the corresponding field class uses. All other columns are held as arrays of fields.
+ * <p>
+ * A batch is created once by the consumer and refilled by the producer for every call,
+ * so the column arrays are allocated only once per column and type.
+ */
+public final class TupleBatch
+{
+	/**
+	 * The number of rows a batch holds if no other capacity is given.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final int capacity;
+
+	private int numColumns;
+
+	private int size;
+
+	private BasicType[] types;
+
+	private int[][] intColumns;
+
+	private long[][] longColumns;
+
+	private float[][] floatColumns;
+
+	private double[][] doubleColumns;
+
+	private DataField[][] fieldColumns;
+
+
+	/**
+	 * Creates a batch holding up to {@link #DEFAULT_CAPACITY} rows.
+	 */
+	public TupleBatch()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a batch holding up to the given number of rows.
+	 *
+	 * @param capacity The maximal number of rows in the batch.
+	 */
+	public TupleBatch(int capacity)
+	{
+		if (capacity < 1) {
+			throw new IllegalArgumentException("A batch must hold at least one row.");
+		}
+		this.capacity = capacity;
+		reset(0);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Empties the batch and prepares it for rows with the given number of columns.
+	 * The column types are unbound afterwards, the column arrays are kept for reuse.
+	 *
+	 * @param numColumns The number of columns of the rows to come.
+	 */
+	public void reset(int numColumns)
+	{
+		if (this.types == null || this.types.length < numColumns) {
+			int n = Math.max(numColumns, this.types == null ? 0 : this.types.length * 2);
+			this.types = new BasicType[n];
+			this.intColumns = grow(this.intColumns, new int[n][]);
+			this.longColumns = grow(this.longColumns, new long[n][]);
+			this.floatColumns = grow(this.floatColumns, new float[n][]);
+			this.doubleColumns = grow(this.doubleColumns, new double[n][]);
+			this.fieldColumns = grow(this.fieldColumns, new DataField[n][]);
+		}
+		else {
+			for (int i = 0; i < this.types.length; i++) {
+				this.types[i] = null;
+			}
+		}
+		this.numColumns = numColumns;
+		this.size = 0;
+	}
+
+	private static <T> T[] grow(T[] old, T[] target)
+	{
+		if (old != null) {
+			System.arraycopy(old, 0, target, 0, old.length);
+		}
+		return target;
+	}
+
+	/**
+	 * Binds the given column to a type, which determines the array the column is stored in.
+	 *
+	 * @param column The column to bind.
+	 * @param type The basic type of the column's values.
+	 */
+	public void bindColumn(int column, BasicType type)
+	{
+		this.types[column] = type;
+		switch (type) {
+		case SMALL_INT:
+		case INT:
+			if (this.intColumns[column] == null) {
+				this.intColumns[column] = new int[this.capacity];
+			}
+			break;
+		case BIG_INT:
+			if (this.longColumns[column] == null) {
+				this.longColumns[column] = new long[this.capacity];
+			}
+			break;
+		case FLOAT:
+			if (this.floatColumns[column] == null) {
+				this.floatColumns[column] = new float[this.capacity];
+			}
+			break;
+		case DOUBLE:
+			if (this.doubleColumns[column] == null) {
+				this.doubleColumns[column] = new double[this.capacity];
+			}
+			break;
+		default:
+			if (this.fieldColumns[column] == null) {
+				this.fieldColumns[column] = new DataField[this.capacity];
+			}
+		}
+	}
+
+	/**
+	 * Gets the type the given column is bound to.
+	 *
+	 * @param column The column.
+	 * @return The column's type, or null, if the column has not been bound since the last reset.
+	 */
+	public BasicType getColumnType(int column)
+	{
+		return this.types[column];
+	}
+
+	/**
+	 * Checks whether the given type is stored in a primitive array.
+	 *
+	 * @param type The type to check.
+	 * @return True, if columns of that type are held in primitive arrays, false otherwise.
+	 */
+	public static boolean isPrimitive(BasicType type)
+	{
+		return type.isArithmeticType();
+	}
+
+	// ------------------------------------------------------------------------
+
+	public int getCapacity()
+	{
+		return this.capacity;
+	}
+
+	public int getNumberOfColumns()
+	{
+		return this.numColumns;
+	}
+
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Sets the number of valid rows, after a producer has written rows directly into the
+	 * column arrays.
+	 *
+	 * @param size The number of valid rows.
+	 */
+	public void setSize(int size)
+	{
+		if (size < 0 || size > this.capacity) {
+			throw new IllegalArgumentException("Batch size out of range: " + size);
+		}
+		this.size = size;
+	}
+
+	public boolean isFull()
+	{
+		return this.size == this.capacity;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Gets the storage of a <code>SMALL_INT</code> or <code>INT</code> column.
+	 */
+	public int[] getIntColumn(int column)
+	{
+		return this.intColumns[column];
+	}
+
+	/**
+	 * Gets the storage of a <code>BIG_INT</code> column.
+	 */
+	public long[] getLongColumn(int column)
+	{
+		return this.longColumns[column];
+	}
+
+	/**
+	 * Gets the storage of a <code>FLOAT</code> column.
+	 */
+	public float[] getFloatColumn(int column)
+	{
+		return this.floatColumns[column];
+	}
+
+	/**
+	 * Gets the storage of a <code>DOUBLE</code> column.
+	 */
+	public double[] getDoubleColumn(int column)
+	{
+		return this.doubleColumns[column];
+	}
+
+	/**
+	 * Gets the storage of a column of any non-arithmetic type.
+	 */
+	public DataField[] getFieldColumn(int column)
+	{
+		return this.fieldColumns[column];
+	}
+
+	/**
+	 * Gets the value at the given position as a field. For primitive columns, this creates
+	 * a new field object.
+	 *
+	 * @param column The column of the value.
+	 * @param row The row of the value.
+	 * @return The value as a field.
+	 */
+	public DataField getField(int column, int row)
+	{
+		switch (this.types[column]) {
+		case SMALL_INT:
+			return new SmallIntField((short) this.intColumns[column][row]);
+		case INT:
+			return new IntField(this.intColumns[column][row]);
+		case BIG_INT:
+			return new BigIntField(this.longColumns[column][row]);
+		case FLOAT:
+			return new FloatField(this.floatColumns[column][row]);
+		case DOUBLE:
+			return new DoubleField(this.doubleColumns[column][row]);
+		default:
+			return this.fieldColumns[column][row];
+		}
+	}
+
+	/**
+	 * Sets the value at the given position. If the column is not yet bound, it is bound
+	 * to the type of the given field.
+	 *
+	 * @param column The column of the value.
+	 * @param row The row of the value.
+	 * @param field The value to set.
+	 */
+	public void setField(int column, int row, DataField field)
+	{
+		if (this.types[column] == null) {
+			bindColumn(column, field.getBasicType());
+		}
+		switch (this.types[column]) {
+		case SMALL_INT:
+			this.intColumns[column][row] = ((SmallIntField) field).getValue();
+			break;
+		case INT:
+			this.intColumns[column][row] = ((IntField) field).getValue();
+			break;
+		case BIG_INT:
+			this.longColumns[column][row] = ((BigIntField) field).getValue();
+			break;
+		case FLOAT:
+			this.floatColumns[column][row] = ((FloatField) field).getValue();
+			break;
+		case DOUBLE:
+			this.doubleColumns[column][row] = ((DoubleField) field).getValue();
+			break;
+		default:
+			this.fieldColumns[column][row] = field;
+		}
+	}
+
+	/**
+	 * Materializes the given row as a tuple.
+	 *
+	 * @param row The row to materialize.
+	 * @return A new tuple with the row's values.
+	 */
+	public DataTuple getTuple(int row)
+	{
+		DataField[] fields = new DataField[this.numColumns];
+		for (int i = 0; i < this.numColumns; i++) {
+			fields[i] = getField(i, row);
+		}
+		return new DataTuple(fields);
+	}
+
+	/**
+	 * Appends the given tuple as a new row.
+	 *
+	 * @param tuple The tuple to append.
+	 */
+	public void appendTuple(DataTuple tuple)
+	{
+		for (int i = 0; i < this.numColumns; i++) {
+			setField(i, this.size, tuple.getField(i));
+		}
+		this.size++;
+	}
+
+	/**
+	 * Appends rows of another batch with the same columns. Columns of this batch that are
+	 * not yet bound are bound to the types of the source columns.
+	 *
+	 * @param source The batch to copy the rows from.
+	 * @param from The first row of the source to copy.
+	 * @param count The number of rows to copy, at most the space left in this batch.
+	 */
+	public void appendRows(TupleBatch source, int from, int count)
+	{
+		for (int c = 0; c < this.numColumns; c++) {
+			BasicType type = source.types[c];
+			if (type == null) {
+				continue;
+			}
+			if (this.types[c] == null) {
+				bindColumn(c, type);
+			}
+			switch (type) {
+			case SMALL_INT:
+			case INT:
+				System.arraycopy(source.intColumns[c], from, this.intColumns[c], this.size, count);
+				break;
+			case BIG_INT:
+				System.arraycopy(source.longColumns[c], from, this.longColumns[c], this.size, count);
+				break;
+			case FLOAT:
+				System.arraycopy(source.floatColumns[c], from, this.floatColumns[c], this.size, count);
+				break;
+			case DOUBLE:
+				System.arraycopy(source.doubleColumns[c], from, this.doubleColumns[c], this.size, count);
+				break;
+			default:
+				System.arraycopy(source.fieldColumns[c], from, this.fieldColumns[c], this.size, count);
+			}
+		}
+		this.size += count;
+	}
+
+	/**
+	 * Keeps only the selected rows, in the order of the selection.
+	 *
+	 * @param selection The positions of the rows to keep, in ascending order.
+	 * @param count The number of valid entries in the selection.
+	 */
+	public void retain(int[] selection, int count)
+	{
+		if (count == this.size) {
+			return;
+		}
+		for (int c = 0; c < this.numColumns; c++) {
+			if (this.types[c] == null) {
+				continue;
+			}
+			switch (this.types[c]) {
+			case SMALL_INT:
+			case INT: {
+				int[] col = this.intColumns[c];
+				for (int i = 0; i < count; i++) {
+					col[i] = col[selection[i]];
+				}
+				break;
+			}
+			case BIG_INT: {
+				long[] col = this.longColumns[c];
+				for (int i = 0; i < count; i++) {
+					col[i] = col[selection[i]];
+				}
+				break;
+			}
+			case FLOAT: {
+				float[] col = this.floatColumns[c];
+				for (int i = 0; i < count; i++) {
+					col[i] = col[selection[i]];
+				}
+				break;
+			}
+			case DOUBLE: {
+				double[] col = this.doubleColumns[c];
+				for (int i = 0; i < count; i++) {
+					col[i] = col[selection[i]];
+				}
+				break;
+			}
+			default: {
+				DataField[] col = this.fieldColumns[c];
+				for (int i = 0; i < count; i++) {
+					col[i] = col[selection[i]];
+				}
+				for (int i = count; i < this.size; i++) {
+					col[i] = null;
+				}
+			}
+			}
+		}
+		this.size = count;
+	}
+
+	/**
+	 * Drops the columns behind the given number of leading columns, keeping the rows.
+	 *
+	 * @param numColumns The number of leading columns to keep.
+	 */
+	public void retainColumns(int numColumns)
+	{
+		if (numColumns > this.numColumns) {
+			throw new IllegalArgumentException("The batch has only " + this.numColumns + " columns.");
+		}
+		for (int c = numColumns; c < this.numColumns; c++) {
+			if (this.types[c] != null && !isPrimitive(this.types[c])) {
+				for (int i = 0; i < this.size; i++) {
+					this.fieldColumns[c][i] = null;
+				}
+			}
+			this.types[c] = null;
+		}
+		this.numColumns = numColumns;
+	}
+}
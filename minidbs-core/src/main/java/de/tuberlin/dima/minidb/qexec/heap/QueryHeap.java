@@ -433,6 +433,44 @@ public class QueryHeap
 		return array;
 	}
 	
+	/**
+	 * Gets a binary buffer for internal sorts for the assigned heap with the given ID. The buffer
+	 * spans all bytes assigned to the heap, so that operators which serialize their tuples into it
+	 * are not bound by the tuple count of {@link #getMaximalTuplesForInternalSort(int)}. The buffer
+	 * takes the place of the sort array, which is not available any more once the buffer is taken.
+	 * 
+	 * @param heapId The id of the assigned part of the heap.
+	 * @return The binary buffer for internal sorts for this assigned part of the heap.
+	 * @throws QueryHeapException Thrown if no heap space has been assigned under the given ID or
+	 *                           if the internal sort space has previously been released.
+	 */
+	public byte[] getBinarySortBuffer(int heapId) throws QueryHeapException
+	{
+		// get the assignment
+		AssignedSortHeapSpace space = null;
+		synchronized (this.assignableHeapMonitor) {
+			if (this.closed) {
+				throw new QueryHeapException("The query heap has been closed.");
+			}
+			
+			space = this.assignedSortSpace.get(new Integer(heapId));
+			
+			// check
+			if (space == null) {
+				throw new QueryHeapException("No heap space assigned under the id " + heapId);
+			}
+			if (space.getBinarySortBuffer() == null) {
+				if (space.getInternalSortArray() == null) {
+					throw new QueryHeapException(
+							"Internal sort array has already been released for heap " + heapId);
+				}
+				space.setInternalSortArray(null);
+				space.setBinarySortBuffer(new byte[(int) Math.min(space.getHeapSize(), Integer.MAX_VALUE - 8)]);
+			}
+			return space.getBinarySortBuffer();
+		}
+	}
+	
 	/**
 	 * Releases the resources for internal sorting from this heap. Resources for merging
 	 * sub-lists that were written will still be kept.
@@ -479,9 +517,21 @@ public class QueryHeap
 		}
 		return space.getNumInternallySortedTuples();
 	}
-	
-	
-	
+
+	/**
+	 * Gets the number of external lists that one operator may read at the same time. Every
+	 * list that is read holds one block buffer, and so does writing a list. A merge that writes
+	 * its result may therefore read one list less than this number.
+	 *
+	 * @return The maximal number of block buffers per reserved portion of the sort heap.
+	 */
+	public int getMaximalBuffersPerAssignment()
+	{
+		return this.maxBuffersPerAssignment;
+	}
+
+
+
 	/**
 	 * Writes a sequence of tuples to secondary storage. For the written sequence, an iterator
 	 * will be available later.
@@ -495,6 +545,26 @@ public class QueryHeap
 	 */
 	public void writeTupleSequencetoTemp(int heapId, DataTuple[] tuples, int numTuples)
 	throws QueryHeapException, IOException
+	{
+		writeTupleSequencetoTemp(heapId, 0, tuples, numTuples);
+	}
+	
+	/**
+	 * Writes a sequence of tuples to secondary storage and tags it with a partition number.
+	 * All sequences written for the same partition can later be read back as one sequence
+	 * through {@link #getExternalPartition(int, int)}. Operators that partition their input
+	 * by hash use this to spill the partitions that do not fit into their assigned memory.
+	 * 
+	 * @param heapId The ID of the reserved portion of the heap.
+	 * @param partition The number of the partition the tuples belong to.
+	 * @param tuples The list of tuples to write.
+	 * @param numTuples The number of tuples in the list to be written.
+	 * @throws QueryHeapException Thrown if no heap space has been assigned under the given ID.
+	 * @throws IOException Thrown, if an I/O problem prevented the lists from being
+	 *                     written properly.
+	 */
+	public void writeTupleSequencetoTemp(int heapId, int partition, DataTuple[] tuples, int numTuples)
+	throws QueryHeapException, IOException
 	{		
 		// get handle
 		AssignedSortHeapSpace space = null;
@@ -570,7 +640,7 @@ public class QueryHeap
 			
 			// store the blocks for that sublist
 			int listLength = currentPage.getPageNumber() - beginningOfList + 1;
-			space.addWrittenList(new WrittenListDescriptor(beginningOfList, listLength));
+			space.addWrittenList(new WrittenListDescriptor(beginningOfList, listLength, partition));
 		}
 		catch (Exception e) {
 			throw new QueryHeapException("An error occurred writing the sorted sublist: " + e.getMessage());
@@ -647,6 +717,54 @@ public class QueryHeap
 		return iters;
 	}
 	
+	/**
+	 * Gets an iterator over all tuples that were written for the given partition, in the
+	 * order in which they were written. The partition can be read any number of times, every
+	 * call returns a new iterator. Each iterator occupies one block buffer, which it returns
+	 * when it is exhausted or when the heap is released.
+	 * 
+	 * @param heapId The ID of the reserved portion of the heap.
+	 * @param partition The number of the partition to read.
+	 * @return An iterator over the tuples of the partition, which has no elements if nothing
+	 *         was written for the partition.
+	 * @throws QueryHeapException Thrown if no heap space has been assigned under the given ID.
+	 * @throws IOException Thrown, if the first block of the partition could not be read.
+	 */
+	public ExternalTupleSequenceIterator getExternalPartition(int heapId, int partition)
+	throws QueryHeapException, IOException
+	{
+		// get handle
+		AssignedSortHeapSpace space = null;
+		synchronized (this.assignableHeapMonitor) {
+			if (this.closed) {
+				throw new QueryHeapException("The query heap has been closed.");
+			}
+			
+			space = this.assignedSortSpace.get(new Integer(heapId)); 
+		}
+		
+		// check if that ID exists
+		if (space == null) {
+			throw new QueryHeapException("No heap space assigned under the id " + heapId);
+		}
+		
+		// collect the lists of that partition
+		List<WrittenListDescriptor> partitionLists = new ArrayList<WrittenListDescriptor>();
+		List<WrittenListDescriptor> externalLists = space.getWrittenLists();
+		if (externalLists != null) {
+			for (int i = 0; i < externalLists.size(); i++) {
+				WrittenListDescriptor descr = externalLists.get(i);
+				if (descr.getPartition() == partition) {
+					partitionLists.add(descr);
+				}
+			}
+		}
+		
+		PartitionIterator iter = new PartitionIterator(space.getTempFileManager(), partitionLists);
+		space.addPartitionIterator(iter);
+		return iter;
+	}
+	
 	
 	/**
 	 * Internal function to synchronize access to grab a buffer.
@@ -712,6 +830,7 @@ public class QueryHeap
 			if (array != null) {
 				space.setInternalSortArray(null);
 			}
+			space.setBinarySortBuffer(null);
 			
 			// now register the bytes as available
 			releaseAssignableHeapSpace(space.getHeapSize());
@@ -766,6 +885,17 @@ public class QueryHeap
 				space.setExternalListIterators(null);
 			}
 			space.clearWrittenLists();
+			// release the partition readers
+			List<PartitionIterator> partitionIters = space.getPartitionIterators();
+			if (partitionIters != null) {
+				for (int i = 0; i < partitionIters.size(); i++) {
+					byte[] buffer = partitionIters.get(i).abort();
+					if (buffer != null) {
+						returnBuffer(buffer);
+					}
+				}
+				space.clearPartitionIterators();
+			}
 			// release the temp file
 			if (space.getTempFileManager() != null) {
 				try {
@@ -896,17 +1026,24 @@ public class QueryHeap
 		 * Number of block in the written list.
 		 */
 		private int numBlocks;
+		
+		/**
+		 * Partition that the written list belongs to.
+		 */
+		private int partition;
 
 		/**
 		 * Creates a new WrittenListDescriptor.
 		 * 
 		 * @param firstBlock The first block of the written list.
 		 * @param numBlocks The number of block in the written list.
+		 * @param partition The partition that the written list belongs to.
 		 */
-		public WrittenListDescriptor(int firstBlock, int numBlocks)
+		public WrittenListDescriptor(int firstBlock, int numBlocks, int partition)
 		{
 			this.firstBlock = firstBlock;
 			this.numBlocks = numBlocks;
+			this.partition = partition;
 		}
 
 		/**
@@ -924,11 +1061,20 @@ public class QueryHeap
 		 *
 		 * @return The numBlocks.
 		 */
-		@SuppressWarnings("unused")
 		public int getNumBlocks()
 		{
 			return this.numBlocks;
 		}
+		
+		/**
+		 * Gets the partition from this QueryHeap.WrittenListDescriptor.
+		 *
+		 * @return The partition.
+		 */
+		public int getPartition()
+		{
+			return this.partition;
+		}
 	}
 	
 	
@@ -955,6 +1101,11 @@ public class QueryHeap
 		 */
 		private DataTuple[] internalSortArray;
 		
+		/**
+		 * The binary buffer for internal sorting, if it has been taken instead of the array.
+		 */
+		private byte[] binarySortBuffer;
+		
 		/**
 		 * The maximal number of tuples to be sorted internally.
 		 */
@@ -981,6 +1132,11 @@ public class QueryHeap
 		 */
 		private ExternalListIterator[] externalListIterators;
 		
+		/**
+		 * The iterators handed out over written partitions.
+		 */
+		private List<PartitionIterator> partitionIterators;
+		
 		
 		/**
 		 * 
@@ -1059,6 +1215,26 @@ public class QueryHeap
 			this.internalSortArray = internalSortArray;
 		}
 
+		/**
+		 * Gets the binarySortBuffer from this QueryHeap.AssignedSortHeapSpace.
+		 *
+		 * @return The binarySortBuffer.
+		 */
+		public byte[] getBinarySortBuffer()
+		{
+			return this.binarySortBuffer;
+		}
+
+		/**
+		 * Sets the binarySortBuffer for this QueryHeap.AssignedSortHeapSpace.
+		 *
+		 * @param binarySortBuffer The binarySortBuffer to set.
+		 */
+		public void setBinarySortBuffer(byte[] binarySortBuffer)
+		{
+			this.binarySortBuffer = binarySortBuffer;
+		}
+
 		/**
 		 * Gets the numInternallySortedTuples from this QueryHeap.AssignedSortHeapSpace.
 		 *
@@ -1161,6 +1337,39 @@ public class QueryHeap
 		{
 			this.externalListIterators = externalListIterators;
 		}
+		
+		/**
+		 * Registers an iterator handed out over a written partition.
+		 * 
+		 * @param iter The partition iterator.
+		 */
+		public synchronized void addPartitionIterator(PartitionIterator iter)
+		{
+			if (this.partitionIterators == null) {
+				this.partitionIterators = new ArrayList<PartitionIterator>();
+			}
+			// partitions may be read very often, so the exhausted iterators are dropped
+			this.partitionIterators.removeIf(PartitionIterator::isExhausted);
+			this.partitionIterators.add(iter);
+		}
+		
+		/**
+		 * Gets the iterators handed out over written partitions.
+		 * 
+		 * @return The partition iterators, or null, if none were handed out.
+		 */
+		public synchronized List<PartitionIterator> getPartitionIterators()
+		{
+			return this.partitionIterators;
+		}
+		
+		/**
+		 * Forgets the iterators handed out over written partitions.
+		 */
+		public synchronized void clearPartitionIterators()
+		{
+			this.partitionIterators = null;
+		}
 	}
 	
 	/**
@@ -1278,4 +1487,117 @@ public class QueryHeap
 			return null;
 		}
 	}
+	
+	/**
+	 * Implementation of the <tt>ExternalTupleSequenceIterator</tt> that reads all lists written for
+	 * one partition, one after the other, through a single block buffer. The buffer is taken when
+	 * the iterator is created and given back to the heap as soon as the last list is exhausted.
+	 */
+	private final class PartitionIterator implements ExternalTupleSequenceIterator
+	{
+		private final TableResourceManager tempFileManager;
+		
+		private final List<WrittenListDescriptor> lists;
+		
+		private ExternalListIterator currentList;
+		
+		private int nextList;
+		
+		private byte[] buffer;
+		
+		private boolean aborted;
+		
+		
+		public PartitionIterator(TableResourceManager tempFileManager, List<WrittenListDescriptor> lists)
+		throws IOException
+		{
+			this.tempFileManager = tempFileManager;
+			this.lists = lists;
+			if (!lists.isEmpty()) {
+				this.buffer = getBuffer();
+				advanceList();
+			}
+		}
+		
+		/**
+		 * Checks whether this iterator has given its buffer back, because it is exhausted.
+		 * 
+		 * @return True, if the iterator holds no buffer.
+		 */
+		public synchronized boolean isExhausted()
+		{
+			return this.buffer == null;
+		}
+		
+		/**
+		 * Aborts this iterator and returns its buffer, if it still holds one.
+		 * 
+		 * @return The buffer, or null.
+		 */
+		public synchronized byte[] abort()
+		{
+			this.aborted = true;
+			this.currentList = null;
+			
+			byte[] b = this.buffer;
+			this.buffer = null;
+			return b;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.tuberlin.dima.minidb.qexec.heap.ExternalTupleSequenceIterator#hasNext()
+		 */
+		@Override
+		public boolean hasNext() throws QueryHeapException
+		{
+			if (this.aborted) {
+				throw new QueryHeapException("The heap assignment supporting this iterator has been released.");
+			}
+			return this.currentList != null;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.tuberlin.dima.minidb.qexec.heap.ExternalTupleSequenceIterator#next()
+		 */
+		@Override
+		public DataTuple next() throws QueryHeapException, IOException
+		{
+			if (this.currentList == null) {
+				throw new NoSuchElementException();
+			}
+			DataTuple tuple = this.currentList.next();
+			if (!this.currentList.hasNext()) {
+				advanceList();
+			}
+			return tuple;
+		}
+		
+		/**
+		 * Moves to the next list that has tuples, and gives the buffer back if there is none.
+		 * 
+		 * @throws IOException Thrown, if the first block of a list could not be read.
+		 */
+		private void advanceList() throws IOException
+		{
+			this.currentList = null;
+			while (this.nextList < this.lists.size()) {
+				WrittenListDescriptor descr = this.lists.get(this.nextList++);
+				ExternalListIterator iter = new ExternalListIterator(this.tempFileManager, this.buffer,
+						descr.getFirstBlock(), descr.getNumBlocks());
+				if (iter.currentIterator != null) {
+					this.currentList = iter;
+					return;
+				}
+			}
+			
+			byte[] b;
+			synchronized (this) {
+				b = this.buffer;
+				this.buffer = null;
+			}
+			if (b != null) {
+				returnBuffer(b);
+			}
+		}
+	}
 }
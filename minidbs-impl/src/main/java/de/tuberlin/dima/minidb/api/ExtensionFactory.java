@@ -8,10 +8,11 @@ import de.tuberlin.dima.minidb.catalogue.TableSchema;
 import de.tuberlin.dima.minidb.core.DataField;
 import de.tuberlin.dima.minidb.core.DataType;
 import de.tuberlin.dima.minidb.io.cache.PageCache;
-import de.tuberlin.dima.minidb.io.cache.PageCacheClass;
+import de.tuberlin.dima.minidb.io.cache.HashedPageCacheClass;
 import de.tuberlin.dima.minidb.io.cache.PageFormatException;
 import de.tuberlin.dima.minidb.io.cache.PageSize;
 import de.tuberlin.dima.minidb.io.index.BTreeIndex;
+import de.tuberlin.dima.minidb.io.index.BTreeIndexClass;
 import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
 import de.tuberlin.dima.minidb.io.manager.PoolManager;
 import de.tuberlin.dima.minidb.io.tables.TablePage;
@@ -61,7 +62,7 @@ public class ExtensionFactory extends AbstractExtensionFactory {
 
 	@Override
 	public PageCache createPageCache(PageSize pageSize, int numPages) {
-		return new PageCacheClass(pageSize, numPages);
+		return new HashedPageCacheClass(pageSize, numPages);
 	}
 
 	@Override
@@ -71,7 +72,7 @@ public class ExtensionFactory extends AbstractExtensionFactory {
 
 	@Override
 	public BTreeIndex createBTreeIndex(IndexSchema schema, BufferPoolManager bufferPool, int resourceId) {
-		throw new UnsupportedOperationException("Method not yet supported");
+		return new BTreeIndexClass(schema, bufferPool, resourceId);
 	}
 
 	@Override
@@ -81,11 +82,33 @@ public class ExtensionFactory extends AbstractExtensionFactory {
 				predicate, prefetchWindowLength);
 	}
 
+	@Override
+	public TableScanOperator createTableScanOperator(BufferPoolManager bufferPool, TableResourceManager tableManager, int resourceId,
+			int[] producedColumnIndexes, LowLevelPredicate[] predicate, int prefetchWindowLength, BloomFilter joinKeyFilter,
+			int[] filterColumns) {
+		return new TableScanOperatorClass(bufferPool, tableManager, resourceId, producedColumnIndexes,
+				predicate, prefetchWindowLength, joinKeyFilter, filterColumns);
+	}
+
+	@Override
+	public TableScanOperator createParallelTableScanOperator(BufferPoolManager bufferPool, TableResourceManager tableManager,
+			int resourceId, int[] producedColumnIndexes, LowLevelPredicate[] predicate, BloomFilter joinKeyFilter,
+			int[] filterColumns, int parallelism) {
+		return new ParallelTableScanOperatorClass(bufferPool, tableManager, resourceId, producedColumnIndexes,
+				predicate, joinKeyFilter, filterColumns, parallelism);
+	}
+
 	@Override
 	public IndexScanOperator createIndexScanOperator(BTreeIndex index, DataField startKey, DataField stopKey, boolean startKeyIncluded, boolean stopKeyIncluded) {
 		return new IndexScanOperatorClass( index,  startKey,  stopKey,  startKeyIncluded,  stopKeyIncluded);
 	}
 
+	@Override
+	public IndexScanOperator createIndexScanOperator(BTreeIndex index, DataField startKey, DataField stopKey, boolean startKeyIncluded,
+			boolean stopKeyIncluded, BloomFilter joinKeyFilter) {
+		return new IndexScanOperatorClass(index, startKey, stopKey, startKeyIncluded, stopKeyIncluded, joinKeyFilter);
+	}
+
 	@Override
 	public InsertOperator createInsertOperator(BufferPoolManager bufferPool, TableResourceManager tableManager, int resourceId, BTreeIndex[] indexes,
 			int[] columnNumbers, PhysicalPlanOperator child) {
@@ -103,6 +126,15 @@ public class ExtensionFactory extends AbstractExtensionFactory {
 		return new NestedLoopJoinOperatorClass(outerChild, innerChild, joinPredicate, columnMapOuterTuple, columnMapInnerTuple);
 	}
 
+	@Override
+	public BlockNestedLoopJoinOperator createBlockNestedLoopJoinOperator(PhysicalPlanOperator outerChild,
+			PhysicalPlanOperator innerChild, QueryHeap queryHeap, DataType[] outerSchema, DataType[] innerSchema,
+			int estimatedInnerCardinality, JoinPredicate joinPredicate, int[] columnMapOuterTuple,
+			int[] columnMapInnerTuple) {
+		return new BlockNestedLoopJoinOperatorClass(outerChild, innerChild, queryHeap, outerSchema, innerSchema,
+				estimatedInnerCardinality, joinPredicate, columnMapOuterTuple, columnMapInnerTuple);
+	}
+
 	@Override
 	public IndexLookupOperator getIndexLookupOperator(BTreeIndex index, DataField equalityLiteral) {
 		return new IndexLookupOperatorClass(index, equalityLiteral);
@@ -124,11 +156,22 @@ public class ExtensionFactory extends AbstractExtensionFactory {
 		return  new FetchOperatorClass(child, bufferPool, tableResourceId, outputColumnMap);
 	}
 
+	@Override
+	public FetchOperator createFetchOperator(PhysicalPlanOperator child, BufferPoolManager bufferPool, int tableResourceId, int[] outputColumnMap,
+			int batchSize, boolean preserveOrder) {
+		return new FetchOperatorClass(child, bufferPool, tableResourceId, outputColumnMap, batchSize, preserveOrder);
+	}
+
 	@Override
 	public FilterOperator createFilterOperator(PhysicalPlanOperator child, LocalPredicate predicate) {
 		return new FilterOperatorClass(child, predicate);
 	}
 
+	@Override
+	public FilterOperator createFilterOperator(PhysicalPlanOperator child, LocalPredicate predicate, int numOutputColumns) {
+		return new FilterOperatorClass(child, predicate, numOutputColumns);
+	}
+
 	@Override
 	public FilterCorrelatedOperator createCorrelatedFilterOperator(PhysicalPlanOperator child, JoinPredicate correlatedPredicate) {
 		return new FilterCorrelatedOperatorClass(child, correlatedPredicate);
@@ -146,12 +189,46 @@ public class ExtensionFactory extends AbstractExtensionFactory {
 		return new GroupByOperatorClass(child, groupColumnIndices, aggColumnIndices, aggregateFunctions, aggColumnTypes, groupColumnOutputPositions, aggregateColumnOutputPosition);
 	}
 
+	@Override
+	public HashGroupByOperator createHashGroupByOperator(PhysicalPlanOperator child, QueryHeap queryHeap, DataType[] inputSchema,
+			int estimatedGroups, int[] groupColumnIndices, int[] aggColumnIndices, AggregationType[] aggregateFunctions,
+			DataType[] aggColumnTypes, int[] groupColumnOutputPositions, int[] aggregateColumnOutputPosition) {
+		return new HashGroupByOperatorClass(child, queryHeap, inputSchema, estimatedGroups, groupColumnIndices, aggColumnIndices,
+				aggregateFunctions, aggColumnTypes, groupColumnOutputPositions, aggregateColumnOutputPosition);
+	}
+
 	@Override
 	public MergeJoinOperator createMergeJoinOperator(PhysicalPlanOperator leftChild, PhysicalPlanOperator rightChild, int[] leftJoinColumns,
 			int[] rightJoinColumns, int[] columnMapLeftTuple, int[] columnMapRightTuple) {
 		return new MergeJoinOperatorClass(leftChild, rightChild, leftJoinColumns, rightJoinColumns, columnMapLeftTuple, columnMapRightTuple);
 	}
 
+	@Override
+	public MergeJoinOperator createMergeJoinOperator(PhysicalPlanOperator leftChild, PhysicalPlanOperator rightChild,
+			QueryHeap queryHeap, DataType[] rightSchema, int estimatedGroupSize, int[] leftJoinColumns,
+			int[] rightJoinColumns, int[] columnMapLeftTuple, int[] columnMapRightTuple) {
+		return new MergeJoinOperatorClass(leftChild, rightChild, queryHeap, rightSchema, estimatedGroupSize,
+				leftJoinColumns, rightJoinColumns, columnMapLeftTuple, columnMapRightTuple);
+	}
+
+	@Override
+	public HashJoinOperator createHashJoinOperator(PhysicalPlanOperator buildChild, PhysicalPlanOperator probeChild,
+			QueryHeap queryHeap, DataType[] buildSchema, DataType[] probeSchema, int estimatedBuildCardinality,
+			int[] buildJoinColumns, int[] probeJoinColumns, int[] columnMapBuildTuple, int[] columnMapProbeTuple) {
+		return new HashJoinOperatorClass(buildChild, probeChild, queryHeap, buildSchema, probeSchema,
+				estimatedBuildCardinality, buildJoinColumns, probeJoinColumns, columnMapBuildTuple, columnMapProbeTuple);
+	}
+
+	@Override
+	public HashJoinOperator createHashJoinOperator(PhysicalPlanOperator buildChild, PhysicalPlanOperator probeChild,
+			QueryHeap queryHeap, DataType[] buildSchema, DataType[] probeSchema, int estimatedBuildCardinality,
+			int[] buildJoinColumns, int[] probeJoinColumns, int[] columnMapBuildTuple, int[] columnMapProbeTuple,
+			BloomFilter buildKeyFilter) {
+		return new HashJoinOperatorClass(buildChild, probeChild, queryHeap, buildSchema, probeSchema,
+				estimatedBuildCardinality, buildJoinColumns, probeJoinColumns, columnMapBuildTuple, columnMapProbeTuple,
+				buildKeyFilter);
+	}
+
 	@Override
 	public JoinOrderOptimizer createJoinOrderOptimizer(CardinalityEstimator estimator) {
 		return new JoinOrderOptimizerClass(estimator);
@@ -0,0 +1,440 @@
+package de.tuberlin.dima.minidb.io.cache;
+
+import java.util.ArrayList;
+
+/**
+ * ARC page cache with the same replacement, pinning and prefetch behavior as {@link PageCacheClass},
+ * but every entry is reachable through a hash table on a primitive (resourceId, pageNumber) key and
+ * the lists T1, T2, B1 and B2 are intrusive doubly linked lists, so hits and evictions run in constant
+ * time instead of scanning and shifting array lists.
+ */
+public class HashedPageCacheClass implements PageCache {
+
+    private final PageSize pageSize;
+    private final int numPages;
+
+    private final EntryList listT1;
+    private final EntryList listT2;
+    private final EntryList listB1;
+    private final EntryList listB2;
+    // expelled entries still occupy a slot of T1 or T2 until they are replaced, but are no longer in the table
+    private final EntryList expelledT1;
+    private final EntryList expelledT2;
+
+    private Entry[] table;
+    private int tableSize;
+
+    private float adaptation;
+    private int freeIdx;
+
+    public HashedPageCacheClass(PageSize pageSize, int numPages) {
+        this.pageSize = pageSize;
+        this.numPages = numPages;
+        this.listT1 = new EntryList();
+        this.listT2 = new EntryList();
+        this.listB1 = new EntryList();
+        this.listB2 = new EntryList();
+        this.expelledT1 = new EntryList();
+        this.expelledT2 = new EntryList();
+        // T1, T2, B1 and B2 together never hold more than twice the capacity
+        int buckets = 16;
+        while (buckets < 3 * numPages) {
+            buckets <<= 1;
+        }
+        this.table = new Entry[buckets];
+        this.tableSize = 0;
+        this.adaptation = 0;
+        this.freeIdx = 0;
+    }
+
+    private static long key(int resourceId, int pageNumber) {
+        return ((long) resourceId << 32) | (pageNumber & 0xFFFFFFFFL);
+    }
+
+    private static int bucket(long key, int length) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (length - 1);
+    }
+
+    // ------------------------------------------------------------------------
+    //  hash table
+    // ------------------------------------------------------------------------
+
+    private Entry lookup(long key) {
+        for (Entry e = this.table[bucket(key, this.table.length)]; e != null; e = e.hashNext) {
+            if (e.key == key) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private void insert(Entry entry) {
+        if (this.tableSize >= this.table.length - (this.table.length >>> 2)) {
+            this.resize();
+        }
+        int idx = bucket(entry.key, this.table.length);
+        entry.hashNext = this.table[idx];
+        this.table[idx] = entry;
+        this.tableSize++;
+    }
+
+    private void delete(Entry entry) {
+        int idx = bucket(entry.key, this.table.length);
+        Entry prev = null;
+        for (Entry e = this.table[idx]; e != null; prev = e, e = e.hashNext) {
+            if (e == entry) {
+                if (prev == null) {
+                    this.table[idx] = e.hashNext;
+                } else {
+                    prev.hashNext = e.hashNext;
+                }
+                e.hashNext = null;
+                this.tableSize--;
+                return;
+            }
+        }
+    }
+
+    private void resize() {
+        Entry[] old = this.table;
+        this.table = new Entry[old.length << 1];
+        for (Entry head : old) {
+            Entry e = head;
+            while (e != null) {
+                Entry next = e.hashNext;
+                int idx = bucket(e.key, this.table.length);
+                e.hashNext = this.table[idx];
+                this.table[idx] = e;
+                e = next;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  lookups
+    // ------------------------------------------------------------------------
+
+    private CacheableData getPageAndPinOpt(int resourceId, int pageNumber, boolean pin) {
+        Entry entry = this.lookup(key(resourceId, pageNumber));
+        if (entry == null || !entry.isResident()) {
+            return null;
+        }
+        if (pin) {
+            entry.pinNumber++;
+        }
+        EntryList owner = entry.owner;
+        owner.remove(entry);
+        if (owner == this.listT1 && entry.prefetched) {
+            // handling prefetch, the first hit only counts as the reference that loaded the page
+            entry.prefetched = false;
+            this.listT1.addFirst(entry);
+        } else {
+            this.listT2.addFirst(entry);
+        }
+        return entry.page;
+    }
+
+    @Override
+    public CacheableData getPage(int resourceId, int pageNumber) {
+        return this.getPageAndPinOpt(resourceId, pageNumber, false);
+    }
+
+    @Override
+    public CacheableData getPageAndPin(int resourceId, int pageNumber) {
+        return this.getPageAndPinOpt(resourceId, pageNumber, true);
+    }
+
+    // ------------------------------------------------------------------------
+    //  replacement
+    // ------------------------------------------------------------------------
+
+    private int sizeT1() {
+        return this.listT1.size + this.expelledT1.size;
+    }
+
+    private int sizeT2() {
+        return this.listT2.size + this.expelledT2.size;
+    }
+
+    private Entry findNearestUnpinned(EntryList listT) {
+        for (Entry e = listT.last(); e != null; e = listT.previous(e)) {
+            if (e.pinNumber == 0) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private void dropGhost(EntryList listB) {
+        Entry ghost = listB.last();
+        if (ghost != null) {
+            listB.remove(ghost);
+            this.delete(ghost);
+        }
+    }
+
+    // trims the ghost lists, returns a T1 entry that has to leave the cache without a ghost, if any
+    private Entry evictBlists(Entry ghost) {
+        if (ghost != null) {
+            return null;
+        }
+        Entry victim = null;
+        if (this.sizeT1() + this.listB1.size == this.numPages && this.sizeT1() < this.numPages) {
+            this.dropGhost(this.listB1);
+        }
+        // expelled pages are always replaced first, so only fall back to the T1 tail without any
+        if (this.sizeT1() == this.numPages && this.listB1.size == 0 && this.expelledT1.size + this.expelledT2.size == 0) {
+            victim = this.findNearestUnpinned(this.listT1);
+            if (victim != null) {
+                this.listT1.remove(victim);
+                this.delete(victim);
+            }
+        }
+        if (this.sizeT1() + this.listB1.size < this.numPages
+                && this.sizeT1() + this.listB1.size + this.sizeT2() + this.listB2.size == 2 * this.numPages) {
+            this.dropGhost(this.listB2);
+        }
+        return victim;
+    }
+
+    private void addToTAndChangeAdapt(Entry entry, Entry ghost) {
+        if (ghost != null && ghost.owner == this.listB1) {
+            this.adaptation = (float) Math.min(this.numPages, this.adaptation + (this.listB1.size > this.listB2.size ? 1.0 : ((float) this.listB2.size / this.listB1.size)));
+        } else if (ghost != null && ghost.owner == this.listB2) {
+            this.adaptation = (float) Math.max(0.0, this.adaptation - (this.listB2.size > this.listB1.size ? 1.0 : ((float) this.listB1.size / this.listB2.size)));
+        }
+        if (ghost != null) {
+            ghost.owner.remove(ghost);
+            this.delete(ghost);
+            this.listT2.addFirst(entry);
+        } else {
+            this.listT1.addFirst(entry);
+        }
+        this.insert(entry);
+    }
+
+    // turns a replaced entry into a ghost in the given history list
+    private void remember(Entry victim, EntryList listB) {
+        victim.page = null;
+        victim.pinNumber = 0;
+        if (victim.owner == this.expelledT1 || victim.owner == this.expelledT2) {
+            victim.owner.remove(victim);
+            if (this.lookup(victim.key) != null) {
+                // the page has been added again after it was expelled
+                return;
+            }
+            this.insert(victim);
+        } else {
+            victim.owner.remove(victim);
+        }
+        listB.addFirst(victim);
+    }
+
+    private Entry chooseVictim(boolean T1prio) throws CachePinnedException {
+        // expelled pages are replaced first
+        if (this.expelledT1.size > 0) {
+            return this.expelledT1.first();
+        }
+        if (this.expelledT2.size > 0) {
+            return this.expelledT2.first();
+        }
+        EntryList first = T1prio ? this.listT1 : this.listT2;
+        EntryList second = T1prio ? this.listT2 : this.listT1;
+        Entry victim = this.findNearestUnpinned(first);
+        if (victim == null) {
+            victim = this.findNearestUnpinned(second);
+        }
+        if (victim == null) {
+            throw new CachePinnedException();
+        }
+        return victim;
+    }
+
+    private EvictedCacheEntry addPagepinOpt(CacheableData newPage, int resourceId, boolean pin) throws DuplicateCacheEntryException, CachePinnedException {
+        long key = key(resourceId, newPage.getPageNumber());
+        Entry ghost = this.lookup(key);
+        if (ghost != null && ghost.isResident()) {
+            throw new DuplicateCacheEntryException(resourceId, newPage.getPageNumber());
+        }
+        Entry entry = new Entry(key, resourceId, newPage);
+        if (pin) {
+            entry.pinNumber++;
+        }
+
+        // cold cache
+        if (this.freeIdx < this.numPages) {
+            this.evictBlists(ghost);
+            this.addToTAndChangeAdapt(entry, ghost);
+            this.freeIdx++;
+            return new EvictedCacheEntry(new byte[this.pageSize.getNumberOfBytes()]);
+        }
+
+        // case a prefers replacing from T1, case b from T2
+        boolean T1prio = this.sizeT1() > 0 && (this.sizeT1() > this.adaptation
+                || (this.sizeT1() == this.adaptation && ghost != null && ghost.owner == this.listB2));
+        Entry victim = this.evictBlists(ghost);
+        CacheableData evictedPage;
+        if (victim != null) {
+            evictedPage = victim.page;
+        } else {
+            victim = this.chooseVictim(T1prio);
+            evictedPage = victim.page;
+            this.remember(victim, victim.owner == this.listT1 || victim.owner == this.expelledT1 ? this.listB1 : this.listB2);
+        }
+        this.addToTAndChangeAdapt(entry, ghost);
+        return new EvictedCacheEntry(evictedPage.getBuffer(), evictedPage, victim.resourceId);
+    }
+
+    @Override
+    public EvictedCacheEntry addPage(CacheableData newPage, int resourceId) throws DuplicateCacheEntryException, CachePinnedException {
+        return addPagepinOpt(newPage, resourceId, false);
+    }
+
+    @Override
+    public EvictedCacheEntry addPageAndPin(CacheableData newPage, int resourceId) throws DuplicateCacheEntryException, CachePinnedException {
+        return addPagepinOpt(newPage, resourceId, true);
+    }
+
+    // ------------------------------------------------------------------------
+    //  pinning and bulk operations
+    // ------------------------------------------------------------------------
+
+    @Override
+    public void unpinPage(int resourceId, int pageNumber) {
+        Entry entry = this.lookup(key(resourceId, pageNumber));
+        if (entry != null && entry.isResident()) {
+            entry.pinNumber = Math.max(0, entry.pinNumber - 1);
+        }
+    }
+
+    @Override
+    public void unpinAllPages() {
+        for (EntryList list : new EntryList[]{this.listT1, this.listT2, this.expelledT1, this.expelledT2}) {
+            for (Entry e = list.first(); e != null; e = list.next(e)) {
+                e.pinNumber = 0;
+            }
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return this.numPages;
+    }
+
+    @Override
+    public CacheableData[] getAllPagesForResource(int resourceId) {
+        ArrayList<CacheableData> cads = new ArrayList<>();
+        for (EntryList list : new EntryList[]{this.listT1, this.expelledT1, this.listT2, this.expelledT2}) {
+            for (Entry e = list.first(); e != null; e = list.next(e)) {
+                if (e.resourceId == resourceId) {
+                    cads.add(e.page);
+                }
+            }
+        }
+        return cads.toArray(new CacheableData[cads.size()]);
+    }
+
+    @Override
+    public void expelAllPagesForResource(int resourceId) {
+        this.expel(this.listT1, this.expelledT1, resourceId);
+        this.expel(this.listT2, this.expelledT2, resourceId);
+    }
+
+    private void expel(EntryList listT, EntryList expelled, int resourceId) {
+        Entry e = listT.first();
+        while (e != null) {
+            Entry next = listT.next(e);
+            if (e.resourceId == resourceId) {
+                listT.remove(e);
+                this.delete(e);
+                expelled.addLast(e);
+            }
+            e = next;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  intrusive list
+    // ------------------------------------------------------------------------
+
+    private final class Entry {
+        private final long key;
+        private final int resourceId;
+        // null for ghost entries in B1 and B2
+        private CacheableData page;
+        private int pinNumber;
+        private boolean prefetched;
+
+        private EntryList owner;
+        private Entry prev;
+        private Entry next;
+        private Entry hashNext;
+
+        private Entry(long key, int resourceId, CacheableData page) {
+            this.key = key;
+            this.resourceId = resourceId;
+            this.page = page;
+            this.pinNumber = 0;
+            this.prefetched = true;
+        }
+
+        private boolean isResident() {
+            return this.owner == listT1 || this.owner == listT2;
+        }
+    }
+
+    private final class EntryList {
+        private final Entry head;
+        private int size;
+
+        private EntryList() {
+            this.head = new Entry(0, -1, null);
+            this.head.prev = this.head;
+            this.head.next = this.head;
+            this.size = 0;
+        }
+
+        private void addFirst(Entry e) {
+            this.link(e, this.head, this.head.next);
+        }
+
+        private void addLast(Entry e) {
+            this.link(e, this.head.prev, this.head);
+        }
+
+        private void link(Entry e, Entry before, Entry after) {
+            e.prev = before;
+            e.next = after;
+            before.next = e;
+            after.prev = e;
+            e.owner = this;
+            this.size++;
+        }
+
+        private void remove(Entry e) {
+            e.prev.next = e.next;
+            e.next.prev = e.prev;
+            e.prev = null;
+            e.next = null;
+            e.owner = null;
+            this.size--;
+        }
+
+        private Entry first() {
+            return this.head.next == this.head ? null : this.head.next;
+        }
+
+        private Entry last() {
+            return this.head.prev == this.head ? null : this.head.prev;
+        }
+
+        private Entry next(Entry e) {
+            return e.next == this.head ? null : e.next;
+        }
+
+        private Entry previous(Entry e) {
+            return e.prev == this.head ? null : e.prev;
+        }
+    }
+}
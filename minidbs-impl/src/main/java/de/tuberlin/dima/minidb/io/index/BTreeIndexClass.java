@@ -0,0 +1,926 @@
+package de.tuberlin.dima.minidb.io.index;
+
+import de.tuberlin.dima.minidb.catalogue.IndexSchema;
+import de.tuberlin.dima.minidb.catalogue.IndexStatistics;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DuplicateException;
+import de.tuberlin.dima.minidb.core.RID;
+import de.tuberlin.dima.minidb.io.cache.CacheableData;
+import de.tuberlin.dima.minidb.io.cache.PageFormatException;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolException;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
+import de.tuberlin.dima.minidb.util.Pair;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.WeakHashMap;
+
+/**
+ * B+-tree over inner node and leaf pages served by the buffer pool, on which lookups and inserts
+ * run concurrently. Every page has a version latch, shared by all instances over the same index.
+ * Readers never latch: they descend with optimistic lock coupling, remembering the version of a
+ * page before reading it and validating it once they know the next page, and restart from the
+ * root if a page changed under them. Inserts latch the leaf and split in the manner of a B-link
+ * tree: the upper half moves to a new right sibling that is linked into its level before the
+ * separator is posted to the parent, and a writer whose parent was split in the meantime follows
+ * the right links to the node that now points to its page. Latches are taken bottom-up and left
+ * to right, and a child is released only once its parent is latched.
+ */
+public class BTreeIndexClass implements BTreeIndex {
+
+    // the header page holds the root page number, so its latch guards the root of the tree
+    private static final int ROOT_LATCH = 0;
+    private static final int NO_PAGE = -1;
+
+    private static final Map<IndexSchema, PageLatches> LATCHES = Collections.synchronizedMap(new WeakHashMap<IndexSchema, PageLatches>());
+
+    private final IndexSchema schema;
+    private final BufferPoolManager bufferPool;
+    private final int resourceId;
+    private final PageLatches latches;
+
+    public BTreeIndexClass(IndexSchema schema, BufferPoolManager bufferPool, int resourceId) {
+        this.schema = schema;
+        this.bufferPool = bufferPool;
+        this.resourceId = resourceId;
+        this.latches = LATCHES.computeIfAbsent(schema, s -> new PageLatches());
+    }
+
+    @Override
+    public IndexSchema getIndexSchema() {
+        return this.schema;
+    }
+
+    @Override
+    public IndexResultIterator<RID> lookupRids(DataField key) throws PageFormatException, IndexFormatCorruptException, IOException {
+        return this.lookupRids(key, key, true, true);
+    }
+
+    @Override
+    public IndexResultIterator<RID> lookupRids(DataField startKey, DataField stopKey, boolean startKeyIncluded, boolean stopKeyIncluded)
+            throws PageFormatException, IndexFormatCorruptException, IOException {
+        return new RangeIterator<RID>(startKey, stopKey, startKeyIncluded, stopKeyIncluded) {
+            private long[] ids = new long[BTreeIndexClass.this.schema.getMaximalLeafEntries()];
+
+            @Override
+            void copy(BTreeLeafPage leaf, int from, int num) {
+                if (num > this.ids.length) {
+                    this.ids = new long[num];
+                }
+                leaf.getRidIdsAtPositions(from, num, this.ids);
+            }
+
+            @Override
+            RID get(int position) {
+                return new RID(this.ids[position]);
+            }
+        };
+    }
+
+    @Override
+    public IndexResultIterator<DataField> lookupKeys(DataField startKey, DataField stopKey, boolean startKeyIncluded, boolean stopKeyIncluded)
+            throws PageFormatException, IndexFormatCorruptException, IOException {
+        return new RangeIterator<DataField>(startKey, stopKey, startKeyIncluded, stopKeyIncluded) {
+            private DataField[] keys = new DataField[BTreeIndexClass.this.schema.getMaximalLeafEntries()];
+
+            @Override
+            void copy(BTreeLeafPage leaf, int from, int num) {
+                if (num > this.keys.length) {
+                    this.keys = new DataField[num];
+                }
+                for (int i = 0; i < num; i++) {
+                    this.keys[i] = leaf.getKey(from + i);
+                }
+            }
+
+            @Override
+            DataField get(int position) {
+                DataField key = this.keys[position];
+                this.keys[position] = null;
+                return key;
+            }
+        };
+    }
+
+    @Override
+    public void insertEntry(DataField key, RID rid) throws PageFormatException, IndexFormatCorruptException, DuplicateException, IOException {
+        Descent descent = new Descent();
+        // the leaf is latched only if it did not change since the descent validated it against its parent
+        while (true) {
+            this.descend(key, descent);
+            if (this.latches.tryLatch(descent.leafNumber, descent.leafVersion)) {
+                break;
+            }
+            this.unpin(descent.leafNumber);
+        }
+
+        // the page whose latch is held, which is pinned unless it is the root latch
+        int held = descent.leafNumber;
+        try {
+            Split split = this.insertIntoLeaf(descent.leaf, key, rid);
+            while (split != null) {
+                int child = held;
+                BTreeInnerNodePage parent = this.latchParent(child, descent);
+                this.release(child);
+                if (parent == null) {
+                    held = ROOT_LATCH;
+                    this.growRoot(child, split);
+                    split = null;
+                } else {
+                    held = parent.getPageNumber();
+                    split = this.insertIntoNode(parent, child, split);
+                }
+            }
+        } finally {
+            this.release(held);
+        }
+    }
+
+    @Override
+    public IndexStatistics bulkLoad(Iterator<Pair<DataField, RID>> sortedEntries, float fillFactor)
+            throws PageFormatException, IndexFormatCorruptException, DuplicateException, IOException {
+        if (!(fillFactor > 0.0f && fillFactor <= 1.0f)) {
+            throw new IllegalArgumentException("The fill factor must be in (0, 1], but is " + fillFactor + ".");
+        }
+        boolean compressed = this.schema.hasCompressedKeys();
+        int maxLeafEntries = this.schema.getMaximalLeafEntries();
+        // a compressed leaf is filled by its free space, the estimated number of entries only
+        // sizes the buffer, which grows if the keys compress better
+        int leafCapacity = compressed ? maxLeafEntries : capacity(fillFactor, maxLeafEntries, maxLeafEntries >> 1);
+        int maxChildren = this.schema.getFanOut() + 1;
+        int nodeCapacity = capacity(fillFactor, maxChildren, (this.schema.getFanOut() >> 1) + 1);
+
+        // concurrent inserts and lookups wait at the root until the tree is complete. The leaf is
+        // latched before the root latch, in the order in which an insert that splits the root does.
+        int firstLeaf = this.schema.getRootPageNumber();
+        this.latches.latch(firstLeaf);
+        this.latches.latch(ROOT_LATCH);
+        try {
+            BTreeIndexPage root = this.getPage(firstLeaf);
+            boolean empty = root instanceof BTreeLeafPage && ((BTreeLeafPage) root).getNumberOfEntries() == 0;
+            this.unpin(firstLeaf);
+            if (!empty) {
+                throw new IllegalStateException("Only an empty index can be bulk loaded.");
+            }
+
+            // the entries of up to two full leaves are kept back, so that the last leaves can be balanced
+            DataField[] keys = new DataField[2 * leafCapacity + 1];
+            RID[] rids = new RID[keys.length];
+            int numEntries = 0;
+            DataField previousKey = null;
+            LeafWriter leaves = new LeafWriter(firstLeaf, fillFactor);
+            try {
+                while (sortedEntries.hasNext()) {
+                    Pair<DataField, RID> entry = sortedEntries.next();
+                    DataField key = entry.getFirst();
+                    if (previousKey != null) {
+                        int cmp = key.compareTo(previousKey);
+                        if (cmp < 0) {
+                            throw new IllegalArgumentException("The entries are not sorted by key, " + key + " follows " + previousKey + ".");
+                        } else if (cmp == 0 && this.schema.isUnique()) {
+                            throw new DuplicateException("Key " + key + " is already contained.");
+                        }
+                    }
+                    previousKey = key;
+                    keys[numEntries] = key;
+                    rids[numEntries++] = entry.getSecond();
+
+                    if (numEntries == keys.length) {
+                        int num = leaves.write(keys, rids, 0, compressed ? numEntries : leafCapacity, keys[numEntries - 1]);
+                        numEntries -= num;
+                        System.arraycopy(keys, num, keys, 0, numEntries);
+                        System.arraycopy(rids, num, rids, 0, numEntries);
+                        if (numEntries == 0) {
+                            // the leaf took all entries and may have room left, so buffer more for the next ones
+                            keys = Arrays.copyOf(keys, 2 * keys.length);
+                            rids = Arrays.copyOf(rids, keys.length);
+                        }
+                    }
+                }
+                for (int from = 0; from < numEntries; ) {
+                    int num = compressed ? numEntries - from : nextNodeSize(numEntries - from, leafCapacity, maxLeafEntries);
+                    from += leaves.write(keys, rids, from, num, null);
+                }
+                leaves.balanceLastLeaves();
+            } finally {
+                leaves.close();
+            }
+
+            IndexStatistics statistics = new IndexStatistics();
+            statistics.setNumberOfLeaves(Math.max(1, leaves.level.size));
+            int depth = 1;
+            Level level = leaves.level;
+            while (level.size > 1) {
+                level = compressed ? this.buildCompressedInnerLevel(level, fillFactor)
+                        : this.buildInnerLevel(level, nodeCapacity, maxChildren);
+                depth++;
+            }
+            statistics.setTreeDepth(depth);
+            if (level.size == 1 && level.pages[0] != firstLeaf) {
+                this.schema.setRootPageNumber(level.pages[0]);
+            }
+            return statistics;
+        } finally {
+            this.latches.release(ROOT_LATCH);
+            this.latches.release(firstLeaf);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //                              descent
+    // ------------------------------------------------------------------------
+
+    /**
+     * The inner nodes an optimistic descent passed and the leaf it reached, which is pinned but
+     * not latched, together with the version the leaf had when the descent validated it.
+     */
+    private static final class Descent {
+        private int[] path = new int[8];
+        private int depth;
+        private BTreeLeafPage leaf;
+        private int leafNumber;
+        private long leafVersion;
+
+        private void push(int pageNumber) {
+            if (this.depth == this.path.length) {
+                this.path = Arrays.copyOf(this.path, this.depth * 2);
+            }
+            this.path[this.depth++] = pageNumber;
+        }
+    }
+
+    /**
+     * Descends from the root to the leaf that holds the first occurrence of the key.
+     */
+    private void descend(DataField key, Descent descent) throws IOException {
+        while (!this.tryDescend(key, descent)) {
+            // a page changed on the way, start over at the root
+        }
+    }
+
+    private boolean tryDescend(DataField key, Descent descent) throws IOException {
+        descent.depth = 0;
+        int parentNumber = ROOT_LATCH;
+        long parentVersion = this.latches.awaitVersion(ROOT_LATCH);
+        int pageNumber = this.schema.getRootPageNumber();
+
+        while (true) {
+            BTreeIndexPage page = this.getPage(pageNumber);
+            long version = this.latches.awaitVersion(pageNumber);
+            // the parent did not change since the pointer was read, so this is the page for the key
+            if (!this.latches.validate(parentNumber, parentVersion)) {
+                this.unpin(pageNumber);
+                return false;
+            }
+            if (page instanceof BTreeLeafPage) {
+                descent.leaf = (BTreeLeafPage) page;
+                descent.leafNumber = pageNumber;
+                descent.leafVersion = version;
+                return true;
+            }
+
+            int child = NO_PAGE;
+            RuntimeException failure = null;
+            try {
+                child = ((BTreeInnerNodePage) page).getChildPageForKey(key);
+            } catch (RuntimeException e) {
+                // a torn read of a node that a writer changes, unless the version says otherwise
+                failure = e;
+            } finally {
+                this.unpin(pageNumber);
+            }
+            if (!this.latches.validate(pageNumber, version)) {
+                return false;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            descent.push(pageNumber);
+            parentNumber = pageNumber;
+            parentVersion = version;
+            pageNumber = child;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //                              inserts
+    // ------------------------------------------------------------------------
+
+    /**
+     * A split node: the separator for the parent and the new right sibling it points to.
+     */
+    private static final class Split {
+        private final DataField key;
+        private final int pageNumber;
+
+        private Split(DataField key, int pageNumber) {
+            this.key = key;
+            this.pageNumber = pageNumber;
+        }
+    }
+
+    /**
+     * Inserts the pair into the latched leaf, splitting it if it is full.
+     *
+     * @return The split of the leaf, or null, if the pair fit.
+     */
+    private Split insertIntoLeaf(BTreeLeafPage leaf, DataField key, RID rid) throws PageFormatException, IOException {
+        if (this.schema.isUnique() && leaf.getRIDForKey(key) != null) {
+            throw new DuplicateException("Key " + key + " is already contained.");
+        }
+        if (leaf.insertKeyRIDPair(key, rid)) {
+            return null;
+        }
+
+        // the sibling is reachable through the leaf only, which stays latched until the parent is
+        BTreeLeafPage sibling = (BTreeLeafPage) this.newPage(BTreeIndexPageType.LEAF_PAGE);
+        int siblingNumber = sibling.getPageNumber();
+        try {
+            sibling.prependEntriesFromOtherPage(leaf, leaf.getNumberOfEntries() - leaf.getSplitPosition());
+            sibling.setNextLeafPageNumber(leaf.getNextLeafPageNumber());
+            sibling.setLastKeyContinuingOnNextPage(leaf.isLastKeyContinuingOnNextPage());
+            leaf.setNextLeafPageNumber(siblingNumber);
+
+            BTreeLeafPage target = key.compareTo(sibling.getFirstKey()) < 0 ? leaf : sibling;
+            target.insertKeyRIDPair(key, rid);
+            leaf.setLastKeyContinuingOnNextPage(leaf.getLastKey().compareTo(sibling.getFirstKey()) == 0);
+            return new Split(leaf.divideKeyRange(sibling), siblingNumber);
+        } finally {
+            this.unpin(siblingNumber);
+        }
+    }
+
+    /**
+     * Inserts the separator of the split child into the latched parent, right behind the pointer
+     * to the child, and splits the parent if it is full. The node decides where it is split.
+     *
+     * @return The split of the parent, or null, if the separator fit.
+     */
+    private Split insertIntoNode(BTreeInnerNodePage node, int child, Split split) throws PageFormatException, IOException {
+        int position = pointerPosition(node, child);
+        if (node.insertKeyPageNumberPairAtPosition(split.key, split.pageNumber, position)) {
+            return null;
+        }
+
+        BTreeInnerNodePage sibling = (BTreeInnerNodePage) this.newPage(BTreeIndexPageType.INNER_NODE_PAGE);
+        int siblingNumber = sibling.getPageNumber();
+        try {
+            int numKeys = node.getNumberOfKeys();
+            // the position of the key that moves up, counting the new key
+            int middle = node.getSplitPosition(split.key, position);
+            DataField separator;
+            if (position < middle) {
+                separator = node.moveLastToNewPage(sibling, numKeys - middle + 1);
+                node.insertKeyPageNumberPairAtPosition(split.key, split.pageNumber, position);
+            } else if (position > middle) {
+                separator = node.moveLastToNewPage(sibling, numKeys - middle);
+                sibling.insertKeyPageNumberPairAtPosition(split.key, split.pageNumber, position - middle - 1);
+            } else {
+                // the new key itself moves up and its page becomes the first child of the sibling
+                DataField dropped = node.moveLastToNewPage(sibling, numKeys - middle);
+                sibling.insertKeyPageNumberPairAtPosition(dropped, sibling.getPointer(0), 0);
+                sibling.setPointer(0, split.pageNumber);
+                separator = split.key;
+            }
+            node.divideKeyRange(sibling, separator);
+            sibling.setRightSiblingPageNumber(node.getRightSiblingPageNumber());
+            node.setRightSiblingPageNumber(siblingNumber);
+            return new Split(separator, siblingNumber);
+        } finally {
+            this.unpin(siblingNumber);
+        }
+    }
+
+    /**
+     * Latches and pins the node with the pointer to the given split child. That is the node the
+     * descent passed, or a node to its right, if that one was split in the meantime.
+     *
+     * @return The latched parent, or null with the root latch held, if the child is the root.
+     */
+    private BTreeInnerNodePage latchParent(int child, Descent descent) throws IOException {
+        int pageNumber;
+        if (descent.depth > 0) {
+            pageNumber = descent.path[--descent.depth];
+        } else {
+            this.latches.latch(ROOT_LATCH);
+            if (this.schema.getRootPageNumber() == child) {
+                return null;
+            }
+            this.latches.release(ROOT_LATCH);
+            // the tree grew above the former root, which stays the first node on its level
+            pageNumber = this.findFirstParent(child);
+        }
+
+        while (true) {
+            this.latches.latch(pageNumber);
+            BTreeIndexPage page;
+            try {
+                page = this.getPage(pageNumber);
+            } catch (IOException | RuntimeException e) {
+                this.latches.release(pageNumber);
+                throw e;
+            }
+            if (!(page instanceof BTreeInnerNodePage)) {
+                this.release(pageNumber);
+                throw new IndexFormatCorruptException("Page " + pageNumber + " on the path to page " + child + " is no inner node.");
+            }
+            BTreeInnerNodePage node = (BTreeInnerNodePage) page;
+            if (pointerPosition(node, child) >= 0) {
+                return node;
+            }
+            int sibling = node.getRightSiblingPageNumber();
+            this.release(pageNumber);
+            if (sibling == NO_PAGE) {
+                throw new IndexFormatCorruptException("No node on the level above page " + child + " points to it.");
+            }
+            pageNumber = sibling;
+        }
+    }
+
+    /**
+     * Finds the first node on the level above the given first node of its level, following the
+     * first pointers from the root. The first pointer of a node never changes.
+     */
+    private int findFirstParent(int child) throws IOException {
+        int pageNumber = this.schema.getRootPageNumber();
+        while (true) {
+            BTreeIndexPage page = this.getPage(pageNumber);
+            int first;
+            try {
+                if (!(page instanceof BTreeInnerNodePage)) {
+                    throw new IndexFormatCorruptException("Page " + child + " is not on the first path of the tree.");
+                }
+                first = ((BTreeInnerNodePage) page).getPointer(0);
+            } finally {
+                this.unpin(pageNumber);
+            }
+            if (first == child) {
+                return pageNumber;
+            }
+            pageNumber = first;
+        }
+    }
+
+    /**
+     * Puts a new root above the split root. Called with the root latch held.
+     */
+    private void growRoot(int child, Split split) throws IOException {
+        BTreeInnerNodePage root = (BTreeInnerNodePage) this.newPage(BTreeIndexPageType.INNER_NODE_PAGE);
+        int rootNumber = root.getPageNumber();
+        try {
+            root.initRootState(split.key, child, split.pageNumber);
+        } finally {
+            this.unpin(rootNumber);
+        }
+        this.schema.setRootPageNumber(rootNumber);
+    }
+
+    private static int pointerPosition(BTreeInnerNodePage node, int child) {
+        for (int i = 0, numKeys = node.getNumberOfKeys(); i <= numKeys; i++) {
+            if (node.getPointer(i) == child) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // ------------------------------------------------------------------------
+    //                              bulk loading
+    // ------------------------------------------------------------------------
+
+    /**
+     * The nodes of one level of a tree under construction, with the separator behind each node,
+     * which is not smaller than any key below the node.
+     */
+    private static final class Level {
+        private int[] pages = new int[64];
+        private DataField[] separators = new DataField[64];
+        private int size;
+
+        private void add(int pageNumber, DataField separator) {
+            if (this.size == this.pages.length) {
+                this.pages = Arrays.copyOf(this.pages, this.size * 2);
+                this.separators = Arrays.copyOf(this.separators, this.size * 2);
+            }
+            this.pages[this.size] = pageNumber;
+            this.separators[this.size++] = separator;
+        }
+    }
+
+    /**
+     * Writes the leaves of a bulk load one after the other, starting with the empty root leaf,
+     * and links each to the one before, which stays pinned until then. Compressed leaves are
+     * filled by bytes rather than by entries, each within a key range that starts at the
+     * separator to the leaf before.
+     */
+    private final class LeafWriter {
+        private final Level level = new Level();
+        private final int firstLeaf;
+        private final int reserve;
+        private BTreeLeafPage previous;
+        private DataField previousLowestKey;
+
+        private LeafWriter(int firstLeaf, float fillFactor) {
+            this.firstLeaf = firstLeaf;
+            this.reserve = BTreeIndexClass.this.reserve(fillFactor);
+        }
+
+        /**
+         * Writes the next leaf with up to the given number of entries. The highest key bounds the
+         * key range of a compressed leaf, or leaves it open, if it is null.
+         *
+         * @return The number of entries written to the leaf.
+         */
+        private int write(DataField[] keys, RID[] rids, int from, int num, DataField highestKey) throws PageFormatException, IOException {
+            BTreeLeafPage leaf = (BTreeLeafPage) (this.level.size == 0 ? BTreeIndexClass.this.getPage(this.firstLeaf)
+                    : BTreeIndexClass.this.newPage(BTreeIndexPageType.LEAF_PAGE));
+            int pageNumber = leaf.getPageNumber();
+            DataField lowestKey = null;
+            if (this.previous != null) {
+                this.previous.setNextLeafPageNumber(pageNumber);
+                this.previous.setLastKeyContinuingOnNextPage(this.previous.getLastKey().compareTo(keys[from]) == 0);
+                if (leaf instanceof CompressedBTreeLeafPage) {
+                    CompressedBTreeLeafPage previousLeaf = (CompressedBTreeLeafPage) this.previous;
+                    lowestKey = previousLeaf.getSeparatorKey(keys[from]);
+                    previousLeaf.setKeyRange(this.previousLowestKey, lowestKey);
+                    this.level.separators[this.level.size - 1] = lowestKey;
+                }
+                BTreeIndexClass.this.unpin(this.previous.getPageNumber());
+            }
+            this.previous = leaf;
+            this.previousLowestKey = lowestKey;
+
+            int written = num;
+            if (leaf instanceof CompressedBTreeLeafPage) {
+                CompressedBTreeLeafPage compressedLeaf = (CompressedBTreeLeafPage) leaf;
+                compressedLeaf.setKeyRange(lowestKey, highestKey);
+                int capacity = compressedLeaf.getFreeSpace();
+                written = 0;
+                while (written < num) {
+                    int free = compressedLeaf.getFreeSpace();
+                    // at the end, the last entries go onto this leaf, if they are likely to fit
+                    if (written > 0 && free <= this.reserve && (highestKey != null || !restFits(capacity, free, written, num - written))
+                            || !compressedLeaf.insertKeyRIDPair(keys[from + written], rids[from + written])) {
+                        break;
+                    }
+                    written++;
+                }
+            } else {
+                for (int i = from; i < from + num; i++) {
+                    leaf.insertKeyRIDPair(keys[i], rids[i]);
+                }
+            }
+            this.level.add(pageNumber, keys[from + written - 1]);
+            return written;
+        }
+
+        /**
+         * The last compressed leaf takes entries from the leaf before, until the two hold about
+         * the same number of bytes, so that the last leaf is not left nearly empty.
+         */
+        private void balanceLastLeaves() throws PageFormatException, IOException {
+            if (!(this.previous instanceof CompressedBTreeLeafPage) || this.level.size < 2) {
+                return;
+            }
+            CompressedBTreeLeafPage last = (CompressedBTreeLeafPage) this.previous;
+            int beforeNumber = this.level.pages[this.level.size - 2];
+            CompressedBTreeLeafPage before = (CompressedBTreeLeafPage) BTreeIndexClass.this.getPage(beforeNumber);
+            try {
+                while (last.getFreeSpace() > before.getFreeSpace() && before.getNumberOfEntries() > 1
+                        && last.prependEntriesFromOtherPage(before, 1)) {
+                    // the range of the leaf before stays above its keys
+                }
+                before.setLastKeyContinuingOnNextPage(before.getLastKey().compareTo(last.getFirstKey()) == 0);
+                this.level.separators[this.level.size - 2] = before.getSeparatorKey(last.getFirstKey());
+            } finally {
+                BTreeIndexClass.this.unpin(beforeNumber);
+            }
+        }
+
+        private void close() {
+            if (this.previous != null) {
+                BTreeIndexClass.this.unpin(this.previous.getPageNumber());
+                this.previous = null;
+            }
+        }
+    }
+
+    /**
+     * Builds the level of inner nodes above the given level, linking each node to its right sibling.
+     */
+    private Level buildInnerLevel(Level children, int capacity, int maxChildren) throws PageFormatException, IOException {
+        Level nodes = new Level();
+        BTreeInnerNodePage previous = null;
+        try {
+            for (int from = 0, num; from < children.size; from += num) {
+                num = nextNodeSize(children.size - from, capacity, maxChildren);
+                BTreeInnerNodePage node = (BTreeInnerNodePage) this.newPage(BTreeIndexPageType.INNER_NODE_PAGE);
+                int pageNumber = node.getPageNumber();
+                if (previous != null) {
+                    previous.setRightSiblingPageNumber(pageNumber);
+                    this.unpin(previous.getPageNumber());
+                }
+                previous = node;
+
+                node.initRootState(children.separators[from], children.pages[from], children.pages[from + 1]);
+                for (int i = from + 2; i < from + num; i++) {
+                    node.insertKeyPageNumberPairAtPosition(children.separators[i - 1], children.pages[i], node.getNumberOfKeys());
+                }
+                nodes.add(pageNumber, children.separators[from + num - 1]);
+            }
+        } finally {
+            if (previous != null) {
+                this.unpin(previous.getPageNumber());
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Builds the level of compressed inner nodes above the given level, filling each node by bytes
+     * within the key range between the separators around its children.
+     */
+    private Level buildCompressedInnerLevel(Level children, float fillFactor) throws PageFormatException, IOException {
+        int reserve = this.reserve(fillFactor);
+        // each key takes the bytes of its pointer and its position at least
+        int maxChildren = this.schema.getPageSize().getNumberOfBytes() / 8 + 1;
+
+        Level nodes = new Level();
+        CompressedBTreeInnerNodePage previous = null;
+        DataField previousLowestKey = null;
+        try {
+            for (int from = 0, next; from < children.size; from = next) {
+                CompressedBTreeInnerNodePage node = (CompressedBTreeInnerNodePage) this.newPage(BTreeIndexPageType.INNER_NODE_PAGE);
+                int pageNumber = node.getPageNumber();
+                DataField lowestKey = from == 0 ? null : children.separators[from - 1];
+                if (previous != null) {
+                    previous.setRightSiblingPageNumber(pageNumber);
+                    previous.setKeyRange(previousLowestKey, lowestKey);
+                    this.unpin(previous.getPageNumber());
+                }
+                previous = node;
+                previousLowestKey = lowestKey;
+
+                // the last node of the level takes the keys up to the end
+                int last = from + maxChildren - 1;
+                node.setKeyRange(lowestKey, last < children.size - 1 ? children.separators[last] : null);
+                int capacity = node.getFreeSpace();
+                node.initRootState(children.separators[from], children.pages[from], children.pages[from + 1]);
+                next = from + 2;
+                // the last children go into this node, if they are likely to fit, but a single one always
+                while (next < children.size && (node.getFreeSpace() > reserve || next == children.size - 1
+                        || restFits(capacity, node.getFreeSpace(), node.getNumberOfKeys(), children.size - next))
+                        && node.insertKeyPageNumberPairAtPosition(children.separators[next - 1], children.pages[next], node.getNumberOfKeys())) {
+                    next++;
+                }
+                if (next == children.size - 1) {
+                    node.deleteKeyAndPointer(node.getNumberOfKeys() - 1);
+                    next--;
+                }
+                nodes.add(pageNumber, children.separators[next - 1]);
+            }
+            if (nodes.size > 1) {
+                this.balanceLastNodes(nodes, previous);
+            }
+        } finally {
+            if (previous != null) {
+                this.unpin(previous.getPageNumber());
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * The last node of the level takes keys and children from the node before, until the two hold
+     * about the same number of bytes. The separator of the node before moves down into the last
+     * node and the node's last key moves up in its place.
+     */
+    private void balanceLastNodes(Level nodes, CompressedBTreeInnerNodePage last) throws PageFormatException, IOException {
+        int beforeNumber = nodes.pages[nodes.size - 2];
+        CompressedBTreeInnerNodePage before = (CompressedBTreeInnerNodePage) this.getPage(beforeNumber);
+        try {
+            while (last.getFreeSpace() > before.getFreeSpace() && before.getNumberOfKeys() > 1) {
+                int position = before.getNumberOfKeys() - 1;
+                if (!last.insertKeyPageNumberPairAtPosition(nodes.separators[nodes.size - 2], last.getPointer(0), 0)) {
+                    break;
+                }
+                last.setPointer(0, before.getPointer(position + 1));
+                nodes.separators[nodes.size - 2] = before.getKey(position);
+                before.deleteKeyAndPointer(position);
+            }
+        } finally {
+            this.unpin(beforeNumber);
+        }
+    }
+
+    /**
+     * Gets the number of bytes that a bulk load leaves free on a compressed page. Like the number
+     * of entries on an uncompressed page, the bytes on a compressed page are at least half used.
+     */
+    private int reserve(float fillFactor) {
+        return (int) ((1.0f - Math.max(fillFactor, 0.5f)) * this.schema.getPageSize().getNumberOfBytes());
+    }
+
+    /**
+     * Checks whether the remaining entries are likely to fit onto a compressed page, judging by the
+     * bytes that the entries already on it take on average.
+     */
+    private static boolean restFits(int capacity, int free, int count, int remaining) {
+        return (long) (capacity - free) * remaining <= (long) free * count;
+    }
+
+    private static int capacity(float fillFactor, int maximum, int minimum) {
+        return Math.max(minimum, Math.min(maximum, (int) (fillFactor * maximum)));
+    }
+
+    /**
+     * Gets the number of entries for the next node of a level, which is the capacity while more
+     * than two nodes' worth remain. The rest goes into one node or is split evenly into two, so
+     * that none of the last nodes is less than half full.
+     */
+    private static int nextNodeSize(int remaining, int capacity, int maximum) {
+        if (remaining > 2 * capacity) {
+            return capacity;
+        }
+        return remaining <= maximum ? remaining : remaining / 2;
+    }
+
+    // ------------------------------------------------------------------------
+    //                              pages
+    // ------------------------------------------------------------------------
+
+    private BTreeIndexPage getPage(int pageNumber) throws IOException {
+        CacheableData page;
+        try {
+            page = this.bufferPool.getPageAndPin(this.resourceId, pageNumber);
+        } catch (BufferPoolException e) {
+            throw new IOException("Could not get page " + pageNumber + " of the index.", e);
+        }
+        if (!(page instanceof BTreeIndexPage)) {
+            this.unpin(pageNumber);
+            throw new IndexFormatCorruptException("Page " + pageNumber + " is no index page.");
+        }
+        return (BTreeIndexPage) page;
+    }
+
+    private BTreeIndexPage newPage(BTreeIndexPageType type) throws IOException {
+        try {
+            return (BTreeIndexPage) this.bufferPool.createNewPageAndPin(this.resourceId, type);
+        } catch (BufferPoolException e) {
+            throw new IOException("Could not create a new page for the index.", e);
+        }
+    }
+
+    private void unpin(int pageNumber) {
+        this.bufferPool.unpinPage(this.resourceId, pageNumber);
+    }
+
+    // releases the latch and the pin of a latched page
+    private void release(int pageNumber) {
+        this.latches.release(pageNumber);
+        if (pageNumber != ROOT_LATCH) {
+            this.unpin(pageNumber);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //                              lookups
+    // ------------------------------------------------------------------------
+
+    /**
+     * Iterator over the entries of a key range, which reads the leaves one after the other. The
+     * entries of a leaf that are in the range are copied at once, so that the leaf is pinned only
+     * while it is read, and the read is repeated if a writer changed the leaf in the meantime. A
+     * split only moves entries to the right, where the iterator continues anyway. A start or stop
+     * key of null leaves the range open at that end.
+     */
+    private abstract class RangeIterator<E> implements IndexResultIterator<E> {
+
+        private final DataField startKey;
+        private final DataField stopKey;
+        private final boolean startKeyIncluded;
+        private final boolean stopKeyIncluded;
+
+        private int numEntries;
+        private int position;
+        // the leaf to read when the entries are returned, -1 if the range ends before it
+        private int nextLeaf;
+        private boolean started;
+
+        RangeIterator(DataField startKey, DataField stopKey, boolean startKeyIncluded, boolean stopKeyIncluded) {
+            this.startKey = startKey;
+            this.stopKey = stopKey;
+            this.startKeyIncluded = startKeyIncluded;
+            this.stopKeyIncluded = stopKeyIncluded;
+        }
+
+        /**
+         * Copies the entries at the given positions of the leaf to the front of the buffer.
+         */
+        abstract void copy(BTreeLeafPage leaf, int from, int num);
+
+        abstract E get(int position);
+
+        @Override
+        public boolean hasNext() throws IOException, IndexFormatCorruptException, PageFormatException {
+            while (this.position == this.numEntries) {
+                if (!this.started) {
+                    this.readFirstLeaf();
+                } else if (this.nextLeaf != NO_PAGE) {
+                    this.readNextLeaf();
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public E next() throws IOException, IndexFormatCorruptException, PageFormatException {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.get(this.position++);
+        }
+
+        private void readFirstLeaf() throws IOException {
+            this.started = true;
+            if (this.startKey == null) {
+                this.nextLeaf = BTreeIndexClass.this.schema.getFirstLeafNumber();
+                return;
+            }
+            Descent descent = new Descent();
+            do {
+                BTreeIndexClass.this.descend(this.startKey, descent);
+            } while (!this.read(descent.leaf, descent.leafNumber, descent.leafVersion, true));
+        }
+
+        private void readNextLeaf() throws IOException {
+            int pageNumber = this.nextLeaf;
+            BTreeIndexPage page;
+            do {
+                page = BTreeIndexClass.this.getPage(pageNumber);
+                if (!(page instanceof BTreeLeafPage)) {
+                    BTreeIndexClass.this.unpin(pageNumber);
+                    throw new IndexFormatCorruptException("Page " + pageNumber + " in the chain of leaves is no leaf.");
+                }
+            } while (!this.read((BTreeLeafPage) page, pageNumber, BTreeIndexClass.this.latches.awaitVersion(pageNumber), false));
+        }
+
+        /**
+         * Copies the entries of the range from the pinned leaf and unpins it.
+         *
+         * @return False, if the leaf changed while it was read.
+         */
+        private boolean read(BTreeLeafPage leaf, int pageNumber, long version, boolean first) throws IOException {
+            this.numEntries = 0;
+            this.position = 0;
+            int next = NO_PAGE;
+            boolean stopped = false;
+            RuntimeException failure = null;
+            try {
+                // the range on the leaf, found by binary search on the keys in place
+                int numLeafEntries = leaf.getNumberOfEntries();
+                int from = 0;
+                if (this.startKey != null && (first || !this.startKeyIncluded)) {
+                    from = this.startKeyIncluded ? leaf.getPositionForKey(this.startKey) : leaf.getPositionAfterKey(this.startKey);
+                }
+                int to = numLeafEntries;
+                if (this.stopKey != null) {
+                    to = this.stopKeyIncluded ? leaf.getPositionAfterKey(this.stopKey) : leaf.getPositionForKey(this.stopKey);
+                    stopped = to < numLeafEntries;
+                }
+                if (from < to) {
+                    this.copy(leaf, from, to - from);
+                    this.numEntries = to - from;
+                }
+                next = leaf.getNextLeafPageNumber();
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                BTreeIndexClass.this.unpin(pageNumber);
+            }
+
+            if (!BTreeIndexClass.this.latches.validate(pageNumber, version)) {
+                this.numEntries = 0;
+                return false;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            this.nextLeaf = stopped ? NO_PAGE : next;
+            if (this.nextLeaf != NO_PAGE) {
+                try {
+                    BTreeIndexClass.this.bufferPool.prefetchPage(BTreeIndexClass.this.resourceId, this.nextLeaf);
+                } catch (BufferPoolException e) {
+                    throw new IOException("Could not prefetch page " + this.nextLeaf + " of the index.", e);
+                }
+            }
+            return true;
+        }
+    }
+}
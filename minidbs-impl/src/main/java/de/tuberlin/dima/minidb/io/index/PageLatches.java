@@ -0,0 +1,111 @@
+package de.tuberlin.dima.minidb.io.index;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Version latches of the pages of one index, addressed by page number, so that they outlive the
+ * page objects that the buffer pool evicts and loads again. An even version means the page is not
+ * latched. A writer makes the version odd while it changes the page and even again when it is
+ * done. Readers never change the version: they remember it before reading a page and check
+ * afterwards that it is still the same, which tells them that what they read is consistent.
+ * Threads that wait for a latch spin briefly, then yield and finally park for growing intervals.
+ */
+final class PageLatches {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // the attempts a waiting thread spins and yields, before it parks for up to the given time
+    private static final int SPIN_ATTEMPTS = 64;
+    private static final int YIELD_ATTEMPTS = 128;
+    private static final long MAX_PARK_NANOS = 1000000;
+
+    // the validation of a stamped lock issues a load fence, for which Java 8 has no public method
+    private static final StampedLock LOAD_FENCE = new StampedLock();
+
+    // the versions in chunks of consecutive pages, grown by whole chunks so no version is lost
+    private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+
+    private AtomicLongArray chunk(int pageNumber) {
+        AtomicLongArray[] current = this.chunks;
+        int chunk = pageNumber >>> CHUNK_BITS;
+        return chunk < current.length ? current[chunk] : this.grow(chunk);
+    }
+
+    private synchronized AtomicLongArray grow(int chunk) {
+        AtomicLongArray[] current = this.chunks;
+        if (chunk >= current.length) {
+            AtomicLongArray[] grown = Arrays.copyOf(current, Math.max(chunk + 1, current.length * 2));
+            for (int i = current.length; i < grown.length; i++) {
+                grown[i] = new AtomicLongArray(CHUNK_SIZE);
+            }
+            this.chunks = grown;
+            current = grown;
+        }
+        return current[chunk];
+    }
+
+    /**
+     * Waits until no writer latches the page and returns its version.
+     */
+    long awaitVersion(int pageNumber) {
+        AtomicLongArray chunk = this.chunk(pageNumber);
+        int slot = pageNumber & (CHUNK_SIZE - 1);
+        long version;
+        for (int attempt = 0; ((version = chunk.get(slot)) & 1) != 0; attempt++) {
+            backOff(attempt);
+        }
+        return version;
+    }
+
+    /**
+     * Checks that the page still has the given version, i.e. nothing changed it in between. The
+     * reads of the page before the check are fenced, so that none of them is done after it.
+     */
+    boolean validate(int pageNumber, long version) {
+        LOAD_FENCE.validate(0L);
+        return this.chunk(pageNumber).get(pageNumber & (CHUNK_SIZE - 1)) == version;
+    }
+
+    /**
+     * Latches the page, if it still has the given version.
+     *
+     * @return False, if the page has changed since the version was read.
+     */
+    boolean tryLatch(int pageNumber, long version) {
+        return this.chunk(pageNumber).compareAndSet(pageNumber & (CHUNK_SIZE - 1), version, version + 1);
+    }
+
+    /**
+     * Latches the page, waiting for the writer that holds it.
+     */
+    void latch(int pageNumber) {
+        for (int attempt = 0; !this.tryLatch(pageNumber, this.awaitVersion(pageNumber)); attempt++) {
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Releases the latch of the page, which gives it a new version.
+     */
+    void release(int pageNumber) {
+        this.chunk(pageNumber).incrementAndGet(pageNumber & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Waits before the next attempt to get a latch, the longer the more attempts failed.
+     */
+    private static void backOff(int attempt) {
+        if (attempt < SPIN_ATTEMPTS) {
+            return;
+        }
+        if (attempt < YIELD_ATTEMPTS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(attempt - YIELD_ATTEMPTS, 10)));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package de.tuberlin.dima.minidb.io.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Request queue of one I/O worker. Instead of serving the requests in arrival order, the worker
+ * drains everything that is pending, orders it per resource in a circular elevator sweep over the
+ * page numbers and gets it back as runs of adjacent pages that can be transferred in one call.
+ */
+class ElevatorQueue<E extends QueueEntry> {
+
+    private final List<E> pending;
+    // page number at which the last sweep over a resource stopped
+    private final HashMap<Integer, Integer> headPositions;
+    private boolean closed;
+
+    ElevatorQueue() {
+        this.pending = new ArrayList<>();
+        this.headPositions = new HashMap<>();
+        this.closed = false;
+    }
+
+    /**
+     * Adds a request, unless the queue has been closed.
+     *
+     * @return true, if the request has been added, false if the queue is closed.
+     */
+    synchronized boolean offer(E entry) {
+        if (this.closed) {
+            return false;
+        }
+        this.pending.add(entry);
+        if (this.pending.size() == 1) {
+            this.notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Rejects further requests and wakes up the worker, which gets an empty batch once all pending
+     * requests are taken.
+     */
+    synchronized void close() {
+        this.closed = true;
+        this.notifyAll();
+    }
+
+    synchronized boolean isEmpty() {
+        return this.pending.isEmpty();
+    }
+
+    /**
+     * Blocks until requests are pending and returns all of them as runs of consecutive pages of
+     * the same resource, each run holding at most the given number of requests. After the queue
+     * has been closed, an empty list is returned instead of blocking.
+     */
+    synchronized List<List<E>> takeRuns(int maxRunLength) throws InterruptedException {
+        while (this.pending.isEmpty()) {
+            if (this.closed) {
+                return Collections.emptyList();
+            }
+            this.wait();
+        }
+        List<E> batch = new ArrayList<>(this.pending);
+        this.pending.clear();
+        // stable sort, so repeated requests for the same page keep their order
+        Collections.sort(batch, new Comparator<E>() {
+            @Override
+            public int compare(E a, E b) {
+                if (!a.getResourceId().equals(b.getResourceId())) {
+                    return a.getResourceId().compareTo(b.getResourceId());
+                }
+                boolean aWrapped = a.getPageNumber() <= headPosition(a.getResourceId());
+                boolean bWrapped = b.getPageNumber() <= headPosition(b.getResourceId());
+                if (aWrapped != bWrapped) {
+                    return aWrapped ? 1 : -1;
+                }
+                return Integer.compare(a.getPageNumber(), b.getPageNumber());
+            }
+        });
+
+        List<List<E>> runs = new ArrayList<>();
+        List<E> run = null;
+        for (E entry : batch) {
+            if (run == null || run.size() >= maxRunLength) {
+                run = new ArrayList<>();
+                runs.add(run);
+            } else {
+                E last = run.get(run.size() - 1);
+                if (!last.getResourceId().equals(entry.getResourceId()) || last.getPageNumber() + 1 != entry.getPageNumber()) {
+                    run = new ArrayList<>();
+                    runs.add(run);
+                }
+            }
+            run.add(entry);
+            this.headPositions.put(entry.getResourceId(), entry.getPageNumber());
+        }
+        return runs;
+    }
+
+    private int headPosition(int resourceId) {
+        Integer position = this.headPositions.get(resourceId);
+        return position == null ? Integer.MIN_VALUE : position;
+    }
+}
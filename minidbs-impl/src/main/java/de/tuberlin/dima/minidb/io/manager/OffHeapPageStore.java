@@ -0,0 +1,203 @@
+package de.tuberlin.dima.minidb.io.manager;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Second cache level below the page cache that keeps clean pages in off-heap frames. Pages
+ * are demoted into the store when the page cache evicts them unmodified and leave it again
+ * when they are fetched back, so a page is never held by both levels at the same time.
+ * Like the page table, the frames are partitioned into independent stripes by
+ * (resourceId, pageNumber), and every stripe is its own monitor, so that demoting a page on
+ * eviction does not contend with the demotions and fetches of other pages. Within a stripe,
+ * frames are replaced with the clock algorithm.
+ * <p>
+ * Every page remembers the resource manager and the generation of the resource it was taken
+ * from. A page is only handed out again for the same manager in the same generation, so the
+ * store never serves pages of a resource that has been truncated, closed or replaced.
+ */
+class OffHeapPageStore {
+
+    // never split the store into stripes smaller than this, otherwise the clock of a stripe replaces too eagerly
+    static final int MIN_FRAMES_PER_STRIPE = 256;
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    OffHeapPageStore(int pageSize, int numFrames, int concurrency) {
+        int numStripes = 1;
+        while (numStripes < concurrency && (numStripes << 1) * MIN_FRAMES_PER_STRIPE <= numFrames) {
+            numStripes <<= 1;
+        }
+        this.stripes = new Stripe[numStripes];
+        this.mask = numStripes - 1;
+        for (int i = 0; i < numStripes; i++) {
+            // spread the remainder over the first stripes so the total number of frames is unchanged
+            this.stripes[i] = new Stripe(pageSize, numFrames / numStripes + (i < numFrames % numStripes ? 1 : 0));
+        }
+    }
+
+    /**
+     * Checks whether the store holds a valid copy of the page for the given resource manager.
+     * An outdated copy is dropped.
+     */
+    boolean contains(long key, ResourceManager owner) {
+        return this.getStripe(key).contains(key, owner);
+    }
+
+    /**
+     * Copies the page into the store, replacing another page if all frames are taken.
+     */
+    void put(long key, ResourceManager owner, byte[] page) {
+        this.getStripe(key).put(key, owner, page);
+    }
+
+    /**
+     * Copies the page into the given buffer and removes it from the store.
+     *
+     * @return True, if a valid copy of the page was contained in the store, false otherwise.
+     */
+    boolean take(long key, ResourceManager owner, byte[] page) {
+        return this.getStripe(key).take(key, owner, page);
+    }
+
+    /**
+     * Drops the page, for example because its page number has been reserved again.
+     */
+    void remove(long key) {
+        this.getStripe(key).remove(key);
+    }
+
+    /**
+     * Drops all pages of the given resource.
+     */
+    void removeResource(int resourceId) {
+        for (Stripe stripe : this.stripes) {
+            stripe.removeResource(resourceId);
+        }
+    }
+
+    private Stripe getStripe(long key) {
+        // the same spreading as the page table, on the resource id and page number packed into the key
+        int h = (int) (key >>> 32) * 0x9E3779B9 + (int) key;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return this.stripes[h & this.mask];
+    }
+
+    /**
+     * One independently locked part of the store, with its own frames and clock.
+     */
+    private static final class Stripe {
+
+        private final PageFrameArena arena;
+        private final HashMap<Long, Integer> frameIndex;
+        private final long[] frameKeys;
+        private final ResourceManager[] frameOwners;
+        private final int[] frameGenerations;
+        private final boolean[] referenced;
+        private final int[] freeFrames;
+        private int numFree;
+        private int clockHand;
+
+        Stripe(int pageSize, int numFrames) {
+            this.arena = new PageFrameArena(pageSize, numFrames);
+            this.frameIndex = new HashMap<>(numFrames * 2);
+            this.frameKeys = new long[numFrames];
+            this.frameOwners = new ResourceManager[numFrames];
+            this.frameGenerations = new int[numFrames];
+            this.referenced = new boolean[numFrames];
+            this.freeFrames = new int[numFrames];
+            for (int i = 0; i < numFrames; i++) {
+                this.freeFrames[i] = numFrames - 1 - i;
+            }
+            this.numFree = numFrames;
+            this.clockHand = 0;
+        }
+
+        synchronized boolean contains(long key, ResourceManager owner) {
+            Integer frame = this.frameIndex.get(key);
+            if (frame == null) {
+                return false;
+            }
+            if (!this.isValid(frame, owner)) {
+                this.free(key, frame);
+                return false;
+            }
+            this.referenced[frame] = true;
+            return true;
+        }
+
+        synchronized void put(long key, ResourceManager owner, byte[] page) {
+            Integer frame = this.frameIndex.get(key);
+            if (frame == null) {
+                frame = this.numFree > 0 ? this.freeFrames[--this.numFree] : this.replace();
+                this.frameKeys[frame] = key;
+                this.frameIndex.put(key, frame);
+            }
+            this.frameOwners[frame] = owner;
+            this.frameGenerations[frame] = owner.getGeneration();
+            this.referenced[frame] = false;
+            this.arena.store(frame, page);
+        }
+
+        synchronized boolean take(long key, ResourceManager owner, byte[] page) {
+            Integer frame = this.frameIndex.get(key);
+            if (frame == null) {
+                return false;
+            }
+            boolean valid = this.isValid(frame, owner);
+            if (valid) {
+                this.arena.load(frame, page);
+            }
+            this.free(key, frame);
+            return valid;
+        }
+
+        synchronized void remove(long key) {
+            Integer frame = this.frameIndex.get(key);
+            if (frame != null) {
+                this.free(key, frame);
+            }
+        }
+
+        synchronized void removeResource(int resourceId) {
+            for (Iterator<Map.Entry<Long, Integer>> it = this.frameIndex.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, Integer> entry = it.next();
+                if ((int) (entry.getKey() >>> 32) == resourceId) {
+                    it.remove();
+                    this.release(entry.getValue());
+                }
+            }
+        }
+
+        private boolean isValid(int frame, ResourceManager owner) {
+            return this.frameOwners[frame] == owner && this.frameGenerations[frame] == owner.getGeneration();
+        }
+
+        private void free(long key, int frame) {
+            this.frameIndex.remove(key);
+            this.release(frame);
+        }
+
+        private void release(int frame) {
+            this.frameOwners[frame] = null;
+            this.freeFrames[this.numFree++] = frame;
+        }
+
+        private int replace() {
+            while (true) {
+                int frame = this.clockHand;
+                this.clockHand = (this.clockHand + 1) % this.frameKeys.length;
+                if (this.referenced[frame]) {
+                    this.referenced[frame] = false;
+                } else {
+                    this.frameIndex.remove(this.frameKeys[frame]);
+                    return frame;
+                }
+            }
+        }
+    }
+}
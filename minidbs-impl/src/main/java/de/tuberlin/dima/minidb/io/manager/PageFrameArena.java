@@ -0,0 +1,59 @@
+package de.tuberlin.dima.minidb.io.manager;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed number of page frames outside of the Java heap. The frames are carved out of direct
+ * memory slabs, which are allocated on first use, so the garbage collector only ever sees a
+ * handful of slab objects instead of one array per page.
+ */
+class PageFrameArena {
+
+    // size of one direct memory allocation, a multiple of every page size
+    static final int SLAB_BYTES = 4 * 1024 * 1024;
+
+    private final int pageSize;
+    private final int numFrames;
+    private final int framesPerSlab;
+    private final ByteBuffer[] slabs;
+
+    PageFrameArena(int pageSize, int numFrames) {
+        this.pageSize = pageSize;
+        this.numFrames = numFrames;
+        this.framesPerSlab = Math.max(1, SLAB_BYTES / pageSize);
+        this.slabs = new ByteBuffer[(numFrames + this.framesPerSlab - 1) / this.framesPerSlab];
+    }
+
+    int getNumFrames() {
+        return this.numFrames;
+    }
+
+    int getPageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * Gets a view of the given frame, positioned at its start and limited to its end.
+     */
+    ByteBuffer getFrame(int frame) {
+        int slab = frame / this.framesPerSlab;
+        if (this.slabs[slab] == null) {
+            int frames = Math.min(this.framesPerSlab, this.numFrames - slab * this.framesPerSlab);
+            this.slabs[slab] = ByteBuffer.allocateDirect(frames * this.pageSize).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer view = this.slabs[slab].duplicate();
+        int offset = (frame % this.framesPerSlab) * this.pageSize;
+        view.position(offset);
+        view.limit(offset + this.pageSize);
+        return view;
+    }
+
+    void store(int frame, byte[] page) {
+        this.getFrame(frame).put(page, 0, this.pageSize);
+    }
+
+    void load(int frame, byte[] page) {
+        this.getFrame(frame).get(page, 0, this.pageSize);
+    }
+}
@@ -0,0 +1,64 @@
+package de.tuberlin.dima.minidb.io.manager;
+
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.io.cache.CacheableData;
+import de.tuberlin.dima.minidb.io.cache.PageCache;
+import de.tuberlin.dima.minidb.io.cache.PageSize;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page table of the buffer pool for one page size. The pages are partitioned into
+ * independent cache stripes by (resourceId, pageNumber), and every stripe is its own
+ * monitor, so threads touching different pages do not contend on one lock.
+ */
+class PageTable {
+
+    // never split a cache into stripes smaller than this, otherwise a few pinned pages fill a stripe
+    static final int MIN_PAGES_PER_STRIPE = 256;
+
+    private final PageCache[] stripes;
+    private final int mask;
+
+    PageTable(PageSize pageSize, int capacity, int concurrency) {
+        int numStripes = 1;
+        while (numStripes < concurrency && (numStripes << 1) * MIN_PAGES_PER_STRIPE <= capacity) {
+            numStripes <<= 1;
+        }
+        this.stripes = new PageCache[numStripes];
+        this.mask = numStripes - 1;
+        for (int i = 0; i < numStripes; i++) {
+            // spread the remainder over the first stripes so the total capacity is unchanged
+            int stripeCapacity = capacity / numStripes + (i < capacity % numStripes ? 1 : 0);
+            this.stripes[i] = AbstractExtensionFactory.getExtensionFactory().createPageCache(pageSize, stripeCapacity);
+        }
+    }
+
+    /**
+     * Gets the cache stripe responsible for the given page. All accesses to the stripe
+     * must be synchronized on the returned object.
+     */
+    PageCache getStripe(int resourceId, int pageNumber) {
+        int h = resourceId * 0x9E3779B9 + pageNumber;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return this.stripes[h & this.mask];
+    }
+
+    int getNumberOfStripes() {
+        return this.stripes.length;
+    }
+
+    List<CacheableData> getAllPagesForResource(int resourceId) {
+        List<CacheableData> pages = new ArrayList<>();
+        for (PageCache stripe : this.stripes) {
+            synchronized (stripe) {
+                Collections.addAll(pages, stripe.getAllPagesForResource(resourceId));
+            }
+        }
+        return pages;
+    }
+}
@@ -3,14 +3,21 @@ package de.tuberlin.dima.minidb.io.manager;
 import de.tuberlin.dima.minidb.Config;
 import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
 import de.tuberlin.dima.minidb.io.cache.*;
-import de.tuberlin.dima.minidb.io.tables.TablePage;
+import de.tuberlin.dima.minidb.io.tables.TableResourceManager;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,25 +25,26 @@ import java.util.logging.Logger;
 
 public class PoolManager implements BufferPoolManager {
     private final HashMap<Integer, ResourceManager> resourceManagers;
-    private final ConcurrentHashMap<Integer, PageCache> pageCaches;
+    private final ConcurrentHashMap<Integer, PageTable> pageTables;
     private final ConcurrentHashMap<Integer, LinkedBlockingQueue<byte[]>> freeBufferCollection;
-    private final LinkedBlockingQueue<LoadQueueEntry> simpleLoadQueue;
-    private final LinkedBlockingQueue<WriteQueueEntry> simpleWriteQueue;
+    private final ConcurrentHashMap<Integer, OffHeapPageStore> offHeapStores;
+    private final ConcurrentHashMap<Long, InFlightLoad> inFlightLoads;
+    // queued writes by page, so that the read threads find pages that are about to be written without a scan
+    private final HashMap<Long, List<WriteQueueEntry>> pendingWrites;
     private final Config config;
     private final Logger logger;
-    private ReadThread readThread;
-    private WriteThread writeThread;
-    private boolean isClosed;
-    private  boolean writingCompleted;
+    private ReadThread[] readThreads;
+    private WriteThread[] writeThreads;
+    private volatile boolean isClosed;
 
 
     public PoolManager(Config config, Logger logger) {
         this.resourceManagers = new HashMap<>();
-        this.pageCaches = new ConcurrentHashMap<>();
+        this.pageTables = new ConcurrentHashMap<>();
         this.freeBufferCollection = new ConcurrentHashMap<>();
-        this.simpleLoadQueue = new LinkedBlockingQueue<>();
-        this.simpleWriteQueue = new LinkedBlockingQueue<>();
-        this.writingCompleted = false;
+        this.offHeapStores = new ConcurrentHashMap<>();
+        this.inFlightLoads = new ConcurrentHashMap<>();
+        this.pendingWrites = new HashMap<>();
 
         this.config = config;
         // required for throwing exceptions after the closing method has been called
@@ -78,34 +86,56 @@ public class PoolManager implements BufferPoolManager {
 
     @Override
     public void startIOThreads() throws BufferPoolException {
-        this.readThread = new ReadThread();
-        this.readThread.setName("ReadThread");
-        this.writeThread = new WriteThread();
-        this.writeThread.setName("WriteThread");
-        this.readThread.start();
-        this.writeThread.start();
-        this.logger.info("Started IO threads");
+        // reads of resources that allow it are spread over the read threads by page extent, so that a scan
+        // of a single table keeps all of them busy, while every resource is written by exactly one write thread
+        this.readThreads = new ReadThread[Math.max(1, this.config.getNumIOReadThreads())];
+        this.writeThreads = new WriteThread[Math.max(1, this.config.getNumIOWriteThreads())];
+        for (int i = 0; i < this.readThreads.length; i++) {
+            this.readThreads[i] = new ReadThread();
+            this.readThreads[i].setName("ReadThread-" + i);
+            this.readThreads[i].start();
+        }
+        for (int i = 0; i < this.writeThreads.length; i++) {
+            this.writeThreads[i] = new WriteThread(i);
+            this.writeThreads[i].setName("WriteThread-" + i);
+            this.writeThreads[i].start();
+        }
+        this.logger.info(getLogMessage("Started %d read and %d write threads", this.readThreads.length, this.writeThreads.length));
     }
 
     @Override
     public void closeBufferPool() {
-        // we can shut down the read thread immediately and discard any read requests
-
-        this.readThread.shutdown();
-        synchronized (simpleWriteQueue)
-        {
-            this.writeThread.shutdown();
-            while(!this.writingCompleted )
-            {
-                try {
-                    simpleWriteQueue.wait();
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
+        this.isClosed = true;
+        // we can shut down the read threads immediately and discard any read requests
+        for (ReadThread readThread : this.readThreads) {
+            readThread.shutdown();
+        }
+        // the read queues are closed now, so no load can be added anymore and the pending ones never complete
+        this.failPendingLoads(new BufferPoolException("The pool has been closed while the page was loaded"));
+        // the write threads finish their queues and flush the cached pages before they terminate
+        for (WriteThread writeThread : this.writeThreads) {
+            writeThread.shutdown();
+        }
+        for (WriteThread writeThread : this.writeThreads) {
+            try {
+                writeThread.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
             }
-            this.isClosed = true;
         }
+    }
 
+    private void failPendingLoads(BufferPoolException cause) {
+        for (Map.Entry<Long, InFlightLoad> pending : this.inFlightLoads.entrySet()) {
+            InFlightLoad load = pending.getValue();
+            boolean removed;
+            synchronized (load.entry.getTargetCache()) {
+                removed = this.inFlightLoads.remove(pending.getKey(), load);
+            }
+            if (removed) {
+                load.fail(cause);
+            }
+        }
     }
 
 
@@ -124,9 +154,18 @@ public class PoolManager implements BufferPoolManager {
                 byte[] newByteArray = new byte[resourcePageSize.getNumberOfBytes()];
                 this.freeBufferCollection.get(resourcePageSize.getNumberOfBytes()).offer(newByteArray);
             }
-            // create new page cache with size given by the page size
-            PageCache pageCache =  AbstractExtensionFactory.getExtensionFactory().createPageCache(resourcePageSize, this.config.getCacheSize(resourcePageSize));
-            this.pageCaches.put(resourcePageSize.getNumberOfBytes(), pageCache);
+            // create new page table with size given by the page size, striped by the number of concurrent queries
+            PageTable pageTable = new PageTable(resourcePageSize, this.config.getCacheSize(resourcePageSize), this.config.getMaxConcurrentQueries());
+            this.pageTables.put(resourcePageSize.getNumberOfBytes(), pageTable);
+            // clean pages evicted from the page table are kept off-heap, if configured
+            int offHeapPages = this.config.getOffHeapCacheSize(resourcePageSize);
+            if (offHeapPages > 0) {
+                this.offHeapStores.put(resourcePageSize.getNumberOfBytes(), new OffHeapPageStore(resourcePageSize.getNumberOfBytes(), offHeapPages, this.config.getMaxConcurrentQueries()));
+            }
+        }
+        // pages that an earlier resource with the same id left in the off-heap level belong to another file
+        for (OffHeapPageStore store : this.offHeapStores.values()) {
+            store.removeResource(id);
         }
         // register the resource manager
         this.resourceManagers.put(id, manager);
@@ -139,172 +178,104 @@ public class PoolManager implements BufferPoolManager {
         if (this.isClosed) {
             throw new BufferPoolException("The pool is closed");
         }
-        LoadQueueEntry entry = null;
-        synchronized (simpleLoadQueue) {
-            // fetch the resource manager
-            ResourceManager resourceManager = this.resourceManagers.get(resourceId);
-            // fetch the page size of the resource manager
-            PageSize pageSize = resourceManager.getPageSize();
-            // fetch the page cache for this page size
-            PageCache pageCache = this.pageCaches.get(pageSize.getNumberOfBytes());
-            CacheableData data = null;
-            synchronized (pageCache) {
-                data = pageCache.getPageAndPin(resourceId, pageNumber);
-            }
+        return this.fetchPageAndPin(resourceId, pageNumber);
+    }
+
+    @Override
+    public CacheableData unpinAndGetPageAndPin(int resourceId, int unpinPageNumber, int getPageNumber) throws BufferPoolException {
+        if (this.isClosed) {
+            throw new BufferPoolException("The pool is closed");
+        }
+        // unpin the given page
+        this.unpinPage(resourceId, unpinPageNumber);
+        return this.fetchPageAndPin(resourceId, getPageNumber);
+    }
+
+    private CacheableData fetchPageAndPin(int resourceId, int pageNumber) throws BufferPoolException {
+        // fetch the resource manager
+        ResourceManager resourceManager = this.resourceManagers.get(resourceId);
+        if (resourceManager == null) {
+            throw new BufferPoolException("Manager has not been registered yet");
+        }
+        // only the cache stripe of this page is locked, hits never touch the load queue
+        PageCache pageCache = this.getPageTable(resourceManager).getStripe(resourceId, pageNumber);
+        InFlightLoad load;
+        synchronized (pageCache) {
+            CacheableData data = pageCache.getPageAndPin(resourceId, pageNumber);
             if (data != null) {
                 // page is in cache and we do not involve the disk
-                this.logger.info(
-                        this.getLogMessage("Returning cache hit for page %d of resource %d",
-                                pageNumber,
-                                resourceId
-                        )
-                );
+                this.logger.info(this.getLogMessage("Returning cache hit for page %d of resource %d", pageNumber, resourceId));
                 return data;
-            } else {
-                // we have a cache miss and need to load the page from disk
-                // create a new load queue entry
-                this.logger.info(
-                        this.getLogMessage("Cache miss for page %d of resource %d",
-                                pageNumber,
-                                resourceId
-                        )
-                );
-                // check if the entry is already in the load queue
-                for (LoadQueueEntry queueEntry : simpleLoadQueue) {
-                    if (queueEntry.getResourceId() == resourceId && queueEntry.getPageNumber() == pageNumber) {
-                        entry = queueEntry;
-                        this.logger.info(
-                                this.getLogMessage("Found existing load queue entry for page %d of resource %d",
-                                        pageNumber,
-                                        resourceId
-                                )
-                        );
-                        break;
-                    }
-                }
-
-                if (entry == null) {
-                    entry = new LoadQueueEntry(resourceId, pageNumber, resourceManager, pageCache, true);
-
-                    boolean offerResult = this.simpleLoadQueue.offer(entry);
-                    if (simpleLoadQueue.size() == 1) {
-                        simpleLoadQueue.notifyAll();
-                    }
-                    this.logger.info(
-                            this.getLogMessage("Offered load queue entry for page %d of resource %d to load queue with result %s",
-                                    pageNumber,
-                                    resourceId,
-                                    offerResult
-                            )
-                    );
-                }
-
-
             }
+            // we have a cache miss and need to load the page from disk
+            this.logger.info(this.getLogMessage("Cache miss for page %d of resource %d", pageNumber, resourceId));
+            load = this.requestLoad(resourceId, pageNumber, resourceManager, pageCache);
+            load.entry.increasePinning();
         }
-        synchronized (entry) {
-            while (!entry.isCompleted()) {
-                try {
-                    this.logger.info(
-                            this.getLogMessage("Waiting for load queue entry for page %d of resource %d to complete",
-                                    pageNumber,
-                                    resourceId
-                            )
-                    );
-                    entry.wait();
-                } catch (InterruptedException e) {
-                    logger.log(Level.SEVERE, e.toString());
-                    break;
-                }
-            }
-            logger.info(
-                    getLogMessage("Got notified that entry for page %d of resource %d is complete",
-                            pageNumber,
-                            resourceId
-                    )
-            );
-            return entry.getResultPage();
+        try {
+            this.logger.info(this.getLogMessage("Waiting for load of page %d of resource %d to complete", pageNumber, resourceId));
+            return load.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // the load still pins the page for this requester once it completes, which nobody would undo
+            load.result.thenRun(() -> this.unpinPage(resourceId, pageNumber));
+            throw new BufferPoolException("Interrupted while waiting for page " + pageNumber + " of resource " + resourceId, e);
+        } catch (ExecutionException e) {
+            throw new BufferPoolException("Could not load page " + pageNumber + " of resource " + resourceId, e.getCause());
         }
+    }
 
+    private static long pageKey(int resourceId, int pageNumber) {
+        return ((long) resourceId << 32) | (pageNumber & 0xFFFFFFFFL);
     }
 
-    @Override
-    public CacheableData unpinAndGetPageAndPin(int resourceId, int unpinPageNumber, int getPageNumber) throws BufferPoolException {
-        if (this.isClosed) {
+    /**
+     * Returns the pending load for the given page or enqueues a new one. Must be called while
+     * holding the monitor of the page's cache stripe, which is also held by the read thread
+     * when it moves the loaded page into the cache, so a page is either cached or in flight.
+     */
+    private InFlightLoad requestLoad(int resourceId, int pageNumber, ResourceManager resourceManager, PageCache pageCache)
+            throws BufferPoolException {
+        long key = pageKey(resourceId, pageNumber);
+        InFlightLoad load = this.inFlightLoads.get(key);
+        if (load != null) {
+            this.logger.info(this.getLogMessage("Joining pending load of page %d of resource %d", pageNumber, resourceId));
+            return load;
+        }
+        load = new InFlightLoad(new LoadQueueEntry(resourceId, pageNumber, resourceManager, pageCache, false));
+        this.inFlightLoads.put(key, load);
+        // a closed queue rejects the load, otherwise the load is in the map before closeBufferPool() drains it
+        if (!this.readThreads[routeRead(resourceId, pageNumber, resourceManager, this.readThreads.length)].requests.offer(load.entry)) {
+            this.inFlightLoads.remove(key);
             throw new BufferPoolException("The pool is closed");
         }
-        LoadQueueEntry entry = null;
-        synchronized (simpleLoadQueue) {
-            // unpin the given page
-            this.unpinPage(resourceId, unpinPageNumber);
-            // fetch the resource manager
-            ResourceManager resourceManager = this.resourceManagers.get(resourceId);
-            // fetch the page size of the resource manager
-            PageSize pageSize = resourceManager.getPageSize();
-            // fetch the page cache for this page size
-            PageCache pageCache = this.pageCaches.get(pageSize.getNumberOfBytes());
-            // check if the page is in the cache
-            CacheableData data = null;
-            synchronized (pageCache) {
-                data = pageCache.getPageAndPin(resourceId, getPageNumber);
-            }
-            if (data != null) {
-                // page is in cache and we do not involve the disk
-                return data;
-            } else {
-                // we have a cache miss and need to load the page from disk
-                // create a new load queue entry
-                this.logger.info(this.getLogMessage("Cache miss for page %d of resource %d", getPageNumber, resourceId));
-                // check if the entry is already in the load queue
-                for (LoadQueueEntry queueEntry : simpleLoadQueue) {
-                    if (queueEntry.getResourceId() == resourceId && queueEntry.getPageNumber() == getPageNumber) {
-                        entry = queueEntry;
-                        entry.increasePinning();
-                        this.logger.info(
-                                this.getLogMessage("Found existing load queue entry for page %d of resource %d",
-                                        getPageNumber,
-                                        resourceId
-                                )
-                        );
-                        break;
-                    }
-                }
+        this.logger.info(this.getLogMessage("Offered load of page %d of resource %d to the read queue", pageNumber, resourceId));
+        return load;
+    }
 
-                if (entry == null) {
-                    entry = new LoadQueueEntry(resourceId, getPageNumber, resourceManager, pageCache, true);
-                    entry.increasePinning();
-                    boolean offerResult = this.simpleLoadQueue.offer(entry);
-                    if (simpleLoadQueue.size() == 1) {
-                        simpleLoadQueue.notifyAll();
-                    }
-                    this.logger.info(
-                            this.getLogMessage("Offered load queue entry for page %d of resource %d to load queue with result %s",
-                                    getPageNumber,
-                                    resourceId,
-                                    offerResult
-                            )
-                    );
-                }
-            }
+    /**
+     * A load that has been handed to a read thread. All requesters of the page wait on the
+     * same future, which is completed with the page once it is in the cache, or with the
+     * cause of the failure, if the page could not be loaded.
+     */
+    private static final class InFlightLoad {
+        private final LoadQueueEntry entry;
+        private final CompletableFuture<CacheableData> result;
+
+        private InFlightLoad(LoadQueueEntry entry) {
+            this.entry = entry;
+            this.result = new CompletableFuture<>();
         }
-        synchronized (entry) {
-            while (!entry.isCompleted()) {
-                try {
-                    this.logger.info(
-                            this.getLogMessage("Waiting for load queue entry for page %d of resource %d to complete",
-                                    getPageNumber, resourceId)
-                    );
-                    entry.wait();
-                } catch (InterruptedException e) {
-                    logger.log(Level.SEVERE, e.toString());
-                    break;
-                }
-            }
-            logger.info(
-                    getLogMessage("Got notified that entry for page %d of resource %d is complete",
-                            getPageNumber, resourceId)
-            );
-            return entry.getResultPage();
+
+        /**
+         * Fails the load. Must be called after the load has been removed from the in-flight map,
+         * so that no requester can add a pin anymore.
+         */
+        private void fail(Exception cause) {
+            // the page never reached the cache, so the pins of the requesters are dropped with it
+            this.entry.clearPinning();
+            this.entry.setCompleted();
+            this.result.completeExceptionally(cause);
         }
     }
 
@@ -313,10 +284,8 @@ public class PoolManager implements BufferPoolManager {
     public void unpinPage(int resourceId, int pageNumber) {
         // get the resource manager
         ResourceManager manager = this.resourceManagers.get(resourceId);
-        // get the page size of the resource manager
-        PageSize pageSize = manager.getPageSize();
-        // get the page cache
-        PageCache pageCache = this.pageCaches.get(pageSize.getNumberOfBytes());
+        // get the cache stripe holding the page
+        PageCache pageCache = this.getPageTable(manager).getStripe(resourceId, pageNumber);
         synchronized (pageCache) {
             pageCache.unpinPage(resourceId, pageNumber);
         }
@@ -327,41 +296,15 @@ public class PoolManager implements BufferPoolManager {
         if (this.isClosed) {
             throw new BufferPoolException("The pool is closed");
         }
-        synchronized (simpleLoadQueue) {
-            ResourceManager resourceManager = this.resourceManagers.get(resourceId);
-            PageSize pageSize = resourceManager.getPageSize();
-            PageCache pageCache = this.pageCaches.get(pageSize.getNumberOfBytes());
-            CacheableData cacheData = null;
-            synchronized (pageCache) {
-                cacheData = pageCache.getPage(resourceId, pageNumber);
-            }
-            if (cacheData == null) {
-                // we have a cache miss and need to load the page from disk
-                // create a new load queue entry
-                this.logger.info(this.getLogMessage("Cache miss for page %d of resource %d", pageNumber, resourceId));
-                // check if the entry is already in the load queue
-                LoadQueueEntry entry = null;
-                for (LoadQueueEntry queueEntry : simpleLoadQueue) {
-                    if (queueEntry.getResourceId() == resourceId && queueEntry.getPageNumber() == pageNumber) {
-                        entry = queueEntry;
-                        this.logger.info(
-                                this.getLogMessage("Found existing load queue entry for page %d of resource %d",
-                                        pageNumber, resourceId)
-                        );
-                        break;
-                    }
-                }
-                if (entry == null) {
-                    entry = new LoadQueueEntry(resourceId, pageNumber, resourceManager, pageCache, true);
-                    boolean offerResult = this.simpleLoadQueue.offer(entry);
-                    if (simpleLoadQueue.size() == 1) {
-                        simpleLoadQueue.notifyAll();
-                    }
-                    this.logger.info(
-                            this.getLogMessage("Offered load queue entry for page %d of resource %d to load queue with result %s",
-                                    pageNumber, resourceId, offerResult)
-                    );
-                }
+        ResourceManager resourceManager = this.resourceManagers.get(resourceId);
+        if (resourceManager == null) {
+            throw new BufferPoolException("Manager has not been registered yet");
+        }
+        PageCache pageCache = this.getPageTable(resourceManager).getStripe(resourceId, pageNumber);
+        synchronized (pageCache) {
+            if (pageCache.getPage(resourceId, pageNumber) == null) {
+                // prefetched pages are added to the cache without being pinned
+                this.requestLoad(resourceId, pageNumber, resourceManager, pageCache);
             }
         }
     }
@@ -379,6 +322,12 @@ public class PoolManager implements BufferPoolManager {
 
     @Override
     public CacheableData createNewPageAndPin(int resourceId) throws BufferPoolException, IOException {
+        return this.createNewPageAndPin(resourceId, null);
+    }
+
+
+    @Override
+    public CacheableData createNewPageAndPin(int resourceId, Enum<?> type) throws BufferPoolException, IOException {
         if (this.isClosed) {
             throw new BufferPoolException("The pool is closed");
         }
@@ -392,28 +341,23 @@ public class PoolManager implements BufferPoolManager {
         // get a free buffer for the managers page size
         byte[] buffer = this.getFreeBuffer(pageSize);
         try {
-            CacheableData page = manager.reserveNewPage(buffer);
+            CacheableData page = type == null ? manager.reserveNewPage(buffer) : manager.reserveNewPage(buffer, type);
             logger.info(getLogMessage("Reserved new page %d of resource %d", page.getPageNumber(), resourceId));
-            // get the page cache for this page size
+            // a page number can be reserved again after a truncation, the old contents must not come back
+            OffHeapPageStore store = this.offHeapStores.get(pageSize.getNumberOfBytes());
+            if (store != null) {
+                store.remove(pageKey(resourceId, page.getPageNumber()));
+            }
+            // get the cache stripe for the new page
             try {
-                PageCache pageCache = this.pageCaches.get(pageSize.getNumberOfBytes());
+                PageCache pageCache = this.getPageTable(manager).getStripe(resourceId, page.getPageNumber());
                 EvictedCacheEntry evictedEntry = null;
                 synchronized (pageCache) {
                     evictedEntry = pageCache.addPageAndPin(page, resourceId);
                     logger.info(
                             getLogMessage("Got evicted entry for page %d of resource %d", evictedEntry.getPageNumber(), evictedEntry.getResourceID()));
                 }
-                if (evictedEntry.getWrappingPage() != null && evictedEntry.getWrappingPage().hasBeenModified()) {
-                    WriteQueueEntry entry = new WriteQueueEntry(evictedEntry.getResourceID(), evictedEntry.getPageNumber(),
-                            this.resourceManagers.get(evictedEntry.getResourceID()), evictedEntry.getBinaryPage(), evictedEntry.getWrappingPage());
-                    boolean offerResult = simpleWriteQueue.offer(entry);
-                    logger.info(getLogMessage("Offered entry for page %d of resource %d to write queue with result %s because page has been modified", evictedEntry.getPageNumber(), evictedEntry.getResourceID(), offerResult));
-                } else {
-                    byte[] rawPage = evictedEntry.getBinaryPage();
-                    LinkedBlockingQueue<byte[]> bufferQueue = this.freeBufferCollection.get(pageSize.getNumberOfBytes());
-                    boolean offerResult = bufferQueue.offer(rawPage);
-                    logger.info(getLogMessage("Offered buffer from evicted entry for page %d of resource %d back to the pool. %d buffers in the pool", evictedEntry.getPageNumber(), evictedEntry.getResourceID(), bufferQueue.size()));
-                }
+                this.recycleEvictedEntry(evictedEntry, pageSize);
             } catch (DuplicateCacheEntryException e) {
                 throw new BufferPoolException("Page already in cache");
             } catch (CachePinnedException e) {
@@ -425,245 +369,400 @@ public class PoolManager implements BufferPoolManager {
         }
     }
 
+    private PageTable getPageTable(ResourceManager manager) {
+        return this.pageTables.get(manager.getPageSize().getNumberOfBytes());
+    }
 
-    @Override
-    public CacheableData createNewPageAndPin(int resourceId, Enum<?> type) throws BufferPoolException, IOException {
-        if (this.isClosed) {
-            throw new BufferPoolException("The pool is closed");
-        }
-        // get the manager for the provided id
-        ResourceManager manager = this.resourceManagers.get(resourceId);
-        if (manager == null) {
-            throw new BufferPoolException("Manager has not been registered yet");
-        }
-        // get the managers page size
-        PageSize pageSize = manager.getPageSize();
-        // get a free buffer for the managers page size
-        byte[] buffer = this.getFreeBuffer(pageSize);
-        try {
-            CacheableData page = manager.reserveNewPage(buffer, type);
-            logger.info(getLogMessage("Reserved new page %d of resource %d", page.getPageNumber(), resourceId));
-            // get the page cache for this page size
-            try {
-                PageCache pageCache = this.pageCaches.get(pageSize.getNumberOfBytes());
-                EvictedCacheEntry evictedEntry = null;
-                synchronized (pageCache) {
-                    evictedEntry = pageCache.addPageAndPin(page, resourceId);
-                    logger.info(getLogMessage("Got evicted entry for page %d of resource %d", evictedEntry.getPageNumber(), evictedEntry.getResourceID()));
+    private void recycleEvictedEntry(EvictedCacheEntry evictedEntry, PageSize pageSize) {
+        if (evictedEntry.getWrappingPage() != null && evictedEntry.getWrappingPage().hasBeenModified()) {
+            // add evicted page to the write queue because it has been modified and cache is hot
+            WriteQueueEntry entry = new WriteQueueEntry(evictedEntry.getResourceID(), evictedEntry.getPageNumber(),
+                    this.resourceManagers.get(evictedEntry.getResourceID()), evictedEntry.getBinaryPage(), evictedEntry.getWrappingPage());
+            synchronized (this.pendingWrites) {
+                long key = pageKey(evictedEntry.getResourceID(), evictedEntry.getPageNumber());
+                List<WriteQueueEntry> queued = this.pendingWrites.get(key);
+                if (queued == null) {
+                    queued = new ArrayList<>(1);
+                    this.pendingWrites.put(key, queued);
                 }
-                if (evictedEntry.getWrappingPage() != null && evictedEntry.getWrappingPage().hasBeenModified()) {
-                    WriteQueueEntry entry = new WriteQueueEntry(evictedEntry.getResourceID(), evictedEntry.getPageNumber(), this.resourceManagers.get(evictedEntry.getResourceID()), evictedEntry.getBinaryPage(), evictedEntry.getWrappingPage());
-                    boolean offerResult = simpleWriteQueue.offer(entry);
-                    logger.info(getLogMessage("Offered entry for page %d of resource %d to write queue with result %s because page has been modified", evictedEntry.getPageNumber(), evictedEntry.getResourceID(), offerResult));
-                } else {
-                    byte[] rawPage = evictedEntry.getBinaryPage();
-                    LinkedBlockingQueue<byte[]> bufferQueue = this.freeBufferCollection.get(pageSize.getNumberOfBytes());
-                    bufferQueue.offer(rawPage);
-                    logger.info(getLogMessage("Offered buffer from evicted entry for page %d of resource %d back to the pool. %d buffers in the pool", evictedEntry.getPageNumber(), evictedEntry.getResourceID(), bufferQueue.size()));
-                }
-            } catch (DuplicateCacheEntryException e) {
-                throw new BufferPoolException("Page already in cache");
-            } catch (CachePinnedException e) {
-                throw new BufferPoolException("All entries in the cache are pinned");
+                queued.add(entry);
             }
-            return page;
-        } catch (PageFormatException e) {
-            throw new BufferPoolException("Manager could not reserve new page");
+            this.writeThreads[route(entry.getResourceId(), this.writeThreads.length)].requests.offer(entry);
+            logger.info(getLogMessage("Offered entry for page %d of resource %d to write queue because page has been modified", evictedEntry.getPageNumber(), evictedEntry.getResourceID()));
+        } else {
+            OffHeapPageStore store = this.offHeapStores.get(pageSize.getNumberOfBytes());
+            ResourceManager owner = this.resourceManagers.get(evictedEntry.getResourceID());
+            if (store != null && evictedEntry.getWrappingPage() != null && owner instanceof TableResourceManager) {
+                store.put(pageKey(evictedEntry.getResourceID(), evictedEntry.getPageNumber()), owner, evictedEntry.getBinaryPage());
+            }
+            LinkedBlockingQueue<byte[]> bufferQueue = this.freeBufferCollection.get(pageSize.getNumberOfBytes());
+            bufferQueue.offer(evictedEntry.getBinaryPage());
+            logger.info(getLogMessage("Offered buffer from evicted entry for page %d of resource %d back to the pool. %d buffers in the pool", evictedEntry.getPageNumber(), evictedEntry.getResourceID(), bufferQueue.size()));
         }
     }
 
+    private static int route(int resourceId, int numThreads) {
+        return (resourceId & Integer.MAX_VALUE) % numThreads;
+    }
+
+    /**
+     * Routes a read by resource and extent of pages, if the resource may be read concurrently. An extent
+     * is as long as the longest run a read thread transfers at once, so neighbouring pages still end up
+     * in the same run.
+     */
+    private static int routeRead(int resourceId, int pageNumber, ResourceManager resourceManager, int numThreads) {
+        if (!resourceManager.supportsConcurrentReads()) {
+            return route(resourceId, numThreads);
+        }
+        int extent = (pageNumber & Integer.MAX_VALUE) / MAX_PAGE_REQUESTS_IN_SINGLE_QUEUE;
+        return ((resourceId * 31 + extent) & Integer.MAX_VALUE) % numThreads;
+    }
+
     private class ReadThread extends Thread {
+        private final ElevatorQueue<LoadQueueEntry> requests = new ElevatorQueue<>();
         private volatile boolean isAlive = true;
 
         public void shutdown() {
+            // no interrupt, that would close the file channels of the resources
             this.isAlive = false;
-            this.interrupt();
-
+            this.requests.close();
         }
 
         public void run() {
             while (this.isAlive) {
-                // check if the load queue is not empty
-                // => there is a value in the config which describes how big each subqueue can get
-                // => use n = 10 as the difference factor for page number to choose a subqueue depending on the page number
-                // start from the most recent page
-                LoadQueueEntry request;
-                int resourceId;
-                ResourceManager resourceManager;
-                CacheableData requestedData = null;
-                synchronized (simpleLoadQueue) {
-                    while (simpleLoadQueue.peek() == null) {
-                        try {
-                            simpleLoadQueue.wait();
-                        } catch (InterruptedException e) {
-                            this.isAlive = false;
-                            break;
-                        }
-                    }
-                    request = simpleLoadQueue.peek();
-                }
-                if (!this.isAlive) {
+                List<List<LoadQueueEntry>> runs;
+                try {
+                    runs = this.requests.takeRuns(MAX_PAGE_REQUESTS_IN_SINGLE_QUEUE);
+                } catch (InterruptedException e) {
                     break;
                 }
-                // deadlock because eec thread thinks it is getting the required resource but it was already in cache
-                resourceId = request.getResourceId();
-                resourceManager = request.getResourceManager();
-                logger.info(getLogMessage("Took load queue entry for page %d of resource %d", request.getPageNumber(), request.getResourceId()));
-                // check the write queue for the page in the request
-                synchronized (simpleWriteQueue) {
-                    for (WriteQueueEntry entry : simpleWriteQueue) {
-                        if (entry.getResourceId() == request.getResourceId() && entry.getPageNumber() == request.getPageNumber()) {
-                            // page is in the write queue => we do not need to load it from disk
-                            logger.info(getLogMessage("Page %d of resource %d is in the write queue", request.getPageNumber(), request.getResourceId()));
-                            requestedData = entry.getPage();
-                            if (request.shouldPin()) {
-                                for (int i = 0; i < request.getPinning(); i++) {
-                                    entry.markForImmediateRefetch(request.shouldPin());
-                                }
-                            } else {
-                                entry.markForImmediateRefetch(false);
-                            }
-
-                        }
+                for (List<LoadQueueEntry> run : runs) {
+                    if (!this.isAlive) {
+                        break;
                     }
+                    logger.info(getLogMessage("Took run of %d pages starting at page %d of resource %d", run.size(), run.get(0).getPageNumber(), run.get(0).getResourceId()));
+                    this.load(run);
                 }
-                byte[] buffer = null;
+            }
+        }
 
-                try {
-                    if (requestedData == null) {
-                        buffer = getFreeBuffer(resourceManager.getPageSize());
-                        requestedData = resourceManager.readPageFromResource(buffer, request.getPageNumber());
+        private void load(List<LoadQueueEntry> run) {
+            List<LoadQueueEntry> toRead = new ArrayList<>(run.size());
+            for (LoadQueueEntry request : run) {
+                // check the write queue for the page in the request
+                CacheableData pending = this.takeFromWriteQueue(request);
+                if (pending != null) {
+                    // page is in the write queue => we do not need to load it from disk
+                    logger.info(getLogMessage("Page %d of resource %d is in the write queue", request.getPageNumber(), request.getResourceId()));
+                    this.readRun(toRead);
+                    toRead.clear();
+                    this.install(request, pending, null);
+                    continue;
+                }
+                // then the off-heap level, which holds clean pages the page cache evicted
+                CacheableData demoted = this.takeFromOffHeapStore(request);
+                if (demoted != null) {
+                    logger.info(getLogMessage("Page %d of resource %d is in the off-heap store", request.getPageNumber(), request.getResourceId()));
+                    this.readRun(toRead);
+                    toRead.clear();
+                    this.install(request, demoted, demoted.getBuffer());
+                } else {
+                    toRead.add(request);
+                }
+            }
+            this.readRun(toRead);
+        }
 
-                    }
-                    logger.info(getLogMessage("Read page %d of resource %d from disk", request.getPageNumber(), resourceId));
-                    PageCache pageCache = request.getTargetCache();
-                    EvictedCacheEntry evictedEntry;
-                    if (request.shouldPin()) {
-                        synchronized (pageCache) {
-                            evictedEntry = pageCache.addPageAndPin(requestedData, resourceId);
-                            for (int i = 0; i < request.getPinning() - 1; i++) {
-                                pageCache.getPageAndPin(resourceId, requestedData.getPageNumber());
-                            }
-                            logger.info(getLogMessage("Got evicted entry for page %d of resource %d", evictedEntry.getPageNumber(), evictedEntry.getResourceID()));
-                            logger.info(getLogMessage("Added page %d of resource %d to cache and pinned it", request.getPageNumber(), resourceId));
-                        }
+        private CacheableData takeFromOffHeapStore(LoadQueueEntry request) {
+            ResourceManager resourceManager = request.getResourceManager();
+            OffHeapPageStore store = offHeapStores.get(resourceManager.getPageSize().getNumberOfBytes());
+            long key = pageKey(request.getResourceId(), request.getPageNumber());
+            if (store == null || !(resourceManager instanceof TableResourceManager) || !store.contains(key, resourceManager)) {
+                return null;
+            }
+            LinkedBlockingQueue<byte[]> bufferQueue = freeBufferCollection.get(resourceManager.getPageSize().getNumberOfBytes());
+            byte[] buffer;
+            try {
+                buffer = getFreeBuffer(resourceManager.getPageSize());
+            } catch (BufferPoolException e) {
+                throw new RuntimeException(e);
+            }
+            try {
+                if (store.take(key, resourceManager, buffer)) {
+                    return AbstractExtensionFactory.getExtensionFactory().createTablePage(((TableResourceManager) resourceManager).getSchema(), buffer);
+                }
+            } catch (PageFormatException e) {
+                logger.severe(getLogMessage("Page %d of resource %d in the off-heap store is corrupted", request.getPageNumber(), request.getResourceId()));
+            }
+            bufferQueue.offer(buffer);
+            return null;
+        }
 
-                    } else {
-                        synchronized (pageCache) {
-                            evictedEntry = pageCache.addPage(requestedData, resourceId);
-                            logger.info(getLogMessage("Got evicted entry for page %d of resource %d", evictedEntry.getPageNumber(), evictedEntry.getResourceID()));
-                            logger.info(getLogMessage("Added page %d of resource %d to cache", request.getPageNumber(), resourceId));
+        private CacheableData takeFromWriteQueue(LoadQueueEntry request) {
+            CacheableData requestedData = null;
+            synchronized (pendingWrites) {
+                List<WriteQueueEntry> queued = pendingWrites.get(pageKey(request.getResourceId(), request.getPageNumber()));
+                if (queued == null) {
+                    return null;
+                }
+                for (WriteQueueEntry entry : queued) {
+                    requestedData = entry.getPage();
+                    if (request.shouldPin()) {
+                        for (int i = 0; i < request.getPinning(); i++) {
+                            entry.markForImmediateRefetch(request.shouldPin());
                         }
-                    }
-                    if (evictedEntry.getResourceID() != -1 && evictedEntry.getWrappingPage().hasBeenModified()) {
-                        // add evicted page to the write queue because it has been modified and cache is hot
-                        boolean offerResult = simpleWriteQueue.offer(new WriteQueueEntry(evictedEntry.getResourceID(), evictedEntry.getPageNumber(), resourceManagers.get(evictedEntry.getResourceID()), evictedEntry.getBinaryPage(), evictedEntry.getWrappingPage()));
-                        logger.info(getLogMessage("Offered write queue entry for page %d of resource %d to write queue with result %s", evictedEntry.getPageNumber(), evictedEntry.getResourceID(), offerResult));
                     } else {
-                        LinkedBlockingQueue<byte[]> bufferQueue = freeBufferCollection.get(resourceManager.getPageSize().getNumberOfBytes());
-                        byte[] rawPage = evictedEntry.getBinaryPage();
-                        bufferQueue.offer(rawPage);
-                        logger.info(getLogMessage("Added buffer back to the pool. %d buffers in the pool", bufferQueue.size()));
-                    }
-                    synchronized (simpleLoadQueue) {
-                        LoadQueueEntry e = simpleLoadQueue.poll();
-                    }
-                    synchronized (request) {
-                        request.setResultPage(requestedData);
-                        request.setCompleted();
-                        request.notifyAll();
-                        logger.info(getLogMessage("Notifying execution threads that request for page %d of resource %d is completed", request.getResourceId(), request.getPageNumber()));
+                        entry.markForImmediateRefetch(false);
                     }
+                }
+            }
+            return requestedData;
+        }
+
+        private void readRun(List<LoadQueueEntry> run) {
+            if (run.isEmpty()) {
+                return;
+            }
+            ResourceManager resourceManager = run.get(0).getResourceManager();
+            LinkedBlockingQueue<byte[]> freeBuffers = freeBufferCollection.get(resourceManager.getPageSize().getNumberOfBytes());
+            int from = 0;
+            while (from < run.size()) {
+                // only the first buffer is waited for, the rest of the run is shortened to the buffers that are
+                // free right now, so a read thread never waits for buffers while it holds some
+                List<byte[]> taken = new ArrayList<>(run.size() - from);
+                try {
+                    taken.add(getFreeBuffer(resourceManager.getPageSize()));
                 } catch (BufferPoolException e) {
                     throw new RuntimeException(e);
-                } catch (IOException e) {
-                    LinkedBlockingQueue<byte[]> bufferQueue = freeBufferCollection.get(resourceManager.getPageSize().getNumberOfBytes());
-                    bufferQueue.offer(buffer);
-                    synchronized (request) {
-                        request.setResultPage(null);
-                        request.setCompleted();
-                        request.notifyAll();
-                    }
-                    logger.severe(getLogMessage("Could not read page %d of resource %d from disk", request.getPageNumber(), resourceId));
+                }
+                freeBuffers.drainTo(taken, run.size() - from - 1);
+                this.readBuffered(run.subList(from, from + taken.size()), taken.toArray(new byte[taken.size()][]));
+                from += taken.size();
+            }
+        }
+
+        private void readBuffered(List<LoadQueueEntry> run, byte[][] buffers) {
+            ResourceManager resourceManager = run.get(0).getResourceManager();
+            if (run.size() == 1) {
+                this.readSingle(run.get(0), buffers[0]);
+                return;
+            }
+            CacheableData[] pages;
+            try {
+                pages = resourceManager.readPagesFromResource(buffers, run.get(0).getPageNumber());
+                logger.info(getLogMessage("Read pages %d to %d of resource %d from disk", run.get(0).getPageNumber(), run.get(run.size() - 1).getPageNumber(), run.get(0).getResourceId()));
+            } catch (IOException e) {
+                // fall back to single reads, so one bad page does not fail the whole run
+                for (int i = 0; i < buffers.length; i++) {
+                    this.readSingle(run.get(i), buffers[i]);
+                }
+                return;
+            }
+            for (int i = 0; i < pages.length; i++) {
+                this.install(run.get(i), pages[i], buffers[i]);
+            }
+        }
+
+        private void readSingle(LoadQueueEntry request, byte[] buffer) {
+            try {
+                CacheableData page = request.getResourceManager().readPageFromResource(buffer, request.getPageNumber());
+                logger.info(getLogMessage("Read page %d of resource %d from disk", request.getPageNumber(), request.getResourceId()));
+                this.install(request, page, buffer);
+            } catch (IOException e) {
+                freeBufferCollection.get(request.getResourceManager().getPageSize().getNumberOfBytes()).offer(buffer);
+                InFlightLoad load;
+                synchronized (request.getTargetCache()) {
+                    load = inFlightLoads.remove(pageKey(request.getResourceId(), request.getPageNumber()));
+                }
+                if (load != null) {
+                    load.fail(e);
+                }
+                logger.severe(getLogMessage("Could not read page %d of resource %d from disk", request.getPageNumber(), request.getResourceId()));
+            }
+        }
 
-                } catch (DuplicateCacheEntryException e) {
-                    synchronized (simpleLoadQueue) {
-                        simpleLoadQueue.poll();
+        private void install(LoadQueueEntry request, CacheableData requestedData, byte[] buffer) {
+            int resourceId = request.getResourceId();
+            ResourceManager resourceManager = request.getResourceManager();
+            PageCache pageCache = request.getTargetCache();
+            long key = pageKey(resourceId, request.getPageNumber());
+            InFlightLoad load;
+            try {
+                EvictedCacheEntry evictedEntry;
+                // the page leaves the load queue under the stripe monitor, so requesters either see it cached or in flight
+                synchronized (pageCache) {
+                    if (request.shouldPin()) {
+                        evictedEntry = pageCache.addPageAndPin(requestedData, resourceId);
+                        for (int i = 0; i < request.getPinning() - 1; i++) {
+                            pageCache.getPageAndPin(resourceId, requestedData.getPageNumber());
+                        }
+                        logger.info(getLogMessage("Added page %d of resource %d to cache and pinned it", request.getPageNumber(), resourceId));
+                    } else {
+                        evictedEntry = pageCache.addPage(requestedData, resourceId);
+                        logger.info(getLogMessage("Added page %d of resource %d to cache", request.getPageNumber(), resourceId));
                     }
-                    logger.severe(getLogMessage("Could not add page %d of resource %d to cache because it is already in the cache", request.getPageNumber(), resourceId));
-                } catch (CachePinnedException e) {
-                    synchronized (simpleLoadQueue) {
-                        simpleLoadQueue.poll();
+                    load = inFlightLoads.remove(key);
+                }
+                recycleEvictedEntry(evictedEntry, resourceManager.getPageSize());
+                this.complete(load, requestedData);
+            } catch (DuplicateCacheEntryException e) {
+                // the page has been created in the meantime, hand out the cached version
+                CacheableData cached;
+                synchronized (pageCache) {
+                    cached = pageCache.getPage(resourceId, request.getPageNumber());
+                    for (int i = 0; i < request.getPinning(); i++) {
+                        pageCache.getPageAndPin(resourceId, request.getPageNumber());
                     }
-                    logger.severe(getLogMessage("Could not add page %d of resource %d to cache because all entries are pinned", request.getPageNumber(), resourceId));
+                    load = inFlightLoads.remove(key);
+                }
+                if (buffer != null) {
+                    freeBufferCollection.get(resourceManager.getPageSize().getNumberOfBytes()).offer(buffer);
+                }
+                this.complete(load, cached);
+                logger.severe(getLogMessage("Could not add page %d of resource %d to cache because it is already in the cache", request.getPageNumber(), resourceId));
+            } catch (CachePinnedException e) {
+                synchronized (pageCache) {
+                    load = inFlightLoads.remove(key);
+                }
+                if (buffer != null) {
+                    freeBufferCollection.get(resourceManager.getPageSize().getNumberOfBytes()).offer(buffer);
+                }
+                if (load != null) {
+                    load.fail(new BufferPoolException("All entries in the cache are pinned", e));
                 }
+                logger.severe(getLogMessage("Could not add page %d of resource %d to cache because all entries are pinned", request.getPageNumber(), resourceId));
             }
         }
+
+        private void complete(InFlightLoad load, CacheableData result) {
+            if (load == null) {
+                // the load has been failed by closeBufferPool() in the meantime
+                return;
+            }
+            load.entry.setResultPage(result);
+            load.entry.setCompleted();
+            load.result.complete(result);
+            logger.info(getLogMessage("Completed load of page %d of resource %d", load.entry.getPageNumber(), load.entry.getResourceId()));
+        }
     }
 
 
     private class WriteThread extends Thread {
+        private final ElevatorQueue<WriteQueueEntry> requests = new ElevatorQueue<>();
+        private final int index;
         private volatile boolean isAlive = true;
 
-        public void shutdown() {
+        public WriteThread(int index) {
+            this.index = index;
+        }
 
+        public void shutdown() {
             this.isAlive = false;
-            this.interrupt();
+            this.requests.close();
         }
 
         public void run() {
-            while (this.isAlive || !simpleWriteQueue.isEmpty()) {
-                WriteQueueEntry entry;
+            while (this.isAlive || !this.requests.isEmpty()) {
+                List<List<WriteQueueEntry>> runs;
                 try {
-                    entry = simpleWriteQueue.take();
-                    logger.info(getLogMessage("Took write queue entry for page %d of resource %d", entry.getPageNumber(), entry.getResourceId()));
-                    ResourceManager resourceManager = entry.getResourceManager();
-                    PageSize pageSize = resourceManager.getPageSize();
-                    try {
-                        resourceManager.writePageToResource(entry.getBufferToWrite(), entry.getPage());
-                        logger.info(getLogMessage("Wrote page %d of resource %d to disk", entry.getPageNumber(), entry.getResourceId()));
-                    } catch (IOException e) {
-                        logger.severe(getLogMessage("Could not write page %d of resource %d to disk: %s", entry.getPageNumber(), entry.getResourceId(), e.getMessage()));
-                    }
-                    if (!entry.isSetForImmediateRefetch()) {
-                        LinkedBlockingQueue<byte[]> bufferQueue = freeBufferCollection.get(pageSize.getNumberOfBytes());
-                        bufferQueue.offer(entry.getBufferToWrite());
-                        logger.info(getLogMessage("Added buffer back to the pool. %d buffers in the pool", bufferQueue.size()));
-                    }
+                    runs = this.requests.takeRuns(MAX_PAGE_REQUESTS_IN_SINGLE_QUEUE);
                 } catch (InterruptedException e) {
                     this.isAlive = false;
+                    continue;
+                }
+                for (List<WriteQueueEntry> run : runs) {
+                    this.write(run);
+                }
+            }
+            logger.info(getLogMessage("Bufferpoolmanager closed, writing all pages in caches to disk"));
+            this.flushCaches();
+        }
 
-                    logger.info(getLogMessage("Bufferpoolmanager closed, writing all pages in caches to disk"));
-                    synchronized (simpleWriteQueue) {
-                        for (Map.Entry<Integer, ResourceManager> hashentry : resourceManagers.entrySet()) {
-                            int resourceid = hashentry.getKey();
-                            ResourceManager rm = hashentry.getValue();
-                            PageCache pageCache = pageCaches.get(rm.getPageSize().getNumberOfBytes());
-                            for (CacheableData cd : pageCache.getAllPagesForResource(resourceid)) {
-                                if (cd.hasBeenModified()) {
-                                    try {
-                                        rm.writePageToResource(cd.getBuffer(), cd);
-                                        logger.info(getLogMessage("Wrote page %d of resource %d to disk", cd.getPageNumber(), resourceid));
-                                    } catch (IOException ex) {
-                                        continue;
-                                    }
-                                }
-                            }
+        private void write(List<WriteQueueEntry> run) {
+            byte[][] buffers = new byte[run.size()][];
+            CacheableData[] pages = new CacheableData[run.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = run.get(i).getBufferToWrite();
+                pages[i] = run.get(i).getPage();
+            }
+            this.writePages(run.get(0).getResourceManager(), buffers, pages);
+
+            PageSize pageSize = run.get(0).getResourceManager().getPageSize();
+            synchronized (pendingWrites) {
+                for (WriteQueueEntry entry : run) {
+                    // remove exactly this entry, the same page may be queued again in the meantime
+                    long key = pageKey(entry.getResourceId(), entry.getPageNumber());
+                    List<WriteQueueEntry> queued = pendingWrites.get(key);
+                    for (Iterator<WriteQueueEntry> it = queued.iterator(); it.hasNext(); ) {
+                        if (it.next() == entry) {
+                            it.remove();
+                            break;
                         }
-
-
-
-
                     }
+                    if (queued.isEmpty()) {
+                        pendingWrites.remove(key);
+                    }
+                    if (!entry.isSetForImmediateRefetch()) {
+                        freeBufferCollection.get(pageSize.getNumberOfBytes()).offer(entry.getBufferToWrite());
+                    }
+                }
+            }
+        }
 
-
-
+        private void writePages(ResourceManager resourceManager, byte[][] buffers, CacheableData[] pages) {
+            try {
+                if (pages.length == 1) {
+                    resourceManager.writePageToResource(buffers[0], pages[0]);
+                } else {
+                    resourceManager.writePagesToResource(buffers, pages);
+                }
+                logger.info(getLogMessage("Wrote %d pages starting at page %d to disk", pages.length, pages[0].getPageNumber()));
+            } catch (IOException e) {
+                if (pages.length == 1) {
+                    logger.severe(getLogMessage("Could not write page %d to disk: %s", pages[0].getPageNumber(), e.getMessage()));
+                    return;
+                }
+                // fall back to single writes, so one bad page does not lose the whole run
+                for (int i = 0; i < pages.length; i++) {
+                    this.writePages(resourceManager, new byte[][]{buffers[i]}, new CacheableData[]{pages[i]});
                 }
             }
-            synchronized (simpleWriteQueue)
-            {
-                simpleWriteQueue.notifyAll();
-                writingCompleted = true;
+        }
+
+        private void flushCaches() {
+            for (Map.Entry<Integer, ResourceManager> hashentry : resourceManagers.entrySet()) {
+                int resourceid = hashentry.getKey();
+                if (route(resourceid, writeThreads.length) != this.index) {
+                    continue;
+                }
+                ResourceManager rm = hashentry.getValue();
+                PageTable pageTable = pageTables.get(rm.getPageSize().getNumberOfBytes());
+                List<CacheableData> modified = new ArrayList<>();
+                for (CacheableData cd : pageTable.getAllPagesForResource(resourceid)) {
+                    if (cd.hasBeenModified()) {
+                        modified.add(cd);
+                    }
+                }
+                Collections.sort(modified, new Comparator<CacheableData>() {
+                    @Override
+                    public int compare(CacheableData a, CacheableData b) {
+                        return Integer.compare(a.getPageNumber(), b.getPageNumber());
+                    }
+                });
+                // write the modified pages in runs of adjacent page numbers
+                int start = 0;
+                for (int i = 1; i <= modified.size(); i++) {
+                    if (i == modified.size() || i - start == MAX_PAGE_REQUESTS_IN_SINGLE_QUEUE
+                            || modified.get(i).getPageNumber() != modified.get(i - 1).getPageNumber() + 1) {
+                        List<CacheableData> run = modified.subList(start, i);
+                        byte[][] buffers = new byte[run.size()][];
+                        for (int j = 0; j < buffers.length; j++) {
+                            buffers[j] = run.get(j).getBuffer();
+                        }
+                        this.writePages(rm, buffers, run.toArray(new CacheableData[run.size()]));
+                        start = i;
+                    }
+                }
             }
         }
     }
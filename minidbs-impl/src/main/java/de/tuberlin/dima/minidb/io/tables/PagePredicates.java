@@ -0,0 +1,198 @@
+package de.tuberlin.dima.minidb.io.tables;
+
+import de.tuberlin.dima.minidb.core.BigIntField;
+import de.tuberlin.dima.minidb.core.CharField;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DateField;
+import de.tuberlin.dima.minidb.core.DoubleField;
+import de.tuberlin.dima.minidb.core.FloatField;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.core.SmallIntField;
+import de.tuberlin.dima.minidb.core.VarcharField;
+import de.tuberlin.dima.minidb.qexec.BloomFilter;
+import de.tuberlin.dima.minidb.qexec.LowLevelPredicate;
+
+/**
+ * Evaluates low level predicates on the encoded records of a table page. The literal is compared to
+ * the bytes of the column, so rejected records are never decoded. The outcome is the same as that of
+ * {@link LowLevelPredicate#evaluateWithNull(DataField)} on the decoded field: comparisons with NULL
+ * are false. Types without a binary comparison here are decoded and evaluated as fields.
+ */
+final class PagePredicates {
+
+    // the encoding of a NULL date
+    private static final int DATE_NULL = 0xffffffff;
+
+    private PagePredicates() {
+    }
+
+    /**
+     * Narrows the selection of record positions to the records that satisfy the predicate.
+     *
+     * @return The number of qualifying positions, which are moved to the front of the selection.
+     */
+    static int select(LowLevelPredicate predicate, TablePageClass page, int[] selection, int count) {
+        int out = 0;
+        for (int i = 0; i < count; i++) {
+            if (matches(predicate, page, page.getRecordOffset(selection[i]))) {
+                selection[out++] = selection[i];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Narrows the selection of record positions to the records whose key in the given columns may be
+     * contained in the filter. Records with a NULL key column never join and are dropped as well.
+     *
+     * @return The number of remaining positions, which are moved to the front of the selection.
+     */
+    static int select(BloomFilter filter, int[] columns, TablePageClass page, int[] selection, int count) {
+        int out = 0;
+        for (int i = 0; i < count; i++) {
+            if (mayJoin(filter, columns, page, page.getRecordOffset(selection[i]))) {
+                selection[out++] = selection[i];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Computes the key hash of the record the way {@link BloomFilter#keyHash} does on the decoded
+     * fields. Integer columns are hashed from their bytes, the others are decoded.
+     */
+    private static boolean mayJoin(BloomFilter filter, int[] columns, TablePageClass page, int recordOffset) {
+        TablePageLayout layout = page.getLayout();
+        byte[] buffer = page.getBuffer();
+        int h = BloomFilter.EMPTY_KEY_HASH;
+        for (int column : columns) {
+            int offset = recordOffset + layout.columnOffsets[column];
+            int fieldHash;
+            switch (layout.basicTypes[column]) {
+                case SMALL_INT: {
+                    int v = (short) ((buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8);
+                    if (v == Short.MIN_VALUE) {
+                        return false;
+                    }
+                    fieldHash = v;
+                    break;
+                }
+                case INT: {
+                    int v = TablePageLayout.readInt(buffer, offset);
+                    if (v == Integer.MIN_VALUE) {
+                        return false;
+                    }
+                    fieldHash = v;
+                    break;
+                }
+                case BIG_INT: {
+                    long v = TablePageLayout.readLong(buffer, offset);
+                    if (v == Long.MIN_VALUE) {
+                        return false;
+                    }
+                    fieldHash = (int) v ^ (int) (v >>> 32);
+                    break;
+                }
+                default: {
+                    DataField field = page.readField(recordOffset, column);
+                    if (field.isNULL()) {
+                        return false;
+                    }
+                    fieldHash = field.hashCode();
+                }
+            }
+            h = BloomFilter.combine(h, fieldHash);
+        }
+        return filter.mightContain(h);
+    }
+
+    /**
+     * Checks whether the record starting at the given offset of the page satisfies the predicate.
+     */
+    static boolean matches(LowLevelPredicate predicate, TablePageClass page, int recordOffset) {
+        int column = predicate.getColumnIndex();
+        TablePageLayout layout = page.getLayout();
+        byte[] buffer = page.getBuffer();
+        int offset = recordOffset + layout.columnOffsets[column];
+        DataField literal = predicate.getLiteral();
+
+        switch (layout.basicTypes[column]) {
+            case SMALL_INT: {
+                int v = (short) ((buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8);
+                return v != Short.MIN_VALUE && predicate.accepts(compare(v, ((SmallIntField) literal).getValue()));
+            }
+            case INT: {
+                int v = TablePageLayout.readInt(buffer, offset);
+                return v != Integer.MIN_VALUE && predicate.accepts(compare(v, ((IntField) literal).getValue()));
+            }
+            case BIG_INT: {
+                long v = TablePageLayout.readLong(buffer, offset);
+                long lit = ((BigIntField) literal).getValue();
+                return v != Long.MIN_VALUE && predicate.accepts(v < lit ? -1 : (v == lit ? 0 : 1));
+            }
+            case FLOAT: {
+                float v = Float.intBitsToFloat(TablePageLayout.readInt(buffer, offset));
+                float lit = ((FloatField) literal).getValue();
+                // a NULL literal is smaller than every value, which the comparison yields for NaN
+                return !Float.isNaN(v) && predicate.accepts(v < lit ? -1 : (v == lit ? 0 : 1));
+            }
+            case DOUBLE: {
+                double v = Double.longBitsToDouble(TablePageLayout.readLong(buffer, offset));
+                double lit = ((DoubleField) literal).getValue();
+                return !Double.isNaN(v) && predicate.accepts(v < lit ? -1 : (v == lit ? 0 : 1));
+            }
+            case DATE: {
+                int v = TablePageLayout.readInt(buffer, offset);
+                if (v == DATE_NULL) {
+                    return false;
+                }
+                DateField date = (DateField) literal;
+                if (date.isNULL()) {
+                    return predicate.accepts(1);
+                }
+                return predicate.accepts(compare(v, (date.getYear() << 16) | (date.getMonth() << 8) | date.getDay()));
+            }
+            case CHAR: {
+                // a CHAR is NULL if its first character is zero
+                if ((buffer[offset] | buffer[offset + 1]) == 0) {
+                    return false;
+                }
+                String lit = ((CharField) literal).getValue();
+                return predicate.accepts(lit == null ? 1
+                        : compareChars(buffer, offset, layout.types[column].getNumberOfBytes(), lit));
+            }
+            case VAR_CHAR: {
+                long pointer = TablePageLayout.readLong(buffer, offset);
+                if (pointer == 0) {
+                    return false;
+                }
+                String lit = ((VarcharField) literal).getValue();
+                return predicate.accepts(lit == null ? 1
+                        : compareChars(buffer, (int) pointer, (int) (pointer >> 32), lit));
+            }
+            default:
+                return predicate.evaluateWithNull(page.readField(recordOffset, column));
+        }
+    }
+
+    private static int compare(int v, int lit) {
+        return v < lit ? -1 : (v == lit ? 0 : 1);
+    }
+
+    /**
+     * Compares the two byte characters at the given offset to the literal the way
+     * <code>String.compareTo</code> compares the decoded string, but stops at the first difference.
+     */
+    private static int compareChars(byte[] buffer, int offset, int numBytes, String literal) {
+        int numChars = numBytes >> 1;
+        int n = Math.min(numChars, literal.length());
+        for (int i = 0; i < n; i++, offset += 2) {
+            char c = (char) ((buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8);
+            char l = literal.charAt(i);
+            if (c != l) {
+                return c < l ? -1 : 1;
+            }
+        }
+        return Integer.signum(numChars - literal.length());
+    }
+}
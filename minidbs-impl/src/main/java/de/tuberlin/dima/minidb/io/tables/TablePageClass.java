@@ -5,8 +5,9 @@ import de.tuberlin.dima.minidb.core.*;
 import de.tuberlin.dima.minidb.io.cache.CacheableData;
 import de.tuberlin.dima.minidb.io.cache.PageExpiredException;
 import de.tuberlin.dima.minidb.io.cache.PageFormatException;
+import de.tuberlin.dima.minidb.qexec.BloomFilter;
 import de.tuberlin.dima.minidb.qexec.LowLevelPredicate;
-import de.tuberlin.dima.minidb.qexec.QueryExecutionException;
+import de.tuberlin.dima.minidb.qexec.TupleBatch;
 import de.tuberlin.dima.minidb.util.Pair;
 
 import java.util.ArrayList;
@@ -14,51 +15,28 @@ import java.util.ArrayList;
 public class TablePageClass implements TablePage{
 
 
-    private final TableSchema schema;
+    private final TablePageLayout layout;
     private byte[] binPage;
-    private final int OFFSET_PAGE_NUMBER = 4;
-    private final int OFFSET_NUM_RECORDS = 8;
-    private final int OFFSET_RECORD_WIDTH = 12;
-    private final int OFFSET_VARIABLE_OFFSET = 16;
 
     private boolean beenModified = false;
     private boolean expired = false;
 
     public TablePageClass(TableSchema schema, byte[] binPage, int pageNum) {
 
-        this.schema = schema;
+        this.layout = TablePageLayout.forSchema(schema);
         this.binPage = binPage;
         this.beenModified = true;
 
-        IntField magicField = new IntField(TABLE_DATA_PAGE_HEADER_MAGIC_NUMBER);
-        int offsetMagicNum = 0;
-        magicField.encodeBinary(binPage, offsetMagicNum);
-
-        IntField pageNumField = new IntField(pageNum);
-        pageNumField.encodeBinary(binPage, this.OFFSET_PAGE_NUMBER);
-
-        IntField nRecords = new IntField(0);
-        nRecords.encodeBinary(binPage, this.OFFSET_NUM_RECORDS);
-
-        int rSize = 4;
-        for (int i = 0; i < schema.getNumberOfColumns(); i++) {
-            if (schema.getColumn(i).getDataType().getBasicType().isFixLength()) {
-                rSize += schema.getColumn(i).getDataType().getNumberOfBytes();
-            } else {
-                rSize += 8;
-            }
-
-        }
-        IntField rowWidth = new IntField(rSize);
-        rowWidth.encodeBinary(binPage, this.OFFSET_RECORD_WIDTH);
-
-        IntField varOffset = new IntField(binPage.length);
-        varOffset.encodeBinary(binPage, this.OFFSET_VARIABLE_OFFSET);
+        TablePageLayout.writeInt(binPage, TablePageLayout.OFFSET_MAGIC_NUMBER, TABLE_DATA_PAGE_HEADER_MAGIC_NUMBER);
+        TablePageLayout.writeInt(binPage, TablePageLayout.OFFSET_PAGE_NUMBER, pageNum);
+        TablePageLayout.writeInt(binPage, TablePageLayout.OFFSET_NUM_RECORDS, 0);
+        TablePageLayout.writeInt(binPage, TablePageLayout.OFFSET_RECORD_WIDTH, this.layout.recordWidth);
+        TablePageLayout.writeInt(binPage, TablePageLayout.OFFSET_VARIABLE_OFFSET, binPage.length);
     }
 
     public TablePageClass(TableSchema schema, byte[] binPage) {
 
-        this.schema = schema;
+        this.layout = TablePageLayout.forSchema(schema);
         this.binPage = binPage;
     }
 
@@ -87,8 +65,7 @@ public class TablePageClass implements TablePage{
     @Override
     public int getPageNumber() throws PageExpiredException {
         this.throwExceptionIfExpired();
-        IntField pageNumField = IntField.getFieldFromBinary(this.binPage, this.OFFSET_PAGE_NUMBER);
-        return pageNumField.getValue();
+        return TablePageLayout.readInt(this.binPage, TablePageLayout.OFFSET_PAGE_NUMBER);
     }
 
     @Override
@@ -100,25 +77,15 @@ public class TablePageClass implements TablePage{
     public int getNumRecordsOnPage() {
 
         this.throwExceptionIfExpired();
-        IntField nRecords = IntField.getFieldFromBinary(this.binPage, this.OFFSET_NUM_RECORDS);
-        return nRecords.getValue();
+        return TablePageLayout.readInt(this.binPage, TablePageLayout.OFFSET_NUM_RECORDS);
     }
 
-    private boolean checkVariableOverflow(DataTuple tuple) {
-
-        int bytesVariables = 0;
-        for (int i = 0; i < tuple.getNumberOfFields(); i++) {
-
-            if (!schema.getColumn(i).getDataType().getBasicType().isFixLength()) {
+    int getRecordOffset(int position) {
+        return TABLE_DATA_PAGE_HEADER_BYTES + position * this.layout.recordWidth;
+    }
 
-                bytesVariables += tuple.getField(i).getNumberOfBytes();
-            }
-        }
-        int varOffset = IntField.getFieldFromBinary(this.binPage, this.OFFSET_VARIABLE_OFFSET).getValue();
-        int nRecordsBefore = this.getNumRecordsOnPage();
-        int rWidth = IntField.getFieldFromBinary(this.binPage, this.OFFSET_RECORD_WIDTH).getValue();
-        int offset = this.TABLE_DATA_PAGE_HEADER_BYTES + nRecordsBefore * rWidth;
-        return offset + rWidth > varOffset - bytesVariables;
+    TablePageLayout getLayout() {
+        return this.layout;
     }
 
     @Override
@@ -126,50 +93,38 @@ public class TablePageClass implements TablePage{
         this.throwExceptionIfExpired();
 
         this.beenModified = true;
-        int rWidth = IntField.getFieldFromBinary(this.binPage, this.OFFSET_RECORD_WIDTH).getValue();
-        int beforeVarOffset = IntField.getFieldFromBinary(this.binPage, this.OFFSET_VARIABLE_OFFSET).getValue();
-
+        int varOffset = TablePageLayout.readInt(this.binPage, TablePageLayout.OFFSET_VARIABLE_OFFSET);
+        int nRecordsBefore = TablePageLayout.readInt(this.binPage, TablePageLayout.OFFSET_NUM_RECORDS);
+        int recordOffset = this.getRecordOffset(nRecordsBefore);
 
-        int nRecordsBefore = this.getNumRecordsOnPage();
-        int offset = this.TABLE_DATA_PAGE_HEADER_BYTES + nRecordsBefore * rWidth;
-        if (offset + rWidth > beforeVarOffset) {
-            return false;
+        int bytesVariables = 0;
+        for (int i = 0; i < tuple.getNumberOfFields(); i++) {
+            if (!this.layout.fixedLength[i]) {
+                bytesVariables += tuple.getField(i).getNumberOfBytes();
+            }
         }
-
-        if (this.checkVariableOverflow(tuple)) {
+        if (recordOffset + this.layout.recordWidth > varOffset - bytesVariables) {
             return false;
         }
 
-        IntField metadata = new IntField(0);
-        metadata.encodeBinary(this.binPage, offset);
-        offset += metadata.getNumberOfBytes();
-
+        TablePageLayout.writeInt(this.binPage, recordOffset, 0);
         for (int i = 0; i < tuple.getNumberOfFields(); i++) {
-            if (schema.getColumn(i).getDataType().getBasicType().isFixLength()) {
-                tuple.getField(i).encodeBinary(this.binPage, offset);
-                offset += schema.getColumn(i).getDataType().getNumberOfBytes();
+            int fieldOffset = recordOffset + this.layout.columnOffsets[i];
+            DataField field = tuple.getField(i);
+            if (this.layout.fixedLength[i]) {
+                field.encodeBinary(this.binPage, fieldOffset);
+            } else if (field.isNULL()) {
+                TablePageLayout.writeLong(this.binPage, fieldOffset, 0L);
             } else {
-                if (tuple.getField(i).isNULL()) {
-                    BigIntField varPointer = new BigIntField(0);
-                    varPointer.encodeBinary(this.binPage, offset);
-
-                } else {
-                    int lengthVariable = tuple.getField(i).getNumberOfBytes();
-                    int newVarOffset = IntField.getFieldFromBinary(this.binPage, this.OFFSET_VARIABLE_OFFSET).getValue() - lengthVariable;
-                    tuple.getField(i).encodeBinary(this.binPage, newVarOffset);
-                    IntField newVarOffsetField = new IntField(newVarOffset);
-                    newVarOffsetField.encodeBinary(binPage, this.OFFSET_VARIABLE_OFFSET);
-
-                    BigIntField varPointer = new BigIntField(((long) lengthVariable << 32) + newVarOffset);
-                    varPointer.encodeBinary(this.binPage, offset);
-
-                }
-                offset += 8;
+                int lengthVariable = field.getNumberOfBytes();
+                varOffset -= lengthVariable;
+                field.encodeBinary(this.binPage, varOffset);
+                TablePageLayout.writeLong(this.binPage, fieldOffset, ((long) lengthVariable << 32) + varOffset);
             }
         }
 
-        IntField nRecordsAfter = new IntField(nRecordsBefore + 1);
-        nRecordsAfter.encodeBinary(this.binPage, this.OFFSET_NUM_RECORDS);
+        TablePageLayout.writeInt(this.binPage, TablePageLayout.OFFSET_VARIABLE_OFFSET, varOffset);
+        TablePageLayout.writeInt(this.binPage, TablePageLayout.OFFSET_NUM_RECORDS, nRecordsBefore + 1);
         return true;
     }
 
@@ -177,12 +132,8 @@ public class TablePageClass implements TablePage{
     public DataTuple getDataTuple(int position, long columnBitmap, int numCols) throws PageTupleAccessException, PageExpiredException {
         this.throwExceptionIfExpired();
 
-
-        int recordWidth = IntField.getFieldFromBinary(this.binPage, this.OFFSET_RECORD_WIDTH).getValue();
-        int recordOffset = this.TABLE_DATA_PAGE_HEADER_BYTES + recordWidth * position;
-        int metadata = IntField.getFieldFromBinary(this.binPage, recordOffset).getValue();
-
-        if (metadata == 1) {
+        int recordOffset = this.getRecordOffset(position);
+        if (TablePageLayout.readInt(this.binPage, recordOffset) == TablePageLayout.RECORD_DELETED) {
             return null;
         }
         if (position >= this.getNumRecordsOnPage()) {
@@ -191,60 +142,163 @@ public class TablePageClass implements TablePage{
 
         DataField[] fields = new DataField[numCols];
         int fields_idx = 0;
-        int fieldOffset = recordOffset + 4;
-        int totalNumCols = this.schema.getNumberOfColumns();
+        // visit only the requested columns, in column order
+        long remaining = columnBitmap & this.layout.allColumnsBitmap;
+        while (remaining != 0) {
+            int i = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            fields[fields_idx] = this.readField(recordOffset, i);
+            fields_idx += 1;
+        }
+        return new DataTuple(fields);
+    }
 
-        for (int i = 0; i < 64; i++) {
-            if (i >= totalNumCols) {
-                break;
+
+    DataField readField(int recordOffset, int column) {
+        int fieldOffset = recordOffset + this.layout.columnOffsets[column];
+        DataType type = this.layout.types[column];
+        if (this.layout.fixedLength[column]) {
+            return type.getFromBinary(this.binPage, fieldOffset);
+        }
+        long varPointer = TablePageLayout.readLong(this.binPage, fieldOffset);
+        if (varPointer == 0) {
+            return type.getNullValue();
+        }
+        return type.getFromBinary(this.binPage, (int) varPointer, (int) (varPointer >> 32));
+    }
+
+    /**
+     * Decodes the records from the given position on into the batch, skipping deleted ones. Column
+     * <code>j</code> of the batch receives the table column <code>columns[j]</code>; arithmetic columns
+     * go straight from the page bytes into the batch's primitive arrays.
+     *
+     * @return The position of the first record that has not been decoded, because the batch is full.
+     */
+    public int readRecords(int position, int[] columns, TupleBatch batch) throws PageExpiredException {
+        this.throwExceptionIfExpired();
+
+        this.bindColumns(columns, batch);
+        int numRecords = TablePageLayout.readInt(this.binPage, TablePageLayout.OFFSET_NUM_RECORDS);
+        int row = batch.getSize();
+        for (; position < numRecords && row < batch.getCapacity(); position++) {
+            int recordOffset = this.getRecordOffset(position);
+            if (TablePageLayout.readInt(this.binPage, recordOffset) != TablePageLayout.RECORD_DELETED) {
+                this.readRecord(recordOffset, columns, batch, row++);
             }
-            if (schema.getColumn(i).getDataType().getBasicType().isFixLength()) {
-                if (((1L << i) & columnBitmap) != 0) {
-                    fields[fields_idx] = schema.getColumn(i).getDataType().getFromBinary(this.binPage, fieldOffset);
-                    fields_idx += 1;
-                }
-                fieldOffset += schema.getColumn(i).getDataType().getNumberOfBytes();
+        }
+        batch.setSize(row);
+        return position;
+    }
 
-            } else {
-                if (((1L << i) & columnBitmap) != 0) {
-                    long varPointer = BigIntField.getFieldFromBinary(this.binPage, fieldOffset).getValue();
-                    if (varPointer == 0) {
-                        fields[fields_idx] = schema.getColumn(i).getDataType().getNullValue();
-                    } else {
-
-                        int lengthVariable = (int) (varPointer >> 32);
-                        int varOffset = (int) (varPointer);
-                        fields[fields_idx] = schema.getColumn(i).getDataType().getFromBinary(this.binPage, varOffset, lengthVariable);
-                    }
-                    fields_idx += 1;
-                }
-                fieldOffset += 8;
+    /**
+     * Decodes the records at the selected positions into the batch, as {@link #readRecords(int, int[], TupleBatch)}
+     * does for consecutive ones.
+     *
+     * @param selection Positions of records as produced by {@link #selectRecords(LowLevelPredicate[], int[])}.
+     * @param from The index of the first position in the selection to decode.
+     * @param count The number of valid entries in the selection.
+     * @return The index of the first selected position that has not been decoded, because the batch is full.
+     */
+    public int readRecords(int[] selection, int from, int count, int[] columns, TupleBatch batch) throws PageExpiredException {
+        this.throwExceptionIfExpired();
+
+        this.bindColumns(columns, batch);
+        int row = batch.getSize();
+        for (; from < count && row < batch.getCapacity(); from++) {
+            this.readRecord(this.getRecordOffset(selection[from]), columns, batch, row++);
+        }
+        batch.setSize(row);
+        return from;
+    }
+
+    private void bindColumns(int[] columns, TupleBatch batch) {
+        for (int j = 0; j < columns.length; j++) {
+            batch.bindColumn(j, this.layout.basicTypes[columns[j]]);
+        }
+    }
+
+    private void readRecord(int recordOffset, int[] columns, TupleBatch batch, int row) {
+        for (int j = 0; j < columns.length; j++) {
+            int column = columns[j];
+            int fieldOffset = recordOffset + this.layout.columnOffsets[column];
+            switch (this.layout.basicTypes[column]) {
+                case SMALL_INT:
+                    batch.getIntColumn(j)[row] = (short) ((this.binPage[fieldOffset] & 0xff) | (this.binPage[fieldOffset + 1] & 0xff) << 8);
+                    break;
+                case INT:
+                    batch.getIntColumn(j)[row] = TablePageLayout.readInt(this.binPage, fieldOffset);
+                    break;
+                case BIG_INT:
+                    batch.getLongColumn(j)[row] = TablePageLayout.readLong(this.binPage, fieldOffset);
+                    break;
+                case FLOAT:
+                    batch.getFloatColumn(j)[row] = Float.intBitsToFloat(TablePageLayout.readInt(this.binPage, fieldOffset));
+                    break;
+                case DOUBLE:
+                    batch.getDoubleColumn(j)[row] = Double.longBitsToDouble(TablePageLayout.readLong(this.binPage, fieldOffset));
+                    break;
+                default:
+                    batch.getFieldColumn(j)[row] = this.readField(recordOffset, column);
             }
         }
-        return new DataTuple(fields);
     }
 
+    /**
+     * Evaluates the predicates on the encoded records of this page and collects the positions of the
+     * records that are not deleted and satisfy all of them. No record is decoded in the process.
+     *
+     * @param preds The predicates, all of which have to hold.
+     * @param selection Receives the qualifying positions in ascending order. Must be able to hold
+     *                  as many positions as there are records on the page.
+     * @return The number of qualifying positions.
+     */
+    public int selectRecords(LowLevelPredicate[] preds, int[] selection) throws PageExpiredException {
+        this.throwExceptionIfExpired();
+
+        int numRecords = TablePageLayout.readInt(this.binPage, TablePageLayout.OFFSET_NUM_RECORDS);
+        int count = 0;
+        for (int position = 0; position < numRecords; position++) {
+            if (TablePageLayout.readInt(this.binPage, this.getRecordOffset(position)) != TablePageLayout.RECORD_DELETED) {
+                selection[count++] = position;
+            }
+        }
+        // one predicate at a time over the surviving positions
+        for (int i = 0; i < preds.length && count > 0; i++) {
+            count = PagePredicates.select(preds[i], this, selection, count);
+        }
+        return count;
+    }
+
+    /**
+     * Narrows a selection of record positions, as produced by {@link #selectRecords(LowLevelPredicate[], int[])},
+     * to the records whose key in the given columns passes the Bloom filter. Only the key columns are read.
+     *
+     * @return The number of remaining positions, which are moved to the front of the selection.
+     */
+    public int filterRecords(BloomFilter filter, int[] columns, int[] selection, int count) throws PageExpiredException {
+        this.throwExceptionIfExpired();
+
+        return PagePredicates.select(filter, columns, this, selection, count);
+    }
 
     @Override
     public DataTuple getDataTuple(LowLevelPredicate[] preds, int position, long columnBitmap, int numCols) throws PageTupleAccessException, PageExpiredException {
         this.throwExceptionIfExpired();
-        long allColumnBitmap = (long) (Math.pow(2, schema.getNumberOfColumns()) - 1);
-        int allCols = schema.getNumberOfColumns();
-        DataTuple allTuples = getDataTuple(position, allColumnBitmap, allCols);
-        if (allTuples == null) {
+
+        int recordOffset = this.getRecordOffset(position);
+        if (TablePageLayout.readInt(this.binPage, recordOffset) == TablePageLayout.RECORD_DELETED) {
             return null;
         }
-
-        boolean pass = true;
+        if (position >= this.getNumRecordsOnPage()) {
+            throw new PageTupleAccessException(position);
+        }
+        // only records that pass are decoded
         for (LowLevelPredicate pred : preds) {
-            try {
-                pass = pass && pred.evaluate(allTuples);
-            } catch (QueryExecutionException e) {
-                System.out.println("Couldn't execute query");
+            if (!PagePredicates.matches(pred, this, recordOffset)) {
+                return null;
             }
         }
-        return pass ? getDataTuple(position, columnBitmap, numCols) : null;
-
+        return this.getDataTuple(position, columnBitmap, numCols);
     }
 
 
@@ -282,12 +336,9 @@ public class TablePageClass implements TablePage{
 
         this.throwExceptionIfExpired();
 
-        long allColumnBitmap = Long.MAX_VALUE;
-        int allCols = schema.getNumberOfColumns();
-
         ArrayList<Pair<DataTuple, RID>> pairs = new ArrayList<>();
         for (int i = 0; i < this.getNumRecordsOnPage(); i++) {
-            DataTuple dataTuple = this.getDataTuple(i, allColumnBitmap, allCols);
+            DataTuple dataTuple = this.getDataTuple(i, this.layout.allColumnsBitmap, this.layout.numColumns);
             if (dataTuple != null) {
                 RID recordId = new RID(((long) this.getPageNumber() << 32) + i);
                 Pair<DataTuple, RID> pair = new Pair<>(dataTuple, recordId);
@@ -301,10 +352,7 @@ public class TablePageClass implements TablePage{
     @Override
     public void deleteTuple(int i) throws PageExpiredException, PageTupleAccessException {
         this.throwExceptionIfExpired();
-        int recordWidth = IntField.getFieldFromBinary(this.binPage, this.OFFSET_RECORD_WIDTH).getValue();
-        int recordOffset = this.TABLE_DATA_PAGE_HEADER_BYTES + recordWidth * i;
-        IntField metadata = new IntField(1);
-        metadata.encodeBinary(this.binPage, recordOffset);
+        TablePageLayout.writeInt(this.binPage, this.getRecordOffset(i), TablePageLayout.RECORD_DELETED);
     }
 
 }
\ No newline at end of file
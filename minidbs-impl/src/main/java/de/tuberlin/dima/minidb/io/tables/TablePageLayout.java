@@ -0,0 +1,90 @@
+package de.tuberlin.dima.minidb.io.tables;
+
+import de.tuberlin.dima.minidb.catalogue.TableSchema;
+import de.tuberlin.dima.minidb.core.BasicType;
+import de.tuberlin.dima.minidb.core.DataType;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Record layout of the table pages of one schema together with primitive accessors for the page
+ * header. The layout is computed once per schema and shared by all pages, so reading a header value
+ * or locating a column does not allocate.
+ */
+final class TablePageLayout {
+
+    static final int OFFSET_MAGIC_NUMBER = 0;
+    static final int OFFSET_PAGE_NUMBER = 4;
+    static final int OFFSET_NUM_RECORDS = 8;
+    static final int OFFSET_RECORD_WIDTH = 12;
+    static final int OFFSET_VARIABLE_OFFSET = 16;
+
+    static final int RECORD_METADATA_BYTES = 4;
+    static final int VARIABLE_POINTER_BYTES = 8;
+
+    static final int RECORD_DELETED = 1;
+
+    private static final Map<TableSchema, TablePageLayout> LAYOUTS = Collections.synchronizedMap(new WeakHashMap<TableSchema, TablePageLayout>());
+
+    final int numColumns;
+    final int recordWidth;
+    // offset of each column relative to the start of its record
+    final int[] columnOffsets;
+    final boolean[] fixedLength;
+    final DataType[] types;
+    final BasicType[] basicTypes;
+    final long allColumnsBitmap;
+
+    private TablePageLayout(TableSchema schema) {
+        this.numColumns = schema.getNumberOfColumns();
+        this.columnOffsets = new int[this.numColumns];
+        this.fixedLength = new boolean[this.numColumns];
+        this.types = new DataType[this.numColumns];
+        this.basicTypes = new BasicType[this.numColumns];
+        int offset = RECORD_METADATA_BYTES;
+        for (int i = 0; i < this.numColumns; i++) {
+            this.types[i] = schema.getColumn(i).getDataType();
+            this.basicTypes[i] = this.types[i].getBasicType();
+            this.fixedLength[i] = this.basicTypes[i].isFixLength();
+            this.columnOffsets[i] = offset;
+            offset += this.fixedLength[i] ? this.types[i].getNumberOfBytes() : VARIABLE_POINTER_BYTES;
+        }
+        this.recordWidth = offset;
+        this.allColumnsBitmap = this.numColumns >= 64 ? -1L : (1L << this.numColumns) - 1;
+    }
+
+    static TablePageLayout forSchema(TableSchema schema) {
+        TablePageLayout layout = LAYOUTS.get(schema);
+        // schemas are built column by column, so a layout cached before the last column was added is stale
+        if (layout == null || layout.numColumns != schema.getNumberOfColumns()) {
+            layout = new TablePageLayout(schema);
+            LAYOUTS.put(schema, layout);
+        }
+        return layout;
+    }
+
+    static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xff)
+                | (buffer[offset + 1] & 0xff) << 8
+                | (buffer[offset + 2] & 0xff) << 16
+                | (buffer[offset + 3] & 0xff) << 24;
+    }
+
+    static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+        buffer[offset + 2] = (byte) (value >>> 16);
+        buffer[offset + 3] = (byte) (value >>> 24);
+    }
+
+    static long readLong(byte[] buffer, int offset) {
+        return (readInt(buffer, offset) & 0xffffffffL) | ((long) readInt(buffer, offset + 4) << 32);
+    }
+
+    static void writeLong(byte[] buffer, int offset, long value) {
+        writeInt(buffer, offset, (int) value);
+        writeInt(buffer, offset + 4, (int) (value >>> 32));
+    }
+}
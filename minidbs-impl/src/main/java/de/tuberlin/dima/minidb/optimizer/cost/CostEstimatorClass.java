@@ -13,6 +13,9 @@ import de.tuberlin.dima.minidb.semantics.predicate.LocalPredicate;
 
 public class CostEstimatorClass implements  CostEstimator{
 
+    // memory a hash join is assumed to get from the query heap for its hash table
+    private static final long HASH_TABLE_BYTES = 4L * 1024 * 1024;
+
     private long readCost;
     private long writeCost;
     private long randomReadOverhead;
@@ -48,13 +51,38 @@ public class CostEstimatorClass implements  CostEstimator{
 
     @Override
     public long computeSortCosts(Column[] columnsInTuple, long numTuples) {
+        return this.computeTempSpaceCosts(columnsInTuple, numTuples);
+    }
 
-        DataType[] columnsDataType = new DataType[columnsInTuple.length];
+    @Override
+    public long computeHashJoinCost(Column[] buildColumns, long buildCardinality, Column[] probeColumns, long probeCardinality) {
 
-        for(int i = 0; i < columnsDataType.length; i++){
-            columnsDataType[i] = columnsInTuple[i].getDataType();
+        long buildBytes = buildCardinality * QueryHeap.getTupleBytes(getDataTypes(buildColumns));
+        if(buildBytes <= HASH_TABLE_BYTES){
+            return 0;
+        }
+        // the fraction of both sides that does not fit goes through temp space once
+        double spilledFraction = 1 - (double) HASH_TABLE_BYTES / (double) buildBytes;
+        return (long) (spilledFraction * (this.computeTempSpaceCosts(buildColumns, buildCardinality)
+                + this.computeTempSpaceCosts(probeColumns, probeCardinality)));
+    }
+
+    @Override
+    public long computeHashGroupByCost(Column[] inputColumns, long inputCardinality, long numGroups) {
+
+        long groupBytes = numGroups * QueryHeap.getTupleBytes(getDataTypes(inputColumns));
+        if(groupBytes <= HASH_TABLE_BYTES){
+            return 0;
         }
-        long tuplesPerBlock = (QueryHeap.getPageSize().getNumberOfBytes() - TablePage.TABLE_DATA_PAGE_HEADER_BYTES)/QueryHeap.getTupleBytes(columnsDataType);
+        // the input of the groups that do not fit goes through temp space once
+        double spilledFraction = 1 - (double) HASH_TABLE_BYTES / (double) groupBytes;
+        return (long) (spilledFraction * this.computeTempSpaceCosts(inputColumns, inputCardinality));
+    }
+
+    // costs of writing the tuples to temp space and reading them back
+    private long computeTempSpaceCosts(Column[] columnsInTuple, long numTuples) {
+
+        long tuplesPerBlock = (QueryHeap.getPageSize().getNumberOfBytes() - TablePage.TABLE_DATA_PAGE_HEADER_BYTES)/QueryHeap.getTupleBytes(getDataTypes(columnsInTuple));
         long numberOfBlocks = numTuples/tuplesPerBlock;
         numberOfBlocks = (numberOfBlocks == 0)?1:numberOfBlocks;
         long writingBlocksCost = numberOfBlocks * (QueryHeap.getPageSize().getNumberOfBytes()/ PageSize.getDefaultPageSize().getNumberOfBytes()) * this.writeCost + this.randomWriteOverhead;
@@ -63,6 +91,16 @@ public class CostEstimatorClass implements  CostEstimator{
         return readingBlocksCost + writingBlocksCost;
     }
 
+    private static DataType[] getDataTypes(Column[] columns) {
+
+        DataType[] columnsDataType = new DataType[columns.length];
+
+        for(int i = 0; i < columnsDataType.length; i++){
+            columnsDataType[i] = columns[i].getDataType();
+        }
+        return columnsDataType;
+    }
+
     @Override
     public long computeFetchCosts(TableDescriptor fetchedTable, long cardinality, boolean sequential) {
 
@@ -103,4 +141,18 @@ public class CostEstimatorClass implements  CostEstimator{
     public long computeNestedLoopJoinCost(long outerCardinality, OptimizerPlanOperator innerOp) {
         return innerOp.getCumulativeCosts() * outerCardinality;
     }
+
+    @Override
+    public long computeBlockNestedLoopJoinCost(Column[] outerColumns, long outerCardinality, Column[] innerColumns, OptimizerPlanOperator innerOp) {
+
+        long innerBytes = innerOp.getOutputCardinality() * QueryHeap.getTupleBytes(getDataTypes(innerColumns));
+        if(innerBytes <= HASH_TABLE_BYTES){
+            // the inner side is read once and kept in memory
+            return innerOp.getCumulativeCosts();
+        }
+        // one pass over the inner side per block of outer tuples
+        long outerBytes = outerCardinality * QueryHeap.getTupleBytes(getDataTypes(outerColumns));
+        long blocks = Math.max(1, (outerBytes + HASH_TABLE_BYTES - 1) / HASH_TABLE_BYTES);
+        return innerOp.getCumulativeCosts() * blocks;
+    }
 }
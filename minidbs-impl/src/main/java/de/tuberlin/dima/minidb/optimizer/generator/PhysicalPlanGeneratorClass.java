@@ -9,6 +9,7 @@ import de.tuberlin.dima.minidb.optimizer.cardinality.CardinalityEstimator;
 import de.tuberlin.dima.minidb.optimizer.cost.CostEstimator;
 import de.tuberlin.dima.minidb.optimizer.generator.util.PhysicalPlanGeneratorUtils;
 import de.tuberlin.dima.minidb.parser.OutputColumn;
+import de.tuberlin.dima.minidb.parser.Predicate;
 import de.tuberlin.dima.minidb.semantics.*;
 import de.tuberlin.dima.minidb.semantics.predicate.*;
 import org.codehaus.jackson.map.MapperConfig;
@@ -16,7 +17,9 @@ import org.hsqldb.Table;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Objects;
 
 public class PhysicalPlanGeneratorClass implements PhysicalPlanGenerator{
@@ -171,6 +174,9 @@ public class PhysicalPlanGeneratorClass implements PhysicalPlanGenerator{
                 interestingBoolean[i] = interestingReqOrder[i].getOrder() == Order.ASCENDING;
             }
 
+            int[] groupColIdx = groupColIdxArr.stream().mapToInt(Integer::intValue).toArray();
+            int[] aggColIdx = aggColIdxArr.stream().mapToInt(Integer::intValue).toArray();
+
             OptimizerPlanOperator[] candidatesGrouped = new OptimizerPlanOperator[candidates.length];
             for(int i = 0 ; i < candidates.length; i++){
                 OptimizerPlanOperator candidate =  candidates[i];
@@ -180,24 +186,73 @@ public class PhysicalPlanGeneratorClass implements PhysicalPlanGenerator{
                 if(candidate != sortPlanOperator){
                     sortPlanOperator.setOperatorCosts(this.costEstimator.computeSortCosts(groupByColArr.toArray(new Column[0]), candidate.getOutputCardinality() ));
                     sortPlanOperator.setCumulativeCosts(candidate.getCumulativeCosts() + sortPlanOperator.getOperatorCosts());
-                    candidatesGrouped[i] = new GroupByPlanOperator(sortPlanOperator, outCols, groupColIdxArr.stream().mapToInt(Integer::intValue).toArray(),
-                            aggColIdxArr.stream().mapToInt(Integer::intValue).toArray(),
-                            (int)candidate.getOutputCardinality());
-                }
-                else{
-                    candidatesGrouped[i] = new GroupByPlanOperator(candidate, outCols, groupColIdxArr.stream().mapToInt(Integer::intValue).toArray(),
-                            aggColIdxArr.stream().mapToInt(Integer::intValue).toArray(),
-                            (int)candidate.getOutputCardinality());;
                 }
-                return candidatesGrouped;
-
+                GroupByPlanOperator sortedGroupBy = new GroupByPlanOperator(sortPlanOperator, outCols, groupColIdx, aggColIdx,
+                        (int)candidate.getOutputCardinality());
+                sortedGroupBy.setOperatorCosts(0);
+                sortedGroupBy.setCumulativeCosts(sortPlanOperator.getCumulativeCosts());
+
+                // aggregating in a hash table needs no sorted input, only an order requested by the query is restored on top
+                long numGroups = estimateNumberOfGroups(groupByColArr, candidate.getOutputCardinality());
+                HashGroupByPlanOperator hashGroupBy = new HashGroupByPlanOperator(candidate, outCols, groupColIdx, aggColIdx, numGroups);
+                hashGroupBy.setOperatorCosts(this.costEstimator.computeHashGroupByCost(candidate.getReturnedColumns(),
+                        candidate.getOutputCardinality(), numGroups));
+                hashGroupBy.setCumulativeCosts(candidate.getCumulativeCosts() + hashGroupBy.getOperatorCosts());
+
+                // both plans are compared with the order requested by the query, the sorted one only keeps
+                // it for free if the grouping order already satisfies it
+                OptimizerPlanOperator sortedPlan = addOrderBySort(sortedGroupBy, order, ordColIdx, numGroups);
+                OptimizerPlanOperator hashPlan = addOrderBySort(hashGroupBy, order, ordColIdx, numGroups);
+
+                candidatesGrouped[i] = hashPlan.getCumulativeCosts() < sortedPlan.getCumulativeCosts() ? hashPlan : sortedPlan;
             }
+            return candidatesGrouped;
         }
         else{
             return candidates;
         }
+    }
+
+    /**
+     * Adds a sort for the order requested by the query on top of the grouped plan, unless the plan
+     * already produces its output in that order, and charges the sort to the plan.
+     */
+    private OptimizerPlanOperator addOrderBySort(OptimizerPlanOperator grouped, RequestedOrder[] order,
+            ArrayList<Integer> orderColIdx, long numGroups) {
+        if(order == null){
+            return grouped;
+        }
+        boolean[] orderAscending = new boolean[order.length];
+        for(int k = 0; k < order.length; k++){
+            orderAscending[k] = order[k].getOrder() == Order.ASCENDING;
+        }
+        OptimizerPlanOperator sorted = PhysicalPlanGeneratorUtils.addSortIfNecessary(grouped, order,
+                orderColIdx.stream().mapToInt(Integer::intValue).toArray(), orderAscending);
+        if(sorted != grouped){
+            sorted.setOperatorCosts(this.costEstimator.computeSortCosts(grouped.getReturnedColumns(), numGroups));
+            sorted.setCumulativeCosts(grouped.getCumulativeCosts() + sorted.getOperatorCosts());
+        }
+        return sorted;
+    }
 
-        return null;
+    /**
+     * Estimates the number of groups as the product of the distinct values of the grouping columns
+     * that come from base tables, but not more than there are input tuples.
+     */
+    private static long estimateNumberOfGroups(ArrayList<Column> groupColumns, long inputCardinality) {
+        long groups = 1;
+        for(Column column : groupColumns){
+            long distinct = inputCardinality;
+            if(column.getRelation() instanceof BaseTableAccess && !column.isRID()){
+                TableDescriptor table = ((BaseTableAccess) column.getRelation()).getTable();
+                long cardinality = table.getStatistics().getColumnStatistics(column.getColumnIndex()).getCardinality();
+                if(cardinality > 0){
+                    distinct = cardinality;
+                }
+            }
+            groups = groups > inputCardinality / Math.max(1, distinct) ? inputCardinality : groups * distinct;
+        }
+        return Math.max(1, Math.min(groups, inputCardinality));
     }
 
     @Override
@@ -389,6 +444,11 @@ public class PhysicalPlanGeneratorClass implements PhysicalPlanGenerator{
                     nestedOperator.setOperatorCosts(this.costEstimator.computeNestedLoopJoinCost(leftCand.getOutputCardinality(),rightCand));
                     nestedOperator.setCumulativeCosts(leftCand.getCumulativeCosts() + rightCand.getCumulativeCosts() + nestedOperator.getOperatorCosts());
                     candidatesList.add(nestedOperator);
+                    // the block variant does not re-open its inner side for every outer tuple
+                    if(!PhysicalPlanGeneratorUtils.isCorrelated(rightCand)){
+                        candidatesList.add(this.createBlockNestedLoopJoin(leftCand, rightCand, jpa,
+                                colLeftIdxArr, colRightIdxArr, join.getOutputCardinality()));
+                    }
 
 
                 }
@@ -401,6 +461,10 @@ public class PhysicalPlanGeneratorClass implements PhysicalPlanGenerator{
                     nestedOperator.setOperatorCosts(this.costEstimator.computeNestedLoopJoinCost(rightCand.getOutputCardinality(),leftCand));
                     nestedOperator.setCumulativeCosts(leftCand.getCumulativeCosts() + rightCand.getCumulativeCosts() + nestedOperator.getOperatorCosts());
                     candidatesList.add(nestedOperator);
+                    if(!PhysicalPlanGeneratorUtils.isCorrelated(leftCand)){
+                        candidatesList.add(this.createBlockNestedLoopJoin(rightCand, leftCand, jpa,
+                                colRightIdxArr, colLeftIdxArr, join.getOutputCardinality()));
+                    }
 
                 }
 
@@ -466,6 +530,29 @@ public class PhysicalPlanGeneratorClass implements PhysicalPlanGenerator{
 
                     }
 
+                    // the hash join needs no order and builds its table on the smaller input
+                    HashJoinPlanOperator hJoin;
+                    if(leftCand.getOutputCardinality() < rightCand.getOutputCardinality()){
+                        hJoin = new HashJoinPlanOperator(leftCand, rightCand, jpa,
+                                columnsLeftIdx.stream().mapToInt(Integer::intValue).toArray(), columnsRightIdx.stream().mapToInt(Integer::intValue).toArray(),
+                                colLeftIdxArr,
+                                colRightIdxArr,
+                                join.getOutputCardinality());
+                    }
+                    else{
+                        hJoin = new HashJoinPlanOperator(rightCand, leftCand, jpa,
+                                columnsRightIdx.stream().mapToInt(Integer::intValue).toArray(), columnsLeftIdx.stream().mapToInt(Integer::intValue).toArray(),
+                                colRightIdxArr,
+                                colLeftIdxArr,
+                                join.getOutputCardinality());
+                    }
+                    this.cardEstimator.estimateJoinCardinality(hJoin);
+                    OptimizerPlanOperator buildCand = hJoin.getBuildChild();
+                    OptimizerPlanOperator probeCand = hJoin.getProbeChild();
+                    hJoin.setOperatorCosts(this.costEstimator.computeHashJoinCost(buildCand.getReturnedColumns(), buildCand.getOutputCardinality(),
+                            probeCand.getReturnedColumns(), probeCand.getOutputCardinality()));
+                    hJoin.setCumulativeCosts(hJoin.getOperatorCosts() + leftCand.getCumulativeCosts() + rightCand.getCumulativeCosts());
+                    candidatesList.add(hJoin);
 
                 }
 
@@ -478,6 +565,19 @@ public class PhysicalPlanGeneratorClass implements PhysicalPlanGenerator{
         return PhysicalPlanGeneratorUtils.prunePlans(candidatesList.toArray(new OptimizerPlanOperator[0]), intOrders);
     }
 
+    // the block variant scans the inner side once per block of outer tuples, or only once if it fits in memory
+    private BlockNestedLoopJoinPlanOperator createBlockNestedLoopJoin(OptimizerPlanOperator outer, OptimizerPlanOperator inner,
+            JoinPredicate pred, int[] outerMap, int[] innerMap, long cardinality) {
+
+        BlockNestedLoopJoinPlanOperator blockOperator = new BlockNestedLoopJoinPlanOperator(outer, inner, pred,
+                outerMap, innerMap, cardinality);
+        this.cardEstimator.estimateJoinCardinality(blockOperator);
+        blockOperator.setOperatorCosts(this.costEstimator.computeBlockNestedLoopJoinCost(outer.getReturnedColumns(),
+                outer.getOutputCardinality(), inner.getReturnedColumns(), inner));
+        blockOperator.setCumulativeCosts(outer.getCumulativeCosts() + blockOperator.getOperatorCosts());
+        return blockOperator;
+    }
+
     @Override
     public OptimizerPlanOperator[] buildBestRelationAccessPlans(Column[] neededCols, Relation toAccess, InterestingOrder[] intOrders) throws OptimizerException {
 
@@ -514,8 +614,10 @@ public class PhysicalPlanGeneratorClass implements PhysicalPlanGenerator{
                 candidate_ix.setOperatorCosts(this.costEstimator.computeIndexLookupCosts(candidate_ix.getIndex(), td, toAccess.getOutputCardinality() ));
                 candidate_ix.setCumulativeCosts(candidate_ix.getOperatorCosts());
 
-                OptimizerPlanOperator candidate_fetch = new FetchPlanOperator(candidate_ix, ((BaseTableAccess)toAccess), neededCols);
-                candidate_fetch.setOperatorCosts(this.costEstimator.computeFetchCosts(td, toAccess.getOutputCardinality(), false));
+                FetchPlanOperator candidate_fetch = new FetchPlanOperator(candidate_ix, ((BaseTableAccess)toAccess), neededCols);
+                candidate_fetch.setPreserveOrder(isOfInterest(candidate_ix.getColumnOrder(), intOrders));
+                candidate_fetch.setOperatorCosts(this.costEstimator.computeFetchCosts(td, toAccess.getOutputCardinality(),
+                        candidate_fetch.isSequentialFetch()));
                 candidate_fetch.setCumulativeCosts(candidate_ix.getCumulativeCosts() + candidate_fetch.getOperatorCosts());
                 candidatesList.add(candidate_fetch);
 
@@ -523,7 +625,153 @@ public class PhysicalPlanGeneratorClass implements PhysicalPlanGenerator{
 
         }
 
+        if (toAccess.getPredicate() != null) {
+            for (IndexDescriptor index : this.catalogue.getAllIndexesForTable(td.getTableName())) {
+                if (index.getSchema().isComposite()) {
+                    OptimizerPlanOperator candidate = this.createCompositeIndexAccess((BaseTableAccess) toAccess, index, neededCols, intOrders);
+                    if (candidate != null) {
+                        candidatesList.add(candidate);
+                    }
+                }
+            }
+        }
+
 
         return PhysicalPlanGeneratorUtils.prunePlans(candidatesList.toArray(new OptimizerPlanOperator[0]), intOrders);
     }
+
+    /**
+     * Creates the access through a composite index for the factors of the table's predicate on a
+     * prefix of the index columns: an equality on each column of the prefix, except for the last
+     * column, which may have a range instead. The other factors are evaluated by a filter above
+     * the fetch, which returns only the needed columns. The fetch keeps the order of the index lookup only if one of the interesting
+     * orders asks for it.
+     *
+     * @return The access plan, or null, if no factor is on the first column of the index.
+     */
+    private OptimizerPlanOperator createCompositeIndexAccess(BaseTableAccess table, IndexDescriptor index, Column[] neededCols,
+            InterestingOrder[] intOrders) {
+        LocalPredicate predicate = table.getPredicate();
+        LocalPredicate[] factors = predicate instanceof LocalPredicateConjunct
+                ? ((LocalPredicateConjunct) predicate).getPredicates() : new LocalPredicate[] { predicate };
+
+        int[] columns = index.getSchema().getColumnNumbers();
+        LocalPredicate[] keyPreds = new LocalPredicate[columns.length];
+        boolean[] matched = new boolean[factors.length];
+        int num = 0;
+        boolean equal = true;
+        while (equal && num < columns.length) {
+            int chosen = -1;
+            for (int i = 0; i < factors.length; i++) {
+                if (matched[i] || keyColumn(factors[i]) != columns[num]) {
+                    continue;
+                }
+                if (isEquality(factors[i])) {
+                    chosen = i;
+                    break;
+                } else if (chosen < 0) {
+                    chosen = i;
+                }
+            }
+            if (chosen < 0) {
+                break;
+            }
+            matched[chosen] = true;
+            keyPreds[num++] = factors[chosen];
+            equal = isEquality(factors[chosen]);
+        }
+        if (num == 0) {
+            return null;
+        }
+
+        TableDescriptor td = table.getTable();
+        float selectivity = 1.0f;
+        for (int i = 0; i < num; i++) {
+            selectivity *= keyPreds[i].getSelectivity();
+        }
+        long lookupCard = Math.max(1, (long) (td.getStatistics().getCardinality() * selectivity));
+        IndexLookupPlanOperator lookup = new IndexLookupPlanOperator(index, table, Arrays.copyOf(keyPreds, num), lookupCard);
+        lookup.setOperatorCosts(this.costEstimator.computeIndexLookupCosts(index, td, lookupCard));
+        lookup.setCumulativeCosts(lookup.getOperatorCosts());
+
+        LocalPredicateConjunct rest = new LocalPredicateConjunct();
+        float restSelectivity = 1.0f;
+        for (int i = 0; i < factors.length; i++) {
+            if (!matched[i]) {
+                rest.addPredicate(factors[i]);
+                restSelectivity *= factors[i].getSelectivity();
+            }
+        }
+        rest.setSelectivity(restSelectivity);
+
+        if (rest.getNumberOfPredicates() == 0) {
+            FetchPlanOperator fetch = new FetchPlanOperator(lookup, table, neededCols);
+            fetch.setPreserveOrder(isOfInterest(lookup.getColumnOrder(), intOrders));
+            fetch.setOperatorCosts(this.costEstimator.computeFetchCosts(td, lookupCard, fetch.isSequentialFetch()));
+            fetch.setCumulativeCosts(lookup.getCumulativeCosts() + fetch.getOperatorCosts());
+            return fetch;
+        }
+
+        // the fetch also retrieves the columns of the factors that the filter evaluates
+        Map<Integer, Integer> givenCols = new HashMap<>();
+        for (int i = 0; i < neededCols.length; i++) {
+            givenCols.put(neededCols[i].getColumnIndex(), i);
+        }
+        LocalPredicate filterPred = (rest.getNumberOfPredicates() == 1 ? rest.getPredicates()[0] : rest)
+                .createCopyAdjustedForProjectedTuple(givenCols);
+        Column[] fetchCols = Arrays.copyOf(neededCols, givenCols.size());
+        for (Map.Entry<Integer, Integer> entry : givenCols.entrySet()) {
+            if (entry.getValue() >= neededCols.length) {
+                int colIdx = entry.getKey();
+                fetchCols[entry.getValue()] = new Column(table, td.getSchema().getColumn(colIdx).getDataType(), colIdx);
+            }
+        }
+
+        FetchPlanOperator fetch = new FetchPlanOperator(lookup, table, fetchCols);
+        fetch.setPreserveOrder(isOfInterest(lookup.getColumnOrder(), intOrders));
+        fetch.setOperatorCosts(this.costEstimator.computeFetchCosts(td, lookupCard, fetch.isSequentialFetch()));
+        fetch.setCumulativeCosts(lookup.getCumulativeCosts() + fetch.getOperatorCosts());
+
+        // the filter drops the columns that only its predicate needs, they follow the needed ones
+        FilterPlanOperator filter = new FilterPlanOperator(fetch, filterPred, table.getOutputCardinality(), neededCols);
+        filter.setOperatorCosts(this.costEstimator.computeFilterCost(filterPred, lookupCard));
+        filter.setCumulativeCosts(fetch.getCumulativeCosts() + filter.getOperatorCosts());
+        return filter;
+    }
+
+    /**
+     * Checks whether an order meets one of the interesting orders.
+     */
+    private static boolean isOfInterest(OrderedColumn[] order, InterestingOrder[] intOrders) {
+        if (order == null || intOrders == null) {
+            return false;
+        }
+        for (InterestingOrder intOrder : intOrders) {
+            if (intOrder.isMetByOutputOrder(order)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the column of a factor that an index lookup can evaluate, or -1, if the factor is no
+     * comparison or between predicate on a column.
+     */
+    private static int keyColumn(LocalPredicate factor) {
+        if (factor instanceof LocalPredicateBetween) {
+            return ((LocalPredicateBetween) factor).getColumn().getColumnIndex();
+        } else if (factor instanceof LocalPredicateAtom) {
+            Predicate.Operator op = ((LocalPredicateAtom) factor).getParsedPredicate().getOp();
+            if (op != Predicate.Operator.NOT_EQUAL && op != Predicate.Operator.UNDETERMINED) {
+                return ((LocalPredicateAtom) factor).getColumn().getColumnIndex();
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isEquality(LocalPredicate factor) {
+        return factor instanceof LocalPredicateAtom
+                && ((LocalPredicateAtom) factor).getParsedPredicate().getOp() == Predicate.Operator.EQUAL;
+    }
 }
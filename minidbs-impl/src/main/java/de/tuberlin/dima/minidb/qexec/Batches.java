@@ -0,0 +1,86 @@
+package de.tuberlin.dima.minidb.qexec;
+
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.qexec.predicate.LocalPredicate;
+import de.tuberlin.dima.minidb.qexec.predicate.LocalPredicateConjunction;
+
+/**
+ * Glue between batch-aware operators and the tuple-at-a-time operators below them.
+ */
+final class Batches {
+
+    private Batches() {
+    }
+
+    /**
+     * Fills the batch from the given operator, natively if it is a batch operator and by
+     * calling next() until the batch is full otherwise.
+     */
+    static boolean fill(PhysicalPlanOperator child, TupleBatch batch) throws QueryExecutionException {
+        if (child instanceof BatchOperator) {
+            return ((BatchOperator) child).nextBatch(batch);
+        }
+        DataTuple tuple = child.next();
+        if (tuple == null) {
+            batch.reset(0);
+            return false;
+        }
+        batch.reset(tuple.getNumberOfFields());
+        batch.appendTuple(tuple);
+        while (!batch.isFull() && (tuple = child.next()) != null) {
+            batch.appendTuple(tuple);
+        }
+        return true;
+    }
+
+    /**
+     * Narrows the selection to the rows of the batch that satisfy the predicate. Atoms and
+     * conjunctions of atoms are evaluated on the columns, everything else row by row.
+     */
+    static int select(LocalPredicate predicate, TupleBatch batch, int[] selection, int count) throws QueryExecutionException {
+        if (predicate instanceof LowLevelPredicate) {
+            return ((LowLevelPredicate) predicate).evaluate(batch, selection, count);
+        }
+        if (predicate instanceof LocalPredicateConjunction) {
+            for (LocalPredicate factor : ((LocalPredicateConjunction) predicate).getFactors()) {
+                if (count == 0) {
+                    break;
+                }
+                count = select(factor, batch, selection, count);
+            }
+            return count;
+        }
+        int out = 0;
+        for (int i = 0; i < count; i++) {
+            if (predicate.evaluate(batch.getTuple(selection[i]))) {
+                selection[out++] = selection[i];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Appends the concatenation of two joined tuples as a new row, laid out by the column maps
+     * the join operators use.
+     */
+    static void appendJoined(TupleBatch batch, DataTuple left, DataTuple right, int[] columnMapLeft, int[] columnMapRight) throws QueryExecutionException {
+        if (columnMapRight.length != columnMapLeft.length) {
+            throw new QueryExecutionException("Column Maps must be of equal length");
+        }
+        int row = batch.getSize();
+        for (int i = 0; i < columnMapLeft.length; i++) {
+            DataField field;
+            if (columnMapLeft[i] != -1) {
+                field = left.getField(columnMapLeft[i]);
+            } else {
+                if (columnMapRight[i] == -1) {
+                    throw new QueryExecutionException("At each index of Column Maps only one map has to have -1");
+                }
+                field = right.getField(columnMapRight[i]);
+            }
+            batch.setField(i, row, field);
+        }
+        batch.setSize(row + 1);
+    }
+}
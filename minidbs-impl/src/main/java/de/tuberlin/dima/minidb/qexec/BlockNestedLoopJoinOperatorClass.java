@@ -0,0 +1,248 @@
+package de.tuberlin.dima.minidb.qexec;
+
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeap;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeapException;
+import de.tuberlin.dima.minidb.qexec.predicate.JoinPredicate;
+
+import java.util.Arrays;
+
+/**
+ * Nested loop join that keeps one side in the memory granted by the query heap. The inner side is
+ * read first. If it fits, every outer tuple is joined against the cached inner tuples. Otherwise the
+ * grant is exchanged for one sized by the outer schema, the outer side is read in blocks that fill
+ * it, and the inner side is opened and scanned once per block.
+ */
+public class BlockNestedLoopJoinOperatorClass implements BlockNestedLoopJoinOperator, BatchOperator {
+
+    // asks the heap for as large a grant as it is willing to give
+    private static final int UNBOUNDED_CARDINALITY = Integer.MAX_VALUE;
+
+    private PhysicalPlanOperator outerChild;
+    private PhysicalPlanOperator innerChild;
+    private QueryHeap queryHeap;
+    private DataType[] outerSchema;
+    private DataType[] innerSchema;
+    private int estimatedInnerCardinality;
+    private JoinPredicate joinPredicate;
+    private int[] columnMapOuterTuple;
+    private int[] columnMapInnerTuple;
+
+    private int heapId;
+    private boolean heapReserved;
+    private DataTuple correlatedTuple;
+
+    // the cached inner side, or the current block of outer tuples
+    private DataTuple[] block;
+    private int capacity;
+    private int blockSize;
+    private boolean innerCached;
+    private boolean outerExhausted;
+
+    private DataTuple currentOuterTuple;
+    private DataTuple currentInnerTuple;
+    private int position;
+    private boolean joinFinished;
+    private boolean opened;
+
+    public BlockNestedLoopJoinOperatorClass(PhysicalPlanOperator outerChild, PhysicalPlanOperator innerChild, QueryHeap queryHeap,
+            DataType[] outerSchema, DataType[] innerSchema, int estimatedInnerCardinality, JoinPredicate joinPredicate,
+            int[] columnMapOuterTuple, int[] columnMapInnerTuple) {
+        this.outerChild = outerChild;
+        this.innerChild = innerChild;
+        this.queryHeap = queryHeap;
+        this.outerSchema = outerSchema;
+        this.innerSchema = innerSchema;
+        this.estimatedInnerCardinality = estimatedInnerCardinality;
+        this.joinPredicate = joinPredicate;
+        this.columnMapOuterTuple = columnMapOuterTuple;
+        this.columnMapInnerTuple = columnMapInnerTuple;
+    }
+
+    @Override
+    public void open(DataTuple correlatedTuple) throws QueryExecutionException {
+        if (this.columnMapOuterTuple.length != this.columnMapInnerTuple.length) {
+            throw new QueryExecutionException("Column Maps must be of equal length");
+        }
+        for (int i = 0; i < this.columnMapOuterTuple.length; i++) {
+            if (this.columnMapOuterTuple[i] == -1 && this.columnMapInnerTuple[i] == -1) {
+                throw new QueryExecutionException("At each index of Column Maps only one map has to have -1");
+            }
+        }
+        // a nested-loop join re-opens its inner side without closing it
+        this.releaseHeap();
+        this.correlatedTuple = correlatedTuple;
+        this.currentOuterTuple = null;
+        this.currentInnerTuple = null;
+        this.position = 0;
+        this.joinFinished = false;
+        this.outerExhausted = false;
+
+        try {
+            this.reserve(this.innerSchema, this.estimatedInnerCardinality);
+            this.innerChild.open(correlatedTuple);
+            DataTuple tuple = this.innerChild.next();
+            while (tuple != null && this.blockSize < this.capacity) {
+                this.block[this.blockSize++] = tuple;
+                tuple = this.innerChild.next();
+            }
+            this.innerCached = tuple == null;
+
+            if (!this.innerCached) {
+                // the inner side does not fit, so the memory holds blocks of the outer side instead
+                this.releaseHeap();
+                this.reserve(this.outerSchema, UNBOUNDED_CARDINALITY);
+            }
+        } catch (QueryHeapException e) {
+            throw new QueryExecutionException(e);
+        }
+
+        this.outerChild.open(correlatedTuple);
+        if (!this.innerCached) {
+            if (this.fillBlock()) {
+                this.innerChild.open(correlatedTuple);
+            } else {
+                this.joinFinished = true;
+            }
+        }
+        this.opened = true;
+    }
+
+    private void reserve(DataType[] schema, int estimatedCardinality) throws QueryExecutionException, QueryHeapException {
+        this.heapId = this.queryHeap.reserveSortHeap(schema, estimatedCardinality);
+        this.heapReserved = true;
+        this.block = this.queryHeap.getSortArray(this.heapId);
+        this.capacity = this.queryHeap.getMaximalTuplesForInternalSort(this.heapId);
+        this.blockSize = 0;
+    }
+
+    private boolean fillBlock() throws QueryExecutionException {
+        Arrays.fill(this.block, 0, this.blockSize, null);
+        this.blockSize = 0;
+        while (!this.outerExhausted && this.blockSize < this.capacity) {
+            DataTuple tuple = this.outerChild.next();
+            if (tuple == null) {
+                this.outerExhausted = true;
+            } else {
+                this.block[this.blockSize++] = tuple;
+            }
+        }
+        return this.blockSize > 0;
+    }
+
+    private boolean matches(DataTuple outer, DataTuple inner) throws QueryExecutionException {
+        return this.joinPredicate == null || this.joinPredicate.evaluate(outer, inner);
+    }
+
+    // moves to the next matching pair of the current outer and the current inner tuple
+    private boolean advance() throws QueryExecutionException {
+
+        if (this.innerCached) {
+            while (!this.joinFinished) {
+                if (this.currentOuterTuple == null) {
+                    this.currentOuterTuple = this.outerChild.next();
+                    if (this.currentOuterTuple == null) {
+                        this.joinFinished = true;
+                        break;
+                    }
+                    this.position = 0;
+                }
+                while (this.position < this.blockSize) {
+                    DataTuple inner = this.block[this.position++];
+                    if (this.matches(this.currentOuterTuple, inner)) {
+                        this.currentInnerTuple = inner;
+                        return true;
+                    }
+                }
+                this.currentOuterTuple = null;
+            }
+            return false;
+        }
+
+        while (!this.joinFinished) {
+            if (this.currentInnerTuple != null) {
+                while (this.position < this.blockSize) {
+                    DataTuple outer = this.block[this.position++];
+                    if (this.matches(outer, this.currentInnerTuple)) {
+                        this.currentOuterTuple = outer;
+                        return true;
+                    }
+                }
+            }
+            this.currentInnerTuple = this.innerChild.next();
+            this.position = 0;
+            if (this.currentInnerTuple == null) {
+                // the block is joined with the whole inner side, so the next block starts a new scan
+                if (this.fillBlock()) {
+                    this.innerChild.open(this.correlatedTuple);
+                } else {
+                    this.joinFinished = true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private DataTuple projectJoinedTuples(DataTuple outer, DataTuple inner) {
+
+        DataField[] orderedFields = new DataField[this.columnMapOuterTuple.length];
+        for (int i = 0; i < this.columnMapOuterTuple.length; i++) {
+            int outerIndex = this.columnMapOuterTuple[i];
+            orderedFields[i] = outerIndex != -1 ? outer.getField(outerIndex) : inner.getField(this.columnMapInnerTuple[i]);
+        }
+        return new DataTuple(orderedFields);
+    }
+
+    @Override
+    public DataTuple next() throws QueryExecutionException {
+
+        if (!opened) {
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        if (this.advance()) {
+            return this.projectJoinedTuples(this.currentOuterTuple, this.currentInnerTuple);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean nextBatch(TupleBatch batch) throws QueryExecutionException {
+
+        if (!opened) {
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        batch.reset(this.columnMapOuterTuple.length);
+        while (!batch.isFull() && this.advance()) {
+            Batches.appendJoined(batch, this.currentOuterTuple, this.currentInnerTuple,
+                    this.columnMapOuterTuple, this.columnMapInnerTuple);
+        }
+        return !batch.isEmpty();
+    }
+
+    private void releaseHeap() {
+        if (this.heapReserved) {
+            Arrays.fill(this.block, 0, this.blockSize, null);
+            this.queryHeap.releaseSortHeap(this.heapId);
+            this.heapReserved = false;
+        }
+        this.block = null;
+        this.blockSize = 0;
+    }
+
+    @Override
+    public void close() throws QueryExecutionException {
+        if (this.outerChild != null) {
+            this.outerChild.close();
+            this.innerChild.close();
+        }
+        this.releaseHeap();
+        this.currentOuterTuple = null;
+        this.currentInnerTuple = null;
+        this.correlatedTuple = null;
+        this.opened = false;
+    }
+}
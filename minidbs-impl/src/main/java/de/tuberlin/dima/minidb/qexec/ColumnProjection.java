@@ -0,0 +1,53 @@
+package de.tuberlin.dima.minidb.qexec;
+
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+
+/**
+ * Projection of table columns to output columns, compiled once per operator. A table page decodes
+ * the distinct requested columns in ascending column order, and the permutation maps each output
+ * column to its position in that decoded tuple.
+ */
+final class ColumnProjection {
+
+    private final long columnBitmap;
+    private final int numDistinctColumns;
+    private final int[] permutation;
+    private final boolean identity;
+
+    ColumnProjection(int[] columnIndexes) {
+        long bitmap = 0;
+        for (int idx : columnIndexes) {
+            bitmap |= 1L << idx;
+        }
+        this.columnBitmap = bitmap;
+        this.numDistinctColumns = Long.bitCount(bitmap);
+        this.permutation = new int[columnIndexes.length];
+        boolean identity = this.numDistinctColumns == columnIndexes.length;
+        for (int i = 0; i < columnIndexes.length; i++) {
+            // number of requested columns left of this one
+            this.permutation[i] = Long.bitCount(bitmap & ((1L << columnIndexes[i]) - 1));
+            identity &= this.permutation[i] == i;
+        }
+        this.identity = identity;
+    }
+
+    long getColumnBitmap() {
+        return this.columnBitmap;
+    }
+
+    int getNumDistinctColumns() {
+        return this.numDistinctColumns;
+    }
+
+    DataTuple project(DataTuple decoded) {
+        if (this.identity) {
+            return decoded;
+        }
+        DataField[] fields = new DataField[this.permutation.length];
+        for (int i = 0; i < this.permutation.length; i++) {
+            fields[i] = decoded.getField(this.permutation[i]);
+        }
+        return new DataTuple(fields);
+    }
+}
@@ -1,6 +1,5 @@
 package de.tuberlin.dima.minidb.qexec;
 
-import de.tuberlin.dima.minidb.core.DataField;
 import de.tuberlin.dima.minidb.core.DataTuple;
 import de.tuberlin.dima.minidb.core.RID;
 import de.tuberlin.dima.minidb.io.cache.CacheableData;
@@ -10,24 +9,56 @@ import de.tuberlin.dima.minidb.io.tables.PageTupleAccessException;
 import de.tuberlin.dima.minidb.io.tables.TablePage;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-
+import java.util.Arrays;
+
+/**
+ * Fetches the tuples for the RIDs produced by the child. Unbatched, the RIDs are resolved in the
+ * order they arrive. Batched, a chunk of RIDs is read and sorted by page, the distinct pages are
+ * prefetched in ascending runs, and every page is pinned once for all RIDs of the chunk that point
+ * into it. The fetched tuples are returned in page order, or in the order of their RIDs if the
+ * order of the child is preserved.
+ */
 public class FetchOperatorClass implements FetchOperator{
 
+    // the number of distinct pages of a batch that are requested ahead of the one being read
+    private static final int PREFETCH_PAGES = 16;
+
     private  PhysicalPlanOperator child;
     private BufferPoolManager bufferPool;
     private int tableResourceId;
     private int[] outputColumnMap;
 
     private int currentPageNumber;
+    private TablePage currentPage;
+    private ColumnProjection projection;
     private  boolean opened;
+
+    private int batchSize;
+    private boolean preserveOrder;
+    // the RIDs of the batch, and their page numbers in the upper and their positions in the lower half
+    private RID[] rids;
+    private long[] pagePositions;
+    private int[] distinctPages;
+    private int numDistinctPages;
+    private int numPrefetched;
+    private DataTuple[] fetchedTuples;
+    private int numFetched;
+    private int nextFetched;
+    private boolean childExhausted;
+
     public FetchOperatorClass(PhysicalPlanOperator child, BufferPoolManager bufferPool, int tableResourceId, int[] outputColumnMap){
+        this(child, bufferPool, tableResourceId, outputColumnMap, 0, true);
+    }
+
+    public FetchOperatorClass(PhysicalPlanOperator child, BufferPoolManager bufferPool, int tableResourceId, int[] outputColumnMap,
+            int batchSize, boolean preserveOrder){
 
         this.child = child;
         this.bufferPool = bufferPool;
         this.tableResourceId = tableResourceId;
         this.outputColumnMap = outputColumnMap;
+        this.batchSize = batchSize;
+        this.preserveOrder = preserveOrder;
         this.currentPageNumber = -1;
         this.opened = false;
     }
@@ -35,31 +66,17 @@ public class FetchOperatorClass implements FetchOperator{
     public void open(DataTuple correlatedTuple) throws QueryExecutionException {
 
         this.child.open(correlatedTuple);
-        this.opened = true;
-    }
-
-    private int getUniquelength(int[] arr){
-
-        ArrayList<Integer> arrlist = new ArrayList<>();
-        for(int x: arr){
-            if(!arrlist.contains(x)){
-                arrlist.add(x);
-            }
-        }
-        return arrlist.size();
-    }
-    private long constructBiMap(int[] ColumnIndexes){
-        long bitmap = 0;
-        for(int idx:ColumnIndexes){
-            if((bitmap & 1L << idx) == 0)
-            {
-                bitmap += 1L << idx;
-            }
-
+        this.projection = new ColumnProjection(this.outputColumnMap);
+        if(this.batchSize > 1 && this.rids == null){
+            this.rids = new RID[this.batchSize];
+            this.pagePositions = new long[this.batchSize];
+            this.distinctPages = new int[this.batchSize];
+            this.fetchedTuples = new DataTuple[this.batchSize];
         }
-
-        return  bitmap;
-
+        this.numFetched = 0;
+        this.nextFetched = 0;
+        this.childExhausted = false;
+        this.opened = true;
     }
 
     @Override
@@ -67,71 +84,157 @@ public class FetchOperatorClass implements FetchOperator{
         if(!opened){
             throw new QueryExecutionException("Operator is not yet opened");
         }
+        if(this.rids != null){
+            if(this.nextFetched == this.numFetched && !this.fetchBatch()){
+                return null;
+            }
+            DataTuple tuple = this.fetchedTuples[this.nextFetched];
+            this.fetchedTuples[this.nextFetched++] = null;
+            return tuple;
+        }
         DataTuple newTuple = this.child.next();
         if(newTuple == null){
             if(this.currentPageNumber != -1){
                 this.bufferPool.unpinPage(tableResourceId, this.currentPageNumber);
+                this.currentPageNumber = -1;
+                this.currentPage = null;
             }
             return null;
         }
-        if(!(newTuple.getField(0) instanceof RID)){
-            throw new QueryExecutionException("Child Operator must return RIDs");
-        }
-        RID newRID = (RID) newTuple.getField(0);
+        RID newRID = this.getRID(newTuple);
         int pageNumber = newRID.getPageIndex();
-        int tupleId = newRID.getTupleIndex();
 
         if(pageNumber != this.currentPageNumber){
-            if(this.currentPageNumber != -1){
-                this.bufferPool.unpinPage(tableResourceId, this.currentPageNumber);
-            }
-            this.currentPageNumber = pageNumber;
+            // the page stays pinned while consecutive RIDs point into it
+            this.pinPage(pageNumber);
+        }
+        return this.fetchTuple(newRID.getTupleIndex());
+    }
+
+    private RID getRID(DataTuple tuple) throws QueryExecutionException {
+        if(!(tuple.getField(0) instanceof RID)){
+            throw new QueryExecutionException("Child Operator must return RIDs");
+        }
+        return (RID) tuple.getField(0);
+    }
+
+    private void pinPage(int pageNumber) throws QueryExecutionException {
+        if(this.currentPageNumber != -1){
+            this.bufferPool.unpinPage(tableResourceId, this.currentPageNumber);
+            this.currentPageNumber = -1;
         }
         CacheableData cd = null;
         try {
-             cd = this.bufferPool.getPageAndPin(this.tableResourceId, pageNumber);
+            cd = this.bufferPool.getPageAndPin(this.tableResourceId, pageNumber);
         } catch (BufferPoolException | IOException e) {
             throw new QueryExecutionException(e);
         }
         if(!(cd instanceof TablePage)){
+            this.bufferPool.unpinPage(tableResourceId, pageNumber);
             throw new QueryExecutionException("Pages from Buferpool must be instances of Tablepage");
         }
-        TablePage tp = (TablePage) cd;
+        this.currentPageNumber = pageNumber;
+        this.currentPage = (TablePage) cd;
+    }
 
+    private DataTuple fetchTuple(int tupleId) throws QueryExecutionException {
         DataTuple orderedTuple;
         try {
-            DataTuple dt = tp.getDataTuple(tupleId,this.constructBiMap(this.outputColumnMap),
-                    this.getUniquelength(this.outputColumnMap));
+            DataTuple dt = this.currentPage.getDataTuple(tupleId, this.projection.getColumnBitmap(),
+                    this.projection.getNumDistinctColumns());
             if(dt == null){
                 throw new QueryExecutionException("Could not find RID from index in Table");
             }
-            DataField[] orderedFields = new DataField[this.outputColumnMap.length];
+            orderedTuple = this.projection.project(dt);
+        } catch (PageTupleAccessException e) {
+            throw new QueryExecutionException(e);
+        }
 
-            ArrayList<Integer> arrayList = new ArrayList<>();
-            for (int num : this.outputColumnMap) {
-                if(!arrayList.contains(num))
-                {
-                    arrayList.add(num);
-                }
-            }
-            Collections.sort(arrayList);
+        return orderedTuple;
+    }
 
+    // reads the next chunk of RIDs and fetches their tuples page by page
+    private boolean fetchBatch() throws QueryExecutionException {
+        int n = 0;
+        while(!this.childExhausted && n < this.batchSize){
+            DataTuple newTuple = this.child.next();
+            if(newTuple == null){
+                this.childExhausted = true;
+            }
+            else{
+                RID rid = this.getRID(newTuple);
+                this.rids[n] = rid;
+                this.pagePositions[n] = ((long) rid.getPageIndex() << 32) | n;
+                n++;
+            }
+        }
+        this.numFetched = 0;
+        this.nextFetched = 0;
+        if(n == 0){
+            return false;
+        }
 
-            for(int fieldIdx = 0; fieldIdx < this.outputColumnMap.length; fieldIdx++){
-                orderedFields[fieldIdx] = dt.getField(arrayList.indexOf(this.outputColumnMap[fieldIdx]));
+        // sorting by page keeps the RIDs of a page in the order they arrived
+        Arrays.sort(this.pagePositions, 0, n);
+        this.numDistinctPages = 0;
+        this.numPrefetched = 0;
+        for(int i = 0; i < n; i++){
+            int pageNumber = (int) (this.pagePositions[i] >>> 32);
+            if(this.numDistinctPages == 0 || this.distinctPages[this.numDistinctPages - 1] != pageNumber){
+                this.distinctPages[this.numDistinctPages++] = pageNumber;
             }
-            orderedTuple = new DataTuple(orderedFields);
-        } catch (PageTupleAccessException e) {
-            throw new QueryExecutionException(e);
         }
 
-        return orderedTuple;
+        int page = 0;
+        for(int i = 0; i < n; i++){
+            int pageNumber = (int) (this.pagePositions[i] >>> 32);
+            if(pageNumber != this.currentPageNumber){
+                this.prefetch(page + PREFETCH_PAGES);
+                this.pinPage(pageNumber);
+                page++;
+            }
+            int position = (int) this.pagePositions[i];
+            DataTuple tuple = this.fetchTuple(this.rids[position].getTupleIndex());
+            this.fetchedTuples[this.preserveOrder ? position : i] = tuple;
+            this.rids[position] = null;
+        }
+        this.bufferPool.unpinPage(tableResourceId, this.currentPageNumber);
+        this.currentPageNumber = -1;
+        this.currentPage = null;
+        this.numFetched = n;
+        return true;
+    }
 
+    // requests the distinct pages up to the given one, as ranges of consecutive page numbers
+    private void prefetch(int upTo) throws QueryExecutionException {
+        int end = Math.min(upTo, this.numDistinctPages);
+        try {
+            while(this.numPrefetched < end){
+                int first = this.distinctPages[this.numPrefetched++];
+                int last = first;
+                while(this.numPrefetched < end && this.distinctPages[this.numPrefetched] == last + 1){
+                    last = this.distinctPages[this.numPrefetched++];
+                }
+                this.bufferPool.prefetchPages(this.tableResourceId, first, last);
+            }
+        } catch (BufferPoolException e) {
+            throw new QueryExecutionException(e);
+        }
     }
 
     @Override
     public void close() throws QueryExecutionException {
 
+        if(this.currentPageNumber != -1){
+            this.bufferPool.unpinPage(tableResourceId, this.currentPageNumber);
+            this.currentPageNumber = -1;
+        }
+        this.currentPage = null;
+        this.projection = null;
+        this.rids = null;
+        this.pagePositions = null;
+        this.distinctPages = null;
+        this.fetchedTuples = null;
         this.child = null;
         this.bufferPool = null;
         this.outputColumnMap = null;
@@ -3,47 +3,116 @@ package de.tuberlin.dima.minidb.qexec;
 import de.tuberlin.dima.minidb.core.DataTuple;
 import de.tuberlin.dima.minidb.qexec.predicate.LocalPredicate;
 
-public class FilterOperatorClass implements  FilterOperator{
+public class FilterOperatorClass implements  FilterOperator, BatchOperator{
 
     private PhysicalPlanOperator child;
     private LocalPredicate predicate;
+    // the number of leading columns that are returned, or -1 for all
+    private int numOutputColumns;
+    private int[] selection;
+    // the filtered batch of a batch-producing child that next() hands out row by row
+    private TupleBatch inputBatch;
+    private int inputRow;
     private boolean opened;
 
     public  FilterOperatorClass(PhysicalPlanOperator child, LocalPredicate predicate){
+        this(child, predicate, -1);
+    }
+
+    public FilterOperatorClass(PhysicalPlanOperator child, LocalPredicate predicate, int numOutputColumns){
         this.child = child;
         this.predicate = predicate;
+        this.numOutputColumns = numOutputColumns;
         this.opened = false;
-
     }
 
     @Override
     public void open(DataTuple correlatedTuple) throws QueryExecutionException {
 
         this.child.open(correlatedTuple);
+        if(this.inputBatch != null){
+            this.inputBatch.reset(0);
+        }
+        this.inputRow = 0;
         this.opened= true;
 
     }
 
+    /**
+     * Returns the next qualifying tuple. A child that produces batches is read batch by batch and
+     * the predicate is evaluated on the columns of each batch; an operator should be consumed
+     * either by next() or by nextBatch().
+     */
     @Override
     public DataTuple next() throws QueryExecutionException {
         if(!opened){
             throw new QueryExecutionException("Operator is not yet opened");
         }
+        if(this.child instanceof BatchOperator){
+            if(this.inputBatch == null){
+                this.inputBatch = new TupleBatch();
+            }
+            if(this.inputRow == this.inputBatch.getSize()){
+                this.inputRow = 0;
+                if(!this.nextBatch(this.inputBatch)){
+                    return null;
+                }
+            }
+            return this.inputBatch.getTuple(this.inputRow++);
+        }
         DataTuple nextTuple = this.child.next();
 
         while(nextTuple != null){
             if(this.predicate.evaluate(nextTuple)){
-                return nextTuple;
+                return this.project(nextTuple);
             }
             nextTuple = this.child.next();
         }
         return null;
     }
 
+    @Override
+    public boolean nextBatch(TupleBatch batch) throws QueryExecutionException {
+        if(!opened){
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+        if(this.selection == null || this.selection.length < batch.getCapacity()){
+            this.selection = new int[batch.getCapacity()];
+        }
+        while(Batches.fill(this.child, batch)){
+            int count = batch.getSize();
+            for(int i = 0; i < count; i++){
+                this.selection[i] = i;
+            }
+            count = Batches.select(this.predicate, batch, this.selection, count);
+            if(count > 0){
+                batch.retain(this.selection, count);
+                if(this.numOutputColumns >= 0){
+                    batch.retainColumns(this.numOutputColumns);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private DataTuple project(DataTuple tuple) {
+        if(this.numOutputColumns < 0 || this.numOutputColumns == tuple.getNumberOfFields()){
+            return tuple;
+        }
+        DataTuple projected = new DataTuple(this.numOutputColumns);
+        for(int i = 0; i < this.numOutputColumns; i++){
+            projected.assignDataField(tuple.getField(i), i);
+        }
+        return projected;
+    }
+
     @Override
     public void close() throws QueryExecutionException {
 
         this.child = null;
         this.predicate = null;
+        this.selection = null;
+        this.inputBatch = null;
     }
 }
@@ -3,7 +3,7 @@ package de.tuberlin.dima.minidb.qexec;
 import de.tuberlin.dima.minidb.core.*;
 import de.tuberlin.dima.minidb.parser.OutputColumn;
 
-public class GroupByOperatorClass implements GroupByOperator {
+public class GroupByOperatorClass implements GroupByOperator, BatchOperator {
     private  PhysicalPlanOperator child;
     private  int[] groupColumnIndices;
     private  int[] aggColumnIndices;
@@ -13,6 +13,15 @@ public class GroupByOperatorClass implements GroupByOperator {
     private  int[] aggregateColumnOutputPosition;
     private DataTuple firstTuple;
 
+    // input of the batch mode and the primitive accumulators of the group being aggregated
+    private TupleBatch inputBatch;
+    private int inputRow;
+    private boolean inputExhausted;
+    private long[] longAccumulators;
+    private double[] doubleAccumulators;
+    private float[] floatAccumulators;
+    private DataField[] fieldAccumulators;
+
     private boolean basicCase;
     private boolean opened;
 
@@ -259,6 +268,235 @@ public class GroupByOperatorClass implements GroupByOperator {
 
     }
 
+    /**
+     * Produces the groups from columnar batches of the child. Sums, averages and counts are
+     * accumulated in primitives; an operator should be consumed either by next() or by nextBatch().
+     */
+    @Override
+    public boolean nextBatch(TupleBatch batch) throws QueryExecutionException {
+
+        if(!opened){
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        batch.reset(this.groupColumnOutputPositions.length);
+        if(this.basicCase){
+            batch.appendTuple(this.next());
+            return true;
+        }
+        if(this.inputBatch == null){
+            this.inputBatch = new TupleBatch(batch.getCapacity());
+            this.inputExhausted = false;
+            this.longAccumulators = new long[this.aggregateFunctions.length];
+            this.doubleAccumulators = new double[this.aggregateFunctions.length];
+            this.floatAccumulators = new float[this.aggregateFunctions.length];
+            this.fieldAccumulators = new DataField[this.aggregateFunctions.length];
+        }
+        while(!batch.isFull()){
+            DataTuple group = this.nextGroupFromBatches();
+            if(group == null){
+                break;
+            }
+            batch.appendTuple(group);
+        }
+        return !batch.isEmpty();
+    }
+
+    private boolean ensureInput() throws QueryExecutionException {
+        if(this.inputRow < this.inputBatch.getSize()){
+            return true;
+        }
+        if(this.inputExhausted || !Batches.fill(this.child, this.inputBatch)){
+            this.inputExhausted = true;
+            return false;
+        }
+        this.inputRow = 0;
+        return true;
+    }
+
+    private DataTuple nextGroupFromBatches() throws QueryExecutionException {
+        DataField[] groupFields;
+        // the tuple read in open() starts the first group
+        if(this.firstTuple != null){
+            groupFields = this.constructFields(this.firstTuple, this.groupColumnIndices);
+            this.resetAccumulators();
+            for(int i = 0; i < this.aggregateFunctions.length; i++){
+                this.accumulate(i, this.firstTuple.getField(this.aggColumnIndices[i]));
+            }
+            this.firstTuple = null;
+        }
+        else{
+            if(!this.ensureInput()){
+                return null;
+            }
+            groupFields = new DataField[this.groupColumnIndices.length];
+            for(int i = 0; i < groupFields.length; i++){
+                groupFields[i] = this.inputBatch.getField(this.groupColumnIndices[i], this.inputRow).clone();
+            }
+            this.resetAccumulators();
+            this.accumulateRow(this.inputRow++);
+        }
+
+        int num = 1;
+        while(this.ensureInput()){
+            int size = this.inputBatch.getSize();
+            while(this.inputRow < size && this.isInGroup(groupFields, this.inputRow)){
+                this.accumulateRow(this.inputRow++);
+                num++;
+            }
+            if(this.inputRow < size){
+                break;
+            }
+        }
+
+        DataField[] aggFields = new DataField[this.aggregateFunctions.length];
+        for(int i = 0; i < aggFields.length; i++){
+            aggFields[i] = this.finishAggregate(i, num);
+        }
+        return this.projectJoinedTuples(new DataTuple(groupFields), new DataTuple(aggFields),
+                this.groupColumnOutputPositions, this.aggregateColumnOutputPosition);
+    }
+
+    private boolean isInGroup(DataField[] groupFields, int row){
+        for(int i = 0; i < groupFields.length; i++){
+            int column = this.groupColumnIndices[i];
+            switch(this.inputBatch.getColumnType(column)){
+                case SMALL_INT:
+                    if(((SmallIntField) groupFields[i]).getValue() != this.inputBatch.getIntColumn(column)[row]){
+                        return false;
+                    }
+                    break;
+                case INT:
+                    if(((IntField) groupFields[i]).getValue() != this.inputBatch.getIntColumn(column)[row]){
+                        return false;
+                    }
+                    break;
+                case BIG_INT:
+                    if(((BigIntField) groupFields[i]).getValue() != this.inputBatch.getLongColumn(column)[row]){
+                        return false;
+                    }
+                    break;
+                default:
+                    if(groupFields[i].compareTo(this.inputBatch.getField(column, row)) != 0){
+                        return false;
+                    }
+            }
+        }
+        return true;
+    }
+
+    private void resetAccumulators(){
+        for(int i = 0; i < this.aggregateFunctions.length; i++){
+            this.longAccumulators[i] = 0;
+            this.doubleAccumulators[i] = 0;
+            this.floatAccumulators[i] = 0;
+            this.fieldAccumulators[i] = null;
+        }
+    }
+
+    private void accumulateRow(int row) throws QueryExecutionException {
+        for(int i = 0; i < this.aggregateFunctions.length; i++){
+            int column = this.aggColumnIndices[i];
+            OutputColumn.AggregationType function = this.aggregateFunctions[i];
+            if(function == OutputColumn.AggregationType.COUNT){
+                continue;
+            }
+            BasicType type = this.inputBatch.getColumnType(column);
+            boolean sum = function == OutputColumn.AggregationType.SUM || function == OutputColumn.AggregationType.AVG;
+            if(sum && (type == BasicType.SMALL_INT || type == BasicType.INT)){
+                this.longAccumulators[i] += this.inputBatch.getIntColumn(column)[row];
+            }
+            else if(sum && type == BasicType.BIG_INT){
+                this.longAccumulators[i] += this.inputBatch.getLongColumn(column)[row];
+            }
+            else if(sum && type == BasicType.FLOAT){
+                this.floatAccumulators[i] += this.inputBatch.getFloatColumn(column)[row];
+            }
+            else if(sum && type == BasicType.DOUBLE){
+                this.doubleAccumulators[i] += this.inputBatch.getDoubleColumn(column)[row];
+            }
+            else{
+                this.accumulate(i, this.inputBatch.getField(column, row));
+            }
+        }
+    }
+
+    private void accumulate(int i, DataField field) throws QueryExecutionException {
+        switch(this.aggregateFunctions[i]){
+            case SUM:
+            case AVG:
+                if(!(field instanceof ArithmeticType)){
+                    throw new QueryExecutionException("Field is not Arithmetic");
+                }
+                switch(field.getBasicType()){
+                    case SMALL_INT:
+                    case INT:
+                    case BIG_INT:
+                        this.longAccumulators[i] += ((ArithmeticType<?>) field).asLong();
+                        break;
+                    case FLOAT:
+                        this.floatAccumulators[i] += ((FloatField) field).getValue();
+                        break;
+                    default:
+                        this.doubleAccumulators[i] += ((ArithmeticType<?>) field).asDouble();
+                }
+                break;
+            case MAX:
+                if(this.fieldAccumulators[i] == null){
+                    this.fieldAccumulators[i] = field.clone();
+                }
+                else if(this.fieldAccumulators[i].compareTo(field) < 0){
+                    this.fieldAccumulators[i] = field;
+                }
+                break;
+            case MIN:
+                if(this.fieldAccumulators[i] == null){
+                    this.fieldAccumulators[i] = field.clone();
+                }
+                else if(this.fieldAccumulators[i].compareTo(field) > 0){
+                    this.fieldAccumulators[i] = field;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private DataField finishAggregate(int i, int num) throws QueryExecutionException {
+        OutputColumn.AggregationType function = this.aggregateFunctions[i];
+        if(function == OutputColumn.AggregationType.COUNT){
+            return new IntField(num);
+        }
+        if(function == OutputColumn.AggregationType.MIN || function == OutputColumn.AggregationType.MAX){
+            return this.fieldAccumulators[i];
+        }
+        if (!this.aggColumnTypes[i].isArithmeticType()) {
+            throw new QueryExecutionException("Field is not Arithmetic");
+        }
+        DataField result;
+        switch(this.aggColumnTypes[i].getBasicType()){
+            case SMALL_INT:
+                result = new SmallIntField((short) this.longAccumulators[i]);
+                break;
+            case INT:
+                result = new IntField((int) this.longAccumulators[i]);
+                break;
+            case BIG_INT:
+                result = new BigIntField(this.longAccumulators[i]);
+                break;
+            case FLOAT:
+                result = new FloatField(this.floatAccumulators[i]);
+                break;
+            default:
+                result = new DoubleField(this.doubleAccumulators[i]);
+        }
+        if(function == OutputColumn.AggregationType.AVG){
+            ((ArithmeticType<DataField>) result).divideBy(num);
+        }
+        return result;
+    }
+
     @Override
     public void close() throws QueryExecutionException {
         this.child = null;
@@ -269,6 +507,8 @@ public class GroupByOperatorClass implements GroupByOperator {
         this.groupColumnOutputPositions = null;
         this.aggregateColumnOutputPosition = null;
         this.firstTuple=null;
+        this.inputBatch = null;
+        this.fieldAccumulators = null;
 
     }
 }
@@ -0,0 +1,492 @@
+package de.tuberlin.dima.minidb.qexec;
+
+import de.tuberlin.dima.minidb.core.*;
+import de.tuberlin.dima.minidb.parser.OutputColumn;
+import de.tuberlin.dima.minidb.qexec.heap.ExternalTupleSequenceIterator;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeap;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeapException;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Hash aggregation. The first tuple of every group is kept in a chained hash table in the memory
+ * granted by the query heap, the aggregates of the group are kept in primitive arrays next to it.
+ * Once the table is full, the tuples of groups that are not in it are written to temp partitions by
+ * the hash of their grouping columns. After the groups in memory are produced, every partition is
+ * aggregated the same way, re-partitioning on other bits of the hash if it overflows again.
+ */
+public class HashGroupByOperatorClass implements HashGroupByOperator {
+
+    private static final int NUM_PARTITIONS = 16;
+    private static final int MIN_STAGE_TUPLES = 16;
+
+    // the accumulator that is kept for an aggregate
+    private static final int COUNT = 0;
+    private static final int LONG_SUM = 1;
+    private static final int FLOAT_SUM = 2;
+    private static final int DOUBLE_SUM = 3;
+    private static final int LONG_MIN = 4;
+    private static final int LONG_MAX = 5;
+    private static final int FIELD_MIN = 6;
+    private static final int FIELD_MAX = 7;
+
+    private PhysicalPlanOperator child;
+    private QueryHeap queryHeap;
+    private DataType[] inputSchema;
+    private int estimatedGroups;
+    private int[] groupColumnIndices;
+    private int[] aggColumnIndices;
+    private OutputColumn.AggregationType[] aggregateFunctions;
+    private DataType[] aggColumnTypes;
+    private int[] groupColumnOutputPositions;
+    private int[] aggregateColumnOutputPosition;
+
+    private int heapId;
+    private boolean heapReserved;
+
+    // the groups in table[0..numGroups), chained through next[]
+    private DataTuple[] table;
+    private int[] hashes;
+    private int[] next;
+    private int[] buckets;
+    private int[] counts;
+    private int maxGroups;
+    private int numGroups;
+
+    private int[] accumulators;
+    private long[][] longValues;
+    private float[][] floatValues;
+    private double[][] doubleValues;
+    private DataField[][] fieldValues;
+
+    // the overflow partitions of the current pass and the ones still to be aggregated
+    private DataTuple[][] stage;
+    private int[] stageCount;
+    private boolean[] written;
+    private int firstPartition;
+    private int nextPartition;
+    private int level;
+    private ArrayDeque<int[]> pendingPartitions;
+
+    private int emitPosition;
+    private boolean emptyGroup;
+    private boolean opened;
+
+    public HashGroupByOperatorClass(PhysicalPlanOperator child, QueryHeap queryHeap, DataType[] inputSchema,
+            int estimatedGroups, int[] groupColumnIndices, int[] aggColumnIndices,
+            OutputColumn.AggregationType[] aggregateFunctions, DataType[] aggColumnTypes,
+            int[] groupColumnOutputPositions, int[] aggregateColumnOutputPosition) {
+        this.child = child;
+        this.queryHeap = queryHeap;
+        this.inputSchema = inputSchema;
+        this.estimatedGroups = estimatedGroups;
+        this.groupColumnIndices = groupColumnIndices;
+        this.aggColumnIndices = aggColumnIndices;
+        this.aggregateFunctions = aggregateFunctions;
+        this.aggColumnTypes = aggColumnTypes;
+        this.groupColumnOutputPositions = groupColumnOutputPositions;
+        this.aggregateColumnOutputPosition = aggregateColumnOutputPosition;
+    }
+
+    @Override
+    public void open(DataTuple correlatedTuple) throws QueryExecutionException {
+        // a nested-loop join re-opens its inner side without closing it
+        this.releaseHeap();
+        this.child.open(correlatedTuple);
+        try {
+            this.heapId = this.queryHeap.reserveSortHeap(this.inputSchema, this.estimatedGroups);
+            this.heapReserved = true;
+            this.table = this.queryHeap.getSortArray(this.heapId);
+            int capacity = this.queryHeap.getMaximalTuplesForInternalSort(this.heapId);
+            int stageCapacity = Math.max(MIN_STAGE_TUPLES, capacity / (4 * NUM_PARTITIONS));
+            this.maxGroups = Math.max(1, capacity - NUM_PARTITIONS * stageCapacity);
+            this.hashes = new int[this.maxGroups];
+            this.next = new int[this.maxGroups];
+            this.counts = new int[this.maxGroups];
+            this.buckets = new int[tableSizeFor(this.maxGroups)];
+            this.initAccumulators();
+
+            this.stage = new DataTuple[NUM_PARTITIONS][stageCapacity];
+            this.stageCount = new int[NUM_PARTITIONS];
+            this.written = new boolean[NUM_PARTITIONS];
+            this.nextPartition = 0;
+            this.level = 0;
+            this.pendingPartitions = new ArrayDeque<>();
+
+            this.aggregatePass(null);
+        } catch (QueryHeapException | IOException e) {
+            throw new QueryExecutionException(e);
+        }
+        // without grouping columns, an empty input still has its one group
+        this.emptyGroup = this.numGroups == 0 && this.groupColumnIndices.length == 0;
+        this.opened = true;
+    }
+
+    private void initAccumulators() throws QueryExecutionException {
+        int numAggregates = this.aggregateFunctions.length;
+        this.accumulators = new int[numAggregates];
+        this.longValues = new long[numAggregates][];
+        this.floatValues = new float[numAggregates][];
+        this.doubleValues = new double[numAggregates][];
+        this.fieldValues = new DataField[numAggregates][];
+        for (int i = 0; i < numAggregates; i++) {
+            BasicType type = this.inputSchema[this.aggColumnIndices[i]].getBasicType();
+            boolean integer = type == BasicType.SMALL_INT || type == BasicType.INT || type == BasicType.BIG_INT;
+            switch (this.aggregateFunctions[i]) {
+                case SUM:
+                case AVG:
+                    if (!this.inputSchema[this.aggColumnIndices[i]].isArithmeticType()
+                            || !this.aggColumnTypes[i].isArithmeticType()) {
+                        throw new QueryExecutionException("Field is not Arithmetic");
+                    }
+                    if (integer) {
+                        this.accumulators[i] = LONG_SUM;
+                        this.longValues[i] = new long[this.maxGroups];
+                    } else if (type == BasicType.FLOAT) {
+                        this.accumulators[i] = FLOAT_SUM;
+                        this.floatValues[i] = new float[this.maxGroups];
+                    } else {
+                        this.accumulators[i] = DOUBLE_SUM;
+                        this.doubleValues[i] = new double[this.maxGroups];
+                    }
+                    break;
+                case MIN:
+                case MAX:
+                    boolean min = this.aggregateFunctions[i] == OutputColumn.AggregationType.MIN;
+                    // the NULL of the integer types is their smallest value, as in compareTo()
+                    if (integer) {
+                        this.accumulators[i] = min ? LONG_MIN : LONG_MAX;
+                        this.longValues[i] = new long[this.maxGroups];
+                    } else {
+                        this.accumulators[i] = min ? FIELD_MIN : FIELD_MAX;
+                        this.fieldValues[i] = new DataField[this.maxGroups];
+                    }
+                    break;
+                default:
+                    this.accumulators[i] = COUNT;
+            }
+        }
+    }
+
+    /**
+     * Aggregates the tuples of the child, or of a spilled partition, into the table. Tuples of groups
+     * that are neither in the table nor fit into it go to the overflow partitions of this pass.
+     */
+    private void aggregatePass(ExternalTupleSequenceIterator source)
+            throws QueryExecutionException, QueryHeapException, IOException {
+        Arrays.fill(this.table, 0, this.numGroups, null);
+        Arrays.fill(this.buckets, -1);
+        this.numGroups = 0;
+        this.emitPosition = 0;
+        this.firstPartition = this.nextPartition;
+        this.nextPartition += NUM_PARTITIONS;
+        Arrays.fill(this.written, false);
+
+        int mask = this.buckets.length - 1;
+        DataTuple tuple;
+        while ((tuple = nextInput(source)) != null) {
+            int h = hash(tuple, this.groupColumnIndices);
+            int b = h & mask;
+            int g = this.buckets[b];
+            while (g != -1 && (this.hashes[g] != h || !this.keysEqual(this.table[g], tuple))) {
+                g = this.next[g];
+            }
+            if (g != -1) {
+                this.update(g, tuple);
+            } else if (this.numGroups < this.maxGroups) {
+                g = this.numGroups++;
+                this.table[g] = tuple;
+                this.hashes[g] = h;
+                this.next[g] = this.buckets[b];
+                this.buckets[b] = g;
+                this.init(g, tuple);
+            } else {
+                this.stage(this.partitionOf(h), tuple);
+            }
+        }
+
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            if (this.stageCount[p] > 0) {
+                this.flushStage(p);
+            }
+            if (this.written[p]) {
+                this.pendingPartitions.add(new int[] {this.firstPartition + p, this.level + 1});
+            }
+        }
+    }
+
+    private DataTuple nextInput(ExternalTupleSequenceIterator source)
+            throws QueryExecutionException, QueryHeapException, IOException {
+        if (source == null) {
+            return this.child.next();
+        }
+        return source.hasNext() ? source.next() : null;
+    }
+
+    private void stage(int partition, DataTuple tuple) throws QueryHeapException, IOException {
+        if (this.stageCount[partition] == this.stage[partition].length) {
+            this.flushStage(partition);
+        }
+        this.stage[partition][this.stageCount[partition]++] = tuple;
+    }
+
+    private void flushStage(int partition) throws QueryHeapException, IOException {
+        this.queryHeap.writeTupleSequencetoTemp(this.heapId, this.firstPartition + partition,
+                this.stage[partition], this.stageCount[partition]);
+        Arrays.fill(this.stage[partition], 0, this.stageCount[partition], null);
+        this.stageCount[partition] = 0;
+        this.written[partition] = true;
+    }
+
+    private void init(int g, DataTuple tuple) {
+        this.counts[g] = 1;
+        for (int i = 0; i < this.accumulators.length; i++) {
+            DataField field = tuple.getField(this.aggColumnIndices[i]);
+            switch (this.accumulators[i]) {
+                case LONG_SUM:
+                case LONG_MIN:
+                case LONG_MAX:
+                    this.longValues[i][g] = ((ArithmeticType<?>) field).asLong();
+                    break;
+                case FLOAT_SUM:
+                    this.floatValues[i][g] = ((FloatField) field).getValue();
+                    break;
+                case DOUBLE_SUM:
+                    this.doubleValues[i][g] = ((ArithmeticType<?>) field).asDouble();
+                    break;
+                case FIELD_MIN:
+                case FIELD_MAX:
+                    this.fieldValues[i][g] = field;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void update(int g, DataTuple tuple) {
+        this.counts[g]++;
+        for (int i = 0; i < this.accumulators.length; i++) {
+            DataField field = tuple.getField(this.aggColumnIndices[i]);
+            switch (this.accumulators[i]) {
+                case LONG_SUM:
+                    this.longValues[i][g] += ((ArithmeticType<?>) field).asLong();
+                    break;
+                case FLOAT_SUM:
+                    this.floatValues[i][g] += ((FloatField) field).getValue();
+                    break;
+                case DOUBLE_SUM:
+                    this.doubleValues[i][g] += ((ArithmeticType<?>) field).asDouble();
+                    break;
+                case LONG_MIN:
+                    this.longValues[i][g] = Math.min(this.longValues[i][g], ((ArithmeticType<?>) field).asLong());
+                    break;
+                case LONG_MAX:
+                    this.longValues[i][g] = Math.max(this.longValues[i][g], ((ArithmeticType<?>) field).asLong());
+                    break;
+                case FIELD_MIN:
+                    if (this.fieldValues[i][g].compareTo(field) > 0) {
+                        this.fieldValues[i][g] = field;
+                    }
+                    break;
+                case FIELD_MAX:
+                    if (this.fieldValues[i][g].compareTo(field) < 0) {
+                        this.fieldValues[i][g] = field;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public DataTuple next() throws QueryExecutionException {
+
+        if (!opened) {
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        try {
+            while (this.emitPosition >= this.numGroups) {
+                if (this.emptyGroup) {
+                    this.emptyGroup = false;
+                    return this.emptyGroupTuple();
+                }
+                int[] partition = this.pendingPartitions.poll();
+                if (partition == null) {
+                    return null;
+                }
+                this.level = partition[1];
+                this.aggregatePass(this.queryHeap.getExternalPartition(this.heapId, partition[0]));
+            }
+        } catch (QueryHeapException | IOException e) {
+            throw new QueryExecutionException(e);
+        }
+
+        int g = this.emitPosition++;
+        DataTuple groupTuple = this.table[g];
+        DataField[] fields = new DataField[this.groupColumnOutputPositions.length];
+        for (int i = 0; i < fields.length; i++) {
+            int groupIndex = this.groupColumnOutputPositions[i];
+            if (groupIndex != -1) {
+                fields[i] = groupTuple.getField(this.groupColumnIndices[groupIndex]);
+            } else {
+                int aggIndex = this.aggregateColumnOutputPosition[i];
+                if (aggIndex == -1) {
+                    throw new QueryExecutionException("At each index of Column Maps only one map has to have -1");
+                }
+                fields[i] = this.finish(aggIndex, g);
+            }
+        }
+        return new DataTuple(fields);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DataField finish(int i, int g) {
+        DataField result;
+        switch (this.accumulators[i]) {
+            case COUNT:
+                return new IntField(this.counts[g]);
+            case LONG_MIN:
+            case LONG_MAX:
+                return integerField(this.inputSchema[this.aggColumnIndices[i]].getBasicType(), this.longValues[i][g]);
+            case FIELD_MIN:
+            case FIELD_MAX:
+                return this.fieldValues[i][g];
+            case LONG_SUM:
+                result = arithmeticField(this.aggColumnTypes[i].getBasicType(), this.longValues[i][g]);
+                break;
+            case FLOAT_SUM:
+                result = arithmeticField(this.aggColumnTypes[i].getBasicType(), this.floatValues[i][g]);
+                break;
+            default:
+                result = arithmeticField(this.aggColumnTypes[i].getBasicType(), this.doubleValues[i][g]);
+        }
+        if (this.aggregateFunctions[i] == OutputColumn.AggregationType.AVG) {
+            ((ArithmeticType<DataField>) result).divideBy(this.counts[g]);
+        }
+        return result;
+    }
+
+    private DataTuple emptyGroupTuple() {
+        DataField[] fields = new DataField[this.aggregateColumnOutputPosition.length];
+        for (int i = 0; i < fields.length; i++) {
+            int aggIndex = this.aggregateColumnOutputPosition[i];
+            if (this.aggregateFunctions[aggIndex] == OutputColumn.AggregationType.COUNT) {
+                fields[i] = new IntField(0);
+            } else if (this.aggregateFunctions[aggIndex] == OutputColumn.AggregationType.SUM) {
+                fields[i] = (DataField) this.aggColumnTypes[aggIndex].createArithmeticZero();
+            } else {
+                fields[i] = this.aggColumnTypes[aggIndex].getNullValue();
+            }
+        }
+        return new DataTuple(fields);
+    }
+
+    @Override
+    public void close() throws QueryExecutionException {
+        if (this.child != null) {
+            this.child.close();
+        }
+        this.releaseHeap();
+        this.table = null;
+        this.hashes = null;
+        this.next = null;
+        this.buckets = null;
+        this.counts = null;
+        this.longValues = null;
+        this.floatValues = null;
+        this.doubleValues = null;
+        this.fieldValues = null;
+        this.stage = null;
+        this.pendingPartitions = null;
+        this.numGroups = 0;
+        this.emitPosition = 0;
+        this.opened = false;
+    }
+
+    private void releaseHeap() {
+        if (this.heapReserved) {
+            this.queryHeap.releaseSortHeap(this.heapId);
+            this.heapReserved = false;
+        }
+    }
+
+    private boolean keysEqual(DataTuple groupTuple, DataTuple tuple) {
+        for (int i = 0; i < this.groupColumnIndices.length; i++) {
+            int column = this.groupColumnIndices[i];
+            if (groupTuple.getField(column).compareTo(tuple.getField(column)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps the upper bits of the hash to a partition, the bucket is taken from the lower bits. Every
+     * level of re-partitioning mixes the hash again with its own seed, so that the groups of an
+     * overflowing partition are spread differently on every level, however deep it goes.
+     */
+    private int partitionOf(int h) {
+        if (this.level > 0) {
+            h ^= this.level * 0x85EBCA6B;
+            h ^= h >>> 16;
+            h *= 0xC2B2AE35;
+            h ^= h >>> 13;
+        }
+        return ((h >>> 16) * NUM_PARTITIONS) >>> 16;
+    }
+
+    private static int hash(DataTuple tuple, int[] columns) {
+        int h = 1;
+        for (int i = 0; i < columns.length; i++) {
+            h = 31 * h + tuple.getField(columns[i]).hashCode();
+        }
+        // spread the bits, field hashes of numbers are often the plain values
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+
+    private static DataField integerField(BasicType type, long value) {
+        switch (type) {
+            case SMALL_INT:
+                return new SmallIntField((short) value);
+            case INT:
+                return new IntField((int) value);
+            default:
+                return new BigIntField(value);
+        }
+    }
+
+    private static DataField arithmeticField(BasicType type, long value) {
+        switch (type) {
+            case SMALL_INT:
+            case INT:
+            case BIG_INT:
+                return integerField(type, value);
+            default:
+                return arithmeticField(type, (double) value);
+        }
+    }
+
+    private static DataField arithmeticField(BasicType type, double value) {
+        switch (type) {
+            case SMALL_INT:
+            case INT:
+            case BIG_INT:
+                return integerField(type, (long) value);
+            case FLOAT:
+                return new FloatField((float) value);
+            default:
+                return new DoubleField(value);
+        }
+    }
+
+    private static int tableSizeFor(int numGroups) {
+        int size = Integer.highestOneBit(Math.max(16, numGroups) - 1) << 1;
+        return size > (1 << 30) ? (1 << 30) : size;
+    }
+}
@@ -0,0 +1,484 @@
+package de.tuberlin.dima.minidb.qexec;
+
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.qexec.heap.ExternalTupleSequenceIterator;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeap;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeapException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Hybrid hash join. The build input is read into a chained hash table in the memory granted by the
+ * query heap. If it does not fit, both inputs are split into partitions by the hash of their join
+ * columns. Partition 0 stays in memory as long as it fits, the others are written to the temp space
+ * of the query heap and joined one after the other once the probe input is exhausted. A spilled build
+ * partition that still exceeds the grant is joined in grant-sized chunks, each against a new pass over
+ * its probe partition. With a Bloom filter, the keys of all build tuples are added to it before the
+ * probe input is opened, so that a scan producing the probe input can drop tuples without a partner.
+ */
+public class HashJoinOperatorClass implements HashJoinOperator, BatchOperator {
+
+    private static final int MAX_PARTITIONS = 32;
+    private static final int MIN_STAGE_TUPLES = 16;
+    // hashes[] and next[] take four bytes per tuple each, buckets[] at most eight
+    private static final int INDEX_BYTES_PER_TUPLE = 16;
+
+    private PhysicalPlanOperator buildChild;
+    private PhysicalPlanOperator probeChild;
+    private QueryHeap queryHeap;
+    private DataType[] buildSchema;
+    private DataType[] probeSchema;
+    private int estimatedBuildCardinality;
+    private int[] buildJoinColumns;
+    private int[] probeJoinColumns;
+    private int[] columnMapBuildTuple;
+    private int[] columnMapProbeTuple;
+    private BloomFilter buildKeyFilter;
+
+    private int buildHeapId;
+    private int probeHeapId;
+    private boolean buildHeapReserved;
+    private boolean probeHeapReserved;
+
+    // the hash table over table[0..numTuples), chained through next[]
+    private DataTuple[] table;
+    private int[] hashes;
+    private int[] next;
+    private int[] buckets;
+    private int capacity;
+    private int numTuples;
+
+    // partitioning state, numPartitions is zero as long as the build input fits
+    private int numPartitions;
+    private int residentCapacity;
+    private boolean[] spilled;
+    private DataTuple[][] stage;
+    private int[] stageCount;
+
+    private boolean probingSpilled;
+    private int currentPartition;
+    private ExternalTupleSequenceIterator buildPartition;
+    private ExternalTupleSequenceIterator probePartition;
+
+    private DataTuple probeTuple;
+    private int probeHash;
+    private int matchPosition;
+    private DataTuple matchedBuildTuple;
+    private boolean opened;
+
+    public HashJoinOperatorClass(PhysicalPlanOperator buildChild, PhysicalPlanOperator probeChild, QueryHeap queryHeap,
+            DataType[] buildSchema, DataType[] probeSchema, int estimatedBuildCardinality, int[] buildJoinColumns,
+            int[] probeJoinColumns, int[] columnMapBuildTuple, int[] columnMapProbeTuple) {
+        this(buildChild, probeChild, queryHeap, buildSchema, probeSchema, estimatedBuildCardinality, buildJoinColumns,
+                probeJoinColumns, columnMapBuildTuple, columnMapProbeTuple, null);
+    }
+
+    public HashJoinOperatorClass(PhysicalPlanOperator buildChild, PhysicalPlanOperator probeChild, QueryHeap queryHeap,
+            DataType[] buildSchema, DataType[] probeSchema, int estimatedBuildCardinality, int[] buildJoinColumns,
+            int[] probeJoinColumns, int[] columnMapBuildTuple, int[] columnMapProbeTuple, BloomFilter buildKeyFilter) {
+        this.buildChild = buildChild;
+        this.probeChild = probeChild;
+        this.queryHeap = queryHeap;
+        this.buildSchema = buildSchema;
+        this.probeSchema = probeSchema;
+        this.estimatedBuildCardinality = estimatedBuildCardinality;
+        this.buildJoinColumns = buildJoinColumns;
+        this.probeJoinColumns = probeJoinColumns;
+        this.columnMapBuildTuple = columnMapBuildTuple;
+        this.columnMapProbeTuple = columnMapProbeTuple;
+        this.buildKeyFilter = buildKeyFilter;
+    }
+
+    @Override
+    public void open(DataTuple correlatedTuple) throws QueryExecutionException {
+        if (this.buildJoinColumns.length != this.probeJoinColumns.length) {
+            throw new QueryExecutionException("Join column arrays must be of equal length");
+        }
+        // a nested-loop join re-opens its inner side without closing it
+        this.releaseHeaps();
+        this.buildChild.open(correlatedTuple);
+        if (this.buildKeyFilter != null) {
+            this.buildKeyFilter.reset(this.estimatedBuildCardinality);
+        }
+        try {
+            this.buildHeapId = this.queryHeap.reserveSortHeap(this.buildSchema, this.estimatedBuildCardinality);
+            this.buildHeapReserved = true;
+            this.table = this.queryHeap.getSortArray(this.buildHeapId);
+            this.capacity = indexedCapacity(this.queryHeap.getMaximalTuplesForInternalSort(this.buildHeapId),
+                    QueryHeap.getTupleBytes(this.buildSchema));
+            this.hashes = new int[this.capacity];
+            this.next = new int[this.capacity];
+            this.buckets = new int[tableSizeFor(this.capacity)];
+            this.numTuples = 0;
+            this.numPartitions = 0;
+            this.probingSpilled = false;
+            this.probeTuple = null;
+            this.matchPosition = -1;
+
+            this.build();
+        } catch (QueryHeapException | IOException e) {
+            throw new QueryExecutionException(e);
+        }
+        // the probe side is opened only now, when the filter holds all build keys
+        if (this.buildKeyFilter != null) {
+            this.buildKeyFilter.seal();
+        }
+        this.probeChild.open(correlatedTuple);
+        this.opened = true;
+    }
+
+    private void build() throws QueryExecutionException, QueryHeapException, IOException {
+        DataTuple tuple;
+        while ((tuple = this.buildChild.next()) != null) {
+            if (hasNullKey(tuple, this.buildJoinColumns)) {
+                continue;
+            }
+            int key = BloomFilter.keyHash(tuple, this.buildJoinColumns);
+            if (this.buildKeyFilter != null) {
+                this.buildKeyFilter.add(key);
+            }
+            int h = spread(key);
+            if (this.numPartitions == 0) {
+                if (this.numTuples < this.capacity) {
+                    this.add(tuple, h);
+                    continue;
+                }
+                this.startPartitioning();
+            }
+            int p = this.partitionOf(h);
+            if (!this.spilled[p]) {
+                if (this.numTuples < this.residentCapacity) {
+                    this.add(tuple, h);
+                    continue;
+                }
+                this.spillResidentPartition();
+            }
+            this.stage(this.buildHeapId, p, tuple);
+        }
+        if (this.numPartitions > 0) {
+            this.flushStages(this.buildHeapId);
+        }
+        this.index();
+    }
+
+    private void add(DataTuple tuple, int h) {
+        this.table[this.numTuples] = tuple;
+        this.hashes[this.numTuples] = h;
+        this.numTuples++;
+    }
+
+    /**
+     * Splits the tuples in memory into partitions. Partition 0 stays, the others go to their stages.
+     */
+    private void startPartitioning() throws QueryHeapException, IOException {
+        long expected = Math.max((long) this.estimatedBuildCardinality, 2L * this.capacity);
+        this.numPartitions = (int) Math.min(MAX_PARTITIONS, Math.max(2, expected / this.capacity + 1));
+        int stageCapacity = Math.max(MIN_STAGE_TUPLES, this.capacity / (4 * (this.numPartitions - 1)));
+        this.residentCapacity = Math.max(0, this.capacity - (this.numPartitions - 1) * stageCapacity);
+        this.spilled = new boolean[this.numPartitions];
+        this.stage = new DataTuple[this.numPartitions][stageCapacity];
+        this.stageCount = new int[this.numPartitions];
+        Arrays.fill(this.spilled, 1, this.numPartitions, true);
+
+        int resident = 0;
+        for (int i = 0; i < this.numTuples; i++) {
+            int p = this.partitionOf(this.hashes[i]);
+            if (p == 0) {
+                this.table[resident] = this.table[i];
+                this.hashes[resident] = this.hashes[i];
+                resident++;
+            } else {
+                this.stage(this.buildHeapId, p, this.table[i]);
+            }
+        }
+        Arrays.fill(this.table, resident, this.numTuples, null);
+        this.numTuples = resident;
+        if (this.numTuples > this.residentCapacity) {
+            this.spillResidentPartition();
+        }
+    }
+
+    private void spillResidentPartition() throws QueryHeapException, IOException {
+        this.spilled[0] = true;
+        if (this.numTuples > 0) {
+            this.queryHeap.writeTupleSequencetoTemp(this.buildHeapId, 0, this.table, this.numTuples);
+            Arrays.fill(this.table, 0, this.numTuples, null);
+            this.numTuples = 0;
+        }
+    }
+
+    private void stage(int heapId, int partition, DataTuple tuple) throws QueryHeapException, IOException {
+        DataTuple[] tuples = this.stage[partition];
+        if (this.stageCount[partition] == tuples.length) {
+            this.queryHeap.writeTupleSequencetoTemp(heapId, partition, tuples, tuples.length);
+            this.stageCount[partition] = 0;
+        }
+        tuples[this.stageCount[partition]++] = tuple;
+    }
+
+    private void flushStages(int heapId) throws QueryHeapException, IOException {
+        for (int p = 0; p < this.numPartitions; p++) {
+            if (this.stageCount[p] > 0) {
+                this.queryHeap.writeTupleSequencetoTemp(heapId, p, this.stage[p], this.stageCount[p]);
+                Arrays.fill(this.stage[p], 0, this.stageCount[p], null);
+                this.stageCount[p] = 0;
+            }
+        }
+    }
+
+    /**
+     * Chains the tuples in memory into the buckets.
+     */
+    private void index() {
+        int mask = this.buckets.length - 1;
+        Arrays.fill(this.buckets, -1);
+        for (int i = 0; i < this.numTuples; i++) {
+            int b = this.hashes[i] & mask;
+            this.next[i] = this.buckets[b];
+            this.buckets[b] = i;
+        }
+    }
+
+    /**
+     * Fills the table with the next chunk of the current spilled build partition.
+     */
+    private void loadBuildChunk() throws QueryHeapException, IOException {
+        Arrays.fill(this.table, 0, this.numTuples, null);
+        this.numTuples = 0;
+        while (this.numTuples < this.capacity && this.buildPartition.hasNext()) {
+            DataTuple tuple = this.buildPartition.next();
+            this.add(tuple, hash(tuple, this.buildJoinColumns));
+        }
+        this.index();
+    }
+
+    /**
+     * Moves to the next chunk of spilled build tuples and re-opens the matching probe partition.
+     *
+     * @return False, if all spilled partitions are joined.
+     */
+    private boolean nextSpilledChunk() throws QueryHeapException, IOException {
+        while (true) {
+            if (this.buildPartition != null && this.buildPartition.hasNext()) {
+                this.loadBuildChunk();
+                this.probePartition = this.queryHeap.getExternalPartition(this.probeHeapId, this.currentPartition);
+                return true;
+            }
+            this.buildPartition = null;
+            do {
+                this.currentPartition++;
+            } while (this.currentPartition < this.numPartitions && !this.spilled[this.currentPartition]);
+            if (this.currentPartition >= this.numPartitions) {
+                return false;
+            }
+            // a partition without probe tuples produces nothing
+            if (this.probeHeapReserved) {
+                this.buildPartition = this.queryHeap.getExternalPartition(this.buildHeapId, this.currentPartition);
+            }
+        }
+    }
+
+    private DataTuple nextProbeTuple() throws QueryExecutionException, QueryHeapException, IOException {
+        while (!this.probingSpilled) {
+            DataTuple tuple = this.probeChild.next();
+            if (tuple == null) {
+                if (this.numPartitions > 0 && this.probeHeapReserved) {
+                    this.flushStages(this.probeHeapId);
+                }
+                this.probingSpilled = true;
+                this.currentPartition = -1;
+                this.buildPartition = null;
+                this.probePartition = null;
+                if (this.numPartitions > 0 && !this.nextSpilledChunk()) {
+                    this.probePartition = null;
+                }
+                break;
+            }
+            if (hasNullKey(tuple, this.probeJoinColumns)) {
+                continue;
+            }
+            int h = hash(tuple, this.probeJoinColumns);
+            if (this.numPartitions > 0) {
+                int p = this.partitionOf(h);
+                if (this.spilled[p]) {
+                    if (!this.probeHeapReserved) {
+                        this.probeHeapId = this.queryHeap.reserveSortHeap(this.probeSchema, 0);
+                        this.probeHeapReserved = true;
+                    }
+                    this.stage(this.probeHeapId, p, tuple);
+                    continue;
+                }
+            }
+            this.probeHash = h;
+            return tuple;
+        }
+
+        while (this.probePartition != null) {
+            if (this.probePartition.hasNext()) {
+                DataTuple tuple = this.probePartition.next();
+                this.probeHash = hash(tuple, this.probeJoinColumns);
+                return tuple;
+            }
+            if (!this.nextSpilledChunk()) {
+                this.probePartition = null;
+            }
+        }
+        return null;
+    }
+
+    // moves to the next matching pair, which is the matched build tuple and the current probe tuple
+    private boolean advance() throws QueryExecutionException {
+        try {
+            while (true) {
+                while (this.matchPosition != -1) {
+                    int i = this.matchPosition;
+                    this.matchPosition = this.next[i];
+                    if (this.hashes[i] == this.probeHash && keysEqual(this.table[i], this.probeTuple)) {
+                        this.matchedBuildTuple = this.table[i];
+                        return true;
+                    }
+                }
+                this.probeTuple = this.nextProbeTuple();
+                if (this.probeTuple == null) {
+                    return false;
+                }
+                this.matchPosition = this.buckets[this.probeHash & (this.buckets.length - 1)];
+            }
+        } catch (QueryHeapException | IOException e) {
+            throw new QueryExecutionException(e);
+        }
+    }
+
+    @Override
+    public DataTuple next() throws QueryExecutionException {
+
+        if (!opened) {
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        if (this.advance()) {
+            return this.projectJoinedTuples(this.matchedBuildTuple, this.probeTuple);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean nextBatch(TupleBatch batch) throws QueryExecutionException {
+
+        if (!opened) {
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        batch.reset(this.columnMapBuildTuple.length);
+        while (!batch.isFull() && this.advance()) {
+            Batches.appendJoined(batch, this.matchedBuildTuple, this.probeTuple,
+                    this.columnMapBuildTuple, this.columnMapProbeTuple);
+        }
+        return !batch.isEmpty();
+    }
+
+    @Override
+    public void close() throws QueryExecutionException {
+        if (this.buildChild != null) {
+            this.buildChild.close();
+            this.probeChild.close();
+        }
+        this.releaseHeaps();
+        this.table = null;
+        this.hashes = null;
+        this.next = null;
+        this.buckets = null;
+        this.stage = null;
+        this.probeTuple = null;
+        this.matchedBuildTuple = null;
+        this.buildKeyFilter = null;
+        this.opened = false;
+    }
+
+    private void releaseHeaps() {
+        this.buildPartition = null;
+        this.probePartition = null;
+        if (this.buildHeapReserved) {
+            this.queryHeap.releaseSortHeap(this.buildHeapId);
+            this.buildHeapReserved = false;
+        }
+        if (this.probeHeapReserved) {
+            this.queryHeap.releaseSortHeap(this.probeHeapId);
+            this.probeHeapReserved = false;
+        }
+    }
+
+    private DataTuple projectJoinedTuples(DataTuple buildTuple, DataTuple probeTuple) throws QueryExecutionException {
+
+        if (this.columnMapProbeTuple.length != this.columnMapBuildTuple.length) {
+            throw new QueryExecutionException("Column Maps must be of equal length");
+        }
+
+        DataField[] orderedFields = new DataField[this.columnMapBuildTuple.length];
+        for (int i = 0; i < this.columnMapBuildTuple.length; i++) {
+            if (this.columnMapBuildTuple[i] != -1) {
+                orderedFields[i] = buildTuple.getField(this.columnMapBuildTuple[i]);
+            } else {
+                if (this.columnMapProbeTuple[i] == -1) {
+                    throw new QueryExecutionException("At each index of Column Maps only one map has to have -1");
+                }
+                orderedFields[i] = probeTuple.getField(this.columnMapProbeTuple[i]);
+            }
+        }
+        return new DataTuple(orderedFields);
+    }
+
+    private boolean keysEqual(DataTuple buildTuple, DataTuple probeTuple) {
+        for (int i = 0; i < this.buildJoinColumns.length; i++) {
+            DataField val1 = buildTuple.getField(this.buildJoinColumns[i]);
+            DataField val2 = probeTuple.getField(this.probeJoinColumns[i]);
+            if (val1.compareTo(val2) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps the upper bits of the hash to a partition, the bucket is taken from the lower bits.
+     */
+    private int partitionOf(int h) {
+        return ((h >>> 16) * this.numPartitions) >>> 16;
+    }
+
+    private static boolean hasNullKey(DataTuple tuple, int[] columns) {
+        for (int i = 0; i < columns.length; i++) {
+            if (tuple.getField(columns[i]).isNULL()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int hash(DataTuple tuple, int[] columns) {
+        return spread(BloomFilter.keyHash(tuple, columns));
+    }
+
+    private static int spread(int h) {
+        // spread the bits, field hashes of numbers are often the plain values
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+
+    /**
+     * Gets the number of tuples that fit into a grant for the given number of tuples, once the
+     * index arrays over them are paid from the same grant.
+     */
+    private static int indexedCapacity(int grantedTuples, int tupleBytes) {
+        long bytes = (long) grantedTuples * tupleBytes;
+        return (int) Math.max(1, bytes / (tupleBytes + INDEX_BYTES_PER_TUPLE));
+    }
+
+    private static int tableSizeFor(int numTuples) {
+        int size = Integer.highestOneBit(Math.max(16, numTuples) - 1) << 1;
+        return size > (1 << 30) ? (1 << 30) : size;
+    }
+}
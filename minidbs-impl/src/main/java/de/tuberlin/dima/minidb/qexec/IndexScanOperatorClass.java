@@ -10,6 +10,10 @@ import de.tuberlin.dima.minidb.io.tables.TableResourceManager;
 
 import java.io.IOException;
 
+/**
+ * Scans the keys of a B+-tree within a range. With a filter over the join keys of the build side of
+ * a join, the keys that certainly find no join partner are skipped.
+ */
 public class IndexScanOperatorClass implements  IndexScanOperator{
 
     private BTreeIndex index;
@@ -17,17 +21,24 @@ public class IndexScanOperatorClass implements  IndexScanOperator{
     private DataField stopKey;
     private boolean startKeyIncluded;
     private boolean stopKeyIncluded;
+    private BloomFilter joinKeyFilter;
 
     private IndexResultIterator<DataField> resIndex;
     private boolean opened;
 
     public IndexScanOperatorClass(BTreeIndex index, DataField startKey, DataField stopKey, boolean startKeyIncluded, boolean stopKeyIncluded){
+        this(index, startKey, stopKey, startKeyIncluded, stopKeyIncluded, null);
+    }
+
+    public IndexScanOperatorClass(BTreeIndex index, DataField startKey, DataField stopKey, boolean startKeyIncluded, boolean stopKeyIncluded,
+            BloomFilter joinKeyFilter){
 
         this.index = index;
         this.startKey = startKey;
         this.stopKey = stopKey;
         this.startKeyIncluded = startKeyIncluded;
         this.stopKeyIncluded = stopKeyIncluded;
+        this.joinKeyFilter = joinKeyFilter;
         this.opened = false;
     }
     @Override
@@ -50,13 +61,17 @@ public class IndexScanOperatorClass implements  IndexScanOperator{
         }
 
         try {
-            if(this.resIndex.hasNext()){
+            while(this.resIndex.hasNext()){
+                DataField key = this.resIndex.next();
+                if(this.joinKeyFilter != null
+                        && (key.isNULL() || !this.joinKeyFilter.mightContain(BloomFilter.combine(BloomFilter.EMPTY_KEY_HASH, key.hashCode())))){
+                    continue;
+                }
                 DataField[] df = new DataField[1];
-                df[0] = this.resIndex.next();
+                df[0] = key;
                 return new DataTuple(df);
-            } else{
-                return  null;
             }
+            return null;
 
 
         } catch (IOException | PageFormatException e) {
@@ -70,6 +85,7 @@ public class IndexScanOperatorClass implements  IndexScanOperator{
         this.startKey = null;
         this.stopKey = null;
         this.resIndex = null;
+        this.joinKeyFilter = null;
 
     }
 }
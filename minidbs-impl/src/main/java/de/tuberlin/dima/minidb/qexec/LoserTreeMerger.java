@@ -0,0 +1,96 @@
+package de.tuberlin.dima.minidb.qexec;
+
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.qexec.heap.ExternalTupleSequenceIterator;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeapException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Merges sorted runs with a tournament tree of losers. Every inner node keeps the run that lost the
+ * comparison at that node, the overall winner is kept at the root. Replacing the winner's tuple only
+ * replays the matches on the path from its leaf to the root, so a tuple costs log(k) comparisons
+ * for k runs. Equal tuples are taken from the run with the lower index first.
+ */
+final class LoserTreeMerger implements ExternalTupleSequenceIterator {
+
+    private final ExternalTupleSequenceIterator[] runs;
+    private final Comparator<DataTuple> comparator;
+    // the current tuple of every run, null once the run is exhausted
+    private final DataTuple[] heads;
+    // tree[0] is the winner, tree[1..k) the losers of the inner nodes, -1 before the first match
+    private final int[] tree;
+
+    LoserTreeMerger(ExternalTupleSequenceIterator[] runs, Comparator<DataTuple> comparator)
+            throws QueryHeapException, IOException {
+        this.runs = runs;
+        this.comparator = comparator;
+        this.heads = new DataTuple[runs.length];
+        this.tree = new int[Math.max(1, runs.length)];
+        for (int i = 0; i < runs.length; i++) {
+            this.heads[i] = runs[i].hasNext() ? runs[i].next() : null;
+        }
+        Arrays.fill(this.tree, -1);
+        for (int i = runs.length - 1; i >= 0; i--) {
+            this.replay(i);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        int winner = this.tree[0];
+        return winner >= 0 && this.heads[winner] != null;
+    }
+
+    /**
+     * Takes the smallest tuple of all runs.
+     *
+     * @return The tuple, or null, if all runs are exhausted.
+     */
+    @Override
+    public DataTuple next() throws QueryHeapException, IOException {
+        int winner = this.tree[0];
+        if (winner < 0 || this.heads[winner] == null) {
+            return null;
+        }
+        DataTuple tuple = this.heads[winner];
+        ExternalTupleSequenceIterator run = this.runs[winner];
+        this.heads[winner] = run.hasNext() ? run.next() : null;
+        this.replay(winner);
+        return tuple;
+    }
+
+    private void replay(int run) {
+        int winner = run;
+        for (int node = (run + this.runs.length) >>> 1; node > 0; node >>>= 1) {
+            int loser = this.tree[node];
+            if (this.beats(loser, winner)) {
+                this.tree[node] = winner;
+                winner = loser;
+            }
+        }
+        this.tree[0] = winner;
+    }
+
+    private boolean beats(int a, int b) {
+        // the empty slots of the initial tree win, so that every run is played in
+        if (a < 0) {
+            return true;
+        }
+        if (b < 0) {
+            return false;
+        }
+        DataTuple ta = this.heads[a];
+        DataTuple tb = this.heads[b];
+        if (ta == null) {
+            return false;
+        }
+        if (tb == null) {
+            return true;
+        }
+        int c = this.comparator.compare(ta, tb);
+        return c < 0 || (c == 0 && a < b);
+    }
+}
@@ -2,38 +2,105 @@ package de.tuberlin.dima.minidb.qexec;
 
 import de.tuberlin.dima.minidb.core.DataField;
 import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.qexec.heap.ExternalTupleSequenceIterator;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeap;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeapException;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Merge join over two inputs sorted on their join columns. The right tuples with equal keys are
+ * collected in a buffer, which is replayed for every left tuple with that key. With a query heap,
+ * the buffer is the sort array of a heap reservation sized for the estimated number of right tuples
+ * per key, and a group of equal keys that overflows it is written to the temp space and read back
+ * from there on every replay.
+ */
+public class MergeJoinOperatorClass implements MergeJoinOperator, BatchOperator {
+
+    private static final int INITIAL_DUPLICATES = 16;
 
-public class MergeJoinOperatorClass implements MergeJoinOperator {
     private  PhysicalPlanOperator leftChild;
     private  PhysicalPlanOperator rightChild;
+    private  QueryHeap queryHeap;
+    private  DataType[] rightSchema;
+    private  int estimatedGroupSize;
     private  int[] leftJoinColumns;
     private  int[] rightJoinColumns;
     private  int[] columnMapLeftTuple;
     private  int[] columnMapRightTuple;
 
+    private int heapId;
+    private boolean heapReserved;
+
     private DataTuple lastLeftTuple;
     private DataTuple lastRightTuple;
-    private boolean foundEqual;
-    private ArrayList<DataTuple> equalTuples;
-    private int curremtEqualTuplesIndex;
+    private DataTuple matchedRightTuple;
+
+    // the right tuples with the key of groupKey, the first ones in a temp partition if it overflowed
+    private DataTuple groupKey;
+    private DataTuple[] equalTuples;
+    private int numEqualTuples;
+    private int capacity;
+    private int spilledPartition;
+    private int nextPartition;
+
+    // the replay of the group for the last left tuple
+    private ExternalTupleSequenceIterator spilledTuples;
+    private int currentEqualTuplesIndex;
     private boolean opened;
 
     public MergeJoinOperatorClass(PhysicalPlanOperator leftChild, PhysicalPlanOperator rightChild, int[] leftJoinColumns, int[] rightJoinColumns, int[] columnMapLeftTuple, int[] columnMapRightTuple) {
+        this(leftChild, rightChild, null, null, 0, leftJoinColumns, rightJoinColumns, columnMapLeftTuple, columnMapRightTuple);
+    }
+
+    public MergeJoinOperatorClass(PhysicalPlanOperator leftChild, PhysicalPlanOperator rightChild, QueryHeap queryHeap,
+            DataType[] rightSchema, int estimatedGroupSize, int[] leftJoinColumns, int[] rightJoinColumns,
+            int[] columnMapLeftTuple, int[] columnMapRightTuple) {
         this.leftChild = leftChild;
         this.rightChild = rightChild;
+        this.queryHeap = queryHeap;
+        this.rightSchema = rightSchema;
+        this.estimatedGroupSize = estimatedGroupSize;
         this.leftJoinColumns = leftJoinColumns;
         this.rightJoinColumns = rightJoinColumns;
         this.columnMapLeftTuple = columnMapLeftTuple;
         this.columnMapRightTuple = columnMapRightTuple;
-        this.equalTuples = new ArrayList<DataTuple>();
-        this.curremtEqualTuplesIndex = 0;
-        this.foundEqual = false;
     }
 
     @Override
     public void open(DataTuple correlatedTuple) throws QueryExecutionException {
+        if (this.leftJoinColumns.length != this.rightJoinColumns.length
+                || this.columnMapLeftTuple.length != this.columnMapRightTuple.length) {
+            throw new QueryExecutionException("Column Maps must be of equal length");
+        }
+        for (int i = 0; i < this.columnMapLeftTuple.length; i++) {
+            if (this.columnMapLeftTuple[i] == -1 && this.columnMapRightTuple[i] == -1) {
+                throw new QueryExecutionException("At each index of Column Maps only one map has to have -1");
+            }
+        }
+        // a nested-loop join re-opens its inner side without closing it
+        this.releaseHeap();
+        if (this.queryHeap != null) {
+            try {
+                this.heapId = this.queryHeap.reserveSortHeap(this.rightSchema, this.estimatedGroupSize);
+                this.heapReserved = true;
+                this.equalTuples = this.queryHeap.getSortArray(this.heapId);
+                this.capacity = this.queryHeap.getMaximalTuplesForInternalSort(this.heapId);
+            } catch (QueryHeapException e) {
+                throw new QueryExecutionException(e);
+            }
+        } else {
+            this.equalTuples = new DataTuple[INITIAL_DUPLICATES];
+            this.capacity = INITIAL_DUPLICATES;
+        }
+        this.numEqualTuples = 0;
+        this.spilledPartition = -1;
+        this.nextPartition = 0;
+        this.groupKey = null;
+        this.spilledTuples = null;
+
         this.leftChild.open(correlatedTuple);
         this.lastLeftTuple = this.leftChild.next();
         this.rightChild.open(correlatedTuple);
@@ -41,33 +108,17 @@ public class MergeJoinOperatorClass implements MergeJoinOperator {
         this.opened=true;
 
     }
-    private DataTuple projectJoinedTuples( DataTuple leftTuple, DataTuple rightTuple, int[] columnMapLeftTuple, int[] columnMapRightTuple) throws QueryExecutionException {
+    private DataTuple projectJoinedTuples( DataTuple leftTuple, DataTuple rightTuple, int[] columnMapLeftTuple, int[] columnMapRightTuple) {
 
         DataField[] orderedFields = new DataField[columnMapLeftTuple.length];
-
-        if(columnMapRightTuple.length != columnMapLeftTuple.length){
-            throw new QueryExecutionException("Column Maps must be of equal length");
-        }
-
         for(int i = 0; i < columnMapLeftTuple.length; i++){
-
-            if(columnMapLeftTuple[i] != -1){
-                orderedFields[i] = leftTuple.getField(columnMapLeftTuple[i]);
-            }
-            else{
-                if(columnMapRightTuple[i] == -1){
-                    throw new QueryExecutionException("At each index of Column Maps only one map has to have -1");
-                }
-                orderedFields[i] = rightTuple.getField(columnMapRightTuple[i]);
-            }
+            int leftIndex = columnMapLeftTuple[i];
+            orderedFields[i] = leftIndex != -1 ? leftTuple.getField(leftIndex) : rightTuple.getField(columnMapRightTuple[i]);
         }
         return new DataTuple(orderedFields);
     }
-    private int compareTuples(DataTuple leftTuple, DataTuple rightTuple, int[] leftJoinColumns, int[] rightJoinColumns) throws QueryExecutionException {
+    private int compareTuples(DataTuple leftTuple, DataTuple rightTuple, int[] leftJoinColumns, int[] rightJoinColumns) {
 
-        if(leftJoinColumns.length != rightJoinColumns.length){
-            throw new QueryExecutionException("Column Maps must be of equal length");
-        }
         int result;
         for(int i = 0; i < leftJoinColumns.length; i ++){
             DataField val1 =  leftTuple.getField(leftJoinColumns[i]);
@@ -82,55 +133,32 @@ public class MergeJoinOperatorClass implements MergeJoinOperator {
         return 0; // If all fields are equal
     }
 
-    @Override
-    public DataTuple next() throws QueryExecutionException {
-
-        if(!opened){
-            throw new QueryExecutionException("Operator is not yet opened");
-        }
+    // moves to the next matching pair, which is the last left tuple and the matched right tuple
+    private boolean advance() throws QueryExecutionException, QueryHeapException, IOException {
 
-
-        if(foundEqual){
-            if(this.curremtEqualTuplesIndex < this.equalTuples.size()){
-                DataTuple resultTuple = projectJoinedTuples(this.lastLeftTuple, this.equalTuples.get(this.curremtEqualTuplesIndex),
-                        this.columnMapLeftTuple, this.columnMapRightTuple);
-                this.curremtEqualTuplesIndex++;
-                return resultTuple;
+        if(this.groupKey != null){
+            this.matchedRightTuple = this.nextEqualTuple();
+            if(this.matchedRightTuple != null){
+                return true;
             }
-            else{
-                this.curremtEqualTuplesIndex = 0;
-                this.lastLeftTuple = this.leftChild.next();
-                int compareNewResult = -1;
-                if(this.lastLeftTuple != null){
-                    compareNewResult = this.compareTuples(this.lastLeftTuple , this.equalTuples.get(0), this.leftJoinColumns, this.rightJoinColumns);
-                }
-                if(compareNewResult == 0){
-                    DataTuple resultTuple = projectJoinedTuples(this.lastLeftTuple, this.equalTuples.get(this.curremtEqualTuplesIndex),
-                            this.columnMapLeftTuple, this.columnMapRightTuple);
-                    this.curremtEqualTuplesIndex++;
-                    return resultTuple;
-                }
-                else{
-                    this.foundEqual = false;
-                    this.equalTuples.clear();;
-                    this.curremtEqualTuplesIndex = 0;
-                }
+            this.lastLeftTuple = this.leftChild.next();
+            if(this.lastLeftTuple != null
+                    && this.compareTuples(this.lastLeftTuple, this.groupKey, this.leftJoinColumns, this.rightJoinColumns) == 0){
+                this.rewindEqualTuples();
+                this.matchedRightTuple = this.nextEqualTuple();
+                return true;
             }
-
+            this.clearEqualTuples();
         }
 
         while(this.lastLeftTuple != null && this.lastRightTuple != null){
 
-
-
             int compareResult = this.compareTuples(this.lastLeftTuple , this.lastRightTuple, this.leftJoinColumns, this.rightJoinColumns);
             if(compareResult == 0){
-                this.foundEqual = true;
-
-
+                this.groupKey = this.lastRightTuple;
                 while(compareResult == 0 ){
 
-                    this.equalTuples.add(this.lastRightTuple);
+                    this.addEqualTuple(this.lastRightTuple);
                     this.lastRightTuple = this.rightChild.next();
                     if(this.lastRightTuple == null){
                         break;
@@ -139,10 +167,9 @@ public class MergeJoinOperatorClass implements MergeJoinOperator {
 
                 }
 
-                DataTuple resultTuple = projectJoinedTuples(this.lastLeftTuple, this.equalTuples.get(this.curremtEqualTuplesIndex),
-                        this.columnMapLeftTuple, this.columnMapRightTuple);
-                this.curremtEqualTuplesIndex++;
-                return resultTuple;
+                this.rewindEqualTuples();
+                this.matchedRightTuple = this.nextEqualTuple();
+                return true;
             }
             else if(compareResult > 0){
                 this.lastRightTuple = this.rightChild.next();
@@ -154,17 +181,110 @@ public class MergeJoinOperatorClass implements MergeJoinOperator {
         }
 
 
+        return false;
+    }
+
+    private void addEqualTuple(DataTuple tuple) throws QueryHeapException, IOException {
+        if (this.numEqualTuples == this.capacity) {
+            if (this.queryHeap == null) {
+                this.capacity *= 2;
+                this.equalTuples = Arrays.copyOf(this.equalTuples, this.capacity);
+            } else {
+                // the group overflows its grant, so it continues in a temp partition
+                if (this.spilledPartition < 0) {
+                    this.spilledPartition = this.nextPartition++;
+                }
+                this.queryHeap.writeTupleSequencetoTemp(this.heapId, this.spilledPartition, this.equalTuples,
+                        this.numEqualTuples);
+                Arrays.fill(this.equalTuples, 0, this.numEqualTuples, null);
+                this.numEqualTuples = 0;
+            }
+        }
+        this.equalTuples[this.numEqualTuples++] = tuple;
+    }
+
+    private void rewindEqualTuples() throws QueryHeapException, IOException {
+        this.spilledTuples = this.spilledPartition < 0 ? null
+                : this.queryHeap.getExternalPartition(this.heapId, this.spilledPartition);
+        this.currentEqualTuplesIndex = 0;
+    }
+
+    // the spilled tuples of the group come first, they were added before the ones in memory
+    private DataTuple nextEqualTuple() throws QueryHeapException, IOException {
+        if (this.spilledTuples != null) {
+            if (this.spilledTuples.hasNext()) {
+                return this.spilledTuples.next();
+            }
+            this.spilledTuples = null;
+        }
+        return this.currentEqualTuplesIndex < this.numEqualTuples ? this.equalTuples[this.currentEqualTuplesIndex++] : null;
+    }
+
+    private void clearEqualTuples() {
+        Arrays.fill(this.equalTuples, 0, this.numEqualTuples, null);
+        this.numEqualTuples = 0;
+        this.currentEqualTuplesIndex = 0;
+        this.spilledPartition = -1;
+        this.spilledTuples = null;
+        this.groupKey = null;
+    }
+
+    @Override
+    public DataTuple next() throws QueryExecutionException {
+
+        if(!opened){
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        try {
+            if(this.advance()){
+                return projectJoinedTuples(this.lastLeftTuple, this.matchedRightTuple,
+                        this.columnMapLeftTuple, this.columnMapRightTuple);
+            }
+        } catch (QueryHeapException | IOException e) {
+            throw new QueryExecutionException(e);
+        }
         return null;
     }
 
+    @Override
+    public boolean nextBatch(TupleBatch batch) throws QueryExecutionException {
+
+        if(!opened){
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        batch.reset(this.columnMapLeftTuple.length);
+        try {
+            while(!batch.isFull() && this.advance()){
+                Batches.appendJoined(batch, this.lastLeftTuple, this.matchedRightTuple,
+                        this.columnMapLeftTuple, this.columnMapRightTuple);
+            }
+        } catch (QueryHeapException | IOException e) {
+            throw new QueryExecutionException(e);
+        }
+        return !batch.isEmpty();
+    }
+
+    private void releaseHeap() {
+        if (this.heapReserved) {
+            this.queryHeap.releaseSortHeap(this.heapId);
+            this.heapReserved = false;
+        }
+    }
+
     @Override
     public void close() throws QueryExecutionException {
+        this.releaseHeap();
         this.leftChild = null;
         this.rightChild = null;
         this.leftJoinColumns = null;
         this.rightJoinColumns = null;
         this.columnMapLeftTuple = null;
         this.columnMapRightTuple = null;
+        this.equalTuples = null;
+        this.groupKey = null;
+        this.spilledTuples = null;
 
     }
 }
@@ -4,7 +4,7 @@ import de.tuberlin.dima.minidb.core.DataField;
 import de.tuberlin.dima.minidb.core.DataTuple;
 import de.tuberlin.dima.minidb.qexec.predicate.JoinPredicate;
 
-public class NestedLoopJoinOperatorClass implements  NestedLoopJoinOperator{
+public class NestedLoopJoinOperatorClass implements  NestedLoopJoinOperator, BatchOperator{
 
     private PhysicalPlanOperator outerChild;
     private PhysicalPlanOperator innerChild;
@@ -13,6 +13,7 @@ public class NestedLoopJoinOperatorClass implements  NestedLoopJoinOperator{
     private int[] columnMapInnerTuple;
     private  boolean joinFinished;
     private DataTuple currentOuterTuple;
+    private DataTuple currentInnerTuple;
 
     boolean opened;
     public NestedLoopJoinOperatorClass (PhysicalPlanOperator outerChild, PhysicalPlanOperator innerChild, JoinPredicate joinPredicate,
@@ -62,12 +63,7 @@ public class NestedLoopJoinOperatorClass implements  NestedLoopJoinOperator{
         }
         return new DataTuple(orderedFields);
     }
-    @Override
-    public DataTuple next() throws QueryExecutionException {
-
-        if(!opened){
-            throw new QueryExecutionException("Operator is not yet opened");
-        }
+    private boolean advance() throws QueryExecutionException {
 
         while(!this.joinFinished){
 
@@ -76,8 +72,8 @@ public class NestedLoopJoinOperatorClass implements  NestedLoopJoinOperator{
 
                 if(this.joinPredicate == null ||
                         this.joinPredicate.evaluate(this.currentOuterTuple, nextInnerTuple)){
-                    return projectJoinedTuples(this.currentOuterTuple, nextInnerTuple,
-                            this.columnMapOuterTuple, this.columnMapInnerTuple);
+                    this.currentInnerTuple = nextInnerTuple;
+                    return true;
                 }
 
             }
@@ -91,11 +87,38 @@ public class NestedLoopJoinOperatorClass implements  NestedLoopJoinOperator{
                 }
             }
         }
+        return false;
+    }
 
+    @Override
+    public DataTuple next() throws QueryExecutionException {
 
+        if(!opened){
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        if(this.advance()){
+            return projectJoinedTuples(this.currentOuterTuple, this.currentInnerTuple,
+                    this.columnMapOuterTuple, this.columnMapInnerTuple);
+        }
         return null;
     }
 
+    @Override
+    public boolean nextBatch(TupleBatch batch) throws QueryExecutionException {
+
+        if(!opened){
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        batch.reset(this.columnMapOuterTuple.length);
+        while(!batch.isFull() && this.advance()){
+            Batches.appendJoined(batch, this.currentOuterTuple, this.currentInnerTuple,
+                    this.columnMapOuterTuple, this.columnMapInnerTuple);
+        }
+        return !batch.isEmpty();
+    }
+
     @Override
     public void close() throws QueryExecutionException {
 
@@ -0,0 +1,388 @@
+package de.tuberlin.dima.minidb.qexec;
+
+import de.tuberlin.dima.minidb.core.*;
+import de.tuberlin.dima.minidb.qexec.heap.ExternalTupleSequenceIterator;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Sort buffer that serializes the tuples into a binary buffer of the query heap. Every record starts
+ * with a normalized key of the sort columns whose bytes compare unsigned in the order of the tuples:
+ * numbers have their sign bit flipped, NULLs are encoded as the smallest value as in compareTo(),
+ * strings contribute a prefix of their characters, and descending columns are inverted. The records
+ * are sorted through their offsets by a radix sort over the key bytes. A key that cannot hold the
+ * whole order, because it ends with a string prefix or a type without an encoding, leaves ties that
+ * are resolved by the comparator on the decoded tuples.
+ * <p>
+ * The records grow from the start of the region, their offsets from its end downwards, with room
+ * for a second array of offsets that the radix sort uses as its target. The buffer thus needs no
+ * memory beyond the region, which is part of the query heap grant.
+ */
+final class NormalizedKeySortBuffer {
+
+    private static final int PREFIX_CHARS = 8;
+    // the bytes a record takes in the two offset arrays
+    private static final int OFFSET_BYTES = 8;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte[] buffer;
+    // the region of the buffer that holds the records
+    private final int start;
+    private final int limit;
+    private final DataType[] columnTypes;
+    private final int[] sortColumns;
+    private final boolean[] columnsAscending;
+    private final Comparator<DataTuple> comparator;
+    // the number of sort columns that are encoded into the key
+    private final int numKeyColumns;
+    private final int keyLength;
+    private final boolean exactKeys;
+    private final int fixedRecordBytes;
+
+    // offsets[i] is stored in the four bytes below offsetBase - 4 * i
+    private int offsetBase;
+    private int numRecords;
+    private int end;
+
+    NormalizedKeySortBuffer(byte[] buffer, int start, int limit, DataType[] columnTypes, int[] sortColumns,
+            boolean[] columnsAscending, Comparator<DataTuple> comparator) {
+        this.buffer = buffer;
+        this.start = start;
+        this.limit = limit;
+        this.end = start;
+        this.offsetBase = limit;
+        this.columnTypes = columnTypes;
+        this.sortColumns = sortColumns;
+        this.columnsAscending = columnsAscending;
+        this.comparator = comparator;
+
+        int length = 0;
+        int numColumns = 0;
+        boolean exact = true;
+        while (numColumns < sortColumns.length && exact) {
+            BasicType type = columnTypes[sortColumns[numColumns]].getBasicType();
+            int width = keyWidth(type);
+            if (width < 0) {
+                exact = false;
+                break;
+            }
+            length += width;
+            numColumns++;
+            exact = type != BasicType.CHAR && type != BasicType.VAR_CHAR;
+        }
+        this.numKeyColumns = numColumns;
+        this.keyLength = length;
+        this.exactKeys = exact;
+
+        int fixed = length;
+        for (DataType type : columnTypes) {
+            fixed += type.isArrayType() ? 4 : type.getNumberOfBytes();
+        }
+        this.fixedRecordBytes = fixed;
+    }
+
+    /**
+     * Serializes the tuple into the buffer.
+     *
+     * @return False, if the buffer has no space left for the tuple.
+     */
+    boolean add(DataTuple tuple) {
+        int size = this.fixedRecordBytes;
+        for (int i = 0; i < this.columnTypes.length; i++) {
+            if (this.columnTypes[i].isArrayType()) {
+                DataField field = tuple.getField(i);
+                size += field.isNULL() ? 0 : field.getNumberOfBytes();
+            }
+        }
+        if (this.end + size > this.limit - (this.numRecords + 1) * OFFSET_BYTES) {
+            return false;
+        }
+        this.setOffset(this.offsetBase, this.numRecords++, this.end);
+
+        int pos = this.end;
+        for (int k = 0; k < this.numKeyColumns; k++) {
+            int keyStart = pos;
+            pos = this.encodeKey(tuple.getField(this.sortColumns[k]), pos);
+            if (!this.columnsAscending[k]) {
+                for (int i = keyStart; i < pos; i++) {
+                    this.buffer[i] = (byte) ~this.buffer[i];
+                }
+            }
+        }
+        for (int i = 0; i < this.columnTypes.length; i++) {
+            DataField field = tuple.getField(i);
+            if (this.columnTypes[i].isArrayType()) {
+                int length = field.isNULL() ? -1 : field.encodeBinary(this.buffer, pos + 4);
+                writeInt(this.buffer, pos, length);
+                pos += 4 + Math.max(0, length);
+            } else {
+                field.encodeBinary(this.buffer, pos);
+                pos += this.columnTypes[i].getNumberOfBytes();
+            }
+        }
+        this.end = pos;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return this.numRecords == 0;
+    }
+
+    int size() {
+        return this.numRecords;
+    }
+
+    void reset() {
+        this.numRecords = 0;
+        this.end = this.start;
+        this.offsetBase = this.limit;
+    }
+
+    void sort() {
+        this.offsetBase = this.radixSort();
+        if (!this.exactKeys) {
+            this.sortTies();
+        }
+    }
+
+    /**
+     * Decodes the tuple at the given position of the sorted order.
+     */
+    DataTuple getTuple(int position) {
+        int pos = this.offset(this.offsetBase, position) + this.keyLength;
+        DataField[] fields = new DataField[this.columnTypes.length];
+        for (int i = 0; i < fields.length; i++) {
+            DataType type = this.columnTypes[i];
+            if (type.isArrayType()) {
+                int length = readInt(this.buffer, pos);
+                pos += 4;
+                if (length < 0) {
+                    fields[i] = type.getNullValue();
+                } else {
+                    fields[i] = length == 0 ? type.getFromBinary(EMPTY, 0, 0) : type.getFromBinary(this.buffer, pos, length);
+                    pos += length;
+                }
+            } else {
+                fields[i] = type.getFromBinary(this.buffer, pos);
+                pos += type.getNumberOfBytes();
+            }
+        }
+        return new DataTuple(fields);
+    }
+
+    /**
+     * Gets the sorted tuples as a run, decoding them as they are read.
+     */
+    ExternalTupleSequenceIterator sortedRun() {
+        return new ExternalTupleSequenceIterator() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return this.position < NormalizedKeySortBuffer.this.numRecords;
+            }
+
+            @Override
+            public DataTuple next() {
+                return NormalizedKeySortBuffer.this.getTuple(this.position++);
+            }
+        };
+    }
+
+    /**
+     * Sorts the record offsets by one stable counting pass per key byte, from the last to the first.
+     * Passes over bytes that are equal in all records are skipped.
+     *
+     * @return The base of the offset array that holds the sorted order.
+     */
+    private int radixSort() {
+        int n = this.numRecords;
+        int source = this.limit;
+        int target = this.limit - n * (OFFSET_BYTES / 2);
+        int[] counts = new int[257];
+        for (int b = this.keyLength - 1; b >= 0; b--) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[(this.buffer[this.offset(source, i) + b] & 0xff) + 1]++;
+            }
+            if (n == 0 || counts[(this.buffer[this.offset(source, 0) + b] & 0xff) + 1] == n) {
+                continue;
+            }
+            for (int i = 1; i < 257; i++) {
+                counts[i] += counts[i - 1];
+            }
+            for (int i = 0; i < n; i++) {
+                int offset = this.offset(source, i);
+                this.setOffset(target, counts[this.buffer[offset + b] & 0xff]++, offset);
+            }
+            int swap = source;
+            source = target;
+            target = swap;
+        }
+        return source;
+    }
+
+    /**
+     * Orders the records with equal keys by the comparator.
+     */
+    private void sortTies() {
+        int base = this.offsetBase;
+        int n = this.numRecords;
+        int first = 0;
+        while (first < n) {
+            int stop = first + 1;
+            while (stop < n && this.keysEqual(this.offset(base, first), this.offset(base, stop))) {
+                stop++;
+            }
+            if (stop - first > 1) {
+                Integer[] positions = new Integer[stop - first];
+                DataTuple[] tuples = new DataTuple[stop - first];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = i;
+                    tuples[i] = this.getTuple(first + i);
+                }
+                Arrays.sort(positions, (x, y) -> this.comparator.compare(tuples[x], tuples[y]));
+                int[] sorted = new int[positions.length];
+                for (int i = 0; i < positions.length; i++) {
+                    sorted[i] = this.offset(base, first + positions[i]);
+                }
+                for (int i = 0; i < sorted.length; i++) {
+                    this.setOffset(base, first + i, sorted[i]);
+                }
+            }
+            first = stop;
+        }
+    }
+
+    private int offset(int base, int index) {
+        return readInt(this.buffer, base - 4 * (index + 1));
+    }
+
+    private void setOffset(int base, int index, int offset) {
+        writeInt(this.buffer, base - 4 * (index + 1), offset);
+    }
+
+    private boolean keysEqual(int offset1, int offset2) {
+        for (int i = 0; i < this.keyLength; i++) {
+            if (this.buffer[offset1 + i] != this.buffer[offset2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int encodeKey(DataField field, int pos) {
+        byte[] b = this.buffer;
+        switch (field.getBasicType()) {
+            case SMALL_INT: {
+                int v = ((SmallIntField) field).getValue() ^ 0x8000;
+                b[pos] = (byte) (v >> 8);
+                b[pos + 1] = (byte) v;
+                return pos + 2;
+            }
+            case INT:
+                writeIntKey(b, pos, ((IntField) field).getValue() ^ 0x80000000);
+                return pos + 4;
+            case BIG_INT:
+                writeLongKey(b, pos, ((BigIntField) field).getValue() ^ Long.MIN_VALUE);
+                return pos + 8;
+            case FLOAT: {
+                if (field.isNULL()) {
+                    Arrays.fill(b, pos, pos + 5, (byte) 0);
+                    return pos + 5;
+                }
+                // -0.0 equals 0.0 in compareTo()
+                int bits = Float.floatToIntBits(((FloatField) field).getValue() + 0.0f);
+                b[pos] = 1;
+                writeIntKey(b, pos + 1, bits < 0 ? ~bits : bits ^ 0x80000000);
+                return pos + 5;
+            }
+            case DOUBLE: {
+                if (field.isNULL()) {
+                    Arrays.fill(b, pos, pos + 9, (byte) 0);
+                    return pos + 9;
+                }
+                long bits = Double.doubleToLongBits(((DoubleField) field).getValue() + 0.0);
+                b[pos] = 1;
+                writeLongKey(b, pos + 1, bits < 0 ? ~bits : bits ^ Long.MIN_VALUE);
+                return pos + 9;
+            }
+            case DATE: {
+                if (field.isNULL()) {
+                    Arrays.fill(b, pos, pos + 5, (byte) 0);
+                    return pos + 5;
+                }
+                DateField date = (DateField) field;
+                b[pos] = 1;
+                writeIntKey(b, pos + 1, ((date.getYear() << 16) | (date.getMonth() << 8) | date.getDay()) ^ 0x80000000);
+                return pos + 5;
+            }
+            default: {
+                // CHAR and VAR_CHAR, zero padding sorts shorter strings first
+                int width = 1 + 2 * PREFIX_CHARS;
+                Arrays.fill(b, pos, pos + width, (byte) 0);
+                if (field.isNULL()) {
+                    return pos + width;
+                }
+                String value = field.getBasicType() == BasicType.CHAR
+                        ? ((CharField) field).getValue() : ((VarcharField) field).getValue();
+                b[pos] = 1;
+                int n = Math.min(PREFIX_CHARS, value.length());
+                for (int i = 0; i < n; i++) {
+                    char c = value.charAt(i);
+                    b[pos + 1 + 2 * i] = (byte) (c >> 8);
+                    b[pos + 2 + 2 * i] = (byte) c;
+                }
+                return pos + width;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of key bytes for a column of the type, or -1 if the type has no encoding.
+     */
+    private static int keyWidth(BasicType type) {
+        switch (type) {
+            case SMALL_INT:
+                return 2;
+            case INT:
+                return 4;
+            case BIG_INT:
+                return 8;
+            case FLOAT:
+            case DATE:
+                return 5;
+            case DOUBLE:
+                return 9;
+            case CHAR:
+            case VAR_CHAR:
+                return 1 + 2 * PREFIX_CHARS;
+            default:
+                return -1;
+        }
+    }
+
+    private static void writeIntKey(byte[] b, int pos, int v) {
+        b[pos] = (byte) (v >>> 24);
+        b[pos + 1] = (byte) (v >>> 16);
+        b[pos + 2] = (byte) (v >>> 8);
+        b[pos + 3] = (byte) v;
+    }
+
+    private static void writeLongKey(byte[] b, int pos, long v) {
+        writeIntKey(b, pos, (int) (v >>> 32));
+        writeIntKey(b, pos + 4, (int) v);
+    }
+
+    private static void writeInt(byte[] b, int pos, int v) {
+        b[pos] = (byte) v;
+        b[pos + 1] = (byte) (v >>> 8);
+        b[pos + 2] = (byte) (v >>> 16);
+        b[pos + 3] = (byte) (v >>> 24);
+    }
+
+    private static int readInt(byte[] b, int pos) {
+        return (b[pos] & 0xff) | (b[pos + 1] & 0xff) << 8 | (b[pos + 2] & 0xff) << 16 | (b[pos + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,289 @@
+package de.tuberlin.dima.minidb.qexec;
+
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.io.cache.CacheableData;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
+import de.tuberlin.dima.minidb.io.tables.TablePageClass;
+import de.tuberlin.dima.minidb.io.tables.TableResourceManager;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Table scan that reads the pages on several workers. The page range of the table is handed out
+ * in morsels of consecutive pages, which each worker claims one after the other, so that fast
+ * workers take over the share of slow ones. A worker evaluates the predicates and the join key
+ * filter on the bytes of a page and decodes the qualifying records into a batch. Full batches are
+ * passed through an exchange queue to the consumer, which returns them for refilling once it has
+ * read them, so the number of batches in flight is bounded. The tuples come in no particular order.
+ */
+public class ParallelTableScanOperatorClass implements TableScanOperator, BatchOperator {
+
+    private static final int MORSEL_PAGES = 16;
+    private static final int BATCHES_PER_WORKER = 2;
+    private static final LowLevelPredicate[] NO_PREDICATES = new LowLevelPredicate[0];
+
+    // the scan workers of all queries, they only live while there are morsels to scan
+    private static final ExecutorService WORKER_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ScanWorker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private BufferPoolManager bufferPool;
+    private TableResourceManager tableManager;
+    private int resourceId;
+    private int[] producedColumnIndexes;
+    private LowLevelPredicate[] predicate;
+    private BloomFilter joinKeyFilter;
+    private int[] filterColumns;
+    private int parallelism;
+
+    private int firstPage;
+    private int lastPage;
+    private AtomicInteger nextMorsel;
+    private AtomicInteger runningWorkers;
+    private Future<?>[] workers;
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+    // told about every worker thread when it starts scanning, may be null
+    private volatile Consumer<Thread> workerListener;
+
+    // filled batches on their way to the consumer, and the batches the workers may fill
+    private BlockingQueue<TupleBatch> exchange;
+    private BlockingQueue<TupleBatch> freeBatches;
+    private TupleBatch current;
+    private int currentRow;
+    private boolean exhausted;
+    private boolean opened;
+
+    public ParallelTableScanOperatorClass(BufferPoolManager bufferPool, TableResourceManager tableManager, int resourceId,
+            int[] producedColumnIndexes, LowLevelPredicate[] predicate, BloomFilter joinKeyFilter, int[] filterColumns,
+            int parallelism) {
+        this.bufferPool = bufferPool;
+        this.tableManager = tableManager;
+        this.resourceId = resourceId;
+        this.producedColumnIndexes = producedColumnIndexes;
+        this.predicate = predicate != null ? predicate : NO_PREDICATES;
+        this.joinKeyFilter = joinKeyFilter;
+        this.filterColumns = filterColumns;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @Override
+    public void open(DataTuple correlatedTuple) throws QueryExecutionException {
+        // a nested-loop join re-opens its inner scan without closing it
+        this.stopWorkers();
+
+        this.firstPage = this.tableManager.getFirstDataPageNumber();
+        this.lastPage = this.tableManager.getLastDataPageNumber();
+        int numMorsels = Math.max(0, (this.lastPage - this.firstPage + MORSEL_PAGES) / MORSEL_PAGES);
+        int numWorkers = Math.max(1, Math.min(this.parallelism, numMorsels));
+
+        int numBatches = BATCHES_PER_WORKER * numWorkers + 1;
+        this.exchange = new ArrayBlockingQueue<>(numBatches + numWorkers);
+        this.freeBatches = new ArrayBlockingQueue<>(numBatches + numWorkers);
+        for (int i = 0; i < numBatches; i++) {
+            this.freeBatches.add(new TupleBatch());
+        }
+        this.nextMorsel = new AtomicInteger();
+        this.runningWorkers = new AtomicInteger(numWorkers);
+        this.cancelled = false;
+        this.failure = null;
+        this.current = null;
+        this.exhausted = false;
+
+        this.workers = new Future<?>[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            this.workers[i] = WORKER_POOL.submit(this::scanMorsels);
+        }
+        this.opened = true;
+    }
+
+    /**
+     * Sets a listener that every worker calls with its thread before it scans its first morsel.
+     *
+     * @param workerListener The listener, or null for none.
+     */
+    public void setWorkerListener(Consumer<Thread> workerListener) {
+        this.workerListener = workerListener;
+    }
+
+    private void scanMorsels() {
+        TupleBatch batch = null;
+        int[] selection = null;
+        try {
+            Consumer<Thread> listener = this.workerListener;
+            if (listener != null) {
+                listener.accept(Thread.currentThread());
+            }
+            while (!this.cancelled) {
+                int first = this.firstPage + this.nextMorsel.getAndIncrement() * MORSEL_PAGES;
+                if (first > this.lastPage) {
+                    break;
+                }
+                int last = Math.min(first + MORSEL_PAGES - 1, this.lastPage);
+                this.bufferPool.prefetchPages(this.resourceId, first, last);
+
+                for (int pageNumber = first; pageNumber <= last && !this.cancelled; pageNumber++) {
+                    CacheableData cd = this.bufferPool.getPageAndPin(this.resourceId, pageNumber);
+                    try {
+                        if (!(cd instanceof TablePageClass)) {
+                            throw new QueryExecutionException("Pages from Buferpool must be instances of Tablepage");
+                        }
+                        TablePageClass page = (TablePageClass) cd;
+                        int numRecords = page.getNumRecordsOnPage();
+                        if (selection == null || selection.length < numRecords) {
+                            selection = new int[numRecords];
+                        }
+                        int count = page.selectRecords(this.predicate, selection);
+                        if (this.joinKeyFilter != null && this.joinKeyFilter.isSealed() && count > 0) {
+                            count = page.filterRecords(this.joinKeyFilter, this.filterColumns, selection, count);
+                        }
+                        int from = 0;
+                        while (from < count && !this.cancelled) {
+                            if (batch == null) {
+                                batch = this.freeBatches.take();
+                                batch.reset(this.producedColumnIndexes.length);
+                            }
+                            from = page.readRecords(selection, from, count, this.producedColumnIndexes, batch);
+                            if (batch.isFull()) {
+                                this.exchange.put(batch);
+                                batch = null;
+                            }
+                        }
+                    } finally {
+                        this.bufferPool.unpinPage(this.resourceId, pageNumber);
+                    }
+                }
+            }
+            if (batch != null && !batch.isEmpty() && !this.cancelled) {
+                this.exchange.put(batch);
+            }
+        } catch (InterruptedException e) {
+            // the scan cancels its workers without interrupting them, so the scan lost its tuples
+            if (!this.cancelled) {
+                this.failure = e;
+                this.cancelled = true;
+            }
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            this.failure = t;
+            this.cancelled = true;
+        } finally {
+            // the last worker marks the end with an empty batch, which the consumer never returns
+            if (this.runningWorkers.decrementAndGet() == 0) {
+                this.exchange.offer(new TupleBatch(1));
+            }
+        }
+    }
+
+    /**
+     * Makes the next batch from the exchange the current one and returns the previous one to the workers.
+     *
+     * @return False, if all workers are done.
+     */
+    private boolean nextExchangedBatch() throws QueryExecutionException {
+        if (this.current != null) {
+            this.freeBatches.offer(this.current);
+            this.current = null;
+        }
+        if (this.exhausted) {
+            return false;
+        }
+        TupleBatch batch;
+        try {
+            batch = this.exchange.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryExecutionException(e);
+        }
+        if (batch.isEmpty()) {
+            this.exhausted = true;
+            if (this.failure != null) {
+                throw new QueryExecutionException(this.failure);
+            }
+            return false;
+        }
+        this.current = batch;
+        this.currentRow = 0;
+        return true;
+    }
+
+    @Override
+    public DataTuple next() throws QueryExecutionException {
+
+        if (!opened) {
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        if ((this.current == null || this.currentRow == this.current.getSize()) && !this.nextExchangedBatch()) {
+            return null;
+        }
+        return this.current.getTuple(this.currentRow++);
+    }
+
+    @Override
+    public boolean nextBatch(TupleBatch batch) throws QueryExecutionException {
+
+        if (!opened) {
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        batch.reset(this.producedColumnIndexes.length);
+        while (!batch.isFull()) {
+            if ((this.current == null || this.currentRow == this.current.getSize()) && !this.nextExchangedBatch()) {
+                break;
+            }
+            int count = Math.min(this.current.getSize() - this.currentRow, batch.getCapacity() - batch.getSize());
+            batch.appendRows(this.current, this.currentRow, count);
+            this.currentRow += count;
+        }
+        return !batch.isEmpty();
+    }
+
+    /**
+     * Cancels the workers and waits until they are done, so that none of them holds a page any more.
+     */
+    private void stopWorkers() throws QueryExecutionException {
+        if (this.workers == null) {
+            return;
+        }
+        this.cancelled = true;
+        // wakes up the workers that wait for a free batch or for space in the exchange
+        this.exchange.clear();
+        for (int i = 0; i < this.workers.length; i++) {
+            this.freeBatches.offer(new TupleBatch(1));
+        }
+        try {
+            for (Future<?> worker : this.workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryExecutionException(e);
+        } catch (ExecutionException e) {
+            throw new QueryExecutionException(e.getCause());
+        } finally {
+            this.workers = null;
+            this.exchange = null;
+            this.freeBatches = null;
+            this.current = null;
+        }
+    }
+
+    @Override
+    public void close() throws QueryExecutionException {
+        this.stopWorkers();
+        this.producedColumnIndexes = null;
+        this.predicate = null;
+        this.joinKeyFilter = null;
+        this.opened = false;
+    }
+}
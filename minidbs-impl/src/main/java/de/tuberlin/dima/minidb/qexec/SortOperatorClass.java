@@ -9,8 +9,20 @@ import de.tuberlin.dima.minidb.qexec.heap.QueryHeapException;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class SortOperatorClass implements SortOperator {
+
+    private static final int MERGE_CHUNK_TUPLES = 4096;
+
+    // the writers of sort runs of all queries. they block on temp file writes, so they get their own
+    // threads, at most one per processor, which end when there are no runs to write
+    private static final ThreadPoolExecutor RUN_POOL = createRunPool(Runtime.getRuntime().availableProcessors());
+
     private PhysicalPlanOperator child;
 
     private QueryHeap queryHeap;
@@ -27,11 +39,10 @@ public class SortOperatorClass implements SortOperator {
 
     private boolean sorted = false;
     private int queryHeapId;
-    private DataTuple[] sortedMinList;
-    private ExternalTupleSequenceIterator[] tupleIterators;
+    private LoserTreeMerger merger;
+    private Future<Void> runWriter;
 
     private Comparator<DataTuple> multiFieldComparator;
-    private Iterator<DataTuple> lastListIterator;
 
     private boolean opened;
 
@@ -43,6 +54,17 @@ public class SortOperatorClass implements SortOperator {
         this.sortColumns = sortColumns;
         this.columnsAscending = columnsAscending;
     }
+    private static ThreadPoolExecutor createRunPool(int numThreads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads, numThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "SortRunWriter");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
     private static Comparator<DataTuple> getMultiFieldComparator(int[] sortColumns, boolean[] columnsAscending) {
 
         return (tuple1, tuple2) -> {
@@ -87,90 +109,131 @@ public class SortOperatorClass implements SortOperator {
         }
         try {
             if(!this.sorted) {
+                // the tuples are serialized into the heap with a normalized key in front. the heap space
+                // is split in two buffers, so that one fills while the run of the other is sorted and written
+                byte[] buffer = this.queryHeap.getBinarySortBuffer(this.queryHeapId);
+                int half = buffer.length / 2;
+                NormalizedKeySortBuffer filling = this.createSortBuffer(buffer, 0, half);
+                NormalizedKeySortBuffer spare = this.createSortBuffer(buffer, half, buffer.length);
+                DataTuple[] chunk = new DataTuple[MERGE_CHUNK_TUPLES];
+                int numRuns = 0;
                 DataTuple nextChildTuple = this.child.next();
-                int maximumCardinality;
-                int sortIndex = 0;
-                DataTuple[] subList;
-                boolean heapUsed = false;
-                subList = this.queryHeap.getSortArray(this.queryHeapId);
-                maximumCardinality = this.queryHeap.getMaximalTuplesForInternalSort(this.queryHeapId);
                 while (nextChildTuple != null) {
-
-
-                    if (sortIndex < maximumCardinality) {
-                        subList[sortIndex] = nextChildTuple;
-                        sortIndex++;
-                    } else {
-
-                        Arrays.sort(subList, this.multiFieldComparator);
-                        this.queryHeap.writeTupleSequencetoTemp(this.queryHeapId, subList, maximumCardinality);
-                        heapUsed = true;
-                        sortIndex = 0;
-                        subList[sortIndex] = nextChildTuple;
-                        sortIndex++;
+                    if (!filling.add(nextChildTuple)) {
+                        if (filling.isEmpty()) {
+                            throw new QueryExecutionException("Tuple does not fit into the sort heap");
+                        }
+                        // the spare buffer is free once its run is written
+                        this.awaitRunWriter();
+                        // every run is its own partition, so that runs can be merged in groups
+                        this.runWriter = this.submitRun(filling, numRuns++, chunk);
+                        NormalizedKeySortBuffer full = filling;
+                        filling = spare;
+                        spare = full;
+                        filling.reset();
+                        continue;
                     }
                     nextChildTuple = this.child.next();
                 }
 
-
-                Arrays.sort(subList,0, sortIndex, this.multiFieldComparator);
-                List<DataTuple> l = Arrays.asList(Arrays.copyOfRange(subList, 0, sortIndex));
-                this.lastListIterator = l.iterator();
-                ExternalTupleSequenceIterator[] tupleIterators = heapUsed?this.queryHeap.getExternalSortedLists(this.queryHeapId) : new ExternalTupleSequenceIterator[0];
-                this.tupleIterators = tupleIterators;
-                this.sortedMinList = new DataTuple[tupleIterators.length + 1];
-
-                for (int i = 0; i < sortedMinList.length; i++) {
-
-                    if(i ==sortedMinList.length - 1 ){
-                        if(this.lastListIterator.hasNext()){
-
-                            this.sortedMinList[i] = lastListIterator.next();
-                        } else {
-                            this.sortedMinList[i] = null;
-                        }
-                    }
-                    else{
-                        ExternalTupleSequenceIterator tupleIterator = tupleIterators[i];
-                        if (tupleIterator.hasNext()) {
-                            this.sortedMinList[i] = tupleIterator.next();
-                        } else {
-                            this.sortedMinList[i] = null;
-                        }
-                    }
-
-
+                filling.sort();
+                this.awaitRunWriter();
+                ArrayDeque<Integer> runs = new ArrayDeque<>();
+                for (int i = 0; i < numRuns; i++) {
+                    runs.add(i);
                 }
+                // the last run stays in memory and is merged without a buffer
+                this.merger = this.mergeRuns(runs, numRuns, filling.sortedRun(), chunk);
                 this.sorted = true;
             }
-            int minIndex = -1;
-            DataTuple minTuple = null;
 
+            return this.merger.next();
+            } catch (QueryHeapException | IOException e) {
+                throw new QueryExecutionException(e);
+            }
 
-            for(int i = 0; i < this.sortedMinList.length; i ++){
-                DataTuple currentTuple = this.sortedMinList[i];
-                if( currentTuple != null && (minTuple == null || this.multiFieldComparator.compare(minTuple, currentTuple) > 0)){
-                    minTuple = this.sortedMinList[i];
-                    minIndex = i;
-                }
+    }
 
-            }
-            if(minTuple != null){
-                if(minIndex != this.tupleIterators.length)
-                {
-                    this.sortedMinList[minIndex] = this.tupleIterators[minIndex].hasNext()?this.tupleIterators[minIndex].next():null;
-                }
-                else{
-                    this.sortedMinList[minIndex] = this.lastListIterator.hasNext()?this.lastListIterator.next():null;
-                }
+    private NormalizedKeySortBuffer createSortBuffer(byte[] buffer, int start, int limit) {
+        return new NormalizedKeySortBuffer(buffer, start, limit, this.columnTypes, this.sortColumns,
+                this.columnsAscending, this.multiFieldComparator);
+    }
 
-            }
+    /**
+     * Sorts the buffer and writes it as a run on the run pool.
+     */
+    private Future<Void> submitRun(NormalizedKeySortBuffer run, int partition, DataTuple[] chunk) {
+        return RUN_POOL.submit(() -> {
+            run.sort();
+            this.writeRun(run.sortedRun(), partition, chunk);
+            return null;
+        });
+    }
 
-            return minTuple;
-            } catch (QueryHeapException | IOException e) {
-                throw new QueryExecutionException(e);
+    /**
+     * Waits until the run that is being written is on disk.
+     */
+    private void awaitRunWriter() throws QueryExecutionException {
+        if (this.runWriter == null) {
+            return;
+        }
+        try {
+            this.runWriter.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryExecutionException("Interrupted while writing a sort run", e);
+        } catch (ExecutionException e) {
+            throw new QueryExecutionException("Writing a sort run failed", e.getCause());
+        } finally {
+            this.runWriter = null;
+        }
+    }
+
+    /**
+     * Merges the written runs in groups until the block buffers suffice to read the remaining ones
+     * at once, and returns the merger over those and the run in memory.
+     */
+    private LoserTreeMerger mergeRuns(ArrayDeque<Integer> runs, int nextRun, ExternalTupleSequenceIterator memoryRun,
+            DataTuple[] chunk) throws QueryHeapException, IOException {
+        // reading a run takes one buffer, writing the merged run another one
+        int fanIn = Math.max(2, this.queryHeap.getMaximalBuffersPerAssignment() - 1);
+        while (runs.size() > fanIn) {
+            // the first merges take only as many runs as needed for the last one to read all the rest
+            int numMerged = Math.min(fanIn, runs.size() - fanIn + 1);
+            ExternalTupleSequenceIterator[] merged = new ExternalTupleSequenceIterator[numMerged];
+            for (int i = 0; i < numMerged; i++) {
+                merged[i] = this.queryHeap.getExternalPartition(this.queryHeapId, runs.poll());
             }
+            int run = nextRun++;
+            this.writeRun(new LoserTreeMerger(merged, this.multiFieldComparator), run, chunk);
+            runs.add(run);
+        }
+
+        ExternalTupleSequenceIterator[] iterators = new ExternalTupleSequenceIterator[runs.size() + 1];
+        for (int i = 0; i < iterators.length - 1; i++) {
+            iterators[i] = this.queryHeap.getExternalPartition(this.queryHeapId, runs.poll());
+        }
+        iterators[iterators.length - 1] = memoryRun;
+        return new LoserTreeMerger(iterators, this.multiFieldComparator);
+    }
 
+    /**
+     * Writes the tuples of the run to the given temp partition, a chunk at a time.
+     */
+    private void writeRun(ExternalTupleSequenceIterator tuples, int run, DataTuple[] chunk)
+            throws QueryHeapException, IOException {
+        int n = 0;
+        while (tuples.hasNext()) {
+            chunk[n++] = tuples.next();
+            if (n == chunk.length) {
+                this.queryHeap.writeTupleSequencetoTemp(this.queryHeapId, run, chunk, n);
+                n = 0;
+            }
+        }
+        if (n > 0) {
+            this.queryHeap.writeTupleSequencetoTemp(this.queryHeapId, run, chunk, n);
+        }
+        Arrays.fill(chunk, null);
     }
 
     @Override
@@ -179,7 +242,26 @@ public class SortOperatorClass implements SortOperator {
             this.child.close();
         }
 
+        // a run that is still being written must not outlive the heap space
+        if (this.runWriter != null) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    this.runWriter.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    break;
+                }
+            }
+            this.runWriter = null;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
         this.queryHeap.releaseSortHeap(this.queryHeapId);
+        this.merger = null;
         this.columnTypes = null;
         this.columnsAscending = null;
         this.queryHeap = null;
@@ -1,24 +1,20 @@
 package de.tuberlin.dima.minidb.qexec;
 
-import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
-import de.tuberlin.dima.minidb.core.DataField;
 import de.tuberlin.dima.minidb.core.DataTuple;
 import de.tuberlin.dima.minidb.io.cache.CacheableData;
-import de.tuberlin.dima.minidb.io.cache.PageFormatException;
 import de.tuberlin.dima.minidb.io.manager.BufferPoolException;
 import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
 import de.tuberlin.dima.minidb.io.tables.PageTupleAccessException;
 import de.tuberlin.dima.minidb.io.tables.TablePage;
+import de.tuberlin.dima.minidb.io.tables.TablePageClass;
 import de.tuberlin.dima.minidb.io.tables.TableResourceManager;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 
-import static org.junit.Assert.fail;
+public class TableScanOperatorClass implements TableScanOperator, BatchOperator{
+
+    private static final LowLevelPredicate[] NO_PREDICATES = new LowLevelPredicate[0];
 
-public class TableScanOperatorClass implements TableScanOperator{
     private BufferPoolManager bufferPool;
     private TableResourceManager tableManager;
     private int resourceId;
@@ -27,10 +23,25 @@ public class TableScanOperatorClass implements TableScanOperator{
     int prefetchWindowLength;
     int currentPage;
     int currentTuple;
+    private TablePage currentTablePage;
+    private ColumnProjection projection;
     private boolean opened;
+    // positions of the qualifying records of the current page when the predicate is evaluated on its bytes
+    private int[] selection;
+    private int selectionCount;
+    private boolean selected;
+    // the filter over the join keys of the build side of a join, and the table columns of the key
+    private BloomFilter joinKeyFilter;
+    private int[] filterColumns;
 
     public TableScanOperatorClass(BufferPoolManager bufferPool, TableResourceManager tableManager, int resourceId,
     int[] producedColumnIndexes, LowLevelPredicate[] predicate, int prefetchWindowLength){
+        this(bufferPool, tableManager, resourceId, producedColumnIndexes, predicate, prefetchWindowLength, null, null);
+    }
+
+    public TableScanOperatorClass(BufferPoolManager bufferPool, TableResourceManager tableManager, int resourceId,
+    int[] producedColumnIndexes, LowLevelPredicate[] predicate, int prefetchWindowLength,
+    BloomFilter joinKeyFilter, int[] filterColumns){
 
         this.bufferPool = bufferPool;
         this.tableManager = tableManager;
@@ -38,14 +49,22 @@ public class TableScanOperatorClass implements TableScanOperator{
         this.producedColumnIndexes = producedColumnIndexes;
         this.predicate = predicate;
         this.prefetchWindowLength = prefetchWindowLength;
+        this.joinKeyFilter = joinKeyFilter;
+        this.filterColumns = filterColumns;
         this.opened = false;
 
     }
 
     @Override
     public void open(DataTuple correlatedTuple) throws QueryExecutionException {
+        // a nested-loop join re-opens its inner scan without closing it
+        if(this.currentTablePage != null){
+            this.bufferPool.unpinPage(this.resourceId, this.currentPage);
+            this.currentTablePage = null;
+        }
         this.currentPage = this.tableManager.getFirstDataPageNumber();
         this.currentTuple = 0;
+        this.projection = new ColumnProjection(this.producedColumnIndexes);
         try {
             int firstPage = this.tableManager.getFirstDataPageNumber();
             int lastPage = Math.min(this.tableManager.getFirstDataPageNumber()
@@ -59,28 +78,42 @@ public class TableScanOperatorClass implements TableScanOperator{
 
     }
 
-    private int getUniquelength(int[] arr){
-
-        ArrayList<Integer> arrlist = new ArrayList<>();
-        for(int x: arr){
-            if(!arrlist.contains(x)){
-                arrlist.add(x);
-            }
+    private boolean pinCurrentPage() throws QueryExecutionException, BufferPoolException, IOException {
+        int lastPageNumber = Math.max(this.tableManager.getFirstDataPageNumber(), this.tableManager.getLastDataPageNumber());
+        if(this.currentPage > lastPageNumber){
+            return false;
         }
-        return arrlist.size();
-    }
-    private long constructBiMap(int[] ColumnIndexes){
-        long bitmap = 0;
-        for(int idx:ColumnIndexes){
-            if((bitmap & 1L << idx) == 0)
-            {
-                bitmap += 1L << idx;
+        CacheableData cd = this.bufferPool.getPageAndPin(this.resourceId, this.currentPage);
+        if(!(cd instanceof TablePage)){
+            throw new QueryExecutionException("Pages from Buferpool must be instances of Tablepage");
+        }
+        this.currentTablePage = (TablePage) cd;
+        this.currentTuple = 0;
+        // the filter is sealed once the join has read its build side
+        boolean filtered = this.joinKeyFilter != null && this.joinKeyFilter.isSealed();
+        this.selected = (this.predicate != null || filtered) && cd instanceof TablePageClass;
+        if(this.selected){
+            TablePageClass page = (TablePageClass) cd;
+            int numRecords = this.currentTablePage.getNumRecordsOnPage();
+            if(this.selection == null || this.selection.length < numRecords){
+                this.selection = new int[numRecords];
+            }
+            this.selectionCount = page.selectRecords(this.predicate != null ? this.predicate : NO_PREDICATES, this.selection);
+            if(filtered && this.selectionCount > 0){
+                this.selectionCount = page.filterRecords(this.joinKeyFilter, this.filterColumns, this.selection, this.selectionCount);
             }
-
         }
+        return true;
+    }
 
-        return  bitmap;
+    private int getCurrentPageEnd() {
+        return this.selected ? this.selectionCount : this.currentTablePage.getNumRecordsOnPage();
+    }
 
+    private void unpinCurrentPage() {
+        this.bufferPool.unpinPage(this.resourceId, this.currentPage);
+        this.currentTablePage = null;
+        this.currentPage++;
     }
 
     @Override
@@ -91,74 +124,102 @@ public class TableScanOperatorClass implements TableScanOperator{
             throw new QueryExecutionException("Operator is not yet opened");
         }
 
-
-
-        int lastPageNumber = Math.max(this.tableManager.getFirstDataPageNumber(), this.tableManager.getLastDataPageNumber());
-        if(currentPage > lastPageNumber){
-            return null;
-        }
-
+        long columnBitmap = this.projection.getColumnBitmap();
+        int numCols = this.projection.getNumDistinctColumns();
         try {
-        while(this.currentPage <= lastPageNumber)
+            while(this.currentTablePage != null || this.pinCurrentPage())
             {
-                CacheableData cd = this.bufferPool.getPageAndPin(this.resourceId, currentPage);
-                TablePage tp = AbstractExtensionFactory.getExtensionFactory().createTablePage(this.tableManager.getSchema(), cd.getBuffer());
-                while(this.currentTuple < tp.getNumRecordsOnPage()){
-
-                    DataTuple dt;
-                    if(predicate == null){
-                        dt = tp.getDataTuple(this.currentTuple,
-                                this.constructBiMap(this.producedColumnIndexes),
-                                this.getUniquelength(this.producedColumnIndexes));
+                TablePage tp = this.currentTablePage;
+                if(this.selected){
+                    // only the records that passed the predicate are decoded
+                    if(this.currentTuple < this.selectionCount){
+                        DataTuple dt = tp.getDataTuple(this.selection[this.currentTuple++], columnBitmap, numCols);
+                        return this.projection.project(dt);
                     }
-                    else{
-                        dt = tp.getDataTuple(this.predicate, this.currentTuple,
-                                this.constructBiMap(this.producedColumnIndexes),
-                                this.getUniquelength(this.producedColumnIndexes));
-                    }
-
-                    if(dt != null){
+                }
+                else{
+                    while(this.currentTuple < tp.getNumRecordsOnPage()){
 
-                        DataField[] orderedFields = new DataField[this.producedColumnIndexes.length];
+                        DataTuple dt;
+                        if(predicate == null){
+                            dt = tp.getDataTuple(this.currentTuple, columnBitmap, numCols);
+                        }
+                        else{
+                            dt = tp.getDataTuple(this.predicate, this.currentTuple, columnBitmap, numCols);
+                        }
+                        this.currentTuple++;
 
-                        ArrayList<Integer> arrayList = new ArrayList<>();
-                        for (int num : this.producedColumnIndexes) {
-                            if(!arrayList.contains(num))
-                            {
-                                arrayList.add(num);
-                            }
+                        if(dt != null){
+                            return this.projection.project(dt);
                         }
-                        Collections.sort(arrayList);
+                    }
+                }
+                this.unpinCurrentPage();
+            }
 
+        } catch (BufferPoolException | IOException  | PageTupleAccessException e) {
+            throw new QueryExecutionException(e);
+        }
+        return null;
+    }
 
-                        for(int fieldIdx = 0; fieldIdx < this.producedColumnIndexes.length; fieldIdx++){
-                            orderedFields[fieldIdx] = dt.getField(arrayList.indexOf(this.producedColumnIndexes[fieldIdx]));
-                        }
+    @Override
+    public boolean nextBatch(TupleBatch batch) throws QueryExecutionException {
 
+        if(!opened){
+            throw new QueryExecutionException("Operator is not yet opened");
+        }
+
+        batch.reset(this.producedColumnIndexes.length);
+        long columnBitmap = this.projection.getColumnBitmap();
+        int numCols = this.projection.getNumDistinctColumns();
+        try {
+            while(!batch.isFull() && (this.currentTablePage != null || this.pinCurrentPage()))
+            {
+                TablePage tp = this.currentTablePage;
+                if(this.selected){
+                    this.currentTuple = ((TablePageClass) tp).readRecords(this.selection, this.currentTuple,
+                            this.selectionCount, this.producedColumnIndexes, batch);
+                }
+                else if(this.predicate == null && tp instanceof TablePageClass){
+                    // decode the columns straight into the batch
+                    this.currentTuple = ((TablePageClass) tp).readRecords(this.currentTuple, this.producedColumnIndexes, batch);
+                }
+                else{
+                    while(!batch.isFull() && this.currentTuple < tp.getNumRecordsOnPage()){
+                        DataTuple dt;
+                        if(predicate == null){
+                            dt = tp.getDataTuple(this.currentTuple, columnBitmap, numCols);
+                        }
+                        else{
+                            dt = tp.getDataTuple(this.predicate, this.currentTuple, columnBitmap, numCols);
+                        }
                         this.currentTuple++;
-                        return new DataTuple(orderedFields);
-                    }
-                    else{
-                        this.currentTuple++;
+                        if(dt != null){
+                            batch.appendTuple(this.projection.project(dt));
+                        }
                     }
                 }
-                this.currentPage++;
-                this.bufferPool.unpinPage(this.resourceId, currentPage);;
-                this.currentTuple = 0;
+                if(this.currentTuple >= this.getCurrentPageEnd()){
+                    this.unpinCurrentPage();
+                }
             }
-
         } catch (BufferPoolException | IOException  | PageTupleAccessException e) {
             throw new QueryExecutionException(e);
-        } catch (PageFormatException e) {
-            throw new RuntimeException(e);
         }
-
-        return null;
+        return !batch.isEmpty();
     }
 
     @Override
     public void close() throws QueryExecutionException {
+        if(this.currentTablePage != null){
+            this.bufferPool.unpinPage(this.resourceId, this.currentPage);
+            this.currentTablePage = null;
+        }
         this.producedColumnIndexes = null;
         this.predicate = null;
+        this.projection = null;
+        this.selection = null;
+        this.joinKeyFilter = null;
     }
 }
@@ -0,0 +1,214 @@
+package de.tuberlin.dima.minidb.test.io.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.catalogue.ColumnSchema;
+import de.tuberlin.dima.minidb.catalogue.TableSchema;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.io.cache.CachePinnedException;
+import de.tuberlin.dima.minidb.io.cache.CacheableData;
+import de.tuberlin.dima.minidb.io.cache.EvictedCacheEntry;
+import de.tuberlin.dima.minidb.io.cache.PageCache;
+import de.tuberlin.dima.minidb.io.cache.PageSize;
+
+/**
+ * Test case for the invariants of the page cache under long random workloads and for its
+ * behavior with large capacities.
+ */
+public class TestHashedPageCacheStudents
+{
+	/**
+	 * The page size of the cached pages.
+	 */
+	private static final PageSize PAGE_SIZE = PageSize.SIZE_4096;
+
+	/**
+	 * The random number generator.
+	 */
+	private final Random random = new Random(9283749827L);
+
+	/**
+	 * The schema of the cached table pages.
+	 */
+	private TableSchema schema;
+
+
+	/**
+	 * Loads the extension factory and creates the schema.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		AbstractExtensionFactory.initializeDefault();
+		this.schema = new TableSchema(PAGE_SIZE);
+		this.schema.addColumn(ColumnSchema.createColumnSchema("id", DataType.intType(), false));
+	}
+
+	/**
+	 * Tests that the least recently used page is evicted together with its buffer, once a cold cache
+	 * is full of pages that were referenced only once.
+	 */
+	@Test
+	public void testFullRecentListEvictsLeastRecentPage() throws Exception
+	{
+		int capacity = 64;
+		PageCache cache = AbstractExtensionFactory.getExtensionFactory().createPageCache(PAGE_SIZE, capacity);
+		List<CacheableData> pages = new ArrayList<CacheableData>();
+		byte[] buffer = new byte[PAGE_SIZE.getNumberOfBytes()];
+		for (int i = 0; i < capacity; i++) {
+			CacheableData page = AbstractExtensionFactory.getExtensionFactory().initTablePage(this.schema, buffer, i);
+			pages.add(page);
+			buffer = cache.addPage(page, 1).getBinaryPage();
+			cache.getPage(1, i);
+		}
+
+		CacheableData next = AbstractExtensionFactory.getExtensionFactory().initTablePage(this.schema, buffer, capacity);
+		EvictedCacheEntry evicted = cache.addPage(next, 1);
+		assertSame(pages.get(0), evicted.getWrappingPage());
+		assertSame(pages.get(0).getBuffer(), evicted.getBinaryPage());
+		assertEquals(0, evicted.getPageNumber());
+		assertNull(cache.getPage(1, 0));
+		for (int i = 1; i <= capacity; i++) {
+			assertNotNull("Page " + i + " should still be cached", cache.getPage(1, i));
+		}
+	}
+
+	/**
+	 * Runs a long random workload of lookups, pins, unpins, additions and expulsions and checks that
+	 * the cache never loses or duplicates a buffer, never evicts a pinned page, replaces expelled
+	 * pages first, and finds exactly the pages that have been added and neither evicted nor expelled.
+	 */
+	@Test
+	public void testRandomWorkloadKeepsInvariants() throws Exception
+	{
+		int capacity = 200;
+		PageCache cache = AbstractExtensionFactory.getExtensionFactory().createPageCache(PAGE_SIZE, capacity);
+
+		// pages currently in the cache with their pin counts
+		Map<Long, Integer> contained = new HashMap<Long, Integer>();
+		// expelled pages that still occupy a slot of the cache
+		List<Long> expelled = new ArrayList<Long>();
+		// buffers currently owned by the test
+		List<byte[]> free = new ArrayList<byte[]>();
+		free.add(new byte[PAGE_SIZE.getNumberOfBytes()]);
+		IdentityHashMap<byte[], Boolean> buffersSeen = new IdentityHashMap<byte[], Boolean>();
+
+		for (int op = 0; op < 200000; op++) {
+			int resourceId = this.random.nextInt(4);
+			int pageNumber = this.random.nextInt(600);
+			long key = ((long) resourceId << 32) | pageNumber;
+			Integer pins = contained.get(key);
+			int action = this.random.nextInt(100);
+
+			if (action < 40) {
+				CacheableData page = cache.getPage(resourceId, pageNumber);
+				assertEquals("Lookup of " + key, pins != null, page != null);
+				if (page != null) {
+					assertEquals(pageNumber, page.getPageNumber());
+				}
+			}
+			else if (action < 50) {
+				if (pins != null) {
+					assertNotNull(cache.getPageAndPin(resourceId, pageNumber));
+					contained.put(key, pins + 1);
+				}
+			}
+			else if (action < 65) {
+				if (pins != null && pins > 0) {
+					cache.unpinPage(resourceId, pageNumber);
+					contained.put(key, pins - 1);
+				}
+			}
+			else if (action < 99) {
+				if (pins != null) {
+					continue;
+				}
+				byte[] buffer = free.remove(free.size() - 1);
+				CacheableData page = AbstractExtensionFactory.getExtensionFactory().initTablePage(this.schema, buffer, pageNumber);
+				EvictedCacheEntry evicted;
+				try {
+					evicted = cache.addPage(page, resourceId);
+				}
+				catch (CachePinnedException e) {
+					for (Integer p : contained.values()) {
+						if (p == 0) {
+							fail("The cache reported all pages pinned, but some are not.");
+						}
+					}
+					free.add(buffer);
+					continue;
+				}
+				contained.put(key, 0);
+				byte[] returned = evicted.getBinaryPage();
+				assertNotNull("Every addition must hand back a buffer", returned);
+				assertTrue("A buffer was handed back twice", returned != buffer && !free.contains(returned));
+				if (evicted.getWrappingPage() != null) {
+					long evictedKey = ((long) evicted.getResourceID() << 32) | evicted.getPageNumber();
+					assertSame(evicted.getWrappingPage().getBuffer(), returned);
+					if (!expelled.isEmpty()) {
+						assertTrue("Evicted a page while expelled pages were left: " + evictedKey, expelled.remove(Long.valueOf(evictedKey)));
+					}
+					else {
+						Integer evictedPins = contained.remove(evictedKey);
+						assertNotNull("Evicted a page that was not cached: " + evictedKey, evictedPins);
+						assertEquals("Evicted a pinned page", 0, evictedPins.intValue());
+						assertNull(cache.getPage(evicted.getResourceID(), evicted.getPageNumber()));
+					}
+				}
+				else {
+					assertTrue("The cache handed out more new buffers than its capacity", buffersSeen.size() < capacity);
+				}
+				buffersSeen.put(returned, Boolean.TRUE);
+				free.add(returned);
+			}
+			else {
+				cache.expelAllPagesForResource(resourceId);
+				for (Iterator<Long> it = contained.keySet().iterator(); it.hasNext(); ) {
+					Long k = it.next();
+					if ((int) (k >>> 32) == resourceId) {
+						it.remove();
+						expelled.add(k);
+					}
+				}
+			}
+			assertTrue("More pages cached than the capacity", contained.size() + expelled.size() <= capacity);
+		}
+	}
+
+	/**
+	 * Tests that lookups, additions and evictions do not get slower with the capacity of the cache.
+	 * A cache that scans its lists would need billions of steps for this workload.
+	 */
+	@Test(timeout = 30000)
+	public void testLargeCacheOperationsAreConstantTime() throws Exception
+	{
+		int capacity = 50000;
+		PageCache cache = AbstractExtensionFactory.getExtensionFactory().createPageCache(PAGE_SIZE, capacity);
+		byte[] buffer = new byte[PAGE_SIZE.getNumberOfBytes()];
+		for (int i = 0; i < 500000; i++) {
+			int pageNumber = this.random.nextInt(4 * capacity);
+			if (cache.getPage(3, pageNumber) == null) {
+				CacheableData page = AbstractExtensionFactory.getExtensionFactory().initTablePage(this.schema, buffer, pageNumber);
+				buffer = cache.addPage(page, 3).getBinaryPage();
+				cache.getPage(3, pageNumber);
+			}
+		}
+	}
+}
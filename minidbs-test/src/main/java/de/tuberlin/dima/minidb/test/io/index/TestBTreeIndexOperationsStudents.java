@@ -0,0 +1,501 @@
+package de.tuberlin.dima.minidb.test.io.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.catalogue.ColumnSchema;
+import de.tuberlin.dima.minidb.catalogue.IndexSchema;
+import de.tuberlin.dima.minidb.catalogue.IndexStatistics;
+import de.tuberlin.dima.minidb.catalogue.TableSchema;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.core.DuplicateException;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.core.RID;
+import de.tuberlin.dima.minidb.io.cache.PageSize;
+import de.tuberlin.dima.minidb.io.index.BTreeIndex;
+import de.tuberlin.dima.minidb.io.index.IndexResourceManager;
+import de.tuberlin.dima.minidb.io.index.IndexResultIterator;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
+import de.tuberlin.dima.minidb.test.io.manager.TestBufferPoolIOStudents;
+import de.tuberlin.dima.minidb.util.Pair;
+
+/**
+ * Test case for the B+ tree index under concurrent inserts and lookups, and for its bulk load.
+ * The indexes are created empty in temp files and are all cached by one buffer pool.
+ */
+public class TestBTreeIndexOperationsStudents
+{
+	/**
+	 * The number of pages the buffer pool caches.
+	 */
+	private static final int CACHE_SIZE = 512;
+
+	/**
+	 * The random number generator.
+	 */
+	private final Random random = new Random(77231945L);
+
+	/**
+	 * The schema of the indexed table.
+	 */
+	private TableSchema tableSchema;
+
+	/**
+	 * The buffer pool manager holding the index pages.
+	 */
+	private BufferPoolManager pool;
+
+	/**
+	 * The files of the indexes created by the test.
+	 */
+	private List<File> indexFiles;
+
+	/**
+	 * The resource managers of the indexes created by the test.
+	 */
+	private List<IndexResourceManager> indexManagers;
+
+
+	/**
+	 * Creates the table schema and starts the buffer pool.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		AbstractExtensionFactory.initializeDefault();
+
+		this.tableSchema = new TableSchema(PageSize.SIZE_4096);
+		this.tableSchema.addColumn(ColumnSchema.createColumnSchema("id", DataType.intType(), false));
+		this.tableSchema.addColumn(ColumnSchema.createColumnSchema("name", DataType.charType(24), true));
+
+		this.indexFiles = new ArrayList<File>();
+		this.indexManagers = new ArrayList<IndexResourceManager>();
+		this.pool = AbstractExtensionFactory.getExtensionFactory().createBufferPoolManager(
+				TestBufferPoolIOStudents.createConfig("CACHE_SIZE_FOR_PAGE_SIZE_4096", String.valueOf(CACHE_SIZE)),
+				Logger.getLogger("Test-BTreeIndexOperations-Logger"));
+		this.pool.startIOThreads();
+	}
+
+	/**
+	 * Closes the buffer pool and deletes the indexes.
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		this.pool.closeBufferPool();
+		for (IndexResourceManager manager : this.indexManagers) {
+			manager.closeResource();
+		}
+		for (File file : this.indexFiles) {
+			IndexResourceManager.deleteIndex(file);
+		}
+	}
+
+	/**
+	 * Tests that lookups running next to several threads that insert into the same index always
+	 * find the keys that were in the index before, although the inserts split the pages the
+	 * lookups read, and that the index holds all inserted keys in order afterwards.
+	 */
+	@Test(timeout = 120000)
+	public void testConcurrentInsertsAndLookups() throws Exception
+	{
+		final BTreeIndex index = createIndex(new IndexSchema(this.tableSchema, 0));
+		final int numPresent = 5000;
+		final int numInserters = 4;
+		final int perInserter = 25000;
+
+		// every third key is in the index before the threads start, the others are inserted by them
+		final List<Integer> present = new ArrayList<Integer>();
+		List<List<Integer>> toInsert = new ArrayList<List<Integer>>();
+		for (int t = 0; t < numInserters; t++) {
+			toInsert.add(new ArrayList<Integer>());
+		}
+		for (int key = 0; key < numPresent * 3 && present.size() < numPresent; key += 3) {
+			present.add(key);
+		}
+		for (int key = 0, t = 0; key < numInserters * perInserter * 3 / 2; key++) {
+			if (key % 3 != 0 || key >= numPresent * 3) {
+				toInsert.get(t++ % numInserters).add(key);
+			}
+		}
+		Collections.shuffle(present, this.random);
+		for (int key : present) {
+			index.insertEntry(new IntField(key), rid(key));
+		}
+
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		final AtomicBoolean inserting = new AtomicBoolean(true);
+		List<Thread> inserters = new ArrayList<Thread>();
+		for (final List<Integer> keys : toInsert) {
+			Collections.shuffle(keys, this.random);
+			inserters.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int key : keys) {
+							index.insertEntry(new IntField(key), rid(key));
+						}
+					}
+					catch (Throwable t) {
+						error.compareAndSet(null, t);
+					}
+				}
+			});
+		}
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int r = 0; r < 2; r++) {
+			final Random readerRandom = new Random(this.random.nextLong());
+			readers.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (inserting.get() && error.get() == null) {
+							int key = present.get(readerRandom.nextInt(present.size()));
+							List<RID> rids = drain(index.lookupRids(new IntField(key)));
+							assertEquals("Lookup of key " + key, Collections.singletonList(rid(key)), rids);
+						}
+					}
+					catch (Throwable t) {
+						error.compareAndSet(null, t);
+					}
+				}
+			});
+		}
+
+		for (Thread thread : readers) {
+			thread.start();
+		}
+		for (Thread thread : inserters) {
+			thread.start();
+		}
+		for (Thread thread : inserters) {
+			thread.join();
+		}
+		inserting.set(false);
+		for (Thread thread : readers) {
+			thread.join();
+		}
+		if (error.get() != null) {
+			throw new AssertionError(error.get());
+		}
+
+		int numKeys = present.size();
+		for (List<Integer> keys : toInsert) {
+			numKeys += keys.size();
+			for (int key : keys) {
+				assertEquals(Collections.singletonList(rid(key)), drain(index.lookupRids(new IntField(key))));
+			}
+		}
+		List<DataField> keys = drain(index.lookupKeys(new IntField(Integer.MIN_VALUE + 1), new IntField(Integer.MAX_VALUE), true, true));
+		assertEquals(numKeys, keys.size());
+		for (int i = 1; i < keys.size(); i++) {
+			assertTrue("Keys out of order: " + keys.get(i - 1) + ", " + keys.get(i), keys.get(i - 1).compareTo(keys.get(i)) < 0);
+		}
+	}
+
+	/**
+	 * Tests that a bulk load that starts together with the insert that splits the root leaf does
+	 * not wait forever for the latch the insert holds, while the insert waits for the root latch.
+	 * The bulk load finds the index no longer empty and fails, and the insert is not lost.
+	 */
+	@Test(timeout = 120000)
+	public void testBulkLoadRacingWithRootSplitFinishes() throws Exception
+	{
+		for (int round = 0; round < 300; round++) {
+			final BTreeIndex index = createIndex(new IndexSchema(this.tableSchema, 0));
+			final int numEntries = index.getIndexSchema().getMaximalLeafEntries();
+			for (int key = 0; key < numEntries; key++) {
+				index.insertEntry(new IntField(key), rid(key));
+			}
+
+			final CyclicBarrier start = new CyclicBarrier(2);
+			final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+			Thread loader = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						index.bulkLoad(Collections.singletonList(new Pair<DataField, RID>(new IntField(-1), rid(0))).iterator(), 1.0f);
+						error.compareAndSet(null, new AssertionError("The bulk load of a filled index should have failed."));
+					}
+					catch (IllegalStateException e) {
+						// the index is not empty
+					}
+					catch (Throwable t) {
+						error.compareAndSet(null, t);
+					}
+				}
+			};
+			loader.start();
+			start.await();
+			index.insertEntry(new IntField(numEntries), rid(numEntries));
+			loader.join();
+			if (error.get() != null) {
+				throw new AssertionError(error.get());
+			}
+
+			assertEquals(numEntries + 1, drain(index.lookupKeys(new IntField(0), new IntField(numEntries), true, true)).size());
+			assertTrue(drain(index.lookupRids(new IntField(-1))).isEmpty());
+		}
+	}
+
+	/**
+	 * Tests that a bulk load fills the leaves to the fill factor, returns the number of leaves and
+	 * the depth of the tree it built, and that the loaded index finds every key and takes inserts
+	 * in between the loaded keys.
+	 */
+	@Test(timeout = 120000)
+	public void testBulkLoadFillsLeavesToFillFactor() throws Exception
+	{
+		final int numEntries = 20000;
+		for (float fillFactor : new float[] { 1.0f, 0.75f, 0.5f }) {
+			BTreeIndex index = createIndex(new IndexSchema(this.tableSchema, 0));
+			int maxLeafEntries = index.getIndexSchema().getMaximalLeafEntries();
+			int leafCapacity = Math.max(maxLeafEntries / 2, (int) (fillFactor * maxLeafEntries));
+
+			List<Pair<DataField, RID>> entries = new ArrayList<Pair<DataField, RID>>();
+			for (int key = 0; key < 2 * numEntries; key += 2) {
+				entries.add(new Pair<DataField, RID>(new IntField(key), rid(key)));
+			}
+			IndexStatistics statistics = index.bulkLoad(entries.iterator(), fillFactor);
+
+			// all leaves but the last one or two are filled to the capacity, those share the rest
+			int fullLeaves = numEntries / leafCapacity;
+			assertTrue("Leaves at fill factor " + fillFactor + ": " + statistics.getNumberOfLeaves(),
+					statistics.getNumberOfLeaves() >= fullLeaves && statistics.getNumberOfLeaves() <= fullLeaves + 1);
+			assertTrue(statistics.getTreeDepth() >= 2);
+			assertTrue(index.getIndexSchema().getRootPageNumber() != index.getIndexSchema().getFirstLeafNumber());
+
+			List<DataField> keys = drain(index.lookupKeys(new IntField(0), new IntField(2 * numEntries), true, true));
+			assertEquals(numEntries, keys.size());
+			for (int i = 0; i < numEntries; i++) {
+				assertEquals(new IntField(2 * i), keys.get(i));
+			}
+			for (int key = 0; key < 2 * numEntries; key += 997) {
+				List<RID> expected = key % 2 == 0 ? Collections.singletonList(rid(key)) : Collections.<RID>emptyList();
+				assertEquals(expected, drain(index.lookupRids(new IntField(key))));
+			}
+
+			// the odd keys fall in between the loaded ones, into leaves that may be full
+			List<Integer> odd = new ArrayList<Integer>();
+			for (int key = 1; key < 2 * numEntries; key += 2) {
+				odd.add(key);
+			}
+			Collections.shuffle(odd, this.random);
+			for (int key : odd) {
+				index.insertEntry(new IntField(key), rid(key));
+			}
+			keys = drain(index.lookupKeys(new IntField(0), new IntField(2 * numEntries), true, true));
+			assertEquals(2 * numEntries, keys.size());
+			for (int i = 0; i < keys.size(); i++) {
+				assertEquals(new IntField(i), keys.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Tests that a bulk load without entries leaves the root leaf as the only page.
+	 */
+	@Test
+	public void testBulkLoadWithoutEntries() throws Exception
+	{
+		BTreeIndex index = createIndex(new IndexSchema(this.tableSchema, 0));
+		int root = index.getIndexSchema().getRootPageNumber();
+		IndexStatistics statistics = index.bulkLoad(Collections.<Pair<DataField, RID>>emptyList().iterator(), 1.0f);
+
+		assertEquals(1, statistics.getNumberOfLeaves());
+		assertEquals(1, statistics.getTreeDepth());
+		assertEquals(root, index.getIndexSchema().getRootPageNumber());
+		index.insertEntry(new IntField(7), rid(7));
+		assertEquals(Collections.singletonList(rid(7)), drain(index.lookupRids(new IntField(7))));
+	}
+
+	/**
+	 * Tests that a bulk load keeps the duplicates of a non-unique index, also where they span
+	 * several leaves, but rejects them in a unique index.
+	 */
+	@Test
+	public void testBulkLoadOfDuplicates() throws Exception
+	{
+		BTreeIndex index = createIndex(new IndexSchema(this.tableSchema, 0));
+		int numDuplicates = 3 * index.getIndexSchema().getMaximalLeafEntries();
+		List<Pair<DataField, RID>> entries = new ArrayList<Pair<DataField, RID>>();
+		entries.add(new Pair<DataField, RID>(new IntField(1), rid(0)));
+		for (int i = 0; i < numDuplicates; i++) {
+			entries.add(new Pair<DataField, RID>(new IntField(5), rid(i)));
+		}
+		entries.add(new Pair<DataField, RID>(new IntField(9), rid(0)));
+		index.bulkLoad(entries.iterator(), 1.0f);
+
+		List<RID> rids = drain(index.lookupRids(new IntField(5)));
+		assertEquals(numDuplicates, rids.size());
+		for (int i = 0; i < numDuplicates; i++) {
+			assertTrue(rids.contains(rid(i)));
+		}
+		assertEquals(Collections.singletonList(rid(0)), drain(index.lookupRids(new IntField(9))));
+
+		BTreeIndex unique = createIndex(new IndexSchema(this.tableSchema, 0, true));
+		try {
+			unique.bulkLoad(entries.iterator(), 1.0f);
+			fail("The bulk load of duplicates into a unique index should have failed.");
+		}
+		catch (DuplicateException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that a bulk load rejects entries that are not sorted by key, invalid fill factors, and
+	 * indexes that are not empty.
+	 */
+	@Test
+	public void testBulkLoadRejectsInvalidInput() throws Exception
+	{
+		BTreeIndex index = createIndex(new IndexSchema(this.tableSchema, 0));
+		List<Pair<DataField, RID>> unsorted = new ArrayList<Pair<DataField, RID>>();
+		unsorted.add(new Pair<DataField, RID>(new IntField(1), rid(1)));
+		unsorted.add(new Pair<DataField, RID>(new IntField(3), rid(3)));
+		unsorted.add(new Pair<DataField, RID>(new IntField(2), rid(2)));
+		try {
+			index.bulkLoad(unsorted.iterator(), 1.0f);
+			fail("The bulk load of unsorted entries should have failed.");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		BTreeIndex other = createIndex(new IndexSchema(this.tableSchema, 0));
+		for (float fillFactor : new float[] { 0.0f, -0.5f, 1.5f, Float.NaN }) {
+			try {
+				other.bulkLoad(Collections.<Pair<DataField, RID>>emptyList().iterator(), fillFactor);
+				fail("The bulk load with fill factor " + fillFactor + " should have failed.");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+
+		other.insertEntry(new IntField(4), rid(4));
+		try {
+			other.bulkLoad(Collections.singletonList(new Pair<DataField, RID>(new IntField(5), rid(5))).iterator(), 1.0f);
+			fail("The bulk load of a filled index should have failed.");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(Collections.singletonList(rid(4)), drain(other.lookupRids(new IntField(4))));
+		assertEquals(Collections.<RID>emptyList(), drain(other.lookupRids(new IntField(5))));
+	}
+
+	/**
+	 * Tests that fan-out and leaf entries of an index with compressed keys are estimated for keys
+	 * of average length, which exceeds the numbers of the uncompressed index, and that a bulk
+	 * load fills the compressed leaves by their space, whether the keys compress better or worse
+	 * than the estimate assumes.
+	 */
+	@Test(timeout = 120000)
+	public void testBulkLoadOfCompressedKeys() throws Exception
+	{
+		IndexSchema uncompressed = new IndexSchema(this.tableSchema, 1);
+		IndexSchema compressed = new IndexSchema(this.tableSchema, 1, PageSize.SIZE_4096, false, true, 1, 1);
+		assertTrue(compressed.getFanOut() > uncompressed.getFanOut());
+		assertTrue(compressed.getMaximalLeafEntries() > uncompressed.getMaximalLeafEntries());
+		int estimate = compressed.getMaximalLeafEntries();
+
+		final int numEntries = 20000;
+		DataType keyType = DataType.charType(24);
+		for (int keyLength : new int[] { 2, 5, 24 }) {
+			BTreeIndex index = createIndex(new IndexSchema(this.tableSchema, 1, PageSize.SIZE_4096, false, true, 1, 1));
+			List<Pair<DataField, RID>> entries = new ArrayList<Pair<DataField, RID>>();
+			for (int i = 0; i < numEntries; i++) {
+				// the keys are padded with blanks, unless they fill the column
+				String key;
+				if (keyLength == 2) {
+					key = new String(new char[] { (char) (0x100 + i / 200), (char) (0x100 + i % 200) });
+				}
+				else if (keyLength == 5) {
+					key = String.format("%05d", i);
+				}
+				else {
+					key = String.format("%05d%019d", i, this.random.nextLong() & Long.MAX_VALUE);
+				}
+				entries.add(new Pair<DataField, RID>(keyType.getFromString(key), rid(i)));
+			}
+			IndexStatistics statistics = index.bulkLoad(entries.iterator(), 1.0f);
+			int perLeaf = numEntries / statistics.getNumberOfLeaves();
+			if (keyLength == 2) {
+				// more entries than fit for keys of average length, and than the load buffers at first
+				assertTrue("Entries per leaf: " + perLeaf, perLeaf > 2 * estimate + 1);
+			}
+			else if (keyLength == 24) {
+				assertTrue("Entries per leaf: " + perLeaf, perLeaf < estimate);
+			}
+
+			List<DataField> keys = drain(index.lookupKeys(null, null, true, true));
+			assertEquals(numEntries, keys.size());
+			for (int i = 0; i < numEntries; i++) {
+				assertEquals(entries.get(i).getFirst(), keys.get(i));
+			}
+			for (int i = 0; i < numEntries; i += 449) {
+				assertEquals(Collections.singletonList(rid(i)), drain(index.lookupRids(entries.get(i).getFirst())));
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates an empty index with the given schema in a temp file and registers it with the
+	 * buffer pool.
+	 */
+	private BTreeIndex createIndex(IndexSchema schema) throws Exception
+	{
+		File file = File.createTempFile("btree-operations", ".mdix");
+		file.delete();
+		IndexResourceManager manager = IndexResourceManager.createIndex(file, schema);
+		this.indexFiles.add(file);
+		this.indexManagers.add(manager);
+		int resourceId = this.indexManagers.size();
+		this.pool.registerResource(resourceId, manager);
+		return AbstractExtensionFactory.getExtensionFactory().createBTreeIndex(schema, this.pool, resourceId);
+	}
+
+	/**
+	 * Reads all remaining elements from the iterator.
+	 */
+	static <E> List<E> drain(IndexResultIterator<E> iterator) throws Exception
+	{
+		List<E> result = new ArrayList<E>();
+		while (iterator.hasNext()) {
+			result.add(iterator.next());
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the RID that the test stores with the given key.
+	 */
+	static RID rid(int key)
+	{
+		return new RID(key / 64, key % 64);
+	}
+}
@@ -0,0 +1,353 @@
+package de.tuberlin.dima.minidb.test.io.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.catalogue.ColumnSchema;
+import de.tuberlin.dima.minidb.catalogue.IndexSchema;
+import de.tuberlin.dima.minidb.catalogue.TableSchema;
+import de.tuberlin.dima.minidb.core.BigIntField;
+import de.tuberlin.dima.minidb.core.CharField;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.core.DateField;
+import de.tuberlin.dima.minidb.core.DoubleField;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.core.RID;
+import de.tuberlin.dima.minidb.core.SmallIntField;
+import de.tuberlin.dima.minidb.io.cache.PageSize;
+import de.tuberlin.dima.minidb.io.index.BTreeIndex;
+import de.tuberlin.dima.minidb.io.index.CompositeKeyEncoding;
+import de.tuberlin.dima.minidb.io.index.IndexResourceManager;
+import de.tuberlin.dima.minidb.io.index.IndexResultIterator;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
+import de.tuberlin.dima.minidb.test.io.manager.TestBufferPoolIOStudents;
+
+/**
+ * Test case for indexes over several columns, whose keys are the values of the columns encoded
+ * into one CHAR key. The indexes are created in temp files over random tuples with few distinct
+ * values per column and some NULLs, and are all cached by one buffer pool.
+ */
+public class TestCompositeIndexStudents
+{
+	/**
+	 * The number of pages the buffer pool caches.
+	 */
+	private static final int CACHE_SIZE = 256;
+
+	/**
+	 * The number of tuples that are indexed.
+	 */
+	private static final int NUM_TUPLES = 10000;
+
+	/**
+	 * The random number generator.
+	 */
+	private final Random random = new Random(4412093L);
+
+	/**
+	 * The schema of the indexed table.
+	 */
+	private TableSchema tableSchema;
+
+	/**
+	 * The indexed tuples.
+	 */
+	private List<DataTuple> tuples;
+
+	/**
+	 * The buffer pool manager holding the index pages.
+	 */
+	private BufferPoolManager pool;
+
+	/**
+	 * The files of the indexes created by the test.
+	 */
+	private List<File> indexFiles;
+
+	/**
+	 * The resource managers of the indexes created by the test.
+	 */
+	private List<IndexResourceManager> indexManagers;
+
+
+	/**
+	 * Creates the table schema and the tuples and starts the buffer pool.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		AbstractExtensionFactory.initializeDefault();
+
+		this.tableSchema = new TableSchema(PageSize.SIZE_4096);
+		this.tableSchema.addColumn(ColumnSchema.createColumnSchema("a", DataType.intType(), true));
+		this.tableSchema.addColumn(ColumnSchema.createColumnSchema("b", DataType.smallIntType(), true));
+		this.tableSchema.addColumn(ColumnSchema.createColumnSchema("c", DataType.charType(4), true));
+		this.tableSchema.addColumn(ColumnSchema.createColumnSchema("d", DataType.doubleType(), true));
+		this.tableSchema.addColumn(ColumnSchema.createColumnSchema("e", DataType.dateType(), true));
+		this.tableSchema.addColumn(ColumnSchema.createColumnSchema("f", DataType.bigIntType(), true));
+
+		this.tuples = new ArrayList<DataTuple>(NUM_TUPLES);
+		for (int i = 0; i < NUM_TUPLES; i++) {
+			DataTuple tuple = new DataTuple(this.tableSchema.getNumberOfColumns());
+			for (int c = 0; c < tuple.getNumberOfFields(); c++) {
+				tuple.assignDataField(randomField(this.tableSchema.getColumn(c).getDataType()), c);
+			}
+			this.tuples.add(tuple);
+		}
+
+		this.indexFiles = new ArrayList<File>();
+		this.indexManagers = new ArrayList<IndexResourceManager>();
+		this.pool = AbstractExtensionFactory.getExtensionFactory().createBufferPoolManager(
+				TestBufferPoolIOStudents.createConfig("CACHE_SIZE_FOR_PAGE_SIZE_4096", String.valueOf(CACHE_SIZE)),
+				Logger.getLogger("Test-CompositeIndex-Logger"));
+		this.pool.startIOThreads();
+	}
+
+	/**
+	 * Closes the buffer pool and deletes the indexes.
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		this.pool.closeBufferPool();
+		for (IndexResourceManager manager : this.indexManagers) {
+			manager.closeResource();
+		}
+		for (File file : this.indexFiles) {
+			IndexResourceManager.deleteIndex(file);
+		}
+	}
+
+	/**
+	 * Tests that the keys of two tuples compare like the values of the indexed columns, column
+	 * by column, for columns of all supported types in any order, including NULLs, negative
+	 * numbers and CHAR values shorter than their column.
+	 */
+	@Test
+	public void testKeysCompareLikeColumns() throws Exception
+	{
+		int[][] columnSets = { { 0, 1 }, { 2, 0, 3 }, { 4, 5, 1 }, { 3, 2 } };
+		for (int[] columns : columnSets) {
+			IndexSchema schema = new IndexSchema(this.tableSchema, columns);
+			for (int i = 0; i < 50000; i++) {
+				DataTuple first = this.tuples.get(this.random.nextInt(NUM_TUPLES));
+				DataTuple second = this.tuples.get(this.random.nextInt(NUM_TUPLES));
+				assertEquals("Keys of " + first + " and " + second,
+						Integer.signum(compare(first, second, columns)),
+						Integer.signum(schema.getKey(first).compareTo(schema.getKey(second))));
+			}
+		}
+	}
+
+	/**
+	 * Tests that a CHAR value that is shorter than its column has the same key as the value read
+	 * back from the column, which is padded with U+0000, and that it sorts before the values it
+	 * is a prefix of.
+	 */
+	@Test
+	public void testShortCharValuesMatchTheirBinaryForm() throws Exception
+	{
+		DataType type = DataType.charType(4);
+		CompositeKeyEncoding encoding = new CompositeKeyEncoding(new DataType[] { type, DataType.intType() });
+		IntField second = new IntField(7);
+
+		String[] values = { "", "a", "ab", "abc", "abcd" };
+		for (String value : values) {
+			byte[] buffer = new byte[type.getNumberOfBytes()];
+			new CharField(value).encodeBinary(buffer, 0);
+			DataField readBack = type.getFromBinary(buffer);
+			if (value.isEmpty()) {
+				assertTrue(readBack.isNULL());
+				continue;
+			}
+			assertEquals(encoding.encode(new DataField[] { readBack, second }),
+					encoding.encode(new DataField[] { new CharField(value), second }));
+		}
+		assertTrue(encoding.encode(new DataField[] { new CharField("ab"), new IntField(Integer.MAX_VALUE) }).compareTo(
+				encoding.encode(new DataField[] { new CharField("ab "), new IntField(Integer.MIN_VALUE) })) < 0);
+	}
+
+	/**
+	 * Tests that point lookups on all columns and range lookups on a prefix of the columns with
+	 * a range on the column behind it return exactly the RIDs of the matching tuples, on indexes
+	 * with plain and with compressed keys.
+	 */
+	@Test
+	public void testLookupsOnColumnPrefixes() throws Exception
+	{
+		int[][] columnSets = { { 0, 1 }, { 2, 0, 3 }, { 4, 5, 1 }, { 3, 2 } };
+		boolean[] compressed = { false, true, false, true };
+		for (int s = 0; s < columnSets.length; s++) {
+			int[] columns = columnSets[s];
+			IndexSchema schema = new IndexSchema(this.tableSchema, columns, PageSize.SIZE_4096, false, compressed[s], 1, 1);
+			BTreeIndex index = createIndex(schema);
+			for (int i = 0; i < NUM_TUPLES; i++) {
+				index.insertEntry(schema.getKey(this.tuples.get(i)), new RID(0, i));
+			}
+			CompositeKeyEncoding encoding = schema.getCompositeKeyEncoding();
+
+			for (int round = 0; round < 300; round++) {
+				DataTuple probe = this.tuples.get(this.random.nextInt(NUM_TUPLES));
+				DataTuple otherProbe = this.tuples.get(this.random.nextInt(NUM_TUPLES));
+				int numEqual = this.random.nextInt(columns.length + 1);
+				DataField[] lower = new DataField[columns.length];
+				DataField[] upper = new DataField[columns.length];
+				for (int i = 0; i < numEqual; i++) {
+					lower[i] = upper[i] = probe.getField(columns[i]);
+				}
+
+				if (numEqual == columns.length) {
+					Set<Integer> expected = matching(columns, lower, upper, numEqual, false, false, true, true);
+					assertEquals(expected, tupleIndexes(index.lookupRids(encoding.encode(lower))));
+					continue;
+				}
+
+				// a range on the column behind the equal ones, open on one side or on none
+				DataField low = probe.getField(columns[numEqual]);
+				DataField high = otherProbe.getField(columns[numEqual]);
+				if (low.compareTo(high) > 0) {
+					DataField swap = low;
+					low = high;
+					high = swap;
+				}
+				int bounds = this.random.nextInt(3);
+				boolean hasLower = bounds != 1;
+				boolean hasUpper = bounds != 0;
+				// a bound on the equal columns alone includes them
+				boolean lowerInclusive = !hasLower || this.random.nextBoolean();
+				boolean upperInclusive = !hasUpper || this.random.nextBoolean();
+				lower[numEqual] = low;
+				upper[numEqual] = high;
+
+				Set<Integer> expected = matching(columns, lower, upper, numEqual, hasLower, hasUpper,
+						lowerInclusive, upperInclusive);
+				assertEquals(expected, tupleIndexes(index.lookupRids(
+						encoding.encodeLowerBound(lower, hasLower ? numEqual + 1 : numEqual, lowerInclusive),
+						encoding.encodeUpperBound(upper, hasUpper ? numEqual + 1 : numEqual, upperInclusive),
+						lowerInclusive, upperInclusive)));
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates an empty index with the given schema, registered with the buffer pool.
+	 */
+	private BTreeIndex createIndex(IndexSchema schema) throws Exception
+	{
+		File file = File.createTempFile("composite-index", ".mdix");
+		file.delete();
+		IndexResourceManager manager = IndexResourceManager.createIndex(file, schema);
+		this.indexFiles.add(file);
+		this.indexManagers.add(manager);
+		int resourceId = this.indexManagers.size();
+		this.pool.registerResource(resourceId, manager);
+		return AbstractExtensionFactory.getExtensionFactory().createBTreeIndex(schema, this.pool, resourceId);
+	}
+
+	/**
+	 * Gets the indexes of the tuples that have the given values in the leading columns and, if
+	 * the bounds are set, a value within them in the column behind the leading ones.
+	 */
+	private Set<Integer> matching(int[] columns, DataField[] lower, DataField[] upper, int numEqual,
+			boolean hasLower, boolean hasUpper, boolean lowerInclusive, boolean upperInclusive)
+	{
+		Set<Integer> result = new HashSet<Integer>();
+		for (int i = 0; i < NUM_TUPLES; i++) {
+			DataTuple tuple = this.tuples.get(i);
+			boolean matches = true;
+			for (int c = 0; c < numEqual && matches; c++) {
+				matches = tuple.getField(columns[c]).compareTo(lower[c]) == 0;
+			}
+			if (matches && hasLower) {
+				int cmp = tuple.getField(columns[numEqual]).compareTo(lower[numEqual]);
+				matches = lowerInclusive ? cmp >= 0 : cmp > 0;
+			}
+			if (matches && hasUpper) {
+				int cmp = tuple.getField(columns[numEqual]).compareTo(upper[numEqual]);
+				matches = upperInclusive ? cmp <= 0 : cmp < 0;
+			}
+			if (matches) {
+				result.add(i);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads all RIDs from the iterator and returns their tuple indexes.
+	 */
+	private static Set<Integer> tupleIndexes(IndexResultIterator<RID> iterator) throws Exception
+	{
+		Set<Integer> result = new HashSet<Integer>();
+		for (RID rid : TestBTreeIndexOperationsStudents.drain(iterator)) {
+			assertTrue("Returned RID twice: " + rid, result.add(rid.getTupleIndex()));
+		}
+		return result;
+	}
+
+	/**
+	 * Compares the given tuples on the given columns, column by column.
+	 */
+	private static int compare(DataTuple first, DataTuple second, int[] columns)
+	{
+		for (int column : columns) {
+			int cmp = first.getField(column).compareTo(second.getField(column));
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Creates a random field of the given type out of few distinct values, some of them NULL.
+	 */
+	private DataField randomField(DataType type) throws Exception
+	{
+		boolean isNull = this.random.nextInt(20) == 0;
+		switch (type.getBasicType()) {
+		case INT:
+			return isNull ? type.getNullValue() : new IntField(this.random.nextInt(41) - 20);
+		case SMALL_INT:
+			return isNull ? type.getNullValue() : new SmallIntField((short) (this.random.nextInt(61) - 30));
+		case BIG_INT:
+			return isNull ? type.getNullValue() : new BigIntField(
+					this.random.nextInt(5) == 0 ? this.random.nextLong() : this.random.nextInt(11) - 5);
+		case DOUBLE:
+			return isNull ? type.getNullValue() : new DoubleField((this.random.nextInt(21) - 10) / 4.0);
+		case DATE:
+			return isNull ? type.getNullValue() : new DateField(1 + this.random.nextInt(28),
+					this.random.nextInt(12), this.random.nextInt(6) - 2);
+		case CHAR:
+			if (isNull) {
+				return type.getNullValue();
+			}
+			char[] chars = new char[this.random.nextInt(type.getLength()) + 1];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) ('a' + this.random.nextInt(3));
+			}
+			return new CharField(new String(chars));
+		default:
+			throw new IllegalArgumentException("Unsupported type " + type);
+		}
+	}
+}
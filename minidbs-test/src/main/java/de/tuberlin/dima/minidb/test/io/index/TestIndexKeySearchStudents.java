@@ -0,0 +1,307 @@
+package de.tuberlin.dima.minidb.test.io.index;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.catalogue.ColumnSchema;
+import de.tuberlin.dima.minidb.catalogue.IndexSchema;
+import de.tuberlin.dima.minidb.catalogue.TableSchema;
+import de.tuberlin.dima.minidb.core.CharField;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.core.RID;
+import de.tuberlin.dima.minidb.io.cache.PageSize;
+import de.tuberlin.dima.minidb.io.index.BTreeIndex;
+import de.tuberlin.dima.minidb.io.index.BTreeLeafPage;
+import de.tuberlin.dima.minidb.io.index.IndexPageFactory;
+import de.tuberlin.dima.minidb.io.index.IndexResourceManager;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
+import de.tuberlin.dima.minidb.test.io.manager.TestBufferPoolIOStudents;
+
+/**
+ * Test case for the search of keys in the index pages, which compares the keys with the binary
+ * keys on the page without decoding them, and for the range lookups that bound every leaf by
+ * two such searches.
+ */
+public class TestIndexKeySearchStudents
+{
+	/**
+	 * The random number generator.
+	 */
+	private final Random random = new Random(2209177L);
+
+	/**
+	 * The schema of the indexed table.
+	 */
+	private TableSchema tableSchema;
+
+	/**
+	 * The buffer pool manager holding the index pages.
+	 */
+	private BufferPoolManager pool;
+
+	/**
+	 * The file of the index created by the test, if any.
+	 */
+	private File indexFile;
+
+	/**
+	 * The resource manager of the index created by the test, if any.
+	 */
+	private IndexResourceManager indexManager;
+
+
+	/**
+	 * Creates the table schema and starts the buffer pool.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		AbstractExtensionFactory.initializeDefault();
+
+		this.tableSchema = new TableSchema(PageSize.SIZE_4096);
+		this.tableSchema.addColumn(ColumnSchema.createColumnSchema("id", DataType.intType(), false));
+
+		this.pool = AbstractExtensionFactory.getExtensionFactory().createBufferPoolManager(
+				TestBufferPoolIOStudents.createConfig("CACHE_SIZE_FOR_PAGE_SIZE_4096", "64"),
+				Logger.getLogger("Test-IndexKeySearch-Logger"));
+		this.pool.startIOThreads();
+	}
+
+	/**
+	 * Closes the buffer pool and deletes the index.
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		this.pool.closeBufferPool();
+		if (this.indexManager != null) {
+			this.indexManager.closeResource();
+			IndexResourceManager.deleteIndex(this.indexFile);
+		}
+	}
+
+	/**
+	 * Tests that comparing a field with a binary value of its type gives the same result as
+	 * comparing it with the decoded value, for NULL values, the bounds of the types, and random
+	 * bytes that decode to arbitrary values.
+	 */
+	@Test
+	public void testCompareToBinaryMatchesCompareTo() throws Exception
+	{
+		checkCompareToBinary(DataType.smallIntType(), "-32767", "-1", "0", "1", "32767", "NULL");
+		checkCompareToBinary(DataType.intType(), "-2147483647", "-5", "0", "7", "2147483647", "NULL");
+		checkCompareToBinary(DataType.bigIntType(), "-9223372036854775807", "-3", "0", "11", "9223372036854775807", "NULL");
+		checkCompareToBinary(DataType.floatType(), "-3.4E38", "-1.5", "0", "0.25", "3.4E38", "NULL");
+		checkCompareToBinary(DataType.doubleType(), "-1.7E308", "-1.5", "0", "0.25", "1.7E308", "NULL");
+		checkCompareToBinary(DataType.dateType(), "1899-12-31", "1970-01-01", "2000-02-29", "2038-01-19", "NULL");
+		checkCompareToBinary(DataType.timeType(), "00:00:00", "12:30:15", "12:30:15 (UTC +2)", "23:59:59", "NULL");
+		checkCompareToBinary(DataType.timestampType(), "1969-12-31 23:59:59.999", "1970-01-01 00:00:00.000",
+				"2012-06-30 23:59:59.999", "NULL");
+		checkCompareToBinary(DataType.charType(6), "", "a", "ab", "abc", "abd", "zzzzzz", "NULL");
+
+		// characters that are shorter than the column, as composite keys and some decoders create them
+		DataType charType = DataType.charType(6);
+		List<DataField> values = new ArrayList<DataField>();
+		values.add(new CharField("ab"));
+		values.add(new CharField("ab\u0000"));
+		values.add(new CharField("ab "));
+		values.add(charType.getFromString("ab"));
+		checkCompareToBinary(charType, values);
+	}
+
+	/**
+	 * Tests that the binary search on a leaf finds the first position of a key and the position
+	 * after its last one, for keys with many, one, or no entries on the leaf, and that the RIDs at
+	 * a range of positions are read as the identifiers of the RIDs that were inserted.
+	 */
+	@Test
+	public void testLeafPositionsOfDuplicateKeys() throws Exception
+	{
+		IndexSchema schema = new IndexSchema(this.tableSchema, 0);
+		BTreeLeafPage leaf = (BTreeLeafPage) IndexPageFactory.initIndexPage(
+				schema, new byte[PageSize.SIZE_4096.getNumberOfBytes()], 1, true);
+		assertEquals(0, leaf.getPositionForKey(new IntField(3)));
+		assertEquals(0, leaf.getPositionAfterKey(new IntField(3)));
+
+		// key k is contained k % 4 times, the keys divisible by four not at all
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int key = 0; key < 100; key++) {
+			for (int i = 0; i < key % 4; i++) {
+				keys.add(key);
+			}
+		}
+		Collections.shuffle(keys, this.random);
+		for (int i = 0; i < keys.size(); i++) {
+			leaf.insertKeyRIDPair(new IntField(keys.get(i)), new RID(keys.get(i), i));
+		}
+		Collections.sort(keys);
+
+		for (int key = -1; key <= 100; key++) {
+			int first = 0;
+			while (first < keys.size() && keys.get(first) < key) {
+				first++;
+			}
+			int after = first;
+			while (after < keys.size() && keys.get(after) == key) {
+				after++;
+			}
+			assertEquals("First position of key " + key, first, leaf.getPositionForKey(new IntField(key)));
+			assertEquals("Position after key " + key, after, leaf.getPositionAfterKey(new IntField(key)));
+
+			long[] ids = new long[after - first];
+			leaf.getRidIdsAtPositions(first, after - first, ids);
+			for (int i = 0; i < ids.length; i++) {
+				RID rid = leaf.getRidAtPosition(first + i);
+				assertEquals(key, rid.getPageIndex());
+				assertEquals(rid.getID(), ids[i]);
+			}
+		}
+	}
+
+	/**
+	 * Tests that a RID is read from its binary form as the identifier it was created with.
+	 */
+	@Test
+	public void testRidIdFromBinary() throws Exception
+	{
+		byte[] buffer = new byte[3 + RID.getRIDSize()];
+		for (int i = 0; i < 1000; i++) {
+			RID rid = i == 0 ? new RID(Integer.MAX_VALUE, Integer.MAX_VALUE) : new RID(this.random.nextLong() & Long.MAX_VALUE);
+			rid.encodeBinary(buffer, 3);
+			assertEquals(rid.getID(), RID.getRidIdFromBinary(buffer, 3));
+			assertEquals(rid, new RID(RID.getRidIdFromBinary(buffer, 3)));
+		}
+	}
+
+	/**
+	 * Tests that range lookups return exactly the entries between their bounds, also if the bounds
+	 * have duplicates that continue over several leaves, for all combinations of included and
+	 * excluded bounds.
+	 */
+	@Test
+	public void testRangeLookupsOverDuplicates() throws Exception
+	{
+		BTreeIndex index = createIndex(new IndexSchema(this.tableSchema, 0));
+		int manyDuplicates = 2 * index.getIndexSchema().getMaximalLeafEntries() + 17;
+
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int key = 0; key < 1000; key++) {
+			int num = key == 500 ? manyDuplicates : key % 5;
+			for (int i = 0; i < num; i++) {
+				keys.add(key);
+			}
+		}
+		Collections.shuffle(keys, this.random);
+		for (int i = 0; i < keys.size(); i++) {
+			index.insertEntry(new IntField(keys.get(i)), new RID(keys.get(i), i));
+		}
+		Collections.sort(keys);
+
+		int[] bounds = { -1, 0, 1, 4, 5, 499, 500, 501, 777, 999, 1000 };
+		for (int start : bounds) {
+			for (int stop : bounds) {
+				for (int inclusion = 0; inclusion < 4; inclusion++) {
+					boolean startIncluded = (inclusion & 1) != 0;
+					boolean stopIncluded = (inclusion & 2) != 0;
+					List<Integer> expected = new ArrayList<Integer>();
+					for (int key : keys) {
+						if ((key > start || startIncluded && key == start) && (key < stop || stopIncluded && key == stop)) {
+							expected.add(key);
+						}
+					}
+					String range = (startIncluded ? "[" : "(") + start + ", " + stop + (stopIncluded ? "]" : ")");
+
+					List<DataField> found = TestBTreeIndexOperationsStudents.drain(
+							index.lookupKeys(new IntField(start), new IntField(stop), startIncluded, stopIncluded));
+					assertEquals("Keys in " + range, expected.size(), found.size());
+					for (int i = 0; i < found.size(); i++) {
+						assertEquals("Keys in " + range, new IntField(expected.get(i)), found.get(i));
+					}
+
+					List<RID> rids = TestBTreeIndexOperationsStudents.drain(
+							index.lookupRids(new IntField(start), new IntField(stop), startIncluded, stopIncluded));
+					assertEquals("RIDs in " + range, expected.size(), rids.size());
+					for (int i = 0; i < rids.size(); i++) {
+						assertEquals("RIDs in " + range, expected.get(i).intValue(), rids.get(i).getPageIndex());
+					}
+				}
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Checks the binary comparisons of the values parsed from the given strings and of random
+	 * values of the type with each other.
+	 */
+	private void checkCompareToBinary(DataType type, String... strings) throws Exception
+	{
+		List<DataField> values = new ArrayList<DataField>();
+		for (String string : strings) {
+			values.add(type.getFromString(string));
+		}
+		checkCompareToBinary(type, values);
+	}
+
+	/**
+	 * Checks the binary comparisons of the given values and of random values of the type with
+	 * each other. Each value is compared with the binary form of each other value, written at an
+	 * offset into a larger buffer.
+	 */
+	private void checkCompareToBinary(DataType type, List<DataField> values) throws Exception
+	{
+		int width = type.getNumberOfBytes();
+		List<byte[]> encoded = new ArrayList<byte[]>();
+		for (DataField value : values) {
+			byte[] buffer = new byte[width + 5];
+			value.encodeBinary(buffer, 5);
+			encoded.add(buffer);
+		}
+		for (int i = 0; i < 200; i++) {
+			byte[] buffer = new byte[width + 5];
+			this.random.nextBytes(buffer);
+			encoded.add(buffer);
+		}
+
+		List<DataField> fields = new ArrayList<DataField>(values);
+		for (byte[] buffer : encoded.subList(values.size(), encoded.size())) {
+			fields.add(type.getFromBinary(buffer, 5, width));
+		}
+		for (DataField field : fields) {
+			for (byte[] buffer : encoded) {
+				DataField decoded = type.getFromBinary(buffer, 5, width);
+				assertEquals(type + ": " + field + " compared with " + decoded,
+						Integer.signum(field.compareTo(decoded)), Integer.signum(field.compareToBinary(buffer, 5, width)));
+			}
+		}
+	}
+
+	/**
+	 * Creates an empty index with the given schema in a temp file and registers it with the
+	 * buffer pool.
+	 */
+	private BTreeIndex createIndex(IndexSchema schema) throws Exception
+	{
+		this.indexFile = File.createTempFile("index-key-search", ".mdix");
+		this.indexFile.delete();
+		this.indexManager = IndexResourceManager.createIndex(this.indexFile, schema);
+		this.pool.registerResource(1, this.indexManager);
+		return AbstractExtensionFactory.getExtensionFactory().createBTreeIndex(schema, this.pool, 1);
+	}
+}
@@ -0,0 +1,706 @@
+package de.tuberlin.dima.minidb.test.io.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.dima.minidb.Config;
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.catalogue.ColumnSchema;
+import de.tuberlin.dima.minidb.catalogue.TableSchema;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.io.cache.CacheableData;
+import de.tuberlin.dima.minidb.io.cache.PageFormatException;
+import de.tuberlin.dima.minidb.io.cache.PageSize;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolException;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
+import de.tuberlin.dima.minidb.io.manager.ResourceManager;
+import de.tuberlin.dima.minidb.io.tables.TablePage;
+import de.tuberlin.dima.minidb.io.tables.TableResourceManager;
+
+/**
+ * Test case for the I/O scheduling of the buffer pool manager, run against a table file.
+ */
+public class TestBufferPoolIOStudents
+{
+	/**
+	 * The id under which the table is registered.
+	 */
+	private static final int RESOURCE_ID = 17;
+
+	/**
+	 * The number of data pages in the table.
+	 */
+	private static final int NUM_PAGES = 1024;
+
+	/**
+	 * The number of tuples that are initially on each page.
+	 */
+	private static final int TUPLES_PER_PAGE = 10;
+
+	/**
+	 * The schema of the table, holding the page number and the position of each tuple.
+	 */
+	private TableSchema schema;
+
+	/**
+	 * The table file.
+	 */
+	private File tableFile;
+
+	/**
+	 * The resource manager of the table.
+	 */
+	private TableResourceManager table;
+
+	/**
+	 * The buffer pool manager under test.
+	 */
+	private BufferPoolManager pool;
+
+
+	/**
+	 * Creates the table and fills its pages.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		AbstractExtensionFactory.initializeDefault();
+
+		this.schema = new TableSchema(PageSize.SIZE_4096);
+		this.schema.addColumn(ColumnSchema.createColumnSchema("page", DataType.intType(), false));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("position", DataType.intType(), false));
+
+		this.tableFile = File.createTempFile("bufferpool-io", ".mdtbl");
+		this.tableFile.delete();
+		this.table = TableResourceManager.createTable(this.tableFile, this.schema);
+		for (int i = 0; i < NUM_PAGES; i++) {
+			byte[] buffer = new byte[PageSize.SIZE_4096.getNumberOfBytes()];
+			TablePage page = this.table.reserveNewPage(buffer);
+			for (int t = 0; t < TUPLES_PER_PAGE; t++) {
+				page.insertTuple(tuple(page.getPageNumber(), t));
+			}
+			this.table.writePageToResource(buffer, page);
+		}
+	}
+
+	/**
+	 * Closes the buffer pool and deletes the table.
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		if (this.pool != null) {
+			this.pool.closeBufferPool();
+		}
+		this.table.closeResource();
+		TableResourceManager.deleteTable(this.tableFile);
+	}
+
+	/**
+	 * Tests that the pages of a single table are read by several read threads, each page exactly once.
+	 */
+	@Test
+	public void testSingleTableReadBySeveralThreads() throws Exception
+	{
+		startPool(4, 10000);
+		RecordingResourceManager recorder = new RecordingResourceManager(this.table, true);
+		this.pool.registerResource(RESOURCE_ID, recorder);
+
+		int first = this.table.getFirstDataPageNumber();
+		int last = this.table.getLastDataPageNumber();
+		this.pool.prefetchPages(RESOURCE_ID, first, last);
+		checkAllPages(first, last, TUPLES_PER_PAGE);
+
+		assertTrue("The scan of one table should be served by more than one read thread",
+				recorder.getReadingThreads().size() > 1);
+		for (int pageNumber = first; pageNumber <= last; pageNumber++) {
+			assertEquals("Page " + pageNumber + " read more than once", 1, recorder.getReadCount(pageNumber));
+		}
+	}
+
+	/**
+	 * Tests that several read threads that each take long runs of a scan do not wait for each other's
+	 * I/O buffers, when there are fewer I/O buffers than pages in a run.
+	 */
+	@Test(timeout = 60000)
+	public void testLongRunsWithFewIOBuffers() throws Exception
+	{
+		startPool(createConfig("NUM_IO_READ_THREADS", "4", "NUM_IO_BUFFERS", "4",
+				"CACHE_SIZE_FOR_PAGE_SIZE_4096", "64"));
+		this.pool.registerResource(RESOURCE_ID, this.table);
+
+		int first = this.table.getFirstDataPageNumber();
+		int last = this.table.getLastDataPageNumber();
+		this.pool.prefetchPages(RESOURCE_ID, first, last);
+		checkAllPages(first, last, TUPLES_PER_PAGE);
+	}
+
+	/**
+	 * Tests that a resource that does not allow concurrent reads is always read by the same thread.
+	 */
+	@Test
+	public void testNonConcurrentResourceReadByOneThread() throws Exception
+	{
+		startPool(4, 10000);
+		RecordingResourceManager recorder = new RecordingResourceManager(this.table, false);
+		this.pool.registerResource(RESOURCE_ID, recorder);
+
+		int first = this.table.getFirstDataPageNumber();
+		int last = this.table.getLastDataPageNumber();
+		this.pool.prefetchPages(RESOURCE_ID, first, last);
+		checkAllPages(first, last, TUPLES_PER_PAGE);
+
+		assertEquals(1, recorder.getReadingThreads().size());
+	}
+
+	/**
+	 * Tests that modifications survive the eviction of the pages, whether the pages are fetched again
+	 * while they are queued for writing or after they have been written.
+	 */
+	@Test
+	public void testModifiedPagesSurviveEviction() throws Exception
+	{
+		startPool(2, 256);
+		this.pool.registerResource(RESOURCE_ID, this.table);
+
+		int first = this.table.getFirstDataPageNumber();
+		int last = this.table.getLastDataPageNumber();
+		for (int round = 0; round < 2; round++) {
+			for (int pageNumber = first; pageNumber <= last; pageNumber++) {
+				TablePage page = (TablePage) this.pool.getPageAndPin(RESOURCE_ID, pageNumber);
+				page.insertTuple(tuple(pageNumber, TUPLES_PER_PAGE + round));
+				this.pool.unpinPage(RESOURCE_ID, pageNumber);
+			}
+		}
+		checkAllPages(first, last, TUPLES_PER_PAGE + 2);
+	}
+
+	/**
+	 * Tests that many threads requesting random pages concurrently, through a cache that is smaller
+	 * than the table, all get the right pages.
+	 */
+	@Test(timeout = 60000)
+	public void testConcurrentRequestersOnSmallCache() throws Exception
+	{
+		startPool(4, 700);
+		this.pool.registerResource(RESOURCE_ID, this.table);
+		requestRandomPages(8, 5000);
+		// a scan through the small cache fails if pins have been leaked on the cache
+		checkAllPages(this.table.getFirstDataPageNumber(), this.table.getLastDataPageNumber(), TUPLES_PER_PAGE);
+	}
+
+	/**
+	 * Tests that a failed read is reported to all requesters of the page as an exception and that
+	 * the page can be requested again afterwards.
+	 */
+	@Test
+	public void testFailedReadThrows() throws Exception
+	{
+		startPool(2, 10000);
+		RecordingResourceManager recorder = new RecordingResourceManager(this.table, true);
+		this.pool.registerResource(RESOURCE_ID, recorder);
+		final int pageNumber = this.table.getFirstDataPageNumber() + 5;
+
+		CountDownLatch gate = new CountDownLatch(1);
+		recorder.blockReads(gate);
+		recorder.failReads(pageNumber, pageNumber);
+		Thread[] requesters = new Thread[4];
+		final AtomicReference<Throwable>[] errors = createErrors(requesters.length);
+		for (int i = 0; i < requesters.length; i++) {
+			requesters[i] = requestInThread(pageNumber, errors[i]);
+		}
+		// give the requesters the chance to join the same load
+		Thread.sleep(200);
+		gate.countDown();
+		for (int i = 0; i < requesters.length; i++) {
+			requesters[i].join(10000);
+			assertFalse("Requester blocked after the load failed", requesters[i].isAlive());
+			assertTrue("Expected a BufferPoolException, got " + errors[i].get(), errors[i].get() instanceof BufferPoolException);
+		}
+
+		recorder.failReads(Integer.MAX_VALUE, Integer.MIN_VALUE);
+		TablePage page = (TablePage) this.pool.getPageAndPin(RESOURCE_ID, pageNumber);
+		assertEquals(pageNumber, page.getPageNumber());
+		this.pool.unpinPage(RESOURCE_ID, pageNumber);
+	}
+
+	/**
+	 * Tests that closing the pool fails the loads that are still pending instead of leaving their
+	 * requesters blocked.
+	 */
+	@Test
+	public void testCloseFailsPendingLoads() throws Exception
+	{
+		startPool(1, 10000);
+		RecordingResourceManager recorder = new RecordingResourceManager(this.table, true);
+		this.pool.registerResource(RESOURCE_ID, recorder);
+		int first = this.table.getFirstDataPageNumber();
+
+		CountDownLatch gate = new CountDownLatch(1);
+		recorder.blockReads(gate);
+		try {
+			// the first load blocks the only read thread, the second one stays in its queue
+			this.pool.prefetchPage(RESOURCE_ID, first);
+			AtomicReference<Throwable>[] errors = createErrors(1);
+			Thread requester = requestInThread(first + 100, errors[0]);
+			Thread.sleep(200);
+
+			this.pool.closeBufferPool();
+			requester.join(10000);
+			assertFalse("Requester blocked after the pool was closed", requester.isAlive());
+			assertTrue("Expected a BufferPoolException, got " + errors[0].get(), errors[0].get() instanceof BufferPoolException);
+		}
+		finally {
+			gate.countDown();
+		}
+	}
+
+	/**
+	 * Tests that an interrupted requester gets an exception and keeps its interrupt status.
+	 */
+	@Test
+	public void testInterruptedRequester() throws Exception
+	{
+		startPool(1, 10000);
+		RecordingResourceManager recorder = new RecordingResourceManager(this.table, true);
+		this.pool.registerResource(RESOURCE_ID, recorder);
+		final int pageNumber = this.table.getFirstDataPageNumber();
+
+		CountDownLatch gate = new CountDownLatch(1);
+		recorder.blockReads(gate);
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		final AtomicReference<Boolean> interrupted = new AtomicReference<Boolean>();
+		Thread requester = new Thread() {
+			@Override
+			public void run() {
+				try {
+					TestBufferPoolIOStudents.this.pool.getPageAndPin(RESOURCE_ID, pageNumber);
+				}
+				catch (Throwable t) {
+					error.set(t);
+				}
+				interrupted.set(Thread.currentThread().isInterrupted());
+			}
+		};
+		requester.start();
+		Thread.sleep(200);
+		requester.interrupt();
+		requester.join(10000);
+		gate.countDown();
+
+		assertFalse("Requester blocked after the interrupt", requester.isAlive());
+		assertTrue("Expected a BufferPoolException, got " + error.get(), error.get() instanceof BufferPoolException);
+		assertTrue("The interrupt status was lost", interrupted.get());
+
+		// the load completes for the other requesters
+		TablePage page = (TablePage) this.pool.getPageAndPin(RESOURCE_ID, pageNumber);
+		assertEquals(pageNumber, page.getPageNumber());
+		this.pool.unpinPage(RESOURCE_ID, pageNumber);
+	}
+
+	/**
+	 * Tests that clean pages evicted from the page cache are served from the off-heap store. The
+	 * pages are changed on disk behind the pool's back, so only the copies in the store still
+	 * hold the old tuples.
+	 */
+	@Test
+	public void testOffHeapStoreServesEvictedPages() throws Exception
+	{
+		startPool(2, 256, 2048);
+		this.pool.registerResource(RESOURCE_ID, this.table);
+		int first = this.table.getFirstDataPageNumber();
+		int last = this.table.getLastDataPageNumber();
+		checkAllPages(first, last, TUPLES_PER_PAGE);
+
+		// the first pages of the scan have been evicted from the page cache by now
+		for (int pageNumber = first; pageNumber < first + 100; pageNumber++) {
+			overwriteOnDisk(pageNumber);
+		}
+		checkAllPages(first, first + 99, TUPLES_PER_PAGE);
+	}
+
+	/**
+	 * Tests that many threads requesting random pages concurrently, through a cache that demotes its
+	 * evicted pages to the off-heap store, all get the right pages.
+	 */
+	@Test(timeout = 60000)
+	public void testConcurrentRequestersThroughOffHeapStore() throws Exception
+	{
+		startPool(4, 256, 512);
+		this.pool.registerResource(RESOURCE_ID, this.table);
+		requestRandomPages(8, 5000);
+		checkAllPages(this.table.getFirstDataPageNumber(), this.table.getLastDataPageNumber(), TUPLES_PER_PAGE);
+	}
+
+	/**
+	 * Tests that the off-heap store does not serve pages of a truncated table, neither for page numbers
+	 * that have been reserved again nor for page numbers that do not exist anymore.
+	 */
+	@Test
+	public void testTruncateInvalidatesOffHeapPages() throws Exception
+	{
+		startPool(2, 256, 2048);
+		this.pool.registerResource(RESOURCE_ID, this.table);
+		int first = this.table.getFirstDataPageNumber();
+		int last = this.table.getLastDataPageNumber();
+		checkAllPages(first, last, TUPLES_PER_PAGE);
+
+		this.table.truncate();
+		TablePage page = (TablePage) this.pool.createNewPageAndPin(RESOURCE_ID);
+		assertEquals(first, page.getPageNumber());
+		page.insertTuple(tuple(first, 0));
+		this.pool.unpinPage(RESOURCE_ID, first);
+		page = (TablePage) this.pool.getPageAndPin(RESOURCE_ID, first);
+		assertEquals(1, page.getNumRecordsOnPage());
+		this.pool.unpinPage(RESOURCE_ID, first);
+
+		try {
+			this.pool.getPageAndPin(RESOURCE_ID, first + 10);
+			fail("The page does not exist anymore after the truncation.");
+		}
+		catch (BufferPoolException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that a resource that is registered under the id of an earlier one does not get the
+	 * earlier resource's pages from the off-heap store.
+	 */
+	@Test
+	public void testReRegisteredIdDoesNotSeeOldPages() throws Exception
+	{
+		startPool(2, 256, 2048);
+		this.pool.registerResource(RESOURCE_ID, this.table);
+		int first = this.table.getFirstDataPageNumber();
+		int last = this.table.getLastDataPageNumber();
+		checkAllPages(first, last, TUPLES_PER_PAGE);
+
+		// replace the table by one with the same pages and changed contents on the first pages
+		this.table.closeResource();
+		this.table = TableResourceManager.openTable(this.tableFile);
+		for (int pageNumber = first; pageNumber < first + 100; pageNumber++) {
+			overwriteOnDisk(pageNumber);
+		}
+		this.pool.registerResource(RESOURCE_ID, this.table);
+		checkAllPages(first, first + 99, TUPLES_PER_PAGE + 1);
+	}
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates and starts the buffer pool with the given number of read threads and cache size.
+	 */
+	private void startPool(int readThreads, int cacheSize) throws Exception
+	{
+		startPool(readThreads, cacheSize, 0);
+	}
+
+	/**
+	 * Creates and starts the buffer pool with the given number of read threads, cache size and
+	 * off-heap cache size.
+	 */
+	private void startPool(int readThreads, int cacheSize, int offHeapSize) throws Exception
+	{
+		startPool(createConfig("NUM_IO_READ_THREADS", String.valueOf(readThreads),
+				"CACHE_SIZE_FOR_PAGE_SIZE_4096", String.valueOf(cacheSize),
+				"OFF_HEAP_CACHE_SIZE_FOR_PAGE_SIZE_4096", String.valueOf(offHeapSize)));
+	}
+
+	/**
+	 * Creates and starts the buffer pool with the given configuration.
+	 */
+	private void startPool(Config config) throws Exception
+	{
+		this.pool = AbstractExtensionFactory.getExtensionFactory().createBufferPoolManager(config,
+				Logger.getLogger("Test-BufferPoolIO-Logger"));
+		this.pool.startIOThreads();
+	}
+
+	/**
+	 * Creates a configuration that holds the given key value pairs and the defaults otherwise.
+	 */
+	public static Config createConfig(String... entries) throws IOException
+	{
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+		xml.append("<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">\n");
+		xml.append("<properties>\n");
+		for (int i = 0; i < entries.length; i += 2) {
+			xml.append("<entry key=\"").append(entries[i]).append("\">").append(entries[i + 1]).append("</entry>\n");
+		}
+		xml.append("</properties>\n");
+		return Config.loadConfig(new ByteArrayInputStream(xml.toString().getBytes("UTF-8")));
+	}
+
+	/**
+	 * Starts a thread that requests the given page and records the error it gets.
+	 */
+	private Thread requestInThread(final int pageNumber, final AtomicReference<Throwable> error)
+	{
+		Thread requester = new Thread() {
+			@Override
+			public void run() {
+				try {
+					TestBufferPoolIOStudents.this.pool.getPageAndPin(RESOURCE_ID, pageNumber);
+					fail("The page should not have been loaded");
+				}
+				catch (Throwable t) {
+					error.set(t);
+				}
+			}
+		};
+		requester.start();
+		return requester;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static AtomicReference<Throwable>[] createErrors(int num)
+	{
+		AtomicReference<Throwable>[] errors = new AtomicReference[num];
+		for (int i = 0; i < num; i++) {
+			errors[i] = new AtomicReference<Throwable>();
+		}
+		return errors;
+	}
+
+	/**
+	 * Lets the given number of threads request the given number of random pages each, concurrently,
+	 * and checks that all of them get the right pages.
+	 */
+	private void requestRandomPages(int numRequesters, final int numRequests) throws Exception
+	{
+		final int first = this.table.getFirstDataPageNumber();
+		final int last = this.table.getLastDataPageNumber();
+
+		Thread[] requesters = new Thread[numRequesters];
+		final AtomicReference<Throwable>[] errors = createErrors(requesters.length);
+		for (int i = 0; i < requesters.length; i++) {
+			final int seed = i;
+			requesters[i] = new Thread() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					try {
+						for (int r = 0; r < numRequests; r++) {
+							int pageNumber = first + random.nextInt(last - first + 1);
+							TablePage page = (TablePage) TestBufferPoolIOStudents.this.pool.getPageAndPin(RESOURCE_ID, pageNumber);
+							try {
+								assertEquals(pageNumber, page.getPageNumber());
+								assertEquals(tuple(pageNumber, 3), page.getDataTuple(3, Long.MAX_VALUE, 2));
+							}
+							finally {
+								TestBufferPoolIOStudents.this.pool.unpinPage(RESOURCE_ID, pageNumber);
+							}
+						}
+					}
+					catch (Throwable t) {
+						errors[seed].set(t);
+					}
+				}
+			};
+			requesters[i].start();
+		}
+		for (int i = 0; i < requesters.length; i++) {
+			requesters[i].join();
+			if (errors[i].get() != null) {
+				throw new AssertionError("Requester " + i + " failed", errors[i].get());
+			}
+		}
+	}
+
+	/**
+	 * Fetches all pages of the table and checks their tuples.
+	 */
+	private void checkAllPages(int first, int last, int tuplesPerPage) throws Exception
+	{
+		for (int pageNumber = first; pageNumber <= last; pageNumber++) {
+			TablePage page = (TablePage) this.pool.getPageAndPin(RESOURCE_ID, pageNumber);
+			assertEquals(pageNumber, page.getPageNumber());
+			assertEquals(tuplesPerPage, page.getNumRecordsOnPage());
+			for (int t = 0; t < tuplesPerPage; t++) {
+				DataTuple tuple = page.getDataTuple(t, Long.MAX_VALUE, 2);
+				assertEquals(tuple(pageNumber, t), tuple);
+			}
+			this.pool.unpinPage(RESOURCE_ID, pageNumber);
+		}
+	}
+
+	/**
+	 * Adds a tuple to the given page directly in the table file, bypassing the buffer pool.
+	 */
+	private void overwriteOnDisk(int pageNumber) throws Exception
+	{
+		byte[] buffer = new byte[PageSize.SIZE_4096.getNumberOfBytes()];
+		TablePage page = this.table.readPageFromResource(buffer, pageNumber);
+		page.insertTuple(tuple(pageNumber, TUPLES_PER_PAGE));
+		this.table.writePageToResource(buffer, page);
+	}
+
+	/**
+	 * Creates the tuple at the given position of the given page.
+	 */
+	private static DataTuple tuple(int pageNumber, int position)
+	{
+		DataTuple tuple = new DataTuple(2);
+		tuple.assignDataField(new IntField(pageNumber), 0);
+		tuple.assignDataField(new IntField(position), 1);
+		return tuple;
+	}
+
+	/**
+	 * Resource manager that passes all calls to a table and records which threads read which pages.
+	 * Reads of the pages in the failing range throw an I/O exception, and reads wait for the gate, if one is set.
+	 */
+	static class RecordingResourceManager extends ResourceManager
+	{
+		private final TableResourceManager table;
+
+		private final boolean concurrentReads;
+
+		private final Set<Thread> readingThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+		private final AtomicIntegerArray readCounts;
+
+		private volatile int firstFailingPage = Integer.MAX_VALUE;
+
+		private volatile int lastFailingPage = Integer.MIN_VALUE;
+
+		private volatile CountDownLatch gate;
+
+		RecordingResourceManager(TableResourceManager table, boolean concurrentReads)
+		{
+			this.table = table;
+			this.concurrentReads = concurrentReads;
+			this.readCounts = new AtomicIntegerArray(table.getLastDataPageNumber() + 1);
+		}
+
+		void failReads(int firstPage, int lastPage)
+		{
+			this.firstFailingPage = firstPage;
+			this.lastFailingPage = lastPage;
+		}
+
+		void blockReads(CountDownLatch gate)
+		{
+			this.gate = gate;
+		}
+
+		Set<Thread> getReadingThreads()
+		{
+			return this.readingThreads;
+		}
+
+		int getReadCount(int pageNumber)
+		{
+			return this.readCounts.get(pageNumber);
+		}
+
+		@Override
+		public PageSize getPageSize()
+		{
+			return this.table.getPageSize();
+		}
+
+		@Override
+		public boolean supportsConcurrentReads()
+		{
+			return this.concurrentReads;
+		}
+
+		@Override
+		public void truncate() throws IOException
+		{
+			this.table.truncate();
+		}
+
+		@Override
+		public void closeResource() throws IOException
+		{
+			// the table is closed by the test
+		}
+
+		@Override
+		public CacheableData readPageFromResource(byte[] buffer, int pageNumber) throws IOException
+		{
+			record(pageNumber, 1);
+			return this.table.readPageFromResource(buffer, pageNumber);
+		}
+
+		@Override
+		public CacheableData[] readPagesFromResource(byte[][] buffers, int firstPageNumber) throws IOException
+		{
+			record(firstPageNumber, buffers.length);
+			return this.table.readPagesFromResource(buffers, firstPageNumber);
+		}
+
+		@Override
+		public void writePageToResource(byte[] buffer, CacheableData wrapper) throws IOException
+		{
+			this.table.writePageToResource(buffer, wrapper);
+		}
+
+		@Override
+		public void writePagesToResource(byte[][] buffers, CacheableData[] wrappers) throws IOException
+		{
+			this.table.writePagesToResource(buffers, wrappers);
+		}
+
+		@Override
+		public CacheableData reserveNewPage(byte[] ioBuffer) throws IOException, PageFormatException
+		{
+			return this.table.reserveNewPage(ioBuffer);
+		}
+
+		@Override
+		public CacheableData reserveNewPage(byte[] ioBuffer, Enum<?> type) throws IOException, PageFormatException
+		{
+			return this.table.reserveNewPage(ioBuffer, type);
+		}
+
+		private void record(int firstPageNumber, int numPages) throws IOException
+		{
+			this.readingThreads.add(Thread.currentThread());
+			CountDownLatch gate = this.gate;
+			if (gate != null) {
+				try {
+					gate.await();
+				}
+				catch (InterruptedException e) {
+					throw new IOException("Interrupted while waiting for the gate", e);
+				}
+			}
+			for (int i = 0; i < numPages; i++) {
+				int pageNumber = firstPageNumber + i;
+				if (pageNumber >= this.firstFailingPage && pageNumber <= this.lastFailingPage) {
+					throw new IOException("Simulated read error on page " + pageNumber);
+				}
+			}
+			for (int i = 0; i < numPages; i++) {
+				this.readCounts.incrementAndGet(firstPageNumber + i);
+			}
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package de.tuberlin.dima.minidb.test.io.tables;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.catalogue.ColumnSchema;
+import de.tuberlin.dima.minidb.catalogue.TableSchema;
+import de.tuberlin.dima.minidb.core.BigIntField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.io.cache.CacheableData;
+import de.tuberlin.dima.minidb.io.cache.PageSize;
+import de.tuberlin.dima.minidb.io.tables.TablePage;
+import de.tuberlin.dima.minidb.io.tables.TableResourceManager;
+
+/**
+ * Test case for the memory-mapped read mode of the table resource manager.
+ */
+public class TestMappedTableStudents
+{
+	/**
+	 * The number of data pages written before the table is reopened.
+	 */
+	private static final int NUM_PAGES = 300;
+
+	/**
+	 * The page size of the table.
+	 */
+	private static final PageSize PAGE_SIZE = PageSize.SIZE_8192;
+
+	/**
+	 * The random number generator.
+	 */
+	private final Random random = new Random(78234627L);
+
+	/**
+	 * The schema of the table.
+	 */
+	private TableSchema schema;
+
+	/**
+	 * The table file.
+	 */
+	private File tableFile;
+
+	/**
+	 * The currently open resource manager.
+	 */
+	private TableResourceManager table;
+
+
+	/**
+	 * Creates the table and fills its pages with random tuples.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		AbstractExtensionFactory.initializeDefault();
+
+		this.schema = new TableSchema(PAGE_SIZE);
+		this.schema.addColumn(ColumnSchema.createColumnSchema("id", DataType.intType(), false));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("value", DataType.bigIntType(), true));
+
+		this.tableFile = File.createTempFile("mapped-table", ".mdtbl");
+		this.tableFile.delete();
+		this.table = TableResourceManager.createTable(this.tableFile, this.schema);
+		for (int i = 0; i < NUM_PAGES; i++) {
+			writeRandomPage(this.table);
+		}
+		this.table.closeResource();
+		this.table = null;
+	}
+
+	/**
+	 * Closes and deletes the table.
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		if (this.table != null) {
+			this.table.closeResource();
+		}
+		TableResourceManager.deleteTable(this.tableFile);
+	}
+
+	/**
+	 * Tests that the mapped table returns the same pages as explicit reads, page by page and in sequences.
+	 */
+	@Test
+	public void testMappedReadsMatchChannelReads() throws Exception
+	{
+		this.table = TableResourceManager.openTable(this.tableFile, false);
+		assertFalse(this.table.isMemoryMapped());
+		int first = this.table.getFirstDataPageNumber();
+		int last = this.table.getLastDataPageNumber();
+		assertEquals(NUM_PAGES, last - first + 1);
+		byte[][] expected = new byte[last + 1][];
+		for (int pageNumber = first; pageNumber <= last; pageNumber++) {
+			expected[pageNumber] = newBuffer();
+			this.table.readPageFromResource(expected[pageNumber], pageNumber);
+		}
+		this.table.closeResource();
+
+		this.table = TableResourceManager.openTable(this.tableFile, true);
+		assertTrue(this.table.isMemoryMapped());
+		for (int pageNumber = first; pageNumber <= last; pageNumber++) {
+			byte[] buffer = newBuffer();
+			TablePage page = this.table.readPageFromResource(buffer, pageNumber);
+			assertEquals(pageNumber, page.getPageNumber());
+			assertArrayEquals("Page " + pageNumber + " differs", expected[pageNumber], buffer);
+		}
+		for (int start = first; start <= last; start += 32) {
+			int num = Math.min(32, last - start + 1);
+			byte[][] buffers = new byte[num][];
+			for (int i = 0; i < num; i++) {
+				buffers[i] = newBuffer();
+			}
+			CacheableData[] pages = this.table.readPagesFromResource(buffers, start);
+			for (int i = 0; i < num; i++) {
+				assertEquals(start + i, pages[i].getPageNumber());
+				assertArrayEquals("Page " + (start + i) + " differs", expected[start + i], buffers[i]);
+			}
+		}
+	}
+
+	/**
+	 * Tests that pages written after the table has been opened are visible through the mapping,
+	 * including pages that were already mapped before they were overwritten.
+	 */
+	@Test
+	public void testWrittenPagesVisibleThroughMapping() throws Exception
+	{
+		this.table = TableResourceManager.openTable(this.tableFile, true);
+		int last = this.table.getLastDataPageNumber();
+		// map the last region before the file grows
+		this.table.readPageFromResource(newBuffer(), last);
+
+		byte[] written = writeRandomPage(this.table);
+		byte[] read = newBuffer();
+		this.table.readPageFromResource(read, last + 1);
+		assertArrayEquals(written, read);
+
+		// overwrite a mapped page
+		byte[] buffer = newBuffer();
+		TablePage page = this.table.readPageFromResource(buffer, last);
+		page.insertTuple(randomTuple());
+		this.table.writePageToResource(buffer, page);
+		read = newBuffer();
+		this.table.readPageFromResource(read, last);
+		assertArrayEquals(buffer, read);
+	}
+
+	/**
+	 * Tests that a truncated table does not serve its old pages from the mapping anymore.
+	 */
+	@Test
+	public void testTruncateDropsMapping() throws Exception
+	{
+		this.table = TableResourceManager.openTable(this.tableFile, true);
+		int first = this.table.getFirstDataPageNumber();
+		this.table.readPageFromResource(newBuffer(), first + 10);
+		this.table.truncate();
+
+		try {
+			this.table.readPageFromResource(newBuffer(), first + 10);
+			fail("The page should not exist anymore after the truncation.");
+		}
+		catch (IOException e) {
+			// expected
+		}
+
+		byte[] written = writeRandomPage(this.table);
+		byte[] read = newBuffer();
+		this.table.readPageFromResource(read, first);
+		assertArrayEquals(written, read);
+	}
+
+	/**
+	 * Tests that readers of the mapped table either get a page or an I/O exception while the table
+	 * is truncated and refilled under them, but never read a mapping past the end of the shrunk file.
+	 */
+	@Test(timeout = 60000)
+	public void testReadsConcurrentWithTruncate() throws Exception
+	{
+		this.table = TableResourceManager.openTable(this.tableFile, true);
+		final int first = this.table.getFirstDataPageNumber();
+		final int last = this.table.getLastDataPageNumber();
+		final AtomicBoolean done = new AtomicBoolean(false);
+
+		Thread[] readers = new Thread[4];
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		for (int i = 0; i < readers.length; i++) {
+			final Random random = new Random(i);
+			readers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (!done.get()) {
+							int pageNumber = first + random.nextInt(last - first + 1);
+							try {
+								TablePage page = TestMappedTableStudents.this.table.readPageFromResource(newBuffer(), pageNumber);
+								assertEquals(pageNumber, page.getPageNumber());
+							}
+							catch (IOException e) {
+								// expected while the page is truncated or not yet written again
+							}
+						}
+					}
+					catch (Throwable t) {
+						error.compareAndSet(null, t);
+					}
+				}
+			};
+			readers[i].start();
+		}
+		// truncate and refill the table a few times, so that the old mappings are hit by the readers
+		for (int round = 0; round < 20; round++) {
+			Thread.sleep(5);
+			this.table.truncate();
+			for (int i = 0; i < NUM_PAGES; i++) {
+				writeRandomPage(this.table);
+			}
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		if (error.get() != null) {
+			throw new AssertionError("A reader failed", error.get());
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Reserves a new page, fills it with random tuples and writes it.
+	 *
+	 * @return The written page.
+	 */
+	private byte[] writeRandomPage(TableResourceManager manager) throws Exception
+	{
+		byte[] buffer = newBuffer();
+		TablePage page = manager.reserveNewPage(buffer);
+		int num = 1 + this.random.nextInt(100);
+		for (int i = 0; i < num; i++) {
+			page.insertTuple(randomTuple());
+		}
+		manager.writePageToResource(buffer, page);
+		return buffer;
+	}
+
+	private DataTuple randomTuple()
+	{
+		DataTuple tuple = new DataTuple(2);
+		tuple.assignDataField(new IntField(this.random.nextInt()), 0);
+		tuple.assignDataField(this.random.nextInt(10) == 0 ? DataType.bigIntType().getNullValue() : new BigIntField(this.random.nextLong()), 1);
+		return tuple;
+	}
+
+	private static byte[] newBuffer()
+	{
+		return new byte[PAGE_SIZE.getNumberOfBytes()];
+	}
+}
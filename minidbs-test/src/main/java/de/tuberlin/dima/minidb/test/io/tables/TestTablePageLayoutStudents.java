@@ -0,0 +1,260 @@
+package de.tuberlin.dima.minidb.test.io.tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.catalogue.ColumnSchema;
+import de.tuberlin.dima.minidb.catalogue.TableSchema;
+import de.tuberlin.dima.minidb.core.BigIntField;
+import de.tuberlin.dima.minidb.core.CharField;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.core.DateField;
+import de.tuberlin.dima.minidb.core.DoubleField;
+import de.tuberlin.dima.minidb.core.FloatField;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.core.SmallIntField;
+import de.tuberlin.dima.minidb.core.TimeField;
+import de.tuberlin.dima.minidb.core.TimestampField;
+import de.tuberlin.dima.minidb.core.VarcharField;
+import de.tuberlin.dima.minidb.io.cache.PageSize;
+import de.tuberlin.dima.minidb.io.tables.TablePage;
+import de.tuberlin.dima.minidb.parser.Predicate.Operator;
+import de.tuberlin.dima.minidb.qexec.LowLevelPredicate;
+
+/**
+ * Test case for the binary layout of the table pages: the header format, the decoding of the
+ * records through the cached per-schema layout and the evaluation of predicates on the encoded records.
+ */
+public class TestTablePageLayoutStudents
+{
+	/**
+	 * The page size used by the tests.
+	 */
+	private static final PageSize PAGE_SIZE = PageSize.SIZE_4096;
+
+	/**
+	 * A schema with a column of every type, variable-length columns between the fixed-length ones.
+	 */
+	private TableSchema schema;
+
+
+	/**
+	 * Loads the extension factory and creates the schema.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		AbstractExtensionFactory.initializeDefault();
+		this.schema = new TableSchema(PAGE_SIZE);
+		this.schema.addColumn(ColumnSchema.createColumnSchema("a", DataType.smallIntType(), true));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("b", DataType.varcharType(40), true));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("c", DataType.intType(), true));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("d", DataType.bigIntType(), true));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("e", DataType.varcharType(10), true));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("f", DataType.floatType(), true));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("g", DataType.doubleType(), true));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("h", DataType.charType(7), true));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("i", DataType.dateType(), true));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("j", DataType.timeType(), true));
+		this.schema.addColumn(ColumnSchema.createColumnSchema("k", DataType.timestampType(), true));
+	}
+
+	/**
+	 * Tests that the header values are stored little-endian at their fixed offsets, so pages
+	 * written by earlier versions stay readable.
+	 */
+	@Test
+	public void testHeaderEncoding() throws Exception
+	{
+		byte[] buffer = new byte[PAGE_SIZE.getNumberOfBytes()];
+		TablePage page = AbstractExtensionFactory.getExtensionFactory().initTablePage(this.schema, buffer, 4711);
+		page.insertTuple(tuple(1));
+		page.insertTuple(tuple(2));
+		page.insertTuple(tuple(3));
+
+		int recordWidth = 4;
+		for (int i = 0; i < this.schema.getNumberOfColumns(); i++) {
+			DataType type = this.schema.getColumn(i).getDataType();
+			recordWidth += type.getBasicType().isFixLength() ? type.getNumberOfBytes() : 8;
+		}
+		int variableBytes = 0;
+		for (int n = 1; n <= 3; n++) {
+			variableBytes += tuple(n).getField(1).getNumberOfBytes() + tuple(n).getField(4).getNumberOfBytes();
+		}
+
+		ByteBuffer header = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(TablePage.TABLE_DATA_PAGE_HEADER_MAGIC_NUMBER, header.getInt(0));
+		assertEquals(4711, header.getInt(4));
+		assertEquals(3, header.getInt(8));
+		assertEquals(recordWidth, header.getInt(12));
+		assertEquals(buffer.length - variableBytes, header.getInt(16));
+
+		// the variable-length pointer holds the length in the upper and the offset in the lower half
+		long pointer = header.getLong(TablePage.TABLE_DATA_PAGE_HEADER_BYTES + 4 + 2);
+		int length = (int) (pointer >>> 32);
+		assertEquals(tuple(1).getField(1).getNumberOfBytes(), length);
+		assertEquals(tuple(1).getField(1), DataType.varcharType(40).getFromBinary(buffer, (int) pointer, length));
+	}
+
+	/**
+	 * Tests that a page wrapped around the buffer of another page decodes every column, alone and
+	 * together with the others, including NULL values of all types.
+	 */
+	@Test
+	public void testRewrappedPageDecodesAllColumns() throws Exception
+	{
+		byte[] buffer = new byte[PAGE_SIZE.getNumberOfBytes()];
+		TablePage writer = AbstractExtensionFactory.getExtensionFactory().initTablePage(this.schema, buffer, 3);
+		int num = 0;
+		while (writer.insertTuple(num % 5 == 4 ? nullTuple() : tuple(num))) {
+			num++;
+		}
+		assertTrue(num > 10);
+
+		TablePage reader = AbstractExtensionFactory.getExtensionFactory().createTablePage(this.schema, buffer);
+		assertEquals(3, reader.getPageNumber());
+		assertEquals(num, reader.getNumRecordsOnPage());
+		int numCols = this.schema.getNumberOfColumns();
+		for (int n = 0; n < num; n++) {
+			DataTuple expected = n % 5 == 4 ? nullTuple() : tuple(n);
+			assertEquals(expected, reader.getDataTuple(n, Long.MAX_VALUE, numCols));
+			for (int c = 0; c < numCols; c++) {
+				DataTuple single = reader.getDataTuple(n, 1L << c, 1);
+				assertEquals("Column " + c + " of tuple " + n, expected.getField(c), single.getField(0));
+			}
+			// every other column, skipping the variable-length ones in between
+			DataTuple sparse = reader.getDataTuple(n, 0x555L, 6);
+			for (int c = 0, i = 0; c < numCols; c += 2, i++) {
+				assertEquals(expected.getField(c), sparse.getField(i));
+			}
+		}
+	}
+
+	/**
+	 * Tests that pages created after a column has been added to a schema use the layout of the
+	 * extended schema, not the one computed for its earlier state.
+	 */
+	@Test
+	public void testPagesOfGrownSchemaUseNewLayout() throws Exception
+	{
+		TableSchema growing = new TableSchema(PAGE_SIZE);
+		growing.addColumn(ColumnSchema.createColumnSchema("x", DataType.intType(), false));
+		byte[] buffer = new byte[PAGE_SIZE.getNumberOfBytes()];
+		TablePage page = AbstractExtensionFactory.getExtensionFactory().initTablePage(growing, buffer, 0);
+		page.insertTuple(new DataTuple(new DataField[] { new IntField(1) }));
+
+		growing.addColumn(ColumnSchema.createColumnSchema("y", DataType.varcharType(20), false));
+		growing.addColumn(ColumnSchema.createColumnSchema("z", DataType.bigIntType(), false));
+		buffer = new byte[PAGE_SIZE.getNumberOfBytes()];
+		page = AbstractExtensionFactory.getExtensionFactory().initTablePage(growing, buffer, 1);
+		DataTuple tuple = new DataTuple(new DataField[] { new IntField(2), new VarcharField("grown"), new BigIntField(-5L) });
+		page.insertTuple(tuple);
+
+		assertEquals(4 + 4 + 8 + 8, ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN).getInt(12));
+		assertEquals(tuple, page.getDataTuple(0, 0x7L, 3));
+		assertEquals(new BigIntField(-5L), page.getDataTuple(0, 0x4L, 1).getField(0));
+	}
+
+	/**
+	 * Tests that predicates evaluated on the encoded records select exactly the tuples for which the
+	 * predicate holds on the decoded fields, for every type and operator, with literals that are equal
+	 * to, between and outside the stored values, and that deleted records are never selected.
+	 */
+	@Test
+	public void testPredicatesOnEncodedRecords() throws Exception
+	{
+		byte[] buffer = new byte[PAGE_SIZE.getNumberOfBytes()];
+		TablePage page = AbstractExtensionFactory.getExtensionFactory().initTablePage(this.schema, buffer, 0);
+		List<DataTuple> stored = new ArrayList<DataTuple>();
+		int num = 0;
+		while (page.insertTuple(num % 5 == 4 ? nullTuple() : tuple(num))) {
+			stored.add(num % 5 == 4 ? nullTuple() : tuple(num));
+			num++;
+		}
+		page.deleteTuple(2);
+		stored.set(2, null);
+
+		int numCols = this.schema.getNumberOfColumns();
+		for (int c = 0; c < numCols; c++) {
+			// stored values as literals, plus values between and beyond them
+			List<DataField> literals = new ArrayList<DataField>();
+			for (int n = 0; n < 4; n++) {
+				literals.add(tuple(n).getField(c));
+			}
+			literals.add(tuple(num / 2).getField(c));
+			literals.add(tuple(num + 7).getField(c));
+			for (DataField literal : literals) {
+				for (Operator op : new Operator[] { Operator.EQUAL, Operator.NOT_EQUAL, Operator.SMALLER,
+						Operator.SMALLER_OR_EQUAL, Operator.GREATER, Operator.GREATER_OR_EQUAL }) {
+					LowLevelPredicate pred = new LowLevelPredicate(op, literal, c);
+					for (int n = 0; n < num; n++) {
+						DataTuple tuple = page.getDataTuple(new LowLevelPredicate[] { pred }, n, 1L << c, 1);
+						boolean expected = stored.get(n) != null && pred.evaluateWithNull(stored.get(n).getField(c));
+						assertEquals("Column " + c + " " + op + " " + literal + " on tuple " + n, expected, tuple != null);
+					}
+				}
+			}
+		}
+
+		// a conjunction over a fixed-length and a variable-length column
+		LowLevelPredicate[] preds = { new LowLevelPredicate(Operator.GREATER_OR_EQUAL, new IntField(3 * 1000003), 2),
+				new LowLevelPredicate(Operator.SMALLER, new VarcharField("m"), 1) };
+		for (int n = 0; n < num; n++) {
+			DataTuple expected = stored.get(n);
+			if (expected != null && !(preds[0].evaluateWithNull(expected.getField(2)) && preds[1].evaluateWithNull(expected.getField(1)))) {
+				expected = null;
+			}
+			assertEquals(expected, page.getDataTuple(preds, n, Long.MAX_VALUE, numCols));
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a tuple of the test schema whose values are derived from the given number.
+	 */
+	private static DataTuple tuple(int n) throws Exception
+	{
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < n % 40; i++) {
+			text.append((char) ('a' + (n + i) % 26));
+		}
+		return new DataTuple(new DataField[] {
+			new SmallIntField((short) (n * 7)),
+			new VarcharField(text.toString()),
+			new IntField(n * 1000003),
+			new BigIntField(-n * 100000000007L),
+			new VarcharField(String.valueOf(n % 1000)),
+			new FloatField(n / 3.0f),
+			new DoubleField(-n / 7.0),
+			new CharField(String.format("c%06d", n)),
+			new DateField(1 + n % 28, n % 12, 1900 + n),
+			new TimeField(n % 24, n % 60, (n * 7) % 60, 0),
+			new TimestampField(1 + n % 28, n % 12, 2000 + n % 100, n % 24, n % 60, n % 60, n % 1000) });
+	}
+
+	/**
+	 * Creates a tuple of the test schema that holds only NULL values.
+	 */
+	private DataTuple nullTuple()
+	{
+		DataField[] fields = new DataField[this.schema.getNumberOfColumns()];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = this.schema.getColumn(i).getDataType().getNullValue();
+		}
+		return new DataTuple(fields);
+	}
+}
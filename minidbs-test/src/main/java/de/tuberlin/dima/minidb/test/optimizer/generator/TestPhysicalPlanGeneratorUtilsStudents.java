@@ -0,0 +1,288 @@
+package de.tuberlin.dima.minidb.test.optimizer.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.dima.minidb.Constants;
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.catalogue.ColumnSchema;
+import de.tuberlin.dima.minidb.catalogue.IndexDescriptor;
+import de.tuberlin.dima.minidb.catalogue.IndexSchema;
+import de.tuberlin.dima.minidb.catalogue.TableDescriptor;
+import de.tuberlin.dima.minidb.catalogue.TableSchema;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.io.cache.PageSize;
+import de.tuberlin.dima.minidb.io.index.IndexResourceManager;
+import de.tuberlin.dima.minidb.io.tables.TableResourceManager;
+import de.tuberlin.dima.minidb.optimizer.BlockNestedLoopJoinPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.FetchPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.FilterPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.IndexLookupPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.NestedLoopJoinPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.OptimizerPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.OrderedColumn;
+import de.tuberlin.dima.minidb.optimizer.SortPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.TableScanPlanOperator;
+import de.tuberlin.dima.minidb.optimizer.generator.util.PhysicalPlanGeneratorUtils;
+import de.tuberlin.dima.minidb.parser.IntegerLiteral;
+import de.tuberlin.dima.minidb.parser.Predicate;
+import de.tuberlin.dima.minidb.parser.Predicate.Operator;
+import de.tuberlin.dima.minidb.semantics.BaseTableAccess;
+import de.tuberlin.dima.minidb.semantics.Column;
+import de.tuberlin.dima.minidb.semantics.predicate.LocalPredicateAtom;
+
+/**
+ * Test case for the helpers that the plan generator uses to decide which plans it may build.
+ * The plans are put together directly over a table and an index in temp files, without a
+ * database instance.
+ */
+public class TestPhysicalPlanGeneratorUtilsStudents
+{
+	/**
+	 * The file of the table.
+	 */
+	private File tableFile;
+
+	/**
+	 * The file of the index on the first column of the table.
+	 */
+	private File indexFile;
+
+	/**
+	 * The resource manager of the table.
+	 */
+	private TableResourceManager tableManager;
+
+	/**
+	 * The resource manager of the index.
+	 */
+	private IndexResourceManager indexManager;
+
+	/**
+	 * The descriptor of the index.
+	 */
+	private IndexDescriptor index;
+	
+	/**
+	 * The descriptor of the table.
+	 */
+	private TableDescriptor table;
+
+	/**
+	 * The access to the table.
+	 */
+	private BaseTableAccess access;
+
+	/**
+	 * The columns of the table.
+	 */
+	private Column[] columns;
+
+
+	/**
+	 * Creates the table and the index and their descriptors.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		AbstractExtensionFactory.initializeDefault();
+
+		TableSchema schema = new TableSchema(PageSize.SIZE_4096);
+		schema.addColumn(ColumnSchema.createColumnSchema("id", DataType.intType(), false));
+		schema.addColumn(ColumnSchema.createColumnSchema("value", DataType.intType(), true));
+
+		this.tableFile = File.createTempFile("plan-generator-utils", ".mdtbl");
+		this.tableFile.delete();
+		this.tableManager = TableResourceManager.createTable(this.tableFile, schema);
+		TableDescriptor table = new TableDescriptor("T", this.tableFile.getAbsolutePath());
+		table.setResourceProperties(this.tableManager, 1);
+		this.table = table;
+
+		this.indexFile = File.createTempFile("plan-generator-utils", ".mdix");
+		this.indexFile.delete();
+		this.indexManager = IndexResourceManager.createIndex(this.indexFile, new IndexSchema(schema, 0));
+		this.index = new IndexDescriptor("T_ID", "T", this.indexFile.getAbsolutePath());
+		this.index.setResourceProperties(this.indexManager, table, 2);
+
+		this.access = new BaseTableAccess(table);
+		this.access.setOutputCardinality(1000);
+		this.columns = new Column[] { new Column(this.access, DataType.intType(), 0),
+				new Column(this.access, DataType.intType(), 1) };
+	}
+
+	/**
+	 * Closes and deletes the table and the index.
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		this.indexManager.closeResource();
+		IndexResourceManager.deleteIndex(this.indexFile);
+		this.tableManager.closeResource();
+		TableResourceManager.deleteTable(this.tableFile);
+	}
+
+	/**
+	 * Tests that a plan is correlated exactly if it contains a correlated index lookup that is not
+	 * on the inner side of a nested-loop join within the plan. Only uncorrelated plans may be the
+	 * inner side of a block-nested-loop join, which does not re-open it for every outer tuple.
+	 */
+	@Test
+	public void testCorrelatedPlans() throws Exception
+	{
+		OptimizerPlanOperator scan = new TableScanPlanOperator(this.access, this.columns);
+		OptimizerPlanOperator correlatedFetch = new FetchPlanOperator(
+				new IndexLookupPlanOperator(this.index, this.access, 0, 1), this.access, this.columns);
+		int[] outerMap = { 0, 1, -1, -1 };
+		int[] innerMap = { -1, -1, 0, 1 };
+
+		assertFalse(PhysicalPlanGeneratorUtils.isCorrelated(scan));
+		assertTrue(PhysicalPlanGeneratorUtils.isCorrelated(new IndexLookupPlanOperator(this.index, this.access, 0, 1)));
+		assertTrue(PhysicalPlanGeneratorUtils.isCorrelated(correlatedFetch));
+		assertTrue(PhysicalPlanGeneratorUtils.isCorrelated(
+				new SortPlanOperator(correlatedFetch, new int[] { 1 }, new boolean[] { true })));
+
+		// an index-nested-loop join binds the correlation of its inner side
+		assertFalse(PhysicalPlanGeneratorUtils.isCorrelated(
+				new NestedLoopJoinPlanOperator(scan, correlatedFetch, null, outerMap, innerMap, 1)));
+		assertTrue(PhysicalPlanGeneratorUtils.isCorrelated(
+				new NestedLoopJoinPlanOperator(correlatedFetch, scan, null, outerMap, innerMap, 1)));
+	}
+	
+	/**
+	 * Tests that a fetch returns the tuples in the order of the index lookup only if it was
+	 * asked to, since otherwise it returns every batch in the order of the pages.
+	 */
+	@Test
+	public void testFetchKeepsOrderOnlyIfAsked() throws Exception
+	{
+		FetchPlanOperator fetch = new FetchPlanOperator(
+				new IndexLookupPlanOperator(this.index, this.access, 0, 1), this.access, this.columns);
+		assertFalse(fetch.isPreserveOrder());
+		assertNull(fetch.getColumnOrder());
+		
+		fetch.setPreserveOrder(true);
+		OrderedColumn[] order = fetch.getColumnOrder();
+		assertEquals(1, order.length);
+		assertEquals(0, order[0].getColumns()[0].getColumnIndex());
+	}
+	
+	/**
+	 * Tests that a fetch counts as sequential if the batches read pages that lie close together,
+	 * no matter whether all RIDs fit into one batch.
+	 */
+	@Test
+	public void testSequentialFetchDependsOnDistinctPages() throws Exception
+	{
+		this.table.getStatistics().setNumberOfPages(100);
+		assertFalse(createFetch(10).isSequentialFetch());
+		assertTrue(createFetch(200).isSequentialFetch());
+		assertTrue(createFetch(100000).isSequentialFetch());
+		
+		this.table.getStatistics().setNumberOfPages(100000);
+		assertFalse(createFetch(1000).isSequentialFetch());
+		assertFalse(createFetch(1000000).isSequentialFetch());
+	}
+	
+	/**
+	 * Tests that table scans run on the thread of the query unless the parallelism is set, and
+	 * that the parallelism is set for all scans of a plan except the ones on the inner side of a
+	 * nested-loop join, which re-opens them over and over.
+	 */
+	@Test
+	public void testScanParallelismSkipsInnerSidesOfNestedLoopJoins() throws Exception
+	{
+		assertEquals(1, Constants.DEFAULT_SCAN_PARALLELISM);
+		TableScanPlanOperator outer = new TableScanPlanOperator(this.access, this.columns);
+		TableScanPlanOperator inner = new TableScanPlanOperator(this.access, this.columns);
+		TableScanPlanOperator blockOuter = new TableScanPlanOperator(this.access, this.columns);
+		TableScanPlanOperator blockInner = new TableScanPlanOperator(this.access, this.columns);
+		assertEquals(Constants.DEFAULT_SCAN_PARALLELISM, outer.getParallelism());
+
+		int[] outerMap = { 0, 1, -1, -1 };
+		int[] innerMap = { -1, -1, 0, 1 };
+		OptimizerPlanOperator plan = new SortPlanOperator(
+				new NestedLoopJoinPlanOperator(
+						new BlockNestedLoopJoinPlanOperator(blockOuter, blockInner, null, outerMap, innerMap, 1),
+						new SortPlanOperator(inner, new int[] { 1 }, new boolean[] { true }),
+						null, outerMap, innerMap, 1),
+				new int[] { 0 }, new boolean[] { true });
+		PhysicalPlanGeneratorUtils.setScanParallelism(plan, 4);
+		assertEquals(4, blockOuter.getParallelism());
+		assertEquals(1, blockInner.getParallelism());
+		assertEquals(1, inner.getParallelism());
+
+		PhysicalPlanGeneratorUtils.setScanParallelism(outer, 0);
+		assertEquals(0, outer.getParallelism());
+	}
+	
+	/**
+	 * Tests that a filter returns the columns of its child unless it is asked to return only
+	 * the leading ones, dropping the columns that only its predicate needs, and that it rejects
+	 * columns that are not the leading columns of its child.
+	 */
+	@Test
+	public void testFilterReturnsLeadingColumns() throws Exception
+	{
+		OptimizerPlanOperator scan = new TableScanPlanOperator(this.access, this.columns);
+		LocalPredicateAtom predicate = new LocalPredicateAtom(createPredicate(Operator.GREATER, 5), this.columns[1], new IntField(5));
+
+		FilterPlanOperator filter = new FilterPlanOperator(scan, predicate, 500);
+		assertEquals(2, filter.getReturnedColumns().length);
+
+		filter = new FilterPlanOperator(scan, predicate, 500, new Column[] { this.columns[0] });
+		assertEquals(1, filter.getReturnedColumns().length);
+		assertEquals(this.columns[0], filter.getReturnedColumns()[0]);
+		assertEquals(500, filter.getOutputCardinality());
+
+		filter = new FilterPlanOperator(scan, predicate, 500, this.columns);
+		assertEquals(2, filter.getReturnedColumns().length);
+
+		Column[][] invalid = { { this.columns[1] }, { this.columns[1], this.columns[0] },
+				{ this.columns[0], this.columns[1], this.columns[1] } };
+		for (Column[] outputColumns : invalid) {
+			try {
+				new FilterPlanOperator(scan, predicate, 500, outputColumns);
+				fail("The filter should only return the leading columns of its child.");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+	
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Creates a fetch over an index lookup that returns the given number of RIDs.
+	 */
+	private FetchPlanOperator createFetch(long numRids)
+	{
+		return new FetchPlanOperator(new IndexLookupPlanOperator(this.index, this.access, 0, numRids),
+				this.access, this.columns);
+	}
+	
+	/**
+	 * Creates a parsed predicate that compares a column with the given literal.
+	 */
+	private static Predicate createPredicate(Operator op, int literal)
+	{
+		Predicate predicate = new Predicate();
+		predicate.setType(Predicate.PredicateType.COLUMN_LITERAL);
+		predicate.setOperator(op);
+		predicate.setRightHandSide(new IntegerLiteral(literal));
+		return predicate;
+	}
+}
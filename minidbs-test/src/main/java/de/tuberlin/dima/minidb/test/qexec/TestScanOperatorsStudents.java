@@ -0,0 +1,616 @@
+package de.tuberlin.dima.minidb.test.qexec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.catalogue.ColumnSchema;
+import de.tuberlin.dima.minidb.catalogue.TableSchema;
+import de.tuberlin.dima.minidb.core.BigIntField;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.core.DoubleField;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.core.RID;
+import de.tuberlin.dima.minidb.core.VarcharField;
+import de.tuberlin.dima.minidb.io.cache.PageSize;
+import de.tuberlin.dima.minidb.io.manager.BufferPoolManager;
+import de.tuberlin.dima.minidb.io.tables.TablePage;
+import de.tuberlin.dima.minidb.io.tables.TableResourceManager;
+import de.tuberlin.dima.minidb.parser.Predicate.Operator;
+import de.tuberlin.dima.minidb.qexec.BatchOperator;
+import de.tuberlin.dima.minidb.qexec.BloomFilter;
+import de.tuberlin.dima.minidb.qexec.FetchOperator;
+import de.tuberlin.dima.minidb.qexec.FilterOperator;
+import de.tuberlin.dima.minidb.qexec.LowLevelPredicate;
+import de.tuberlin.dima.minidb.qexec.ParallelTableScanOperatorClass;
+import de.tuberlin.dima.minidb.qexec.PhysicalPlanOperator;
+import de.tuberlin.dima.minidb.qexec.QueryExecutionException;
+import de.tuberlin.dima.minidb.qexec.TableScanOperator;
+import de.tuberlin.dima.minidb.qexec.TupleBatch;
+import de.tuberlin.dima.minidb.qexec.predicate.LocalPredicate;
+import de.tuberlin.dima.minidb.qexec.predicate.LocalPredicateConjunction;
+import de.tuberlin.dima.minidb.qexec.predicate.LocalPredicateDisjunction;
+import de.tuberlin.dima.minidb.test.io.manager.TestBufferPoolIOStudents;
+
+/**
+ * Test case for the tuples produced by the table scan, filter and fetch operators, checked in order
+ * and with their multiplicities against the tuples written to the table.
+ */
+public class TestScanOperatorsStudents
+{
+	/**
+	 * The id under which the table is registered.
+	 */
+	private static final int RESOURCE_ID = 5;
+
+	/**
+	 * The number of tuples in the table.
+	 */
+	private static final int NUM_TUPLES = 20000;
+
+	/**
+	 * The number of pages the buffer pool caches, less than the number of pages of the table.
+	 */
+	private static final int CACHE_SIZE = 64;
+
+	/**
+	 * The random number generator.
+	 */
+	private final Random random = new Random(23487621L);
+
+	/**
+	 * The table file.
+	 */
+	private File tableFile;
+
+	/**
+	 * The resource manager of the table.
+	 */
+	private TableResourceManager table;
+
+	/**
+	 * The buffer pool manager holding the table pages.
+	 */
+	private BufferPoolManager pool;
+
+	/**
+	 * The tuples of the table in the order of their pages and positions.
+	 */
+	private List<DataTuple> tuples;
+
+	/**
+	 * The RIDs of the tuples, in the same order.
+	 */
+	private List<RID> rids;
+
+
+	/**
+	 * Writes the table and starts a buffer pool that is smaller than the table.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		AbstractExtensionFactory.initializeDefault();
+
+		TableSchema schema = new TableSchema(PageSize.SIZE_4096);
+		schema.addColumn(ColumnSchema.createColumnSchema("id", DataType.intType(), false));
+		schema.addColumn(ColumnSchema.createColumnSchema("name", DataType.varcharType(20), true));
+		schema.addColumn(ColumnSchema.createColumnSchema("value", DataType.bigIntType(), true));
+		schema.addColumn(ColumnSchema.createColumnSchema("ratio", DataType.doubleType(), true));
+
+		this.tableFile = File.createTempFile("scan-operators", ".mdtbl");
+		this.tableFile.delete();
+		this.table = TableResourceManager.createTable(this.tableFile, schema);
+		this.tuples = new ArrayList<DataTuple>(NUM_TUPLES);
+		this.rids = new ArrayList<RID>(NUM_TUPLES);
+
+		byte[] buffer = new byte[PageSize.SIZE_4096.getNumberOfBytes()];
+		TablePage page = this.table.reserveNewPage(buffer);
+		for (int i = 0; i < NUM_TUPLES; i++) {
+			DataTuple tuple = randomTuple(i);
+			if (!page.insertTuple(tuple)) {
+				this.table.writePageToResource(buffer, page);
+				buffer = new byte[PageSize.SIZE_4096.getNumberOfBytes()];
+				page = this.table.reserveNewPage(buffer);
+				page.insertTuple(tuple);
+			}
+			this.tuples.add(tuple);
+			this.rids.add(new RID(page.getPageNumber(), page.getNumRecordsOnPage() - 1));
+		}
+		this.table.writePageToResource(buffer, page);
+		assertTrue(page.getPageNumber() - this.table.getFirstDataPageNumber() > 2 * CACHE_SIZE);
+
+		this.pool = AbstractExtensionFactory.getExtensionFactory().createBufferPoolManager(
+				TestBufferPoolIOStudents.createConfig("CACHE_SIZE_FOR_PAGE_SIZE_4096", String.valueOf(CACHE_SIZE)),
+				Logger.getLogger("Test-ScanOperators-Logger"));
+		this.pool.startIOThreads();
+		this.pool.registerResource(RESOURCE_ID, this.table);
+	}
+
+	/**
+	 * Closes the buffer pool and deletes the table.
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		this.pool.closeBufferPool();
+		this.table.closeResource();
+		TableResourceManager.deleteTable(this.tableFile);
+	}
+
+	/**
+	 * Tests that the scan returns all tuples in table order, with columns that are requested out of
+	 * order and more than once.
+	 */
+	@Test
+	public void testScanProjectsReorderedAndRepeatedColumns() throws Exception
+	{
+		int[][] columnMaps = { { 0, 1, 2, 3 }, { 3, 0 }, { 2, 2, 1 }, { 1 }, { 3, 1, 0, 1, 2 } };
+		for (int[] columnMap : columnMaps) {
+			TableScanOperator scan = AbstractExtensionFactory.getExtensionFactory().createTableScanOperator(
+					this.pool, this.table, RESOURCE_ID, columnMap, null, 16);
+			scan.open(null);
+			assertEquals(project(this.tuples, columnMap), drain(scan));
+			scan.close();
+		}
+	}
+
+	/**
+	 * Tests that re-opening the scan in the middle of a page, as the inner side of a nested-loop
+	 * join does, restarts it without leaking the pin of the page, which would exhaust the cache.
+	 */
+	@Test
+	public void testReopenedScanRestartsAndReleasesPins() throws Exception
+	{
+		int[] columnMap = { 2, 0 };
+		TableScanOperator scan = AbstractExtensionFactory.getExtensionFactory().createTableScanOperator(
+				this.pool, this.table, RESOURCE_ID, columnMap, null, 16);
+		List<DataTuple> expected = project(this.tuples, columnMap);
+		for (int round = 0; round < 4 * CACHE_SIZE; round++) {
+			scan.open(null);
+			int stop = this.random.nextInt(NUM_TUPLES);
+			for (int i = 0; i < stop; i++) {
+				assertEquals(expected.get(i), scan.next());
+			}
+		}
+		scan.open(null);
+		assertEquals(expected, drain(scan));
+		scan.close();
+	}
+
+	/**
+	 * Tests that the fetch operator resolves the RIDs in the order it receives them, including
+	 * runs of RIDs into the same page and RIDs that jump back to earlier pages.
+	 */
+	@Test
+	public void testFetchFollowsRidOrder() throws Exception
+	{
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < NUM_TUPLES; i += 3) {
+			order.add(i);
+		}
+		Collections.shuffle(order, this.random);
+		// a sorted stretch, so consecutive RIDs hit the same page
+		for (int i = 100; i < 400; i++) {
+			order.add(i);
+		}
+
+		List<DataTuple> ridTuples = new ArrayList<DataTuple>();
+		List<DataTuple> expected = new ArrayList<DataTuple>();
+		int[] columnMap = { 1, 3, 1 };
+		for (int i : order) {
+			ridTuples.add(new DataTuple(new DataField[] { this.rids.get(i) }));
+			expected.add(project(this.tuples.subList(i, i + 1), columnMap).get(0));
+		}
+
+		FetchOperator fetch = AbstractExtensionFactory.getExtensionFactory().createFetchOperator(
+				new MockPlanOperator(ridTuples), this.pool, RESOURCE_ID, columnMap);
+		fetch.open(null);
+		assertEquals(expected, drain(fetch));
+		fetch.close();
+	}
+
+	/**
+	 * Tests that the scan and the filter produce the same tuples through next() and nextBatch(),
+	 * for predicates that are evaluated on the columns of the batches and ones that are evaluated
+	 * row by row.
+	 */
+	@Test
+	public void testBatchesMatchTuples() throws Exception
+	{
+		int[] allColumns = { 0, 1, 2, 3 };
+		LocalPredicate[] predicates = {
+			new LowLevelPredicate(Operator.SMALLER, new BigIntField(500), 2),
+			new LocalPredicateConjunction(new LocalPredicate[] {
+				new LowLevelPredicate(Operator.GREATER_OR_EQUAL, new BigIntField(100), 2),
+				new LowLevelPredicate(Operator.SMALLER, new DoubleField(0.5), 3) }),
+			new LocalPredicateDisjunction(new LocalPredicate[] {
+				new LowLevelPredicate(Operator.GREATER, new IntField(NUM_TUPLES - 300), 0),
+				new LowLevelPredicate(Operator.SMALLER_OR_EQUAL, new VarcharField("n2"), 1) }) };
+
+		for (LocalPredicate predicate : predicates) {
+			List<DataTuple> expected = new ArrayList<DataTuple>();
+			for (DataTuple tuple : this.tuples) {
+				if (predicate.evaluate(tuple)) {
+					expected.add(tuple);
+				}
+			}
+
+			FilterOperator filter = AbstractExtensionFactory.getExtensionFactory().createFilterOperator(
+					AbstractExtensionFactory.getExtensionFactory().createTableScanOperator(
+							this.pool, this.table, RESOURCE_ID, allColumns, null, 16), predicate);
+			filter.open(null);
+			assertEquals(expected, drain(filter));
+			// a re-opened filter starts over, dropping the rest of its batch
+			filter.open(null);
+			filter.next();
+			filter.open(null);
+			assertEquals(expected, drain(filter));
+			filter.close();
+
+			filter = AbstractExtensionFactory.getExtensionFactory().createFilterOperator(
+					AbstractExtensionFactory.getExtensionFactory().createTableScanOperator(
+							this.pool, this.table, RESOURCE_ID, allColumns, null, 16), predicate);
+			filter.open(null);
+			assertEquals(expected, drainBatches((BatchOperator) filter, 100));
+			filter.close();
+		}
+
+		LowLevelPredicate[] pushed = { new LowLevelPredicate(Operator.SMALLER, new BigIntField(300), 2),
+				new LowLevelPredicate(Operator.NOT_EQUAL, new IntField(7), 0) };
+		int[][] columnMaps = { allColumns, { 3, 2 }, { 1, 1, 0 } };
+		for (int[] columnMap : columnMaps) {
+			TableScanOperator scan = AbstractExtensionFactory.getExtensionFactory().createTableScanOperator(
+					this.pool, this.table, RESOURCE_ID, columnMap, pushed, 16);
+			scan.open(null);
+			List<DataTuple> expected = drain(scan);
+			scan.open(null);
+			assertEquals(expected, drainBatches((BatchOperator) scan, TupleBatch.DEFAULT_CAPACITY));
+			scan.close();
+		}
+	}
+
+	/**
+	 * Tests that a filter that returns only the leading columns of its child evaluates the
+	 * predicate on the columns it drops, through next() and nextBatch(), and over a child that
+	 * returns tuples as well as over one that returns batches.
+	 */
+	@Test
+	public void testFilterReturnsLeadingColumns() throws Exception
+	{
+		// the predicate is on the trailing columns only
+		int[] columnMap = { 0, 1, 2, 3 };
+		LocalPredicate predicate = new LocalPredicateConjunction(new LocalPredicate[] {
+			new LowLevelPredicate(Operator.SMALLER, new BigIntField(500), 2),
+			new LowLevelPredicate(Operator.GREATER_OR_EQUAL, new DoubleField(0.25), 3) });
+		List<DataTuple> qualifying = new ArrayList<DataTuple>();
+		for (DataTuple tuple : this.tuples) {
+			if (predicate.evaluate(tuple)) {
+				qualifying.add(tuple);
+			}
+		}
+
+		for (int numColumns = 1; numColumns <= columnMap.length; numColumns++) {
+			List<DataTuple> expected = project(qualifying, Arrays.copyOf(columnMap, numColumns));
+
+			FilterOperator filter = AbstractExtensionFactory.getExtensionFactory().createFilterOperator(
+					new MockPlanOperator(this.tuples), predicate, numColumns);
+			filter.open(null);
+			assertEquals(expected, drain(filter));
+			filter.close();
+
+			filter = AbstractExtensionFactory.getExtensionFactory().createFilterOperator(
+					AbstractExtensionFactory.getExtensionFactory().createTableScanOperator(
+							this.pool, this.table, RESOURCE_ID, columnMap, null, 16), predicate, numColumns);
+			filter.open(null);
+			assertEquals(expected, drain(filter));
+			filter.open(null);
+			List<DataTuple> batched = drainBatches((BatchOperator) filter, 100);
+			assertEquals(expected, batched);
+			for (DataTuple tuple : batched) {
+				assertEquals(numColumns, tuple.getNumberOfFields());
+			}
+			filter.close();
+		}
+	}
+
+	/**
+	 * Tests that the predicates pushed into the scan, which are evaluated on the encoded records of
+	 * each page, select the same tuples as the predicates evaluated on the decoded fields.
+	 */
+	@Test
+	public void testPushedPredicatesMatchDecodedEvaluation() throws Exception
+	{
+		Operator[] operators = { Operator.EQUAL, Operator.NOT_EQUAL, Operator.SMALLER,
+				Operator.SMALLER_OR_EQUAL, Operator.GREATER, Operator.GREATER_OR_EQUAL };
+		int[] columnMap = { 0, 2 };
+		for (int round = 0; round < 12; round++) {
+			DataTuple source = this.tuples.get(this.random.nextInt(NUM_TUPLES));
+			LowLevelPredicate[] preds = new LowLevelPredicate[1 + this.random.nextInt(2)];
+			for (int i = 0; i < preds.length; i++) {
+				int column = 1 + this.random.nextInt(3);
+				DataField literal = source.getField(column);
+				if (literal.isNULL()) {
+					literal = column == 1 ? new VarcharField("n5") : column == 2 ? new BigIntField(500) : new DoubleField(0.5);
+				}
+				preds[i] = new LowLevelPredicate(operators[this.random.nextInt(operators.length)], literal, column);
+			}
+
+			List<DataTuple> qualifying = new ArrayList<DataTuple>();
+			for (DataTuple tuple : this.tuples) {
+				boolean passes = true;
+				for (LowLevelPredicate pred : preds) {
+					passes &= pred.evaluateWithNull(tuple.getField(pred.getColumnIndex()));
+				}
+				if (passes) {
+					qualifying.add(tuple);
+				}
+			}
+
+			TableScanOperator scan = AbstractExtensionFactory.getExtensionFactory().createTableScanOperator(
+					this.pool, this.table, RESOURCE_ID, columnMap, preds, 16);
+			scan.open(null);
+			assertEquals(project(qualifying, columnMap), drain(scan));
+			scan.close();
+		}
+	}
+
+	/**
+	 * Tests that a sealed Bloom filter accepts every key that was added and rejects most other
+	 * keys, and that a filter that is not sealed, or was reset, accepts every key.
+	 */
+	@Test
+	public void testBloomFilterRejectsOnlyKeysNotAdded() throws Exception
+	{
+		int numKeys = 50000;
+		BloomFilter filter = new BloomFilter();
+		filter.reset(numKeys);
+		Set<Integer> added = new HashSet<Integer>();
+		for (int i = 0; i < numKeys; i++) {
+			int key = this.random.nextInt();
+			added.add(key);
+			filter.add(BloomFilter.combine(BloomFilter.EMPTY_KEY_HASH, key));
+		}
+		assertFalse(filter.isSealed());
+		assertTrue(filter.mightContain(BloomFilter.combine(BloomFilter.EMPTY_KEY_HASH, -1)));
+		filter.seal();
+
+		for (int key : added) {
+			assertTrue("Rejected added key " + key, filter.mightContain(BloomFilter.combine(BloomFilter.EMPTY_KEY_HASH, key)));
+		}
+		int falsePositives = 0;
+		int numProbes = 100000;
+		for (int i = 0; i < numProbes; i++) {
+			int key = this.random.nextInt();
+			if (!added.contains(key) && filter.mightContain(BloomFilter.combine(BloomFilter.EMPTY_KEY_HASH, key))) {
+				falsePositives++;
+			}
+		}
+		assertTrue("Too many false positives: " + falsePositives, falsePositives < numProbes * 3 / 100);
+
+		// a reset filter holds no keys and rejects nothing until it is sealed again
+		filter.reset(10);
+		assertFalse(filter.isSealed());
+		assertTrue(filter.mightContain(BloomFilter.combine(BloomFilter.EMPTY_KEY_HASH, added.iterator().next())));
+		filter.add(BloomFilter.combine(BloomFilter.EMPTY_KEY_HASH, 42));
+		filter.seal();
+		assertTrue(filter.mightContain(BloomFilter.combine(BloomFilter.EMPTY_KEY_HASH, 42)));
+	}
+
+	/**
+	 * Tests that a scan with a sealed filter over the join keys returns every tuple whose key was
+	 * added, in table order, drops the tuples with a NULL key and only few of the others. The keys
+	 * are hashed from the page bytes for the integer columns and from the decoded fields for the
+	 * strings, and must come out the same as the hashes of the build tuples. A filter that is not
+	 * sealed yet drops nothing.
+	 */
+	@Test
+	public void testJoinKeyFilterKeepsTuplesOfBuildKeys() throws Exception
+	{
+		int[] columnMap = { 0, 1, 2, 3 };
+		int[][] keyColumns = { { 0 }, { 1 }, { 2 }, { 2, 0 }, { 1, 2 } };
+		for (int[] key : keyColumns) {
+			BloomFilter filter = new BloomFilter();
+			filter.reset(NUM_TUPLES / 20);
+			Set<Integer> buildKeys = new HashSet<Integer>();
+			for (int i = 0; i < NUM_TUPLES / 20; i++) {
+				int hash = BloomFilter.keyHash(this.tuples.get(this.random.nextInt(NUM_TUPLES)), key);
+				buildKeys.add(hash);
+				filter.add(hash);
+			}
+
+			TableScanOperator scan = AbstractExtensionFactory.getExtensionFactory().createTableScanOperator(
+					this.pool, this.table, RESOURCE_ID, columnMap, null, 16, filter, key);
+			scan.open(null);
+			assertEquals(this.tuples, drain(scan));
+
+			filter.seal();
+			scan.open(null);
+			List<DataTuple> result = drain(scan);
+			scan.close();
+
+			int next = 0;
+			int matching = 0;
+			for (DataTuple tuple : this.tuples) {
+				boolean hasNull = false;
+				for (int column : key) {
+					hasNull |= tuple.getField(column).isNULL();
+				}
+				boolean returned = next < result.size() && result.get(next).equals(tuple);
+				if (returned) {
+					next++;
+					assertFalse("Returned a tuple with a NULL key: " + tuple, hasNull);
+				}
+				if (!hasNull && buildKeys.contains(BloomFilter.keyHash(tuple, key))) {
+					assertTrue("Dropped a tuple of a build key: " + tuple, returned);
+					matching++;
+				}
+			}
+			assertEquals("Returned tuples out of table order", result.size(), next);
+			assertTrue("Too many false positives", result.size() - matching < NUM_TUPLES * 3 / 100);
+		}
+	}
+
+	/**
+	 * Tests that the parallel scan returns the same tuples as the serial scan, in any order, for
+	 * any number of workers, with and without pushed predicates and a join key filter, through
+	 * next() and nextBatch(), and also after it was re-opened in the middle of the table.
+	 */
+	@Test
+	public void testParallelScanReturnsTuplesOfSerialScan() throws Exception
+	{
+		int[] columnMap = { 3, 0, 1 };
+		BloomFilter filter = new BloomFilter();
+		filter.reset(NUM_TUPLES / 10);
+		for (int i = 0; i < NUM_TUPLES / 10; i++) {
+			filter.add(BloomFilter.keyHash(this.tuples.get(this.random.nextInt(NUM_TUPLES)), new int[] { 0 }));
+		}
+		filter.seal();
+		LowLevelPredicate[][] predicates = { null,
+				{ new LowLevelPredicate(Operator.SMALLER, new BigIntField(300), 2) },
+				{ new LowLevelPredicate(Operator.GREATER, new IntField(NUM_TUPLES), 0) } };
+
+		for (LowLevelPredicate[] preds : predicates) {
+			for (BloomFilter joinKeyFilter : new BloomFilter[] { null, filter }) {
+				int[] filterColumns = joinKeyFilter == null ? null : new int[] { 0 };
+				TableScanOperator serial = AbstractExtensionFactory.getExtensionFactory().createTableScanOperator(
+						this.pool, this.table, RESOURCE_ID, columnMap, preds, 16, joinKeyFilter, filterColumns);
+				serial.open(null);
+				List<DataTuple> expected = drain(serial);
+				serial.close();
+
+				for (int parallelism : new int[] { 1, 2, 4, 7 }) {
+					TableScanOperator parallel = AbstractExtensionFactory.getExtensionFactory().createParallelTableScanOperator(
+							this.pool, this.table, RESOURCE_ID, columnMap, preds, joinKeyFilter, filterColumns, parallelism);
+					parallel.open(null);
+					for (int i = 0; i < expected.size() / 3; i++) {
+						parallel.next();
+					}
+					parallel.open(null);
+					TestSpillingOperatorsStudents.assertSameTuples(expected, drain(parallel));
+					parallel.open(null);
+					TestSpillingOperatorsStudents.assertSameTuples(expected, drainBatches((BatchOperator) parallel, 100));
+					parallel.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that a parallel scan whose worker is interrupted while the consumer does not read fails,
+	 * rather than ending early with a part of the tuples. The worker cannot finish before it is
+	 * interrupted, since it runs out of free batches first. It may be interrupted while it waits
+	 * for a free batch or for a page load, in which case the buffer pool reports the interrupt.
+	 */
+	@Test(timeout = 30000)
+	public void testInterruptedScanWorkerFailsScan() throws Exception
+	{
+		ParallelTableScanOperatorClass scan = (ParallelTableScanOperatorClass)
+				AbstractExtensionFactory.getExtensionFactory().createParallelTableScanOperator(
+						this.pool, this.table, RESOURCE_ID, new int[] { 0, 1, 2, 3 }, null, null, null, 2);
+		BlockingQueue<Thread> workers = new LinkedBlockingQueue<Thread>();
+		scan.setWorkerListener(workers::add);
+		scan.open(null);
+		workers.take().interrupt();
+
+		try {
+			drain(scan);
+			fail("The scan should have failed after its worker was interrupted.");
+		}
+		catch (QueryExecutionException e) {
+			Throwable cause = e.getCause();
+			while (cause != null && !(cause instanceof InterruptedException)) {
+				cause = cause.getCause();
+			}
+			assertTrue("The scan failed for another reason: " + e, cause != null);
+		}
+		scan.close();
+	}
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Reads all remaining tuples from the operator.
+	 */
+	static List<DataTuple> drain(PhysicalPlanOperator operator) throws Exception
+	{
+		List<DataTuple> result = new ArrayList<DataTuple>();
+		DataTuple tuple;
+		while ((tuple = operator.next()) != null) {
+			result.add(tuple);
+		}
+		assertNull(operator.next());
+		return result;
+	}
+
+	/**
+	 * Reads all remaining tuples from the operator in batches of the given capacity.
+	 */
+	static List<DataTuple> drainBatches(BatchOperator operator, int capacity) throws Exception
+	{
+		List<DataTuple> result = new ArrayList<DataTuple>();
+		TupleBatch batch = new TupleBatch(capacity);
+		while (operator.nextBatch(batch)) {
+			assertTrue(batch.getSize() <= capacity);
+			for (int row = 0; row < batch.getSize(); row++) {
+				result.add(batch.getTuple(row));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Projects the given tuples to the columns of the column map.
+	 */
+	static List<DataTuple> project(List<DataTuple> tuples, int[] columnMap)
+	{
+		List<DataTuple> result = new ArrayList<DataTuple>(tuples.size());
+		for (DataTuple tuple : tuples) {
+			DataTuple projected = new DataTuple(columnMap.length);
+			for (int i = 0; i < columnMap.length; i++) {
+				projected.assignDataField(tuple.getField(columnMap[i]), i);
+			}
+			result.add(projected);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a tuple with the given id and random other values, some of them NULL.
+	 */
+	private DataTuple randomTuple(int id) throws Exception
+	{
+		DataTuple tuple = new DataTuple(4);
+		tuple.assignDataField(new IntField(id), 0);
+		tuple.assignDataField(this.random.nextInt(8) == 0 ? DataType.varcharType(20).getNullValue()
+				: new VarcharField("n" + this.random.nextInt(100000)), 1);
+		tuple.assignDataField(this.random.nextInt(8) == 0 ? DataType.bigIntType().getNullValue()
+				: new BigIntField(this.random.nextInt(1000)), 2);
+		tuple.assignDataField(this.random.nextInt(8) == 0 ? DataType.doubleType().getNullValue()
+				: new DoubleField(this.random.nextDouble()), 3);
+		return tuple;
+	}
+}
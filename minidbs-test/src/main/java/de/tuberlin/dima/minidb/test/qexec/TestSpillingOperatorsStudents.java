@@ -0,0 +1,631 @@
+package de.tuberlin.dima.minidb.test.qexec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.dima.minidb.api.AbstractExtensionFactory;
+import de.tuberlin.dima.minidb.core.BigIntField;
+import de.tuberlin.dima.minidb.core.CharField;
+import de.tuberlin.dima.minidb.core.DataField;
+import de.tuberlin.dima.minidb.core.DataTuple;
+import de.tuberlin.dima.minidb.core.DataType;
+import de.tuberlin.dima.minidb.core.DateField;
+import de.tuberlin.dima.minidb.core.DoubleField;
+import de.tuberlin.dima.minidb.core.FloatField;
+import de.tuberlin.dima.minidb.core.IntField;
+import de.tuberlin.dima.minidb.core.SmallIntField;
+import de.tuberlin.dima.minidb.core.TimeField;
+import de.tuberlin.dima.minidb.core.VarcharField;
+import de.tuberlin.dima.minidb.parser.OutputColumn.AggregationType;
+import de.tuberlin.dima.minidb.qexec.BloomFilter;
+import de.tuberlin.dima.minidb.qexec.HashGroupByOperator;
+import de.tuberlin.dima.minidb.qexec.HashJoinOperator;
+import de.tuberlin.dima.minidb.qexec.MergeJoinOperator;
+import de.tuberlin.dima.minidb.qexec.PhysicalPlanOperator;
+import de.tuberlin.dima.minidb.qexec.QueryExecutionException;
+import de.tuberlin.dima.minidb.qexec.SortOperator;
+import de.tuberlin.dima.minidb.qexec.heap.QueryHeap;
+import de.tuberlin.dima.minidb.test.io.manager.TestBufferPoolIOStudents;
+
+/**
+ * Test case for the operators that hold their input in memory granted by the query heap and spill
+ * to its temp space when the input exceeds the grant. The heap is as small as possible, so that a
+ * few thousand tuples are enough to make the operators spill.
+ */
+public class TestSpillingOperatorsStudents
+{
+	/**
+	 * The schema of the test tuples: a key, a payload and a string.
+	 */
+	private static final DataType[] SCHEMA = { DataType.intType(), DataType.intType(), DataType.varcharType(12) };
+
+	/**
+	 * The schema of the tuples for the sort keys: a column of every type with a normalized key, and
+	 * a time column, which has none.
+	 */
+	private static final DataType[] KEY_SCHEMA = { DataType.smallIntType(), DataType.intType(), DataType.bigIntType(),
+			DataType.floatType(), DataType.doubleType(), DataType.dateType(), DataType.varcharType(20),
+			DataType.charType(10), DataType.timeType() };
+
+	/**
+	 * The random number generator.
+	 */
+	private final Random random = new Random(8734562L);
+
+	/**
+	 * The directory holding the temp files of the query heap.
+	 */
+	private File tempDir;
+
+	/**
+	 * The query heap under test.
+	 */
+	private QueryHeap heap;
+
+
+	/**
+	 * Creates the query heap with its minimal size.
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		AbstractExtensionFactory.initializeDefault();
+		this.tempDir = File.createTempFile("query-heap", "");
+		this.tempDir.delete();
+		this.tempDir.mkdir();
+		this.heap = createHeap(1024 * 1024);
+	}
+
+	/**
+	 * Closes the query heap and deletes its temp files.
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		this.heap.closeQueryHeap();
+		File[] files = this.tempDir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		this.tempDir.delete();
+	}
+
+	/**
+	 * Tests that a hash join whose build side exceeds its grant many times over partitions both
+	 * sides to the temp space and still produces every pair of matching tuples exactly once.
+	 * Tuples with a NULL key join with nothing.
+	 */
+	@Test
+	public void testHashJoinSpillsAndFindsAllPairs() throws Exception
+	{
+		List<DataTuple> build = randomTuples(20000, 6000);
+		List<DataTuple> probe = randomTuples(30000, 8000);
+		HashJoinOperator join = AbstractExtensionFactory.getExtensionFactory().createHashJoinOperator(
+				new MockPlanOperator(build), new MockPlanOperator(probe), this.heap, SCHEMA, SCHEMA, 100,
+				new int[] { 0 }, new int[] { 0 }, new int[] { 1, -1, 2, -1 }, new int[] { -1, 1, -1, 0 });
+		join.open(null);
+		assertTrue("The build side should have been spilled", this.tempDir.list().length > 0);
+		assertSameTuples(joinPairs(build, probe), drain(join));
+		join.close();
+	}
+
+	/**
+	 * Tests that a spilled build partition that alone exceeds the grant, because one key occurs
+	 * very often, is joined chunk by chunk with all of its probe tuples.
+	 */
+	@Test
+	public void testHashJoinOfSkewedPartitionInChunks() throws Exception
+	{
+		List<DataTuple> build = randomTuples(12000, 3000);
+		for (int i = 0; i < 8000; i++) {
+			build.add(tuple(7, i, "skew"));
+		}
+		List<DataTuple> probe = randomTuples(3000, 3000);
+		probe.add(tuple(7, -1, "a"));
+		probe.add(tuple(7, -2, "b"));
+		HashJoinOperator join = AbstractExtensionFactory.getExtensionFactory().createHashJoinOperator(
+				new MockPlanOperator(build), new MockPlanOperator(probe), this.heap, SCHEMA, SCHEMA, 100,
+				new int[] { 0 }, new int[] { 0 }, new int[] { 1, -1, 2, -1 }, new int[] { -1, 1, -1, 0 });
+		join.open(null);
+		assertSameTuples(joinPairs(build, probe), drain(join));
+		join.close();
+	}
+
+	/**
+	 * Tests that a hash join that is re-opened, as the inner side of a nested-loop join, releases its
+	 * grant every time. A leaked grant would make the reservations wait for memory forever.
+	 */
+	@Test(timeout = 60000)
+	public void testReopenedHashJoinReleasesGrant() throws Exception
+	{
+		List<DataTuple> build = randomTuples(3000, 1000);
+		List<DataTuple> probe = randomTuples(3000, 1000);
+		List<DataTuple> expected = joinPairs(build, probe);
+		HashJoinOperator join = AbstractExtensionFactory.getExtensionFactory().createHashJoinOperator(
+				new MockPlanOperator(build), new MockPlanOperator(probe), this.heap, SCHEMA, SCHEMA, 3000,
+				new int[] { 0 }, new int[] { 0 }, new int[] { 1, -1, 2, -1 }, new int[] { -1, 1, -1, 0 });
+		for (int round = 0; round < 50; round++) {
+			join.open(null);
+			join.next();
+		}
+		join.open(null);
+		assertSameTuples(expected, drain(join));
+		join.close();
+	}
+
+	/**
+	 * Tests that a hash join with a Bloom filter adds the keys of all build tuples to it, also of
+	 * the spilled ones, and seals it before it opens the probe input, on every open. The filter
+	 * does not change the result of the join.
+	 */
+	@Test
+	public void testHashJoinFillsBuildKeyFilterBeforeProbing() throws Exception
+	{
+		List<DataTuple> build = randomTuples(20000, 6000);
+		List<DataTuple> probe = randomTuples(30000, 8000);
+		final BloomFilter filter = new BloomFilter();
+		final int[] probeOpens = new int[1];
+		PhysicalPlanOperator probeChild = new MockPlanOperator(probe) {
+			@Override
+			public void open(DataTuple correlatedTuple) throws QueryExecutionException
+			{
+				assertTrue("The probe input was opened before the filter was sealed", filter.isSealed());
+				probeOpens[0]++;
+				super.open(correlatedTuple);
+			}
+		};
+		HashJoinOperator join = AbstractExtensionFactory.getExtensionFactory().createHashJoinOperator(
+				new MockPlanOperator(build), probeChild, this.heap, SCHEMA, SCHEMA, 100,
+				new int[] { 0 }, new int[] { 0 }, new int[] { 1, -1, 2, -1 }, new int[] { -1, 1, -1, 0 }, filter);
+		List<DataTuple> expected = joinPairs(build, probe);
+		for (int round = 0; round < 2; round++) {
+			join.open(null);
+			assertTrue("The build side should have been spilled", this.tempDir.list().length > 0);
+			for (DataTuple tuple : build) {
+				if (!tuple.getField(0).isNULL()) {
+					assertTrue(filter.mightContain(BloomFilter.keyHash(tuple, new int[] { 0 })));
+				}
+			}
+			assertSameTuples(expected, drain(join));
+			assertEquals(round + 1, probeOpens[0]);
+		}
+		join.close();
+	}
+
+	/**
+	 * Tests that a hash group by with many more groups than fit into its grant writes the remaining
+	 * groups to the temp space and still produces every group exactly once with its aggregates.
+	 */
+	@Test
+	public void testHashGroupBySpillsGroupsThatDoNotFit() throws Exception
+	{
+		List<DataTuple> input = groupInput(30000, 8000);
+		HashGroupByOperator groupBy = createGroupBy(input, 100);
+		groupBy.open(null);
+		assertTrue("Groups should have been spilled", this.tempDir.list().length > 0);
+		assertSameTuples(aggregate(input), drain(groupBy));
+		groupBy.close();
+	}
+
+	/**
+	 * Tests that partitions that overflow the grant again are re-partitioned over several levels,
+	 * so that the groups of a partition are spread differently on every level and are all produced.
+	 */
+	@Test
+	public void testHashGroupByRepartitionsOverflowingPartitions() throws Exception
+	{
+		List<DataTuple> input = groupInput(250000, 200000);
+		HashGroupByOperator groupBy = createGroupBy(input, 1);
+		groupBy.open(null);
+		assertSameTuples(aggregate(input), drain(groupBy));
+		groupBy.close();
+	}
+
+	/**
+	 * Tests that a spilling hash group by that is re-opened releases its grant and starts over.
+	 */
+	@Test(timeout = 60000)
+	public void testReopenedHashGroupByReleasesGrant() throws Exception
+	{
+		List<DataTuple> input = groupInput(5000, 2000);
+		HashGroupByOperator groupBy = createGroupBy(input, 100);
+		for (int round = 0; round < 50; round++) {
+			groupBy.open(null);
+			groupBy.next();
+		}
+		groupBy.open(null);
+		assertSameTuples(aggregate(input), drain(groupBy));
+		groupBy.close();
+	}
+
+	/**
+	 * Tests that a merge join whose right input has a group of equal keys far larger than estimated
+	 * writes the group to the temp space and replays it for every matching left tuple.
+	 */
+	@Test
+	public void testMergeJoinSpillsGroupsLargerThanEstimated() throws Exception
+	{
+		List<DataTuple> left = groupInput(3000, 2000);
+		left.add(tuple(7, -1, "a"));
+		left.add(tuple(7, -2, "b"));
+		List<DataTuple> right = groupInput(3000, 2000);
+		for (int i = 0; i < 6000; i++) {
+			right.add(tuple(7, i, "skew"));
+		}
+		MergeJoinOperator join = createMergeJoin(left, right, 1);
+		join.open(null);
+		List<DataTuple> output = drain(join);
+		assertTrue("The large group should have been spilled", this.tempDir.list().length > 0);
+		assertSameTuples(joinPairs(right, left), output);
+		join.close();
+	}
+
+	/**
+	 * Tests that a merge join sizes its grant from the estimated number of right tuples per key, so
+	 * that groups of the estimated size are kept in memory.
+	 */
+	@Test
+	public void testMergeJoinKeepsEstimatedGroupsInMemory() throws Exception
+	{
+		List<DataTuple> left = groupInput(500, 20);
+		List<DataTuple> right = groupInput(40000, 20);
+		MergeJoinOperator join = createMergeJoin(left, right, 2000);
+		join.open(null);
+		List<DataTuple> output = drain(join);
+		assertEquals("No group should have been spilled", 0, this.tempDir.list().length);
+		assertSameTuples(joinPairs(right, left), output);
+		join.close();
+	}
+
+	/**
+	 * Tests that a sort with many more runs than block buffers merges them in several passes and
+	 * produces all tuples in order, descending on the payload within equal keys.
+	 */
+	@Test
+	public void testSortMergesRunsInSeveralPasses() throws Exception
+	{
+		List<DataTuple> input = randomTuples(80000, 50000);
+		int[] columns = { 0, 1 };
+		boolean[] ascending = { true, false };
+		SortOperator sort = AbstractExtensionFactory.getExtensionFactory().createSortOperator(
+				new MockPlanOperator(input), this.heap, SCHEMA, 100, columns, ascending);
+		sort.open(null);
+		List<DataTuple> output = drain(sort);
+		assertTrue("The runs should have been written", this.tempDir.list().length > 0);
+		assertSorted(output, columns, ascending);
+		assertSameTuples(input, output);
+		sort.close();
+	}
+
+	/**
+	 * Tests that the merge takes equal keys from all runs, when every run holds the same few keys.
+	 */
+	@Test
+	public void testSortMergesEqualKeysOfAllRuns() throws Exception
+	{
+		List<DataTuple> input = randomTuples(40000, 5);
+		int[] columns = { 0 };
+		boolean[] ascending = { true };
+		SortOperator sort = AbstractExtensionFactory.getExtensionFactory().createSortOperator(
+				new MockPlanOperator(input), this.heap, SCHEMA, 100, columns, ascending);
+		sort.open(null);
+		List<DataTuple> output = drain(sort);
+		assertSorted(output, columns, ascending);
+		assertSameTuples(input, output);
+		sort.close();
+	}
+
+	/**
+	 * Tests that sorts that write their runs in the background release their grants when they are
+	 * closed after their first tuple, so that the sorts that follow get memory and sort correctly.
+	 */
+	@Test(timeout = 120000)
+	public void testClosedSortsReleaseGrants() throws Exception
+	{
+		List<DataTuple> input = randomTuples(20000, 20000);
+		int[] columns = { 0 };
+		boolean[] ascending = { true };
+		for (int round = 0; round < 30; round++) {
+			SortOperator sort = AbstractExtensionFactory.getExtensionFactory().createSortOperator(
+					new MockPlanOperator(input.subList(0, 600 * round)), this.heap, SCHEMA, 100, columns, ascending);
+			sort.open(null);
+			sort.next();
+			sort.close();
+		}
+		SortOperator sort = AbstractExtensionFactory.getExtensionFactory().createSortOperator(
+				new MockPlanOperator(input), this.heap, SCHEMA, 100, columns, ascending);
+		sort.open(null);
+		List<DataTuple> output = drain(sort);
+		assertSorted(output, columns, ascending);
+		assertSameTuples(input, output);
+		sort.close();
+	}
+
+	/**
+	 * Tests that sorting on every column type with a normalized key, ascending and descending,
+	 * orders negative numbers and years, negative zero, NULLs and strings that differ only after the key prefix
+	 * like the comparison of the fields does.
+	 */
+	@Test
+	public void testSortOnNormalizedKeysOfAllTypes() throws Exception
+	{
+		useLargerHeap();
+		List<DataTuple> input = keyTuples(20000);
+		for (int column = 0; column < KEY_SCHEMA.length - 1; column++) {
+			checkSort(input, new int[] { column }, new boolean[] { true });
+			checkSort(input, new int[] { column }, new boolean[] { false });
+		}
+	}
+
+	/**
+	 * Tests sorts on several columns, where a string prefix or a column without a normalized key
+	 * ends the key and the remaining order is decided by comparing the tuples.
+	 */
+	@Test
+	public void testSortOnKeysThatLeaveTies() throws Exception
+	{
+		useLargerHeap();
+		List<DataTuple> input = keyTuples(20000);
+		checkSort(input, new int[] { 0, 3 }, new boolean[] { false, true });
+		checkSort(input, new int[] { 6, 1 }, new boolean[] { true, false });
+		checkSort(input, new int[] { 7, 6, 2 }, new boolean[] { false, true, true });
+		checkSort(input, new int[] { 0, 8, 1 }, new boolean[] { true, true, false });
+		checkSort(input, new int[] { 8, 5 }, new boolean[] { false, true });
+	}
+
+	// ------------------------------------------------------------------------
+	//                         Utility Methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a query heap of the given size with its temp space in the test directory.
+	 */
+	private QueryHeap createHeap(int size) throws Exception
+	{
+		return new QueryHeap(Logger.getLogger("Test-SpillingOperators-Logger"), TestBufferPoolIOStudents.createConfig(
+				"QUERY_HEAP_SIZE", String.valueOf(size), "TEMPSPACE_DIRECTORY", this.tempDir.getAbsolutePath()));
+	}
+
+	/**
+	 * Replaces the minimal query heap with one that can sort the wide tuples of the key schema.
+	 */
+	private void useLargerHeap() throws Exception
+	{
+		this.heap.closeQueryHeap();
+		this.heap = createHeap(2 * 1024 * 1024);
+	}
+
+	/**
+	 * Creates a merge join over the inputs sorted on their keys, which produces the same columns as
+	 * the test hash joins, with the right input in place of the build side.
+	 */
+	private MergeJoinOperator createMergeJoin(List<DataTuple> left, List<DataTuple> right, int estimatedGroupSize)
+	{
+		Comparator<DataTuple> byKey = new Comparator<DataTuple>() {
+			@Override
+			public int compare(DataTuple t1, DataTuple t2)
+			{
+				return t1.getField(0).compareTo(t2.getField(0));
+			}
+		};
+		Collections.sort(left, byKey);
+		Collections.sort(right, byKey);
+		return AbstractExtensionFactory.getExtensionFactory().createMergeJoinOperator(
+				new MockPlanOperator(left), new MockPlanOperator(right), this.heap, SCHEMA, estimatedGroupSize,
+				new int[] { 0 }, new int[] { 0 }, new int[] { -1, 1, -1, 0 }, new int[] { 1, -1, 2, -1 });
+	}
+
+	/**
+	 * Computes the output of the test joins, which produce the payload and string of the build
+	 * tuple followed by the payload and key of the probe tuple.
+	 */
+	private static List<DataTuple> joinPairs(List<DataTuple> build, List<DataTuple> probe)
+	{
+		Map<DataField, List<DataTuple>> byKey = new HashMap<DataField, List<DataTuple>>();
+		for (DataTuple b : build) {
+			if (!b.getField(0).isNULL()) {
+				List<DataTuple> list = byKey.get(b.getField(0));
+				if (list == null) {
+					list = new ArrayList<DataTuple>();
+					byKey.put(b.getField(0), list);
+				}
+				list.add(b);
+			}
+		}
+		List<DataTuple> result = new ArrayList<DataTuple>();
+		for (DataTuple p : probe) {
+			List<DataTuple> matches = p.getField(0).isNULL() ? null : byKey.get(p.getField(0));
+			if (matches != null) {
+				for (DataTuple b : matches) {
+					result.add(new DataTuple(new DataField[] { b.getField(1), p.getField(1), b.getField(2), p.getField(0) }));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks that both lists hold the same tuples the same number of times, in any order.
+	 */
+	static void assertSameTuples(List<DataTuple> expected, List<DataTuple> actual)
+	{
+		assertEquals("Number of tuples", expected.size(), actual.size());
+		Map<DataTuple, Integer> counts = new HashMap<DataTuple, Integer>();
+		for (DataTuple tuple : expected) {
+			Integer count = counts.get(tuple);
+			counts.put(tuple, count == null ? 1 : count + 1);
+		}
+		for (DataTuple tuple : actual) {
+			Integer count = counts.get(tuple);
+			assertTrue("Unexpected tuple " + tuple, count != null && count > 0);
+			counts.put(tuple, count - 1);
+		}
+	}
+
+	/**
+	 * Checks that every tuple is ordered after its predecessor on the given columns.
+	 */
+	static void assertSorted(List<DataTuple> tuples, int[] columns, boolean[] ascending)
+	{
+		for (int i = 1; i < tuples.size(); i++) {
+			for (int k = 0; k < columns.length; k++) {
+				int c = tuples.get(i - 1).getField(columns[k]).compareTo(tuples.get(i).getField(columns[k]));
+				if (!ascending[k]) {
+					c = -c;
+				}
+				assertTrue("Tuple " + i + " is out of order: " + tuples.get(i), c <= 0);
+				if (c < 0) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads all tuples from the operator.
+	 */
+	static List<DataTuple> drain(PhysicalPlanOperator operator) throws Exception
+	{
+		List<DataTuple> result = new ArrayList<DataTuple>();
+		DataTuple tuple;
+		while ((tuple = operator.next()) != null) {
+			result.add(tuple);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the test group by, which groups on the key and produces the key, the number of tuples,
+	 * the sum of the payloads and the largest string of every group.
+	 */
+	private HashGroupByOperator createGroupBy(List<DataTuple> input, int estimatedGroups)
+	{
+		return AbstractExtensionFactory.getExtensionFactory().createHashGroupByOperator(
+				new MockPlanOperator(input), this.heap, SCHEMA, estimatedGroups, new int[] { 0 }, new int[] { 1, 1, 2 },
+				new AggregationType[] { AggregationType.COUNT, AggregationType.SUM, AggregationType.MAX },
+				new DataType[] { DataType.intType(), DataType.bigIntType(), DataType.varcharType(12) },
+				new int[] { 0, -1, -1, -1 }, new int[] { -1, 0, 1, 2 });
+	}
+
+	/**
+	 * Computes the output of the test group by.
+	 */
+	private static List<DataTuple> aggregate(List<DataTuple> input)
+	{
+		Map<DataField, DataField[]> groups = new HashMap<DataField, DataField[]>();
+		for (DataTuple tuple : input) {
+			DataField[] group = groups.get(tuple.getField(0));
+			if (group == null) {
+				groups.put(tuple.getField(0), new DataField[] { tuple.getField(0), new IntField(1),
+						new BigIntField(((IntField) tuple.getField(1)).getValue()), tuple.getField(2) });
+			}
+			else {
+				group[1] = new IntField(((IntField) group[1]).getValue() + 1);
+				group[2] = new BigIntField(((BigIntField) group[2]).getValue() + ((IntField) tuple.getField(1)).getValue());
+				if (group[3].compareTo(tuple.getField(2)) < 0) {
+					group[3] = tuple.getField(2);
+				}
+			}
+		}
+		List<DataTuple> result = new ArrayList<DataTuple>();
+		for (DataField[] group : groups.values()) {
+			result.add(new DataTuple(group));
+		}
+		return result;
+	}
+
+	/**
+	 * Sorts the tuples on the given columns and checks the order and completeness of the output.
+	 */
+	private void checkSort(List<DataTuple> input, int[] columns, boolean[] ascending) throws Exception
+	{
+		SortOperator sort = AbstractExtensionFactory.getExtensionFactory().createSortOperator(
+				new MockPlanOperator(input), this.heap, KEY_SCHEMA, 100, columns, ascending);
+		sort.open(null);
+		List<DataTuple> output = drain(sort);
+		sort.close();
+		assertSorted(output, columns, ascending);
+		assertSameTuples(input, output);
+	}
+
+	/**
+	 * Creates tuples of the key schema with few distinct values per column, so that sorts on several
+	 * columns have ties. Strings share a prefix longer than the one in the normalized key.
+	 */
+	private List<DataTuple> keyTuples(int num) throws Exception
+	{
+		String[] suffixes = { "", "a", "b", "ab", "\u00e9", "\u20ac", "Z" };
+		List<DataTuple> tuples = new ArrayList<DataTuple>(num);
+		for (int i = 0; i < num; i++) {
+			DataField[] fields = new DataField[KEY_SCHEMA.length];
+			fields[0] = new SmallIntField((short) (this.random.nextInt(200) - 100));
+			fields[1] = new IntField(this.random.nextInt(50) * (this.random.nextBoolean() ? 1 : -100000));
+			fields[2] = new BigIntField(this.random.nextInt(50) * (this.random.nextBoolean() ? 1L : -10000000000L));
+			fields[3] = new FloatField(this.random.nextInt(3) == 0 ? -0.0f : (this.random.nextInt(100) - 50) / 8.0f);
+			fields[4] = new DoubleField(this.random.nextInt(3) == 0 ? -0.0 : (this.random.nextInt(100) - 50) * 1.5e100);
+			fields[5] = new DateField(1 + this.random.nextInt(28), this.random.nextInt(12), this.random.nextInt(4000) - 2000);
+			fields[6] = new VarcharField((this.random.nextBoolean() ? "prefix00" : "pre") + suffixes[this.random.nextInt(suffixes.length)]);
+			fields[7] = new CharField(String.format("ch%08d", this.random.nextInt(100)));
+			fields[8] = new TimeField(this.random.nextInt(24), this.random.nextInt(60), 0);
+			for (int k = 0; k < fields.length; k++) {
+				if (this.random.nextInt(20) == 0) {
+					fields[k] = KEY_SCHEMA[k].getNullValue();
+				}
+			}
+			tuples.add(new DataTuple(fields));
+		}
+		return tuples;
+	}
+
+	/**
+	 * Creates tuples with random keys below the given bound, none of them NULL.
+	 */
+	private List<DataTuple> groupInput(int num, int maxKey)
+	{
+		List<DataTuple> tuples = new ArrayList<DataTuple>(num);
+		for (int i = 0; i < num; i++) {
+			tuples.add(tuple(this.random.nextInt(maxKey), i, "s" + this.random.nextInt(1000)));
+		}
+		return tuples;
+	}
+
+	/**
+	 * Creates tuples with random keys below the given bound, some of them NULL, and ascending payloads.
+	 */
+	private List<DataTuple> randomTuples(int num, int maxKey)
+	{
+		List<DataTuple> tuples = new ArrayList<DataTuple>(num);
+		for (int i = 0; i < num; i++) {
+			DataTuple tuple = tuple(this.random.nextInt(maxKey), i, "s" + this.random.nextInt(1000));
+			if (this.random.nextInt(50) == 0) {
+				tuple.assignDataField(DataType.intType().getNullValue(), 0);
+			}
+			tuples.add(tuple);
+		}
+		return tuples;
+	}
+
+	/**
+	 * Creates a tuple of the test schema.
+	 */
+	static DataTuple tuple(int key, int payload, String text)
+	{
+		return new DataTuple(new DataField[] { new IntField(key), new IntField(payload), new VarcharField(text) });
+	}
+}